@@ -0,0 +1,154 @@
+package com.urlshortener.benchmark;
+
+import com.urlshortener.cache.CacheInvalidationBus;
+import com.urlshortener.cache.ShortUrlCache;
+import com.urlshortener.config.RedisConfig;
+import com.urlshortener.repository.MappedUrlStore;
+import com.urlshortener.repository.RedisUrlRepository;
+import com.urlshortener.repository.UrlStore;
+import io.lettuce.core.ReadFrom;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.RedisStaticMasterReplicaConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Wires the repository by hand against the in-memory stand-in, a local Redis or the
+ * embedded memory-mapped store. The Redis database used is flushed when the backend is
+ * opened and when it is closed; the mapped store lives in a temporary directory that is
+ * deleted on close. The Redis backend can also read from replicas of the local Redis.
+ */
+final class Backend implements AutoCloseable {
+    static final String MEMORY = "memory";
+    static final String REDIS = "redis";
+    static final String MMAP = "mmap";
+
+    private final UrlStore repository;
+    private final LettuceConnectionFactory connectionFactory;
+    private final RedisTemplate<String, String> redisTemplate;
+    private final CacheInvalidationBus invalidationBus;
+    private final Path directory;
+
+    private Backend(UrlStore repository, LettuceConnectionFactory connectionFactory,
+                    RedisTemplate<String, String> redisTemplate, CacheInvalidationBus invalidationBus, Path directory) {
+        this.repository = repository;
+        this.connectionFactory = connectionFactory;
+        this.redisTemplate = redisTemplate;
+        this.invalidationBus = invalidationBus;
+        this.directory = directory;
+    }
+
+    static Backend open(String name, ShortUrlCache cache) {
+        switch (name) {
+            case MEMORY:
+                return new Backend(new InMemoryUrlRepository(cache), null, null, null, null);
+            case REDIS:
+                return redis(connect(), cache, "");
+            case MMAP:
+                try {
+                    Path directory = Files.createTempDirectory("urlshortener-mmap");
+                    MappedUrlStore store = new MappedUrlStore(cache, directory.toString(), DataSize.ofMegabytes(64),
+                            false, 0.5, Duration.ofDays(30));
+                    return new Backend(store, null, null, null, directory);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            default:
+                throw new IllegalArgumentException("Unknown backend: " + name);
+        }
+    }
+
+    /**
+     * The Redis backend with reads spread over the given replicas ("host:port") of the local
+     * Redis, as urlshortener.redis.read-from=anyReplica does, or all sent to it if there are none.
+     */
+    static Backend openWithReplicas(List<String> replicas, ShortUrlCache cache) {
+        RedisStaticMasterReplicaConfiguration configuration = new RedisStaticMasterReplicaConfiguration(
+                System.getProperty("benchmark.redis.host", "localhost"),
+                Integer.getInteger("benchmark.redis.port", 6379));
+        for (String replica : replicas) {
+            int separator = replica.lastIndexOf(':');
+            configuration.node(replica.substring(0, separator), Integer.parseInt(replica.substring(separator + 1)));
+        }
+        configuration.setDatabase(Integer.getInteger("benchmark.redis.database", 15));
+        String readFrom = replicas.isEmpty() ? "" : "anyReplica";
+        LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory(configuration, LettuceClientConfiguration.builder()
+                .readFrom(replicas.isEmpty() ? ReadFrom.UPSTREAM : ReadFrom.valueOf(readFrom))
+                .build());
+        connectionFactory.afterPropertiesSet();
+        return redis(connectionFactory, cache, readFrom);
+    }
+
+    UrlStore repository() {
+        return repository;
+    }
+
+    RedisTemplate<String, String> redisTemplate() {
+        if (redisTemplate == null) {
+            throw new IllegalStateException("Only the Redis backend has a Redis connection");
+        }
+        return redisTemplate;
+    }
+
+    /**
+     * Publishes the invalidations queued by writes, as the scheduled flush would.
+     */
+    void flushInvalidations() {
+        if (invalidationBus != null) {
+            invalidationBus.flush();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (connectionFactory != null) {
+            flushDb(redisTemplate);
+            connectionFactory.destroy();
+        }
+        if (directory != null) {
+            try {
+                ((MappedUrlStore) repository).close();
+                FileSystemUtils.deleteRecursively(directory);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private static Backend redis(LettuceConnectionFactory connectionFactory, ShortUrlCache cache, String readFrom) {
+        RedisTemplate<String, String> redisTemplate = new RedisConfig().redisTemplate(connectionFactory);
+        redisTemplate.afterPropertiesSet();
+        flushDb(redisTemplate);
+        CacheInvalidationBus invalidationBus = new CacheInvalidationBus(redisTemplate, cache, readFrom, Duration.ofSeconds(2));
+        RedisUrlRepository repository = new RedisUrlRepository(redisTemplate, invalidationBus, 500, Duration.ofDays(30), readFrom);
+        return new Backend(repository, connectionFactory, redisTemplate, invalidationBus, null);
+    }
+
+    private static LettuceConnectionFactory connect() {
+        RedisStandaloneConfiguration configuration = new RedisStandaloneConfiguration(
+                System.getProperty("benchmark.redis.host", "localhost"),
+                Integer.getInteger("benchmark.redis.port", 6379));
+        configuration.setDatabase(Integer.getInteger("benchmark.redis.database", 15));
+        LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory(configuration);
+        connectionFactory.afterPropertiesSet();
+        return connectionFactory;
+    }
+
+    private static void flushDb(RedisTemplate<String, String> redisTemplate) {
+        redisTemplate.execute((RedisCallback<Void>) connection -> {
+            connection.serverCommands().flushDb();
+            return null;
+        });
+    }
+}
@@ -0,0 +1,112 @@
+package com.urlshortener.benchmark;
+
+import com.urlshortener.cache.ShortUrlCache;
+import com.urlshortener.model.UrlMapping;
+import com.urlshortener.repository.RedisUrlRepository;
+import com.urlshortener.repository.UrlStore;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Map-backed stand-in for {@link RedisUrlRepository}, used to measure the service
+ * without network cost. Writes follow the same claim/replace rules as the Lua script
+ * but are not atomic across the two maps, and evict from the local cache only.
+ * Mappings never expire.
+ */
+class InMemoryUrlRepository implements UrlStore {
+    private final Map<String, String> originalUrls = new ConcurrentHashMap<>();
+    private final Map<String, String> shortUrls = new ConcurrentHashMap<>();
+    private final ShortUrlCache cache;
+
+    InMemoryUrlRepository(ShortUrlCache cache) {
+        this.cache = cache;
+    }
+
+    @Override
+    public Optional<UrlMapping> findByShortUrl(String shortUrl) {
+        String originalUrl = originalUrls.get(shortUrl);
+        return originalUrl != null ? Optional.of(new UrlMapping(originalUrl, shortUrl)) : Optional.empty();
+    }
+
+    @Override
+    public Optional<String> findOriginalUrl(String shortUrl) {
+        return Optional.ofNullable(originalUrls.get(shortUrl));
+    }
+
+    @Override
+    public Map<String, String> findOriginalUrls(Collection<String> shortUrls) {
+        Map<String, String> found = new LinkedHashMap<>();
+        for (String shortUrl : shortUrls) {
+            findOriginalUrl(shortUrl).ifPresent(originalUrl -> found.put(shortUrl, originalUrl));
+        }
+        return found;
+    }
+
+    @Override
+    public Optional<UrlMapping> findByOriginalUrl(String originalUrl) {
+        String shortUrl = shortUrls.get(originalUrl);
+        return shortUrl != null ? Optional.of(new UrlMapping(originalUrl, shortUrl)) : Optional.empty();
+    }
+
+    @Override
+    public boolean existsByShortUrl(String shortUrl) {
+        return originalUrls.containsKey(shortUrl);
+    }
+
+    @Override
+    public UrlMapping save(UrlMapping urlMapping) {
+        String replaced = originalUrls.put(urlMapping.getShortUrl(), urlMapping.getOriginalUrl());
+        if (replaced != null && !replaced.equals(urlMapping.getOriginalUrl())) {
+            shortUrls.remove(replaced, urlMapping.getShortUrl());
+        }
+        link(urlMapping);
+        return urlMapping;
+    }
+
+    @Override
+    public boolean saveIfAbsent(UrlMapping urlMapping) {
+        if (originalUrls.putIfAbsent(urlMapping.getShortUrl(), urlMapping.getOriginalUrl()) != null) {
+            return false;
+        }
+        link(urlMapping);
+        return true;
+    }
+
+    @Override
+    public List<Boolean> saveAllIfAbsent(List<UrlMapping> mappings) {
+        List<Boolean> claimed = new ArrayList<>(mappings.size());
+        for (UrlMapping mapping : mappings) {
+            claimed.add(saveIfAbsent(mapping));
+        }
+        return claimed;
+    }
+
+    @Override
+    public void delete(String shortUrl) {
+        String originalUrl = originalUrls.remove(shortUrl);
+        if (originalUrl != null) {
+            shortUrls.remove(originalUrl, shortUrl);
+        }
+        cache.invalidate(shortUrl);
+    }
+
+    @Override
+    public int refreshExpiry(Collection<String> shortUrls, long minExtensionSeconds) {
+        return 0;
+    }
+
+    private void link(UrlMapping urlMapping) {
+        String previousShortUrl = shortUrls.put(urlMapping.getOriginalUrl(), urlMapping.getShortUrl());
+        cache.invalidate(urlMapping.getShortUrl());
+        if (previousShortUrl != null && !previousShortUrl.equals(urlMapping.getShortUrl())) {
+            originalUrls.remove(previousShortUrl, urlMapping.getOriginalUrl());
+            cache.invalidate(previousShortUrl);
+        }
+    }
+}
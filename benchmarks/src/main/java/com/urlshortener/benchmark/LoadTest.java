@@ -0,0 +1,354 @@
+package com.urlshortener.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.urlshortener.UrlShortenerApplication;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.utility.DockerImageName;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * End-to-end HTTP load test. Starts the application in the chosen serving mode
+ * (servlet, virtual or reactive) against Redis, or targets a running deployment,
+ * then drives a read/write mix over a Zipfian key distribution and records the
+ * latency of every request per endpoint in HdrHistogram.
+ * <p>
+ * With loadtest.rate set the load is open: each worker sends on a fixed schedule and
+ * latency is measured from the intended send time, so stalls are not hidden by
+ * coordinated omission. Without it each worker sends as soon as its last response arrives.
+ * <p>
+ * Prints p50/p99/p999 and throughput per endpoint, writes the full distributions
+ * to loadtest.output, and fails when a configured SLO threshold is exceeded.
+ * All settings are system properties; see {@link Settings}.
+ */
+public final class LoadTest {
+    private static final String READ = "read";
+    private static final String WRITE = "write";
+
+    private final Settings settings;
+    private final HttpClient client;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, Recorder> recorders = new LinkedHashMap<>();
+    private final Map<String, LongAdder> errors = new LinkedHashMap<>();
+    private final AtomicLong writeSequence = new AtomicLong();
+    private volatile boolean running = true;
+    private String baseUrl;
+    private String[] keys;
+
+    LoadTest(Settings settings) {
+        this.settings = settings;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        for (String endpoint : List.of(READ, WRITE)) {
+            recorders.put(endpoint, new Recorder(3));
+            errors.put(endpoint, new LongAdder());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> violations = new LoadTest(Settings.fromSystemProperties()).run();
+        if (!violations.isEmpty()) {
+            throw new IllegalStateException("SLO violated: " + String.join("; ", violations));
+        }
+    }
+
+    /**
+     * @return the SLO thresholds that were exceeded, empty if all were met
+     */
+    List<String> run() throws Exception {
+        GenericContainer<?> redis = null;
+        ConfigurableApplicationContext app = null;
+        try {
+            if (settings.target != null) {
+                baseUrl = settings.target;
+            } else {
+                String redisHost = settings.redisHost;
+                int redisPort = settings.redisPort;
+                if (settings.redis.equals("container")) {
+                    redis = new GenericContainer<>(DockerImageName.parse("redis:7.0-alpine")).withExposedPorts(6379);
+                    redis.start();
+                    redisHost = redis.getHost();
+                    redisPort = redis.getFirstMappedPort();
+                }
+                app = startApplication(redisHost, redisPort);
+                baseUrl = "http://localhost:" + app.getEnvironment().getProperty("local.server.port");
+            }
+
+            System.out.printf("Load test: %s, %d keys, theta %.2f, read ratio %.2f, concurrency %d, %s%n",
+                    settings.target != null ? baseUrl : settings.mode, settings.keys, settings.zipfTheta,
+                    settings.readRatio, settings.concurrency,
+                    settings.rate > 0 ? settings.rate + " req/s" : "closed loop");
+            preload();
+            Map<String, Histogram> histograms = drive();
+            report(histograms);
+            return checkSlo(histograms);
+        } finally {
+            if (app != null) {
+                app.close();
+            }
+            if (redis != null) {
+                redis.stop();
+            }
+        }
+    }
+
+    private ConfigurableApplicationContext startApplication(String redisHost, int redisPort) {
+        SpringApplicationBuilder builder = new SpringApplicationBuilder(UrlShortenerApplication.class)
+                .properties(
+                        "server.port=0",
+                        "spring.data.redis.host=" + redisHost,
+                        "spring.data.redis.port=" + redisPort,
+                        "spring.data.redis.database=" + settings.redisDatabase,
+                        // Every request comes from this one client
+                        "urlshortener.ratelimit.enabled=false",
+                        "urlshortener.id-generator.secret=" + ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE),
+                        // The database is flushed below, so links cached by an earlier run must not come back
+                        "urlshortener.snapshot.enabled=false",
+                        "logging.level.root=WARN");
+        if (!settings.mode.equals("servlet")) {
+            builder.profiles(settings.mode);
+        }
+        ConfigurableApplicationContext app = builder.run();
+        // Start from an empty database so runs are comparable
+        app.getBean(StringRedisTemplate.class).execute((RedisCallback<Void>) connection -> {
+            connection.serverCommands().flushDb();
+            return null;
+        });
+        return app;
+    }
+
+    private void preload() throws Exception {
+        List<String> created = Collections.synchronizedList(new ArrayList<>(settings.keys));
+        AtomicLong next = new AtomicLong();
+        List<Future<?>> workers = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int worker = 0; worker < 64; worker++) {
+                workers.add(executor.submit(() -> {
+                    while (next.getAndIncrement() < settings.keys) {
+                        HttpResponse<String> response = client.send(shortenRequest(), HttpResponse.BodyHandlers.ofString());
+                        if (response.statusCode() != 200) {
+                            throw new IllegalStateException("Preload failed with status " + response.statusCode());
+                        }
+                        created.add(objectMapper.readTree(response.body()).get("shortUrl").asText());
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        }
+        // Popularity must not follow creation order
+        Collections.shuffle(created);
+        keys = created.toArray(new String[0]);
+    }
+
+    private Map<String, Histogram> drive() throws InterruptedException {
+        ZipfianGenerator zipfian = new ZipfianGenerator(keys.length, settings.zipfTheta);
+        long intervalNanos = settings.rate > 0 ? (long) (1e9 * settings.concurrency / settings.rate) : 0;
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        for (int worker = 0; worker < settings.concurrency; worker++) {
+            executor.submit(() -> work(zipfian, intervalNanos));
+        }
+
+        Thread.sleep(settings.warmup.toMillis());
+        for (String endpoint : recorders.keySet()) {
+            recorders.get(endpoint).getIntervalHistogram();
+            errors.get(endpoint).reset();
+        }
+        long start = System.nanoTime();
+        Thread.sleep(settings.duration.toMillis());
+        Map<String, Histogram> histograms = new LinkedHashMap<>();
+        for (Map.Entry<String, Recorder> entry : recorders.entrySet()) {
+            Histogram histogram = entry.getValue().getIntervalHistogram();
+            histogram.setStartTimeStamp(TimeUnit.NANOSECONDS.toMillis(start));
+            histogram.setEndTimeStamp(TimeUnit.NANOSECONDS.toMillis(System.nanoTime()));
+            histograms.put(entry.getKey(), histogram);
+        }
+        running = false;
+        executor.shutdown();
+        executor.awaitTermination(30, TimeUnit.SECONDS);
+        return histograms;
+    }
+
+    private void work(ZipfianGenerator zipfian, long intervalNanos) {
+        // Spread the first sends of an open-loop run over one interval
+        long intended = System.nanoTime() + (intervalNanos > 0 ? ThreadLocalRandom.current().nextLong(intervalNanos) : 0);
+        while (running) {
+            if (intervalNanos > 0) {
+                long wait = intended - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+            } else {
+                intended = System.nanoTime();
+            }
+            boolean read = ThreadLocalRandom.current().nextDouble() < settings.readRatio;
+            String endpoint = read ? READ : WRITE;
+            HttpRequest request = read ? readRequest(keys[(int) zipfian.next()]) : shortenRequest();
+            boolean ok;
+            try {
+                int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                ok = status < 400;
+            } catch (IOException e) {
+                ok = false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            recorders.get(endpoint).recordValue(Math.max(0, System.nanoTime() - intended));
+            if (!ok) {
+                errors.get(endpoint).increment();
+            }
+            intended += intervalNanos;
+        }
+    }
+
+    private HttpRequest readRequest(String key) {
+        String path = settings.readEndpoint.equals("redirect") ? "/" + key : "/api/url/" + key;
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).GET().build();
+    }
+
+    private HttpRequest shortenRequest() {
+        String body = "{\"url\":\"https://loadtest.example.com/page/" + writeSequence.incrementAndGet() + "\"}";
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/api/url/shorten/random"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private void report(Map<String, Histogram> histograms) throws IOException {
+        Path output = Path.of(settings.output);
+        Files.createDirectories(output);
+        System.out.printf("%-8s %10s %10s %10s %10s %10s %10s %8s%n",
+                "endpoint", "requests", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms", "errors");
+        for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+            Histogram histogram = entry.getValue();
+            System.out.printf("%-8s %10d %10.0f %10.2f %10.2f %10.2f %10.2f %8d%n",
+                    entry.getKey(), histogram.getTotalCount(), throughput(histogram),
+                    millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(99)),
+                    millis(histogram.getValueAtPercentile(99.9)), millis(histogram.getMaxValue()),
+                    errors.get(entry.getKey()).sum());
+            try (PrintStream out = new PrintStream(Files.newOutputStream(output.resolve(entry.getKey() + ".hgrm")))) {
+                histogram.outputPercentileDistribution(out, 1e6);
+            }
+        }
+    }
+
+    private List<String> checkSlo(Map<String, Histogram> histograms) {
+        List<String> violations = new ArrayList<>();
+        double totalThroughput = 0;
+        for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+            String endpoint = entry.getKey();
+            Histogram histogram = entry.getValue();
+            totalThroughput += throughput(histogram);
+            check(violations, endpoint + " p99", millis(histogram.getValueAtPercentile(99)), settings.sloP99Millis);
+            check(violations, endpoint + " p999", millis(histogram.getValueAtPercentile(99.9)), settings.sloP999Millis);
+            double errorRate = histogram.getTotalCount() == 0 ? 0 : (double) errors.get(endpoint).sum() / histogram.getTotalCount();
+            check(violations, endpoint + " error rate", errorRate, settings.sloMaxErrorRate);
+        }
+        if (settings.sloMinThroughput > 0 && totalThroughput < settings.sloMinThroughput) {
+            violations.add(String.format("throughput %.0f req/s < %.0f", totalThroughput, settings.sloMinThroughput));
+        }
+        return violations;
+    }
+
+    private static void check(List<String> violations, String metric, double value, double limit) {
+        if (limit > 0 && value > limit) {
+            violations.add(String.format("%s %.3f > %.3f", metric, value, limit));
+        }
+    }
+
+    private static double throughput(Histogram histogram) {
+        long elapsedMillis = histogram.getEndTimeStamp() - histogram.getStartTimeStamp();
+        return elapsedMillis > 0 ? histogram.getTotalCount() * 1000.0 / elapsedMillis : 0;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    /**
+     * Load test settings, read from system properties with the defaults shown.
+     */
+    record Settings(
+            String target,           // loadtest.target: base URL of a running deployment; the app is started if unset
+            String mode,             // loadtest.mode=servlet: servlet, virtual or reactive
+            String redis,            // loadtest.redis=container: container (Testcontainers) or local
+            String redisHost,        // loadtest.redis.host=localhost, for local
+            int redisPort,           // loadtest.redis.port=6379, for local
+            int redisDatabase,       // loadtest.redis.database=15: flushed before the run
+            int keys,                // loadtest.keys=10000: codes created before the run
+            double zipfTheta,        // loadtest.zipf-theta=0.99
+            double readRatio,        // loadtest.read-ratio=0.9
+            String readEndpoint,     // loadtest.read-endpoint=api: api (GET /api/url/{code}) or redirect (GET /{code})
+            int concurrency,         // loadtest.concurrency=256: concurrent workers, one connection each
+            double rate,             // loadtest.rate=0: total requests per second; 0 for closed loop
+            Duration warmup,         // loadtest.warmup=10s
+            Duration duration,       // loadtest.duration=30s
+            String output,           // loadtest.output=target/loadtest: HdrHistogram percentile files
+            double sloP99Millis,     // loadtest.slo.p99-ms=0: 0 disables a threshold
+            double sloP999Millis,    // loadtest.slo.p999-ms=0
+            double sloMaxErrorRate,  // loadtest.slo.max-error-rate=0
+            double sloMinThroughput  // loadtest.slo.min-throughput=0: total req/s
+    ) {
+        static Settings fromSystemProperties() {
+            return new Settings(
+                    System.getProperty("loadtest.target"),
+                    System.getProperty("loadtest.mode", "servlet"),
+                    System.getProperty("loadtest.redis", "container"),
+                    System.getProperty("loadtest.redis.host", "localhost"),
+                    Integer.getInteger("loadtest.redis.port", 6379),
+                    Integer.getInteger("loadtest.redis.database", 15),
+                    Integer.getInteger("loadtest.keys", 10_000),
+                    number("loadtest.zipf-theta", 0.99),
+                    number("loadtest.read-ratio", 0.9),
+                    System.getProperty("loadtest.read-endpoint", "api"),
+                    Integer.getInteger("loadtest.concurrency", 256),
+                    number("loadtest.rate", 0),
+                    DurationStyle.detectAndParse(System.getProperty("loadtest.warmup", "10s")),
+                    DurationStyle.detectAndParse(System.getProperty("loadtest.duration", "30s")),
+                    System.getProperty("loadtest.output", "target/loadtest"),
+                    number("loadtest.slo.p99-ms", 0),
+                    number("loadtest.slo.p999-ms", 0),
+                    number("loadtest.slo.max-error-rate", 0),
+                    number("loadtest.slo.min-throughput", 0));
+        }
+
+        private static double number(String name, double defaultValue) {
+            String value = System.getProperty(name);
+            return value == null || value.isBlank() ? defaultValue : Double.parseDouble(value);
+        }
+    }
+}
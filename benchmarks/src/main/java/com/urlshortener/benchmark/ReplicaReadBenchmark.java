@@ -0,0 +1,88 @@
+package com.urlshortener.benchmark;
+
+import com.urlshortener.cache.ShortUrlCache;
+import com.urlshortener.model.UrlMapping;
+import io.lettuce.core.cluster.api.async.RedisClusterAsyncCommands;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.redis.core.RedisCallback;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookups that miss the local cache, the reads a redirect makes on a cold code, against the
+ * local Redis alone and with one or two of its replicas serving the reads.
+ * <p>
+ * The replicas must already be replicating the local Redis; list them with
+ * -Dbenchmark.redis.replicas=host:port,host:port. Each node should have a core of its own,
+ * and the client enough threads to saturate one node, for the throughput to show how reads
+ * scale with the replicas.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(16)
+@State(Scope.Benchmark)
+public class ReplicaReadBenchmark {
+    private static final int CODES = 1 << 16;
+
+    @Param({"0", "1", "2"})
+    public int replicas;
+
+    private Backend store;
+    private final String[] shortUrls = new String[CODES];
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next = (int) Thread.currentThread().getId() * 7919;
+
+        int next() {
+            return next++ & (CODES - 1);
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        String configured = System.getProperty("benchmark.redis.replicas", "");
+        List<String> available = configured.isEmpty() ? List.of() : Arrays.asList(configured.split(","));
+        if (available.size() < replicas) {
+            throw new IllegalStateException("List at least " + replicas + " replicas in -Dbenchmark.redis.replicas");
+        }
+        store = Backend.openWithReplicas(available.subList(0, replicas), new ShortUrlCache(1000, Duration.ofMinutes(1), Duration.ofMinutes(1)));
+
+        List<UrlMapping> mappings = new ArrayList<>(1000);
+        for (int i = 0; i < CODES; i++) {
+            shortUrls[i] = "r" + Integer.toString(i, 36);
+            mappings.add(new UrlMapping("https://www.example.com/articles/" + i + "?utm_source=benchmark", shortUrls[i]));
+            if (mappings.size() == 1000 || i == CODES - 1) {
+                store.repository().saveAllIfAbsent(mappings);
+                mappings.clear();
+            }
+        }
+        // Lets the replicas catch up, so that no lookup falls back to the primary
+        store.redisTemplate().execute((RedisCallback<Long>) connection -> {
+            try {
+                return ((RedisClusterAsyncCommands<?, ?>) connection.getNativeConnection()).waitForReplication(replicas, 5000).get();
+            } catch (InterruptedException | ExecutionException e) {
+                throw new IllegalStateException("The replicas did not catch up", e);
+            }
+        });
+    }
+
+    @TearDown
+    public void tearDown() {
+        store.close();
+    }
+
+    @Benchmark
+    public Optional<String> findOriginalUrl(Cursor cursor) {
+        return store.repository().findOriginalUrl(shortUrls[cursor.next()]);
+    }
+}
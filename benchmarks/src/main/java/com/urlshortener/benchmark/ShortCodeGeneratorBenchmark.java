@@ -0,0 +1,61 @@
+package com.urlshortener.benchmark;
+
+import com.urlshortener.cache.ShortUrlCache;
+import com.urlshortener.generator.RandomShortCodeGenerator;
+import com.urlshortener.generator.SequenceShortCodeGenerator;
+import com.urlshortener.generator.ShortCodeGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Short code generation. "random" needs no backend; "sequence" leases id blocks
+ * from Redis, so its cost is the Feistel/base62 work plus one INCRBY per block.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ShortCodeGeneratorBenchmark {
+
+    @Param({"random", "sequence"})
+    public String generator;
+
+    @Param({"1000"})
+    public long blockSize;
+
+    private Backend backend;
+    private ShortCodeGenerator shortCodeGenerator;
+
+    @Setup
+    public void setUp() {
+        if (generator.equals("random")) {
+            shortCodeGenerator = new RandomShortCodeGenerator();
+            return;
+        }
+        backend = Backend.open(Backend.REDIS, new ShortUrlCache(1000, Duration.ofMinutes(1), Duration.ofMinutes(1)));
+        shortCodeGenerator = new SequenceShortCodeGenerator(backend.redisTemplate(), blockSize, 0x5DEECE66DL);
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (backend != null) {
+            backend.close();
+        }
+    }
+
+    @Benchmark
+    public String next() {
+        return shortCodeGenerator.next();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(500)
+    public List<String> nextBatch() {
+        return shortCodeGenerator.next(500);
+    }
+}
@@ -0,0 +1,114 @@
+package com.urlshortener.benchmark;
+
+import com.urlshortener.cache.ShortUrlCache;
+import com.urlshortener.generator.RandomShortCodeGenerator;
+import com.urlshortener.model.BatchShortenResult;
+import com.urlshortener.model.UrlMapping;
+import com.urlshortener.repository.ExpiryRefresher;
+import com.urlshortener.repository.UrlStore;
+import com.urlshortener.service.UrlShortenerService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Many threads reading the same few codes, as when a link goes viral, through the uncached
+ * mapping lookup. "coalesced" goes through the service, where concurrent reads of one code
+ * share a fetch; "uncoalesced" calls the store directly, one fetch per read, as the service
+ * did before. storeCalls counts the fetches that reached the store; divided by the score it
+ * gives the fetches per lookup.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(32)
+@State(Scope.Benchmark)
+public class StampedeBenchmark {
+    private static final int HOT_CODES = 4;
+
+    @Param({Backend.REDIS, Backend.MEMORY})
+    public String backend;
+
+    private Backend store;
+    private UrlStore countingStore;
+    private UrlShortenerService service;
+    private final String[] shortUrls = new String[HOT_CODES];
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class StoreCalls {
+        static final ThreadLocal<StoreCalls> CURRENT = new ThreadLocal<>();
+
+        public long storeCalls;
+        private int next = (int) Thread.currentThread().getId();
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            storeCalls = 0;
+            CURRENT.set(this);
+        }
+
+        int next() {
+            return next++ % HOT_CODES;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        ShortUrlCache cache = new ShortUrlCache(20_000_000, Duration.ofMinutes(10), Duration.ofSeconds(30));
+        store = Backend.open(backend, cache);
+        countingStore = counting(store.repository());
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        service = new UrlShortenerService(countingStore, cache, new RandomShortCodeGenerator(),
+                new ExpiryRefresher(null, false, Duration.ofHours(1), 0, meterRegistry), meterRegistry, Duration.ofDays(3650));
+
+        List<String> originalUrls = new ArrayList<>();
+        for (int i = 0; i < HOT_CODES; i++) {
+            originalUrls.add("https://www.example.com/articles/" + i + "?utm_source=benchmark");
+        }
+        List<BatchShortenResult> results = service.createShortUrls(originalUrls);
+        for (int i = 0; i < HOT_CODES; i++) {
+            shortUrls[i] = results.get(i).getShortUrl();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        store.close();
+    }
+
+    @Benchmark
+    public Optional<UrlMapping> coalesced(StoreCalls calls) {
+        return service.getMapping(shortUrls[calls.next()]);
+    }
+
+    @Benchmark
+    public Optional<UrlMapping> uncoalesced(StoreCalls calls) {
+        return countingStore.findByShortUrl(shortUrls[calls.next()]);
+    }
+
+    // Counts the store calls made on each benchmark thread; setup calls are not counted
+    private static UrlStore counting(UrlStore store) {
+        return (UrlStore) Proxy.newProxyInstance(UrlStore.class.getClassLoader(), new Class<?>[]{UrlStore.class},
+                (proxy, method, args) -> {
+                    StoreCalls calls = StoreCalls.CURRENT.get();
+                    if (calls != null) {
+                        calls.storeCalls++;
+                    }
+                    try {
+                        return method.invoke(store, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+}
@@ -0,0 +1,127 @@
+package com.urlshortener.benchmark;
+
+import com.urlshortener.cache.ShortUrlCache;
+import com.urlshortener.model.UrlMapping;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.SplittableRandom;
+
+/**
+ * Measures Redis memory per mapping for the legacy layout ({@code url:<code>} and
+ * {@code reverse:<originalUrl>} strings) and for the compact hash layout written by
+ * RedisUrlRepository, as the growth of used_memory while writing the same mappings.
+ * <pre>
+ *   java -cp benchmarks/target/benchmarks.jar com.urlshortener.benchmark.StorageFootprint
+ * </pre>
+ * Uses the Redis of the "redis" backend. -Dfootprint.mappings sets how many mappings are
+ * written (default 500000); the compact layout gains as its buckets fill, so small runs
+ * understate it. Hash listpack limits are raised to the values in docker-compose.yml.
+ */
+public final class StorageFootprint {
+    private static final char[] ALPHABET = "0123456789abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ".toCharArray();
+    private static final int BATCH = 1000;
+
+    private StorageFootprint() {
+    }
+
+    public static void main(String[] args) {
+        int count = Integer.getInteger("footprint.mappings", 500_000);
+        List<UrlMapping> mappings = generate(count, new SplittableRandom(42));
+        long averageUrl = mappings.stream().mapToLong(mapping -> mapping.getOriginalUrl().length()).sum() / count;
+
+        try (Backend backend = Backend.open(Backend.REDIS, new ShortUrlCache(1, Duration.ofSeconds(1), Duration.ofSeconds(1)))) {
+            RedisTemplate<String, String> redisTemplate = backend.redisTemplate();
+            redisTemplate.execute((RedisCallback<Void>) connection -> {
+                connection.serverCommands().setConfig("hash-max-ziplist-entries", "512");
+                connection.serverCommands().setConfig("hash-max-ziplist-value", "512");
+                return null;
+            });
+
+            long legacy = measure(redisTemplate, () -> writeLegacy(redisTemplate, mappings));
+            long compact = measure(redisTemplate, () -> {
+                for (int from = 0; from < count; from += BATCH) {
+                    backend.repository().saveAllIfAbsent(mappings.subList(from, Math.min(from + BATCH, count)));
+                }
+            });
+
+            System.out.printf("mappings: %d, average URL: %d chars%n", count, averageUrl);
+            System.out.printf("legacy  (url: + reverse: strings): %,d bytes, %.1f bytes/mapping%n", legacy, (double) legacy / count);
+            System.out.printf("compact (m: + r: hash buckets):    %,d bytes, %.1f bytes/mapping%n", compact, (double) compact / count);
+            System.out.printf("saving: %.1f%%%n", 100.0 * (legacy - compact) / legacy);
+        }
+    }
+
+    private static long measure(RedisTemplate<String, String> redisTemplate, Runnable write) {
+        redisTemplate.execute((RedisCallback<Void>) connection -> {
+            connection.serverCommands().flushDb();
+            return null;
+        });
+        long before = usedMemory(redisTemplate);
+        write.run();
+        return usedMemory(redisTemplate) - before;
+    }
+
+    private static long usedMemory(RedisTemplate<String, String> redisTemplate) {
+        Properties memory = redisTemplate.execute((RedisCallback<Properties>) connection ->
+                connection.serverCommands().info("memory"));
+        return Long.parseLong(memory.getProperty("used_memory"));
+    }
+
+    private static void writeLegacy(RedisTemplate<String, String> redisTemplate, List<UrlMapping> mappings) {
+        long ttl = Duration.ofDays(30).getSeconds();
+        for (int from = 0; from < mappings.size(); from += BATCH) {
+            List<UrlMapping> batch = mappings.subList(from, Math.min(from + BATCH, mappings.size()));
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (UrlMapping mapping : batch) {
+                    connection.stringCommands().setEx(bytes("url:" + mapping.getShortUrl()), ttl, bytes(mapping.getOriginalUrl()));
+                    connection.stringCommands().setEx(bytes("reverse:" + mapping.getOriginalUrl()), ttl, bytes(mapping.getShortUrl()));
+                }
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Random 8-character codes and URLs shaped like campaign links: a host, a path and,
+     * for most, tracking parameters, between about 30 and 300 characters.
+     */
+    static List<UrlMapping> generate(int count, SplittableRandom random) {
+        String[] hosts = {"www.example.com", "shop.example.org", "news.example.net", "blog.example.io"};
+        String[] sources = {"newsletter", "twitter", "facebook", "partner", "email"};
+        List<UrlMapping> mappings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            StringBuilder url = new StringBuilder("https://").append(hosts[random.nextInt(hosts.length)]);
+            int segments = 1 + random.nextInt(4);
+            for (int s = 0; s < segments; s++) {
+                url.append('/').append(token(random, 4 + random.nextInt(12)));
+            }
+            if (random.nextInt(4) != 0) {
+                url.append("?utm_source=").append(sources[random.nextInt(sources.length)])
+                        .append("&utm_medium=cpc&utm_campaign=").append(token(random, 8 + random.nextInt(16)));
+                if (random.nextBoolean()) {
+                    url.append("&gclid=").append(token(random, 40 + random.nextInt(60)));
+                }
+            }
+            mappings.add(new UrlMapping(url.toString(), token(random, 8)));
+        }
+        return mappings;
+    }
+
+    private static String token(SplittableRandom random, int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = ALPHABET[random.nextInt(ALPHABET.length)];
+        }
+        return new String(chars);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,46 @@
+package com.urlshortener.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.urlshortener.model.UrlMapping;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON encoding of {@link UrlMapping}, the body of every shorten response.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UrlMappingJsonBenchmark {
+
+    private ObjectWriter writer;
+    private ObjectReader reader;
+    private UrlMapping mapping;
+    private byte[] json;
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper objectMapper = Json.objectMapper();
+        writer = objectMapper.writerFor(UrlMapping.class);
+        reader = objectMapper.readerFor(UrlMapping.class);
+        mapping = new UrlMapping("https://www.example.com/articles/42?utm_source=benchmark", "4irSCS0T");
+        json = writer.writeValueAsBytes(mapping);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return writer.writeValueAsBytes(mapping);
+    }
+
+    @Benchmark
+    public UrlMapping deserialize() throws IOException {
+        return reader.readValue(json);
+    }
+}
@@ -0,0 +1,134 @@
+package com.urlshortener.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.urlshortener.cache.ShortUrlCache;
+import com.urlshortener.generator.RandomShortCodeGenerator;
+import com.urlshortener.model.BatchShortenResult;
+import com.urlshortener.model.UrlMapping;
+import com.urlshortener.repository.ExpiryRefresher;
+import com.urlshortener.service.UrlShortenerService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service hot paths against the in-memory stand-in, a local Redis and the embedded mapped store.
+ * Lookups cycle over a fixed set of codes; "Hit" variants are served by the local
+ * cache, "Miss" variants evict the code first so every call reaches the backend.
+ * All backends use random codes so that only the storage differs.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UrlShortenerServiceBenchmark {
+    private static final int CODES = 1 << 16;
+
+    @Param({Backend.MEMORY, Backend.REDIS, Backend.MMAP})
+    public String backend;
+
+    private Backend store;
+    private ShortUrlCache cache;
+    private UrlShortenerService service;
+    private ObjectMapper objectMapper;
+    private final String[] shortUrls = new String[CODES];
+    private final String[] originalUrls = new String[CODES];
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+
+        int next() {
+            return next++ & (CODES - 1);
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        cache = new ShortUrlCache(20_000_000, Duration.ofMinutes(10), Duration.ofSeconds(30));
+        store = Backend.open(backend, cache);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        service = new UrlShortenerService(store.repository(), cache, new RandomShortCodeGenerator(),
+                new ExpiryRefresher(null, false, Duration.ofHours(1), 0, meterRegistry), meterRegistry, Duration.ofDays(3650));
+        objectMapper = Json.objectMapper();
+
+        for (int i = 0; i < CODES; i++) {
+            originalUrls[i] = "https://www.example.com/articles/" + i + "?utm_source=benchmark";
+        }
+        for (int from = 0; from < CODES; from += 1000) {
+            List<BatchShortenResult> results =
+                    service.createShortUrls(List.of(originalUrls).subList(from, Math.min(from + 1000, CODES)));
+            for (int i = 0; i < results.size(); i++) {
+                shortUrls[from + i] = results.get(i).getShortUrl();
+            }
+        }
+        for (String shortUrl : shortUrls) {
+            service.resolve(shortUrl);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void flushInvalidations() {
+        store.flushInvalidations();
+    }
+
+    @TearDown
+    public void tearDown() {
+        store.close();
+    }
+
+    @Benchmark
+    public Object getOriginalUrlHit(Cursor cursor) {
+        return service.getOriginalUrl(shortUrls[cursor.next()]);
+    }
+
+    @Benchmark
+    public Object getOriginalUrlMiss(Cursor cursor) {
+        String shortUrl = shortUrls[cursor.next()];
+        cache.invalidate(shortUrl);
+        return service.getOriginalUrl(shortUrl);
+    }
+
+    /**
+     * The work behind GET /{code}: the redirect handler only needs the URL string.
+     */
+    @Benchmark
+    public String resolveForRedirect(Cursor cursor) {
+        return service.resolve(shortUrls[cursor.next()]);
+    }
+
+    /**
+     * The work behind GET /api/url/{code}: lookup plus the {"url": ...} response body.
+     */
+    @Benchmark
+    public byte[] getOriginalUrlAsJson(Cursor cursor) throws Exception {
+        String originalUrl = service.getOriginalUrl(shortUrls[cursor.next()]).orElse(null);
+        return objectMapper.writeValueAsBytes(Map.of("url", originalUrl));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(100)
+    public Map<String, String> getOriginalUrlsHit(Cursor cursor) {
+        List<String> batch = new ArrayList<>(100);
+        for (int i = 0; i < 100; i++) {
+            batch.add(shortUrls[cursor.next()]);
+        }
+        return service.getOriginalUrls(batch);
+    }
+
+    /**
+     * Shortens URLs that already have a code, so each call also drops the old code
+     * and the data set stays the same size however long the benchmark runs.
+     */
+    @Benchmark
+    public UrlMapping createShortUrl(Cursor cursor) {
+        return service.createShortUrl(originalUrls[cursor.next()]);
+    }
+}
@@ -0,0 +1,278 @@
+package com.urlshortener.analytics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts clicks per short code and referrer without touching Redis on the request path.
+ * Clicks are added to LongAdder counters in the current window; every flush interval
+ * the window is swapped out and the one retired on the previous flush is written to
+ * Redis as pipelined HINCRBYs. Waiting one extra interval before writing lets increments
+ * that raced with the swap land first, so no lock is needed on the request path.
+ * <p>
+ * A window holds a bounded number of codes, and a code a bounded number of referrers.
+ * Clicks beyond those bounds, and windows that cannot be written, are dropped and
+ * counted rather than queued, so a slow or unavailable Redis never slows redirects.
+ * Clicks are attributed to the minute the window was opened in.
+ * <p>
+ * Unique visitors are counted with Redis HyperLogLogs: each click carries a 64-bit hash of
+ * the client address and User-Agent, the distinct hashes of a window are collected per code
+ * and PFADDed in the same pipeline, all-time and per day. Raw addresses never leave the node.
+ * The window's click counts also feed {@link TopLinksTracker}.
+ */
+@Component
+public class ClickEventRecorder {
+    public static final String CLICKS_NAMESPACE = "clicks:";
+    static final String REFERRERS_NAMESPACE = "referrers:";
+    static final String VISITORS_NAMESPACE = "visitors:";
+    public static final String TOTAL_FIELD = "total";
+    static final String OTHER_REFERRERS = "other";
+    static final int MINUTES_PER_DAY = 1440;
+    private static final int CODES_PER_PIPELINE = 500;
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final TopLinksTracker topLinks;
+    private final int maxCodesPerWindow;
+    private final int maxReferrersPerCode;
+    private final int maxVisitorsPerCode;
+    private final long retentionSeconds;
+    private final long bucketRetentionSeconds;
+    private final Counter droppedClicks;
+    private final Counter flushedClicks;
+    private final Counter droppedVisitors;
+    private volatile Window current;
+    private Window retired;
+
+    public ClickEventRecorder(RedisTemplate<String, String> redisTemplate, TopLinksTracker topLinks,
+                              @Value("${urlshortener.clicks.max-codes-per-window:100000}") int maxCodesPerWindow,
+                              @Value("${urlshortener.clicks.max-referrers-per-code:100}") int maxReferrersPerCode,
+                              @Value("${urlshortener.clicks.max-visitors-per-code:10000}") int maxVisitorsPerCode,
+                              @Value("${urlshortener.clicks.retention:30d}") Duration retention,
+                              @Value("${urlshortener.clicks.bucket-retention:7d}") Duration bucketRetention,
+                              MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.topLinks = topLinks;
+        this.maxCodesPerWindow = maxCodesPerWindow;
+        this.maxReferrersPerCode = maxReferrersPerCode;
+        this.maxVisitorsPerCode = maxVisitorsPerCode;
+        this.retentionSeconds = retention.getSeconds();
+        this.bucketRetentionSeconds = bucketRetention.getSeconds();
+        this.droppedClicks = Counter.builder("urlshortener.clicks.dropped")
+                .description("Clicks not recorded because a window was full or could not be written")
+                .register(meterRegistry);
+        this.flushedClicks = Counter.builder("urlshortener.clicks.flushed")
+                .description("Clicks written to Redis")
+                .register(meterRegistry);
+        this.droppedVisitors = Counter.builder("urlshortener.visitors.dropped")
+                .description("Visitor hashes not recorded because a code's window was full")
+                .register(meterRegistry);
+        this.current = new Window(currentMinute());
+    }
+
+    /**
+     * Counts one click. Never blocks; the click is dropped if the current window is full.
+     *
+     * @param referrer the Referer header, or null
+     * @param clientAddress the client's IP address, or null
+     * @param userAgent the User-Agent header, or null
+     */
+    public void record(String shortUrl, String referrer, String clientAddress, String userAgent) {
+        Window window = current;
+        CodeClicks clicks = window.codes.get(shortUrl);
+        if (clicks == null) {
+            if (window.size.get() >= maxCodesPerWindow) {
+                droppedClicks.increment();
+                return;
+            }
+            clicks = window.codes.computeIfAbsent(shortUrl, code -> {
+                window.size.incrementAndGet();
+                return new CodeClicks();
+            });
+        }
+        clicks.clicks.increment();
+
+        String host = referrerHost(referrer);
+        if (host != null) {
+            LongAdder count = clicks.referrers.get(host);
+            if (count == null) {
+                String field = clicks.referrers.size() < maxReferrersPerCode ? host : OTHER_REFERRERS;
+                count = clicks.referrers.computeIfAbsent(field, key -> new LongAdder());
+            }
+            count.increment();
+        }
+
+        if (clientAddress != null) {
+            if (clicks.visitors.size() < maxVisitorsPerCode) {
+                clicks.visitors.add(visitorHash(clientAddress, userAgent));
+            } else {
+                droppedVisitors.increment();
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${urlshortener.clicks.flush-interval-ms:1000}")
+    public void flush() {
+        Window toWrite = retired;
+        retired = current;
+        current = new Window(currentMinute());
+        if (toWrite == null || toWrite.codes.isEmpty()) {
+            return;
+        }
+
+        List<Map.Entry<String, CodeClicks>> entries = new ArrayList<>(toWrite.codes.entrySet());
+        for (int from = 0; from < entries.size(); from += CODES_PER_PIPELINE) {
+            List<Map.Entry<String, CodeClicks>> chunk = entries.subList(from, Math.min(from + CODES_PER_PIPELINE, entries.size()));
+            long clicks = 0;
+            for (Map.Entry<String, CodeClicks> entry : chunk) {
+                long count = entry.getValue().clicks.sum();
+                topLinks.add(entry.getKey(), count);
+                clicks += count;
+            }
+            try {
+                redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                    for (Map.Entry<String, CodeClicks> entry : chunk) {
+                        write(connection, toWrite.minute, entry.getKey(), entry.getValue());
+                    }
+                    return null;
+                });
+                flushedClicks.increment(clicks);
+            } catch (DataAccessException e) {
+                droppedClicks.increment(clicks);
+            }
+        }
+    }
+
+    private void write(RedisConnection connection, long minute, String shortUrl, CodeClicks clicks) {
+        long count = clicks.clicks.sum();
+        byte[] totalsKey = bytes(CLICKS_NAMESPACE + shortUrl);
+        connection.hashCommands().hIncrBy(totalsKey, bytes(TOTAL_FIELD), count);
+        connection.keyCommands().expire(totalsKey, retentionSeconds);
+
+        byte[] bucketKey = bytes(bucketKey(shortUrl, minute / MINUTES_PER_DAY));
+        connection.hashCommands().hIncrBy(bucketKey, bytes(Long.toString(minute)), count);
+        connection.keyCommands().expire(bucketKey, bucketRetentionSeconds);
+
+        if (!clicks.referrers.isEmpty()) {
+            byte[] referrersKey = bytes(REFERRERS_NAMESPACE + shortUrl);
+            for (Map.Entry<String, LongAdder> referrer : clicks.referrers.entrySet()) {
+                connection.hashCommands().hIncrBy(referrersKey, bytes(referrer.getKey()), referrer.getValue().sum());
+            }
+            connection.keyCommands().expire(referrersKey, retentionSeconds);
+        }
+
+        if (!clicks.visitors.isEmpty()) {
+            byte[][] added = clicks.visitors.stream().map(ClickEventRecorder::longBytes).toArray(byte[][]::new);
+            byte[] visitorsKey = bytes(VISITORS_NAMESPACE + shortUrl);
+            connection.hyperLogLogCommands().pfAdd(visitorsKey, added);
+            connection.keyCommands().expire(visitorsKey, retentionSeconds);
+            byte[] dailyVisitorsKey = bytes(dailyVisitorsKey(shortUrl, minute / MINUTES_PER_DAY));
+            connection.hyperLogLogCommands().pfAdd(dailyVisitorsKey, added);
+            connection.keyCommands().expire(dailyVisitorsKey, bucketRetentionSeconds);
+        }
+    }
+
+    /**
+     * Per-day hash of minute buckets: field is the epoch minute, value the clicks in it.
+     */
+    static String bucketKey(String shortUrl, long epochDay) {
+        return CLICKS_NAMESPACE + shortUrl + ":" + epochDay;
+    }
+
+    /**
+     * HyperLogLog of the visitors of one day. Hash-tagged on the code, so the days of a code share
+     * a cluster slot and one PFCOUNT can count their union.
+     */
+    static String dailyVisitorsKey(String shortUrl, long epochDay) {
+        return VISITORS_NAMESPACE + "{" + shortUrl + "}:" + epochDay;
+    }
+
+    /**
+     * FNV-1a over address and User-Agent, finished with a 64-bit mix so that HyperLogLog
+     * sees well-spread bits even for addresses that differ in one octet.
+     */
+    static long visitorHash(String clientAddress, String userAgent) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < clientAddress.length(); i++) {
+            hash = (hash ^ clientAddress.charAt(i)) * 0x100000001b3L;
+        }
+        hash = (hash ^ '|') * 0x100000001b3L;
+        if (userAgent != null) {
+            for (int i = 0; i < userAgent.length(); i++) {
+                hash = (hash ^ userAgent.charAt(i)) * 0x100000001b3L;
+            }
+        }
+        hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+        hash = (hash ^ (hash >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+
+    static long currentMinute() {
+        return System.currentTimeMillis() / 60_000;
+    }
+
+    /**
+     * Reduces a Referer header to its host, so paths and query strings do not
+     * multiply the number of distinct referrers.
+     */
+    static String referrerHost(String referrer) {
+        if (referrer == null || referrer.isEmpty()) {
+            return null;
+        }
+        int start = referrer.indexOf("://");
+        start = start < 0 ? 0 : start + 3;
+        int end = start;
+        while (end < referrer.length()) {
+            char c = referrer.charAt(end);
+            if (c == '/' || c == ':' || c == '?' || c == '#') {
+                break;
+            }
+            end++;
+        }
+        return end > start ? referrer.substring(start, end).toLowerCase() : null;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] longBytes(long value) {
+        byte[] bytes = new byte[Long.BYTES];
+        for (int i = 0; i < Long.BYTES; i++) {
+            bytes[i] = (byte) (value >>> (8 * i));
+        }
+        return bytes;
+    }
+
+    private static final class Window {
+        final long minute;
+        final Map<String, CodeClicks> codes = new ConcurrentHashMap<>();
+        final AtomicInteger size = new AtomicInteger();
+
+        Window(long minute) {
+            this.minute = minute;
+        }
+    }
+
+    private static final class CodeClicks {
+        final LongAdder clicks = new LongAdder();
+        final Map<String, LongAdder> referrers = new ConcurrentHashMap<>();
+        final Set<Long> visitors = ConcurrentHashMap.newKeySet();
+    }
+}
@@ -0,0 +1,99 @@
+package com.urlshortener.analytics;
+
+import com.urlshortener.model.ClickStats;
+import com.urlshortener.model.VisitorStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the click aggregates written by {@link ClickEventRecorder}.
+ * Counts trail live traffic by up to two flush intervals.
+ */
+@Service
+public class ClickStatsService {
+    public static final int MAX_MINUTES = ClickEventRecorder.MINUTES_PER_DAY;
+    /**
+     * Redis HyperLogLogs use 16384 registers: 1.04 / sqrt(16384).
+     */
+    public static final double VISITORS_RELATIVE_STANDARD_ERROR = 0.0081;
+    private static final int TOP_REFERRERS = 20;
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final int maxDays;
+
+    public ClickStatsService(RedisTemplate<String, String> redisTemplate,
+                             @Value("${urlshortener.clicks.bucket-retention:7d}") Duration bucketRetention) {
+        this.redisTemplate = redisTemplate;
+        this.maxDays = (int) Math.max(1, bucketRetention.toDays());
+    }
+
+    /**
+     * Daily visitor logs are kept for the bucket retention, so at most its whole days can be counted.
+     */
+    public int maxDays() {
+        return maxDays;
+    }
+
+    /**
+     * @param minutes how many of the most recent minute buckets to return, oldest first
+     */
+    public ClickStats getStats(String shortUrl, int minutes) {
+        HashOperations<String, String, String> hashes = redisTemplate.opsForHash();
+        String total = hashes.get(ClickEventRecorder.CLICKS_NAMESPACE + shortUrl, ClickEventRecorder.TOTAL_FIELD);
+
+        long lastMinute = ClickEventRecorder.currentMinute();
+        long firstMinute = lastMinute - minutes + 1;
+        Map<String, String> buckets = new HashMap<>();
+        for (long day = firstMinute / ClickEventRecorder.MINUTES_PER_DAY; day <= lastMinute / ClickEventRecorder.MINUTES_PER_DAY; day++) {
+            buckets.putAll(hashes.entries(ClickEventRecorder.bucketKey(shortUrl, day)));
+        }
+        List<ClickStats.MinuteClicks> perMinute = new ArrayList<>(minutes);
+        for (long minute = firstMinute; minute <= lastMinute; minute++) {
+            String clicks = buckets.get(Long.toString(minute));
+            perMinute.add(new ClickStats.MinuteClicks(Instant.ofEpochSecond(minute * 60),
+                    clicks != null ? Long.parseLong(clicks) : 0));
+        }
+
+        Map<String, Long> referrers = new LinkedHashMap<>();
+        hashes.entries(ClickEventRecorder.REFERRERS_NAMESPACE + shortUrl).entrySet().stream()
+                .map(entry -> Map.entry(entry.getKey(), Long.parseLong(entry.getValue())))
+                .sorted(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()))
+                .limit(TOP_REFERRERS)
+                .forEach(entry -> referrers.put(entry.getKey(), entry.getValue()));
+
+        return new ClickStats(shortUrl, total != null ? Long.parseLong(total) : 0, perMinute, referrers);
+    }
+
+    /**
+     * Estimated distinct visitors, within {@link #VISITORS_RELATIVE_STANDARD_ERROR} of the true
+     * count (one standard error; three times that bounds 99.7% of estimates).
+     *
+     * @param days how many of the most recent days to count, today included, or 0 for all of the retention
+     */
+    public VisitorStats getVisitors(String shortUrl, int days) {
+        String[] keys;
+        if (days == 0) {
+            keys = new String[] {ClickEventRecorder.VISITORS_NAMESPACE + shortUrl};
+        } else {
+            long today = ClickEventRecorder.currentMinute() / ClickEventRecorder.MINUTES_PER_DAY;
+            keys = new String[days];
+            for (int i = 0; i < days; i++) {
+                keys[i] = ClickEventRecorder.dailyVisitorsKey(shortUrl, today - i);
+            }
+        }
+        // PFCOUNT over several keys counts their union, so a visitor seen on two days counts once
+        Long visitors = redisTemplate.opsForHyperLogLog().size(keys);
+        return new VisitorStats(shortUrl, days, visitors != null ? visitors : 0, VISITORS_RELATIVE_STANDARD_ERROR);
+    }
+}
@@ -0,0 +1,135 @@
+package com.urlshortener.analytics;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Space-Saving heavy-hitter summary (Metwally et al.) with weighted updates and the
+ * merge of Agarwal et al., "Mergeable Summaries".
+ * <p>
+ * Keeps at most {@code capacity} counters. Every reported count overestimates the true
+ * count by at most its error, and the error is at most total / capacity, so any key
+ * with more than total / capacity occurrences is guaranteed to be present.
+ * Merging keeps both properties, with the bound taken over the merged total.
+ * Not thread-safe.
+ */
+final class SpaceSavingSketch {
+    private static final Comparator<Entry> BY_COUNT =
+            Comparator.comparingLong((Entry entry) -> entry.count).thenComparing(entry -> entry.key);
+
+    private final int capacity;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final TreeSet<Entry> byCount = new TreeSet<>(BY_COUNT);
+    private long total;
+
+    SpaceSavingSketch(int capacity) {
+        this.capacity = capacity;
+    }
+
+    void add(String key, long weight) {
+        total += weight;
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            byCount.remove(entry);
+            entry.count += weight;
+            byCount.add(entry);
+            return;
+        }
+        if (entries.size() < capacity) {
+            put(new Entry(key, weight, 0));
+            return;
+        }
+        // Evict the smallest counter; the newcomer may have been counted under it
+        Entry smallest = byCount.pollFirst();
+        entries.remove(smallest.key);
+        put(new Entry(key, smallest.count + weight, smallest.count));
+    }
+
+    /**
+     * Upper bound on the count of any key not in the sketch.
+     */
+    long minCount() {
+        return entries.size() < capacity ? 0 : byCount.first().count;
+    }
+
+    long total() {
+        return total;
+    }
+
+    /**
+     * @return a new sketch summarising both inputs, with this sketch's capacity
+     */
+    SpaceSavingSketch merge(SpaceSavingSketch other) {
+        long minThis = minCount();
+        long minOther = other.minCount();
+        Set<String> keys = new HashSet<>(entries.keySet());
+        keys.addAll(other.entries.keySet());
+
+        List<Entry> combined = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            Entry a = entries.get(key);
+            Entry b = other.entries.get(key);
+            combined.add(new Entry(key,
+                    (a != null ? a.count : minThis) + (b != null ? b.count : minOther),
+                    (a != null ? a.error : minThis) + (b != null ? b.error : minOther)));
+        }
+        combined.sort(BY_COUNT.reversed());
+
+        SpaceSavingSketch merged = new SpaceSavingSketch(capacity);
+        merged.total = total + other.total;
+        for (int i = 0; i < Math.min(capacity, combined.size()); i++) {
+            merged.put(combined.get(i));
+        }
+        return merged;
+    }
+
+    /**
+     * @return up to {@code limit} entries, highest count first
+     */
+    List<Entry> top(int limit) {
+        List<Entry> top = new ArrayList<>(Math.min(limit, byCount.size()));
+        for (Entry entry : byCount.descendingSet()) {
+            if (top.size() == limit) {
+                break;
+            }
+            top.add(entry);
+        }
+        return top;
+    }
+
+    Iterable<Entry> entries() {
+        return entries.values();
+    }
+
+    static SpaceSavingSketch of(int capacity, long total, Iterable<Entry> entries) {
+        SpaceSavingSketch sketch = new SpaceSavingSketch(capacity);
+        sketch.total = total;
+        for (Entry entry : entries) {
+            sketch.put(entry);
+        }
+        return sketch;
+    }
+
+    private void put(Entry entry) {
+        entries.put(entry.key, entry);
+        byCount.add(entry);
+    }
+
+    static final class Entry {
+        final String key;
+        long count;
+        final long error;
+
+        Entry(String key, long count, long error) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.urlshortener.analytics;
+
+import com.urlshortener.model.TopLinks;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Tracks the most clicked links over a sliding window with Space-Saving sketches.
+ * <p>
+ * Each node keeps one sketch per period and is fed the per-window click counts by
+ * {@link ClickEventRecorder#flush()}, so the request path never touches a sketch.
+ * On every publish interval the node merges its periods and writes the result to a
+ * Redis hash that expires unless refreshed; queries merge the hashes of all live nodes.
+ * <p>
+ * Error bound: a reported count is never below the true count and exceeds it by at most
+ * the link's {@code maxOvercount}, which is itself at most totalClicks / capacity.
+ * Any link with more than totalClicks / capacity clicks in the window is listed.
+ */
+@Component
+public class TopLinksTracker {
+    static final String NODES_KEY = "toplinks:nodes";
+    static final String NODE_NAMESPACE = "toplinks:node:";
+    static final String TOTAL_NAMESPACE = "toplinks:total:";
+    public static final int MAX_LIMIT = 1000;
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final int capacity;
+    private final long periodMillis;
+    private final long nodeTtlMillis;
+    private final SpaceSavingSketch[] periods;
+    private final ReentrantLock lock = new ReentrantLock();
+    private long currentPeriod;
+
+    public TopLinksTracker(RedisTemplate<String, String> redisTemplate,
+                           @Value("${urlshortener.toplinks.capacity:2000}") int capacity,
+                           @Value("${urlshortener.toplinks.period:5m}") Duration period,
+                           @Value("${urlshortener.toplinks.periods:12}") int periods,
+                           @Value("${urlshortener.toplinks.publish-interval-ms:5000}") long publishIntervalMillis) {
+        if (capacity < MAX_LIMIT) {
+            throw new IllegalArgumentException("Top links capacity must be at least " + MAX_LIMIT);
+        }
+        this.redisTemplate = redisTemplate;
+        this.capacity = capacity;
+        this.periodMillis = period.toMillis();
+        // Survive a couple of missed publishes before a node's counts are dropped
+        this.nodeTtlMillis = 3 * publishIntervalMillis;
+        this.periods = new SpaceSavingSketch[periods];
+        for (int i = 0; i < periods; i++) {
+            this.periods[i] = new SpaceSavingSketch(capacity);
+        }
+        this.currentPeriod = System.currentTimeMillis() / periodMillis;
+    }
+
+    /**
+     * Adds clicks to the current period.
+     */
+    public void add(String shortUrl, long clicks) {
+        lock.lock();
+        try {
+            rotate();
+            periods[(int) (currentPeriod % periods.length)].add(shortUrl, clicks);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${urlshortener.toplinks.publish-interval-ms:5000}")
+    public void publish() {
+        SpaceSavingSketch merged = local();
+        byte[] nodeKey = bytes(NODE_NAMESPACE + nodeId);
+        byte[] totalKey = bytes(TOTAL_NAMESPACE + nodeId);
+        Map<byte[], byte[]> fields = new HashMap<>();
+        for (SpaceSavingSketch.Entry entry : merged.entries()) {
+            fields.put(bytes(entry.key), bytes(entry.count + ":" + entry.error));
+        }
+        long now = System.currentTimeMillis();
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                connection.keyCommands().del(nodeKey);
+                if (!fields.isEmpty()) {
+                    connection.hashCommands().hMSet(nodeKey, fields);
+                }
+                connection.keyCommands().pExpire(nodeKey, nodeTtlMillis);
+                connection.stringCommands().pSetEx(totalKey, nodeTtlMillis, bytes(Long.toString(merged.total())));
+                connection.zSetCommands().zAdd(bytes(NODES_KEY), now, bytes(nodeId));
+                connection.zSetCommands().zRemRangeByScore(bytes(NODES_KEY), Double.NEGATIVE_INFINITY, now - nodeTtlMillis);
+                return null;
+            });
+        } catch (DataAccessException e) {
+            // Counts stay in memory; the next publish writes them
+        }
+    }
+
+    /**
+     * Merges the sketches published by every live node.
+     */
+    public TopLinks getTopLinks(int limit) {
+        Set<String> nodes = redisTemplate.opsForZSet()
+                .rangeByScore(NODES_KEY, System.currentTimeMillis() - nodeTtlMillis, Double.POSITIVE_INFINITY);
+        List<String> nodeIds = nodes != null ? new ArrayList<>(nodes) : List.of();
+        List<Object> results = nodeIds.isEmpty() ? List.of() : redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String node : nodeIds) {
+                connection.hashCommands().hGetAll(bytes(NODE_NAMESPACE + node));
+                connection.stringCommands().get(bytes(TOTAL_NAMESPACE + node));
+            }
+            return null;
+        });
+
+        SpaceSavingSketch merged = new SpaceSavingSketch(capacity);
+        for (int i = 0; i < results.size(); i += 2) {
+            @SuppressWarnings("unchecked")
+            Map<String, String> fields = (Map<String, String>) results.get(i);
+            String total = (String) results.get(i + 1);
+            if (fields == null || total == null) {
+                // Expired between the node list and the read
+                continue;
+            }
+            List<SpaceSavingSketch.Entry> entries = new ArrayList<>(fields.size());
+            fields.forEach((code, value) -> {
+                int separator = value.indexOf(':');
+                entries.add(new SpaceSavingSketch.Entry(code,
+                        Long.parseLong(value, 0, separator, 10),
+                        Long.parseLong(value, separator + 1, value.length(), 10)));
+            });
+            merged = merged.merge(SpaceSavingSketch.of(capacity, Long.parseLong(total), entries));
+        }
+
+        List<TopLinks.Link> links = new ArrayList<>(limit);
+        for (SpaceSavingSketch.Entry entry : merged.top(limit)) {
+            links.add(new TopLinks.Link(entry.key, entry.count, entry.error));
+        }
+        return new TopLinks(periods.length * periodMillis / 1000, nodeIds.size(),
+                merged.total(), merged.total() / capacity, links);
+    }
+
+    private SpaceSavingSketch local() {
+        lock.lock();
+        try {
+            rotate();
+            SpaceSavingSketch merged = new SpaceSavingSketch(capacity);
+            for (SpaceSavingSketch period : periods) {
+                merged = merged.merge(period);
+            }
+            return merged;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Clears the slots of periods that ended since the last call
+    private void rotate() {
+        long period = System.currentTimeMillis() / periodMillis;
+        for (long next = currentPeriod + 1; next <= Math.min(period, currentPeriod + periods.length); next++) {
+            periods[(int) (next % periods.length)] = new SpaceSavingSketch(capacity);
+        }
+        currentPeriod = Math.max(currentPeriod, period);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,160 @@
+package com.urlshortener.cache;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the {@link ShortUrlCache} of every replica in step with writes made on any node.
+ * Writes invalidate the local cache immediately and queue the code for publishing;
+ * queued codes are coalesced and sent as a single message per flush, and codes received
+ * from other nodes are coalesced and evicted in one batch per flush.
+ * A replica therefore serves a stale entry for at most about two flush intervals,
+ * or for the cache TTL if a message is lost.
+ * <p>
+ * With reads going to replicas ({@code urlshortener.redis.read-from}), a cache reloaded right
+ * after an invalidation could read a replica the write has not reached yet and keep the stale
+ * value for the whole cache TTL. Codes written here or invalidated by another node are therefore
+ * remembered for the primary read window, and the repository reads them from the primary.
+ * <p>
+ * Codes received from other nodes are also added to the {@link ShortCodeFilter} as they arrive,
+ * since they may have just been created there.
+ */
+@Component
+public class CacheInvalidationBus implements MessageListener {
+    public static final String CHANNEL = "urlshortener:invalidations";
+    private static final char ORIGIN_SEPARATOR = '|';
+    private static final char CODE_SEPARATOR = '\n';
+    private static final int MAX_CODES_PER_MESSAGE = 1000;
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final ShortUrlCache shortUrlCache;
+    private final ShortCodeFilter codeFilter;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Set<String> outgoing = ConcurrentHashMap.newKeySet();
+    private final Set<String> incoming = ConcurrentHashMap.newKeySet();
+    private final Map<String, Long> recent = new ConcurrentHashMap<>();
+    private final long primaryReadWindowNanos;
+
+    public CacheInvalidationBus(RedisTemplate<String, String> redisTemplate, ShortUrlCache shortUrlCache) {
+        this(redisTemplate, shortUrlCache, "", Duration.ZERO);
+    }
+
+    public CacheInvalidationBus(RedisTemplate<String, String> redisTemplate, ShortUrlCache shortUrlCache,
+                                String readFrom, Duration primaryReadWindow) {
+        this(redisTemplate, shortUrlCache, new ShortCodeFilter(), readFrom, primaryReadWindow);
+    }
+
+    @Autowired
+    public CacheInvalidationBus(RedisTemplate<String, String> redisTemplate, ShortUrlCache shortUrlCache,
+                                ShortCodeFilter codeFilter,
+                                @Value("${urlshortener.redis.read-from:}") String readFrom,
+                                @Value("${urlshortener.redis.primary-read-window:2s}") Duration primaryReadWindow) {
+        this.redisTemplate = redisTemplate;
+        this.shortUrlCache = shortUrlCache;
+        this.codeFilter = codeFilter;
+        this.primaryReadWindowNanos = readFrom.isEmpty() ? 0 : primaryReadWindow.toNanos();
+    }
+
+    /**
+     * Evicts the code locally and schedules the eviction on all other nodes.
+     */
+    public void invalidate(String shortUrl) {
+        remember(shortUrl);
+        shortUrlCache.invalidate(shortUrl);
+        outgoing.add(shortUrl);
+    }
+
+    /**
+     * @return whether the code was written or invalidated within the primary read window;
+     *         always false when reads are not going to replicas
+     */
+    public boolean isRecentlyInvalidated(String shortUrl) {
+        if (primaryReadWindowNanos == 0) {
+            return false;
+        }
+        Long until = recent.get(shortUrl);
+        return until != null && until - System.nanoTime() > 0;
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String payload = new String(message.getBody(), StandardCharsets.UTF_8);
+        int originEnd = payload.indexOf(ORIGIN_SEPARATOR);
+        if (originEnd < 0 || nodeId.equals(payload.substring(0, originEnd))) {
+            return;
+        }
+        int start = originEnd + 1;
+        while (start < payload.length()) {
+            int end = payload.indexOf(CODE_SEPARATOR, start);
+            if (end < 0) {
+                end = payload.length();
+            }
+            if (end > start) {
+                String shortUrl = payload.substring(start, end);
+                remember(shortUrl);
+                codeFilter.add(shortUrl);
+                incoming.add(shortUrl);
+            }
+            start = end + 1;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${urlshortener.cache.invalidation.flush-interval-ms:100}")
+    public void flush() {
+        if (!recent.isEmpty()) {
+            long now = System.nanoTime();
+            recent.values().removeIf(until -> until - now <= 0);
+        }
+        List<String> received = drain(incoming);
+        if (!received.isEmpty()) {
+            shortUrlCache.invalidateAll(received);
+        }
+
+        List<String> written = drain(outgoing);
+        int from = 0;
+        try {
+            for (; from < written.size(); from += MAX_CODES_PER_MESSAGE) {
+                List<String> chunk = written.subList(from, Math.min(from + MAX_CODES_PER_MESSAGE, written.size()));
+                redisTemplate.convertAndSend(CHANNEL, nodeId + ORIGIN_SEPARATOR + String.join(String.valueOf(CODE_SEPARATOR), chunk));
+            }
+        } catch (DataAccessException e) {
+            // Codes not yet published are sent on the next flush; evicting one twice does no harm
+            outgoing.addAll(written.subList(from, written.size()));
+        }
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    private void remember(String shortUrl) {
+        if (primaryReadWindowNanos > 0) {
+            recent.put(shortUrl, System.nanoTime() + primaryReadWindowNanos);
+        }
+    }
+
+    private static List<String> drain(Set<String> pending) {
+        List<String> batch = new ArrayList<>();
+        for (Iterator<String> it = pending.iterator(); it.hasNext(); ) {
+            batch.add(it.next());
+            it.remove();
+        }
+        return batch;
+    }
+}
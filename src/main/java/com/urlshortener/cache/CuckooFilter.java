@@ -0,0 +1,217 @@
+package com.urlshortener.cache;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Cuckoo filter over short codes: approximate membership with no false negatives, and unlike
+ * a Bloom filter, removal.
+ * <p>
+ * Each code is reduced to a 32-bit fingerprint stored in one of two buckets of four slots.
+ * The second bucket is derived from the first and the fingerprint alone (partial-key cuckoo
+ * hashing), so an entry can be moved between its buckets without knowing its code. The bucket
+ * count need not be a power of two: the alternate bucket is the fingerprint hash minus the
+ * current bucket, modulo the count, which maps each bucket of the pair to the other. A code that
+ * is not held matches one of eight slots with a probability of about 2 in a billion.
+ * <p>
+ * Every add stores a copy of the fingerprint and every remove clears one, so removing one of two
+ * codes that share a fingerprint and buckets leaves the other found. A code added again is
+ * stored again, and is still found after one remove, which only costs a false positive. To
+ * keep repeated adds from filling a bucket pair, adds stop storing copies once the pair holds
+ * {@link #MAX_COPIES}; a remove can then drop a colliding code, which takes that many
+ * codes sharing one fingerprint and bucket pair. When no slot can be found within
+ * {@link #MAX_KICKS} moves, the fingerprint last moved out has nowhere to go; the filter then
+ * answers true for every code, so that no stored code is ever reported missing.
+ * <p>
+ * Writes hold the write lock of a {@link StampedLock}; reads are optimistic and retry under
+ * the read lock if a write overlapped them, so a read normally takes no lock at all.
+ */
+final class CuckooFilter {
+    static final int SLOTS_PER_BUCKET = 4;
+    static final int MAX_COPIES = SLOTS_PER_BUCKET;
+    private static final int MAX_KICKS = 500;
+    private static final long MAX_SLOTS = Integer.MAX_VALUE - 8;
+
+    private final StampedLock lock = new StampedLock();
+    private final int[] slots;
+    private final int buckets;
+    private final long capacity;
+    private int size;
+    private boolean saturated;
+
+    /**
+     * @param capacity the codes the filter must hold; buckets are sized for 90% of their slots
+     */
+    CuckooFilter(long capacity) {
+        long buckets = Math.max(1, (capacity * 10 + 35) / 36);
+        if (buckets * SLOTS_PER_BUCKET > MAX_SLOTS) {
+            throw new IllegalArgumentException("At most " + MAX_SLOTS * 9 / 10 + " codes are supported");
+        }
+        this.buckets = (int) buckets;
+        this.slots = new int[this.buckets * SLOTS_PER_BUCKET];
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return false if the code was never added or has been removed, and true otherwise,
+     *         including for a few codes that were not added
+     */
+    boolean mightContain(String code) {
+        long hash = hash(code);
+        int fingerprint = fingerprint(hash);
+        int first = index(hash);
+        int second = alternate(first, fingerprint);
+        long stamp = lock.tryOptimisticRead();
+        boolean found = saturated || holds(first, fingerprint) || holds(second, fingerprint);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                found = saturated || holds(first, fingerprint) || holds(second, fingerprint);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @return false if the filter is full, in which case it now answers true for every code
+     */
+    boolean add(String code) {
+        long hash = hash(code);
+        int fingerprint = fingerprint(hash);
+        int first = index(hash);
+        int second = alternate(first, fingerprint);
+        long stamp = lock.writeLock();
+        try {
+            if (saturated) {
+                return false;
+            }
+            int copies = count(first, fingerprint) + (second != first ? count(second, fingerprint) : 0);
+            if (copies >= MAX_COPIES) {
+                return true;
+            }
+            if (insert(first, fingerprint) || insert(second, fingerprint)) {
+                size++;
+                return true;
+            }
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int bucket = random.nextBoolean() ? first : second;
+            for (int kick = 0; kick < MAX_KICKS; kick++) {
+                int slot = bucket * SLOTS_PER_BUCKET + random.nextInt(SLOTS_PER_BUCKET);
+                int evicted = slots[slot];
+                slots[slot] = fingerprint;
+                fingerprint = evicted;
+                bucket = alternate(bucket, fingerprint);
+                if (insert(bucket, fingerprint)) {
+                    size++;
+                    return true;
+                }
+            }
+            saturated = true;
+            return false;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    void remove(String code) {
+        long hash = hash(code);
+        int fingerprint = fingerprint(hash);
+        int first = index(hash);
+        int second = alternate(first, fingerprint);
+        long stamp = lock.writeLock();
+        try {
+            if (clear(first, fingerprint) || clear(second, fingerprint)) {
+                size--;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    long capacity() {
+        return capacity;
+    }
+
+    boolean isSaturated() {
+        return saturated;
+    }
+
+    long sizeInBytes() {
+        return (long) slots.length * Integer.BYTES;
+    }
+
+    private boolean holds(int bucket, int fingerprint) {
+        int base = bucket * SLOTS_PER_BUCKET;
+        return slots[base] == fingerprint || slots[base + 1] == fingerprint
+                || slots[base + 2] == fingerprint || slots[base + 3] == fingerprint;
+    }
+
+    private int count(int bucket, int fingerprint) {
+        int base = bucket * SLOTS_PER_BUCKET;
+        int count = 0;
+        for (int slot = base; slot < base + SLOTS_PER_BUCKET; slot++) {
+            if (slots[slot] == fingerprint) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private boolean insert(int bucket, int fingerprint) {
+        int base = bucket * SLOTS_PER_BUCKET;
+        for (int slot = base; slot < base + SLOTS_PER_BUCKET; slot++) {
+            if (slots[slot] == 0) {
+                slots[slot] = fingerprint;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean clear(int bucket, int fingerprint) {
+        int base = bucket * SLOTS_PER_BUCKET;
+        for (int slot = base; slot < base + SLOTS_PER_BUCKET; slot++) {
+            if (slots[slot] == fingerprint) {
+                slots[slot] = 0;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int index(long hash) {
+        return (int) ((hash >>> 32) % buckets);
+    }
+
+    private int alternate(int bucket, int fingerprint) {
+        long fingerprintHash = (fingerprint * 0x9E3779B97F4A7C15L) >>> 33;
+        return (int) Math.floorMod(fingerprintHash - bucket, (long) buckets);
+    }
+
+    // 0 marks an empty slot, so it is never a fingerprint
+    private static int fingerprint(long hash) {
+        int fingerprint = (int) hash;
+        return fingerprint != 0 ? fingerprint : 1;
+    }
+
+    // FNV-1a over the characters, then the MurmurHash3 finalizer so that codes differing in one character spread over every bit
+    private static long hash(String code) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < code.length(); i++) {
+            hash ^= code.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,104 @@
+package com.urlshortener.cache;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * File of the hottest lookups of a node, read back at startup to warm its cache.
+ * <p>
+ * A header of the magic number, the entry count, the time the file was written (epoch millis)
+ * and the CRC32 of the entries, then the entries: the code length (unsigned byte), the code in
+ * UTF-8, the milliseconds its cache entry had left (int), the URL length (unsigned 16-bit) and
+ * the URL in UTF-8. Codes and URLs too long for their length field are left out. The file is
+ * written beside its final path and moved into place, so a reader never sees a partial one,
+ * and is read through a read-only mapping.
+ */
+record HotLinkSnapshot(long writtenAtMillis, List<Entry> entries) {
+    static final int MAGIC = 0x484C5331;
+    private static final int HEADER = 20;
+
+    record Entry(String code, String url, long expiresInMillis) {
+    }
+
+    void write(Path file) throws IOException {
+        Path written = file.resolveSibling(file.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        int count = 0;
+        try (OutputStream out = Files.newOutputStream(written)) {
+            out.write(new byte[HEADER]);
+            DataOutputStream data = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(out, crc)));
+            for (Entry entry : entries) {
+                byte[] code = entry.code().getBytes(StandardCharsets.UTF_8);
+                byte[] url = entry.url().getBytes(StandardCharsets.UTF_8);
+                if (code.length > 0xFF || url.length > 0xFFFF) {
+                    continue;
+                }
+                data.writeByte(code.length);
+                data.write(code);
+                data.writeInt((int) Math.min(entry.expiresInMillis(), Integer.MAX_VALUE));
+                data.writeShort(url.length);
+                data.write(url);
+                count++;
+            }
+            data.flush();
+        }
+        try (FileChannel channel = FileChannel.open(written, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(HEADER)
+                    .putInt(MAGIC)
+                    .putInt(count)
+                    .putLong(writtenAtMillis)
+                    .putInt((int) crc.getValue())
+                    .flip(), 0);
+            channel.force(true);
+        }
+        Files.move(written, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * @throws IOException if the file cannot be read, or is not a complete snapshot
+     */
+    static HotLinkSnapshot read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER || channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Not a snapshot file: " + file);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int count = buffer.getInt(4);
+            long writtenAt = buffer.getLong(8);
+            CRC32 crc = new CRC32();
+            crc.update(buffer.slice(HEADER, buffer.capacity() - HEADER));
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(16) != (int) crc.getValue()) {
+                throw new IOException("Snapshot file " + file + " is corrupt");
+            }
+            List<Entry> entries = new ArrayList<>(count);
+            buffer.position(HEADER);
+            for (int i = 0; i < count; i++) {
+                String code = string(buffer, buffer.get() & 0xFF);
+                int expiresIn = buffer.getInt();
+                String url = string(buffer, buffer.getShort() & 0xFFFF);
+                entries.add(new Entry(code, url, expiresIn));
+            }
+            return new HotLinkSnapshot(writtenAt, entries);
+        }
+    }
+
+    private static String string(ByteBuffer buffer, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,121 @@
+package com.urlshortener.cache;
+
+import com.urlshortener.repository.UrlStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Warms the {@link ShortUrlCache} of a restarted node from a {@link HotLinkSnapshot} of its
+ * hottest lookups, so that it starts with the links that carry most of the traffic already
+ * cached instead of sending every one of them to the store at once.
+ * <p>
+ * The snapshot is written every interval and on shutdown, and read while the application
+ * context starts, before the server accepts requests, so the health endpoint only answers once
+ * the cache is warm. Links may have been changed or deleted while this node was down, and the
+ * invalidations for them were missed, so the snapshot's codes are read back from the store in
+ * one pipelined bulk read and only those that still map to the same URL are cached. This also
+ * happens before invalidations are received: a link changed between that read and the
+ * subscription is served until its entry expires, as after a lost invalidation. Each URL is
+ * cached for what its entry had left when the snapshot was written, less the time since, so
+ * links in a snapshot older than the cache TTL are neither read nor used. A missing or
+ * corrupt snapshot, or a store that cannot be read, only leaves the cache cold.
+ * <p>
+ * Nothing is written while the cache holds no links, so a node stopped before it served
+ * any traffic keeps the snapshot it started from for its next start.
+ */
+@Component
+@ConditionalOnExpression("${urlshortener.snapshot.enabled:true}")
+public class HotLinkSnapshotter implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(HotLinkSnapshotter.class);
+
+    private final ShortUrlCache shortUrlCache;
+    private final UrlStore urlStore;
+    private final Path file;
+    private final int maxEntries;
+
+    public HotLinkSnapshotter(ShortUrlCache shortUrlCache, UrlStore urlStore,
+                              @Value("${urlshortener.snapshot.file:snapshot/hot-links.bin}") String file,
+                              @Value("${urlshortener.snapshot.max-entries:50000}") int maxEntries) {
+        this.shortUrlCache = shortUrlCache;
+        this.urlStore = urlStore;
+        this.file = Path.of(file);
+        this.maxEntries = maxEntries;
+        load();
+    }
+
+    private void load() {
+        long start = System.nanoTime();
+        try {
+            HotLinkSnapshot snapshot = HotLinkSnapshot.read(file);
+            long ageMillis = Math.max(0, System.currentTimeMillis() - snapshot.writtenAtMillis());
+            int cached = shortUrlCache.preload(unchanged(snapshot.entries(), ageMillis), ageMillis);
+            log.info("Warmed the lookup cache with {} of {} links from a snapshot written {} s ago, in {} ms", cached,
+                    snapshot.entries().size(), ageMillis / 1000, (System.nanoTime() - start) / 1_000_000);
+        } catch (NoSuchFileException e) {
+            // First start, or the snapshot was removed
+        } catch (DataAccessException e) {
+            log.warn("Could not check the hot link snapshot {} against the store; starting with a cold cache", file, e);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not read the hot link snapshot {}; starting with a cold cache", file, e);
+        }
+    }
+
+    /**
+     * @return the entries still live after the given age whose code still maps to the same URL
+     */
+    private List<HotLinkSnapshot.Entry> unchanged(List<HotLinkSnapshot.Entry> entries, long ageMillis) {
+        List<HotLinkSnapshot.Entry> live = new ArrayList<>(entries.size());
+        List<String> codes = new ArrayList<>(entries.size());
+        for (HotLinkSnapshot.Entry entry : entries) {
+            if (entry.expiresInMillis() > ageMillis) {
+                live.add(entry);
+                codes.add(entry.code());
+            }
+        }
+        if (live.isEmpty()) {
+            return live;
+        }
+        Map<String, String> stored = urlStore.findOriginalUrls(codes);
+        live.removeIf(entry -> !entry.url().equals(stored.get(entry.code())));
+        return live;
+    }
+
+    @Scheduled(fixedDelayString = "${urlshortener.snapshot.interval-ms:60000}")
+    public synchronized void write() {
+        List<HotLinkSnapshot.Entry> hottest = shortUrlCache.hottest(maxEntries);
+        if (hottest.isEmpty()) {
+            return;
+        }
+        try {
+            Path directory = file.toAbsolutePath().getParent();
+            if (directory != null) {
+                Files.createDirectories(directory);
+            }
+            new HotLinkSnapshot(System.currentTimeMillis(), hottest).write(file);
+        } catch (IOException e) {
+            log.warn("Could not write the hot link snapshot {}", file, e);
+        }
+    }
+
+    /**
+     * Writes a last snapshot, so the next start has the links that were hot at shutdown.
+     */
+    @Override
+    public void close() {
+        write();
+    }
+}
@@ -0,0 +1,343 @@
+package com.urlshortener.cache;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Second cache level below {@link ShortUrlCache}: code to URL entries held outside the Java heap,
+ * so that millions of them add neither heap nor GC work.
+ * <p>
+ * Codes of up to 10 base62 characters, which covers every generated code, are packed into a
+ * {@code long} (bijective base 63, so "0a" and "a" differ); other codes are not held. The index
+ * is an open-addressing table of 16-byte slots, packed code then record position, in one direct
+ * buffer sized for the entry limit at a 75% load factor. URLs are appended, with their code and
+ * the time they were stored, to a ring of direct slabs allocated as they are first needed; when
+ * the ring wraps, the records of the slab about to be reused are dropped from the index first,
+ * so the oldest entries are evicted first. Reaching the entry limit evicts a slab early.
+ * <p>
+ * Writes hold the write lock of a {@link StampedLock}; reads are optimistic and retry under the
+ * read lock if a write overlapped them, so a read normally takes no lock at all.
+ */
+final class OffHeapUrlTier {
+    static final int MAX_CODE_LENGTH = 10;
+    private static final int SLOT_LENGTH = 16;
+    private static final int STORED_AT = 8;
+    private static final int LENGTH = 16;
+    private static final int RECORD_HEADER = 20;
+    private static final int MAX_SLAB_SIZE = 16 << 20;
+    private static final int MAX_SLOTS = 1 << 27;
+    private static final byte[] DIGITS = new byte[128];
+
+    static {
+        String alphabet = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+        for (int i = 0; i < alphabet.length(); i++) {
+            DIGITS[alphabet.charAt(i)] = (byte) (i + 1);
+        }
+    }
+
+    private final StampedLock lock = new StampedLock();
+    private final ByteBuffer index;
+    private final int mask;
+    private final int maxEntries;
+    private final ByteBuffer[] slabs;
+    private final int slabSize;
+    private final long ringBytes;
+    private final long ttlNanos;
+    private final long origin = System.nanoTime();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private long head;
+    private int size;
+
+    OffHeapUrlTier(int maxEntries, long maxBytes, long ttlNanos) {
+        if (maxEntries <= 0 || maxBytes < 4 * 1024) {
+            throw new IllegalArgumentException("The off-heap tier needs at least one entry and 4KB");
+        }
+        long slots = Long.highestOneBit(Math.max(maxEntries * 4L / 3, 8) * 2 - 1);
+        if (slots > MAX_SLOTS) {
+            throw new IllegalArgumentException("At most " + MAX_SLOTS / 4 * 3 + " off-heap entries are supported");
+        }
+        this.index = ByteBuffer.allocateDirect((int) slots * SLOT_LENGTH).order(ByteOrder.nativeOrder());
+        this.mask = (int) slots - 1;
+        this.maxEntries = maxEntries;
+        this.slabSize = (int) Math.min(MAX_SLAB_SIZE, maxBytes / 4);
+        this.slabs = new ByteBuffer[(int) (maxBytes / slabSize)];
+        this.ringBytes = (long) slabs.length * slabSize;
+        this.ttlNanos = ttlNanos;
+        enterSlab();
+    }
+
+    /**
+     * Packs a code of up to {@link #MAX_CODE_LENGTH} base62 characters into a non-zero long.
+     *
+     * @return the packed code, or 0 if the code cannot be packed
+     */
+    static long pack(String code) {
+        int length = code.length();
+        if (length == 0 || length > MAX_CODE_LENGTH) {
+            return 0;
+        }
+        long packed = 0;
+        for (int i = 0; i < length; i++) {
+            char c = code.charAt(i);
+            int digit = c < 128 ? DIGITS[c] : 0;
+            if (digit == 0) {
+                return 0;
+            }
+            packed = packed * 63 + digit;
+        }
+        return packed;
+    }
+
+    /**
+     * @return the URL, or null if the code is not held or its entry is older than the TTL
+     */
+    String get(String shortUrl) {
+        String url = get(shortUrl, ttlNanos);
+        (url != null ? hits : misses).increment();
+        return url;
+    }
+
+    /**
+     * The last URL stored for the code, however old: entries past the TTL stay in the ring
+     * until it wraps, and serve as a last-known-good copy while the store cannot be reached.
+     *
+     * @return the URL, or null if the code is not held
+     */
+    String getStale(String shortUrl) {
+        return get(shortUrl, Long.MAX_VALUE);
+    }
+
+    void put(String shortUrl, String originalUrl) {
+        long key = pack(shortUrl);
+        byte[] url = originalUrl.getBytes(StandardCharsets.UTF_8);
+        if (key == 0 || RECORD_HEADER + url.length > slabSize) {
+            return;
+        }
+        long stamp = lock.writeLock();
+        try {
+            if (find(key) < 0) {
+                while (size >= maxEntries) {
+                    nextSlab();
+                }
+            }
+            long position = append(key, url);
+            // Looked up again: evictions in append may have moved or freed the slot
+            int slot = find(key);
+            if (slot >= 0) {
+                index.putLong(slot * SLOT_LENGTH + 8, position);
+            } else {
+                slot = ~slot;
+                index.putLong(slot * SLOT_LENGTH + 8, position);
+                index.putLong(slot * SLOT_LENGTH, key);
+                size++;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    void remove(String shortUrl) {
+        long key = pack(shortUrl);
+        if (key == 0) {
+            return;
+        }
+        long stamp = lock.writeLock();
+        try {
+            int slot = find(key);
+            if (slot >= 0) {
+                delete(slot);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    long hitCount() {
+        return hits.sum();
+    }
+
+    long missCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return direct memory held by the index and the slabs allocated so far
+     */
+    long allocatedBytes() {
+        long bytes = index.capacity();
+        for (ByteBuffer slab : slabs) {
+            bytes += slab != null ? slab.capacity() : 0;
+        }
+        return bytes;
+    }
+
+    private String get(String shortUrl, long maxAgeNanos) {
+        long key = pack(shortUrl);
+        if (key == 0) {
+            return null;
+        }
+        long stamp = lock.tryOptimisticRead();
+        String url;
+        try {
+            url = read(key, maxAgeNanos);
+        } catch (RuntimeException e) {
+            // A write moved the bytes under the read; the stamp check below retries it
+            url = null;
+        }
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                url = read(key, maxAgeNanos);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return url;
+    }
+
+    private String read(long key, long maxAgeNanos) {
+        for (int slot = start(key); ; slot = (slot + 1) & mask) {
+            long found = index.getLong(slot * SLOT_LENGTH);
+            if (found == 0) {
+                return null;
+            }
+            if (found == key) {
+                long position = index.getLong(slot * SLOT_LENGTH + 8);
+                ByteBuffer slab = slabs[slabOf(position)];
+                int offset = (int) (position % slabSize);
+                int length = slab.getInt(offset + LENGTH);
+                // Checked so that a read overlapping a write cannot allocate a bogus length
+                if (slab.getLong(offset) != key || length < 0 || length > slabSize - offset - RECORD_HEADER
+                        || now() - slab.getLong(offset + STORED_AT) >= maxAgeNanos) {
+                    return null;
+                }
+                byte[] url = new byte[length];
+                slab.get(offset + RECORD_HEADER, url);
+                return new String(url, StandardCharsets.UTF_8);
+            }
+        }
+    }
+
+    /**
+     * @return the slot holding the key, or the complement of the empty slot where it would go
+     */
+    private int find(long key) {
+        for (int slot = start(key); ; slot = (slot + 1) & mask) {
+            long found = index.getLong(slot * SLOT_LENGTH);
+            if (found == key) {
+                return slot;
+            }
+            if (found == 0) {
+                return ~slot;
+            }
+        }
+    }
+
+    /**
+     * Empties the slot and shifts later entries of the same probe run back into the gap,
+     * so lookups never need tombstones.
+     */
+    private void delete(int slot) {
+        int gap = slot;
+        for (int next = (gap + 1) & mask; ; next = (next + 1) & mask) {
+            long key = index.getLong(next * SLOT_LENGTH);
+            if (key == 0) {
+                break;
+            }
+            int home = start(key);
+            // Move the entry back unless its home lies cyclically after the gap, up to it
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                index.putLong(gap * SLOT_LENGTH, key);
+                index.putLong(gap * SLOT_LENGTH + 8, index.getLong(next * SLOT_LENGTH + 8));
+                gap = next;
+            }
+        }
+        index.putLong(gap * SLOT_LENGTH, 0);
+        index.putLong(gap * SLOT_LENGTH + 8, 0);
+        size--;
+    }
+
+    /**
+     * Writes the record at the head of the ring, moving to the next slab if it does not fit.
+     *
+     * @return the record position
+     */
+    private long append(long key, byte[] url) {
+        int length = RECORD_HEADER + url.length;
+        if (head % slabSize + length > slabSize) {
+            nextSlab();
+        }
+        int offset = (int) (head % slabSize);
+        ByteBuffer slab = slabs[slabOf(head)];
+        slab.putLong(offset, key);
+        slab.putLong(offset + STORED_AT, now());
+        slab.putInt(offset + LENGTH, url.length);
+        slab.put(offset + RECORD_HEADER, url);
+        if (offset + length + 8 <= slabSize) {
+            // Ends the slab's records for the scan made when the ring comes round to it
+            slab.putLong(offset + length, 0);
+        }
+        long position = head;
+        head += length;
+        if (head % slabSize == 0) {
+            enterSlab();
+        }
+        return position;
+    }
+
+    /**
+     * Leaves the rest of the slab at the head unused and moves the head to the next one.
+     */
+    private void nextSlab() {
+        head += slabSize - head % slabSize;
+        enterSlab();
+    }
+
+    /**
+     * Prepares the slab the head has just moved to: allocates it on first use, and otherwise
+     * removes the index entries still pointing at its records from the previous round.
+     */
+    private void enterSlab() {
+        int current = slabOf(head);
+        if (slabs[current] == null) {
+            slabs[current] = ByteBuffer.allocateDirect(slabSize).order(ByteOrder.nativeOrder());
+            return;
+        }
+        ByteBuffer slab = slabs[current];
+        long previousRound = head - ringBytes;
+        int offset = 0;
+        while (offset + RECORD_HEADER <= slabSize) {
+            long key = slab.getLong(offset);
+            if (key == 0) {
+                break;
+            }
+            int slot = find(key);
+            if (slot >= 0 && index.getLong(slot * SLOT_LENGTH + 8) == previousRound + offset) {
+                delete(slot);
+            }
+            offset += RECORD_HEADER + slab.getInt(offset + LENGTH);
+        }
+        slab.putLong(0, 0);
+    }
+
+    private int start(long key) {
+        long mixed = key * 0x9E3779B97F4A7C15L;
+        return (int) (mixed >>> 32) & mask;
+    }
+
+    private int slabOf(long position) {
+        return (int) ((position / slabSize) % slabs.length);
+    }
+
+    private long now() {
+        return System.nanoTime() - origin;
+    }
+}
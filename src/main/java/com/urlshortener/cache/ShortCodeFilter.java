@@ -0,0 +1,157 @@
+package com.urlshortener.cache;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+
+/**
+ * In-process filter over every stored short code, so that generated codes that are already
+ * taken are skipped without a failed claim against Redis.
+ * <p>
+ * Backed by a {@link CuckooFilter}, which can drop a code when it is deleted. Its 32-bit
+ * fingerprints cost about 4.4 bytes per code and mistake a free code for a taken one about
+ * twice in a billion checks. Until the first load from the store has completed, and while the
+ * filter is full, every code is reported free.
+ * <p>
+ * The repository adds codes before writing them and removes them after deleting them, and
+ * {@link CacheInvalidationBus} adds the codes other nodes write as their invalidations arrive.
+ * A code created on another node is therefore missing here for about as long as that node's
+ * invalidations take to arrive, and until the next rebuild if one is lost. That is harmless for
+ * generated codes, whose claim is atomic, but it is why lookups are never answered from the
+ * filter. A rebuild fills a new filter from the store while the current one keeps answering,
+ * with writes going to both, and then takes its place. Rebuilds also shed codes that expired
+ * or were deleted on other nodes, and size the new filter for the codes the current one holds.
+ * <p>
+ * Only random codes can collide, so the filter is off by default in sequence mode, where it
+ * would hold every code and walk the store on every rebuild without ever skipping one.
+ */
+@Component
+public class ShortCodeFilter implements MeterBinder {
+    private final boolean enabled;
+    private volatile CuckooFilter current;
+    private volatile CuckooFilter next;
+    private long nextCapacity;
+
+    /**
+     * A filter that is never loaded and lets every code through.
+     */
+    public ShortCodeFilter() {
+        this(false, 0);
+    }
+
+    @Autowired
+    public ShortCodeFilter(@Value("#{${urlshortener.code-filter.enabled:'${urlshortener.id-generator.mode:sequence}' == 'random'}}") boolean enabled,
+                           @Value("${urlshortener.code-filter.capacity:1000000}") long capacity) {
+        this.enabled = enabled;
+        this.nextCapacity = capacity;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * For generated codes: a code the filter holds is almost certainly taken, so claiming it
+     * would only fail. False until the filter is loaded and while it is full.
+     */
+    public boolean probablyExists(String shortUrl) {
+        CuckooFilter filter = current;
+        return filter != null && !filter.isSaturated() && filter.mightContain(shortUrl);
+    }
+
+    public void add(String shortUrl) {
+        // Read in the opposite order to finishRebuild, so an add racing the swap reaches the new filter
+        CuckooFilter building = next;
+        CuckooFilter filter = current;
+        if (building != null) {
+            building.add(shortUrl);
+        }
+        if (filter != null && filter != building) {
+            filter.add(shortUrl);
+        }
+    }
+
+    public void remove(String shortUrl) {
+        CuckooFilter building = next;
+        CuckooFilter filter = current;
+        if (building != null) {
+            building.remove(shortUrl);
+        }
+        if (filter != null && filter != building) {
+            filter.remove(shortUrl);
+        }
+    }
+
+    /**
+     * Starts filling a new filter, sized for the configured capacity or a quarter more codes
+     * than the current filter holds, whichever is larger.
+     */
+    public synchronized void startRebuild() {
+        CuckooFilter filter = current;
+        long held = filter != null ? filter.size() * 5L / 4 : 0;
+        next = new CuckooFilter(Math.max(nextCapacity, held));
+    }
+
+    /**
+     * Adds stored codes to the filter being rebuilt.
+     *
+     * @return false if the new filter filled up; the rebuild must then be abandoned
+     */
+    public boolean load(Collection<String> shortUrls) {
+        CuckooFilter building = next;
+        if (building == null) {
+            return false;
+        }
+        for (String shortUrl : shortUrls) {
+            if (!building.add(shortUrl)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Answers from the rebuilt filter from now on.
+     */
+    public synchronized void finishRebuild() {
+        if (next != null) {
+            current = next;
+            next = null;
+        }
+    }
+
+    /**
+     * Drops the filter being rebuilt; the next one is twice its size.
+     */
+    public synchronized void abandonRebuild() {
+        if (next != null) {
+            nextCapacity = Math.max(nextCapacity, next.capacity() * 2);
+            next = null;
+        }
+    }
+
+    /**
+     * @return whether a loaded filter is answering lookups
+     */
+    public boolean isLoaded() {
+        return current != null;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (!enabled) {
+            return;
+        }
+        Gauge.builder("urlshortener.code-filter.codes", this, filter -> filter.current != null ? filter.current.size() : 0)
+                .description("Codes held by the code filter, including some since removed from the store")
+                .register(registry);
+        Gauge.builder("urlshortener.code-filter.bytes", this, filter -> filter.current != null ? filter.current.sizeInBytes() : 0)
+                .description("Memory held by the code filter")
+                .register(registry);
+    }
+}
@@ -0,0 +1,371 @@
+package com.urlshortener.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Policy;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * In-process cache of short code to original URL lookups.
+ * Backed by Caffeine (W-TinyLFU admission), bounded by the total number of
+ * characters held, and caching misses for a shorter period than hits so that
+ * probes for random codes do not reach Redis on every request.
+ * <p>
+ * Entries are held as futures and loads run on the calling thread outside any map lock,
+ * so a virtual thread waiting on Redis does not pin its carrier. Concurrent misses for
+ * the same code wait on the first caller's load instead of issuing their own.
+ * Hit/miss counts come from Caffeine's own statistics and are published as cache.gets.
+ * <p>
+ * Below Caffeine, which holds the hottest entries on the heap, an optional {@link OffHeapUrlTier}
+ * holds many more outside it. Caffeine misses are answered from the tier before the loader is
+ * called, and URLs the loader finds are added to it; bulk loads read the tier but do not fill it.
+ * Invalidations evict from both levels.
+ */
+@Component
+public class ShortUrlCache implements MeterBinder {
+    static final String METRICS_NAME = "shortUrls";
+
+    /**
+     * Marker stored for codes that are known not to exist; compare by identity.
+     */
+    public static final String NOT_FOUND = new String("");
+
+    private final AsyncCache<String, String> cache;
+    private final OffHeapUrlTier offHeap;
+
+    /**
+     * A cache without the off-heap tier.
+     */
+    public ShortUrlCache(long maximumWeight, Duration ttl, Duration negativeTtl) {
+        this(maximumWeight, ttl, negativeTtl, false, 0, DataSize.ofBytes(0));
+    }
+
+    @Autowired
+    public ShortUrlCache(@Value("${urlshortener.cache.maximum-weight:20000000}") long maximumWeight,
+                         @Value("${urlshortener.cache.ttl:10m}") Duration ttl,
+                         @Value("${urlshortener.cache.negative-ttl:30s}") Duration negativeTtl,
+                         @Value("${urlshortener.cache.off-heap.enabled:true}") boolean offHeapEnabled,
+                         @Value("${urlshortener.cache.off-heap.max-entries:1000000}") int offHeapMaxEntries,
+                         @Value("${urlshortener.cache.off-heap.max-bytes:128MB}") DataSize offHeapMaxBytes) {
+        this.offHeap = offHeapEnabled ? new OffHeapUrlTier(offHeapMaxEntries, offHeapMaxBytes.toBytes(), ttl.toNanos()) : null;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maximumWeight)
+                .weigher((String code, String url) -> code.length() + url.length())
+                .expireAfter(new LookupExpiry(ttl.toNanos(), negativeTtl.toNanos()))
+                .recordStats()
+                .buildAsync();
+    }
+
+    /**
+     * Returns the cached original URL for the code, loading it on a miss.
+     * The loader returns null when the code does not exist; that answer is cached too.
+     *
+     * @return the original URL, or null if the code does not exist
+     */
+    public String get(String shortUrl, Function<String, String> loader) {
+        return lookup(loader).get(shortUrl);
+    }
+
+    /**
+     * Binds a loader once so that repeated lookups do not allocate a mapping function per call.
+     */
+    public Lookup lookup(Function<String, String> loader) {
+        return new Lookup(code -> {
+            String loaded = loader.apply(code);
+            return loaded != null ? loaded : NOT_FOUND;
+        });
+    }
+
+    /**
+     * Bulk variant of {@link #get}: cached codes are answered locally and the
+     * rest are handed to the loader in a single call.
+     * The loader returns the URLs it found; codes it leaves out are cached as missing.
+     *
+     * @return the original URL of each code that exists, in the order of the codes given
+     */
+    public Map<String, String> getAll(Collection<String> shortUrls,
+                                      Function<Collection<String>, Map<String, String>> loader) {
+        Map<String, String> cached = join(cache.getAll(shortUrls, (codes, executor) -> {
+            Map<String, String> loaded = new HashMap<>();
+            List<String> missing = new ArrayList<>();
+            for (String code : codes) {
+                String url = offHeap != null ? offHeap.get(code) : null;
+                if (url != null) {
+                    loaded.put(code, url);
+                } else {
+                    missing.add(code);
+                }
+            }
+            if (!missing.isEmpty()) {
+                loaded.putAll(loader.apply(missing));
+            }
+            for (String code : missing) {
+                loaded.putIfAbsent(code, NOT_FOUND);
+            }
+            return CompletableFuture.completedFuture(loaded);
+        }));
+        Map<String, String> found = new LinkedHashMap<>();
+        for (String shortUrl : shortUrls) {
+            String url = cached.get(shortUrl);
+            if (url != null && url != NOT_FOUND) {
+                found.put(shortUrl, url);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Non-loading lookup for callers that fetch asynchronously.
+     *
+     * @return the cached URL, {@link #NOT_FOUND} if the code is cached as missing, or null if it is not cached
+     */
+    public String getIfPresent(String shortUrl) {
+        CompletableFuture<String> cached = cache.getIfPresent(shortUrl);
+        if (cached != null) {
+            return cached.isDone() && !cached.isCompletedExceptionally() ? cached.join() : null;
+        }
+        String url = offHeap != null ? offHeap.get(shortUrl) : null;
+        if (url != null) {
+            cache.put(shortUrl, CompletableFuture.completedFuture(url));
+        }
+        return url;
+    }
+
+    /**
+     * The last URL this node saw for the code, for when the store cannot be reached: the
+     * off-heap tier keeps entries past their TTL until it needs the room, unless they were
+     * invalidated. Codes the tier does not hold, and every code without the tier, have none.
+     *
+     * @return the URL, or null if none is held
+     */
+    public String getStale(String shortUrl) {
+        return offHeap != null ? offHeap.getStale(shortUrl) : null;
+    }
+
+    /**
+     * Loading lookup for callers that fetch asynchronously, after {@link #getIfPresent} missed.
+     * The pending entry is cached before the loader is called, so an invalidation that arrives
+     * during the fetch removes it and the URL fetched before the change is not cached. The
+     * loader's future completes with null when the code does not exist; that answer is cached too.
+     *
+     * @return the original URL, or null if the code does not exist
+     */
+    public CompletableFuture<String> getAsync(String shortUrl, Function<String, CompletableFuture<String>> loader) {
+        CompletableFuture<String> loading = new CompletableFuture<>();
+        CompletableFuture<String> cached = cache.asMap().putIfAbsent(shortUrl, loading);
+        if (cached == null) {
+            cached = loading;
+            loadAsync(shortUrl, loader, loading);
+        }
+        return cached.thenApply(url -> url == NOT_FOUND ? null : url);
+    }
+
+    /**
+     * The URLs held on the heap that the cache is most likely to keep, hottest first: Caffeine
+     * ranks them by how often their codes were looked up. Codes cached as missing are left out.
+     */
+    List<HotLinkSnapshot.Entry> hottest(int limit) {
+        return cache.synchronous().policy().eviction().orElseThrow().hottest(entries -> entries
+                .filter(entry -> entry.getValue() != NOT_FOUND)
+                .limit(limit)
+                .map(entry -> new HotLinkSnapshot.Entry(entry.getKey(), entry.getValue(), entry.expiresAfter().toMillis()))
+                .toList());
+    }
+
+    /**
+     * Caches URLs saved by {@link #hottest} for what is left of their lifetime after the given
+     * age, so they expire when they would have on the node that saved them. The caller checks
+     * that they are still current. Codes already cached keep their entry.
+     *
+     * @return the number of URLs cached
+     */
+    int preload(List<HotLinkSnapshot.Entry> entries, long ageMillis) {
+        Policy.VarExpiration<String, String> expiry = cache.synchronous().policy().expireVariably().orElseThrow();
+        int cached = 0;
+        for (HotLinkSnapshot.Entry entry : entries) {
+            long remaining = entry.expiresInMillis() - ageMillis;
+            if (remaining > 0 && expiry.putIfAbsent(entry.code(), entry.url(), Duration.ofMillis(remaining)) == null) {
+                cached++;
+            }
+        }
+        return cached;
+    }
+
+    public void invalidate(String shortUrl) {
+        cache.synchronous().invalidate(shortUrl);
+        if (offHeap != null) {
+            offHeap.remove(shortUrl);
+        }
+    }
+
+    public void invalidateAll(Collection<String> shortUrls) {
+        cache.synchronous().invalidateAll(shortUrls);
+        if (offHeap != null) {
+            shortUrls.forEach(offHeap::remove);
+        }
+    }
+
+    public long hitCount() {
+        return stats().hitCount();
+    }
+
+    public long missCount() {
+        return stats().missCount();
+    }
+
+    public CacheStats stats() {
+        return cache.synchronous().stats();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, METRICS_NAME);
+        if (offHeap != null) {
+            String name = METRICS_NAME + ".offHeap";
+            FunctionCounter.builder("cache.gets", offHeap, OffHeapUrlTier::hitCount)
+                    .tags("cache", name, "result", "hit")
+                    .register(registry);
+            FunctionCounter.builder("cache.gets", offHeap, OffHeapUrlTier::missCount)
+                    .tags("cache", name, "result", "miss")
+                    .register(registry);
+            Gauge.builder("cache.size", offHeap, OffHeapUrlTier::size)
+                    .tag("cache", name)
+                    .register(registry);
+        }
+    }
+
+    /**
+     * Adds a URL found in the store to the off-heap tier. An invalidation that raced the load
+     * has replaced or removed the Caffeine entry by the time this checks it, and whichever of
+     * the two ran last removes the tier entry, so a stale URL is never left behind.
+     */
+    private void fillOffHeap(String shortUrl, String url, CompletableFuture<String> entry) {
+        if (offHeap == null || url == NOT_FOUND) {
+            return;
+        }
+        offHeap.put(shortUrl, url);
+        if (cache.asMap().get(shortUrl) != entry) {
+            offHeap.remove(shortUrl);
+        }
+    }
+
+    private void loadAsync(String shortUrl, Function<String, CompletableFuture<String>> loader,
+                           CompletableFuture<String> loading) {
+        String url = offHeap != null ? offHeap.get(shortUrl) : null;
+        if (url != null) {
+            loading.complete(url);
+            return;
+        }
+        try {
+            loader.apply(shortUrl).whenComplete((loaded, e) -> {
+                if (e != null) {
+                    // Caffeine drops the failed entry so the next lookup retries
+                    loading.completeExceptionally(e);
+                    return;
+                }
+                String result = loaded != null ? loaded : NOT_FOUND;
+                fillOffHeap(shortUrl, result, loading);
+                loading.complete(result);
+            });
+        } catch (RuntimeException | Error e) {
+            loading.completeExceptionally(e);
+        }
+    }
+
+    // Rethrows a failed load as the exception the loader threw
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    public final class Lookup {
+        private final Function<String, String> mappingFunction;
+
+        private Lookup(Function<String, String> mappingFunction) {
+            this.mappingFunction = mappingFunction;
+        }
+
+        /**
+         * @return the original URL, or null if the code does not exist
+         */
+        public String get(String shortUrl) {
+            CompletableFuture<String> cached = cache.getIfPresent(shortUrl);
+            if (cached == null) {
+                CompletableFuture<String> loading = new CompletableFuture<>();
+                cached = cache.asMap().putIfAbsent(shortUrl, loading);
+                if (cached == null) {
+                    cached = loading;
+                    load(shortUrl, loading);
+                }
+            }
+            String url = join(cached);
+            return url == NOT_FOUND ? null : url;
+        }
+
+        private void load(String shortUrl, CompletableFuture<String> loading) {
+            try {
+                String url = offHeap != null ? offHeap.get(shortUrl) : null;
+                if (url == null) {
+                    url = mappingFunction.apply(shortUrl);
+                    fillOffHeap(shortUrl, url, loading);
+                }
+                loading.complete(url);
+            } catch (RuntimeException | Error e) {
+                // Caffeine drops the failed entry so the next lookup retries
+                loading.completeExceptionally(e);
+            }
+        }
+    }
+
+    private static final class LookupExpiry implements Expiry<String, String> {
+        private final long ttlNanos;
+        private final long negativeTtlNanos;
+
+        LookupExpiry(long ttlNanos, long negativeTtlNanos) {
+            this.ttlNanos = ttlNanos;
+            this.negativeTtlNanos = negativeTtlNanos;
+        }
+
+        @Override
+        public long expireAfterCreate(String code, String url, long currentTime) {
+            return url == NOT_FOUND ? negativeTtlNanos : ttlNanos;
+        }
+
+        @Override
+        public long expireAfterUpdate(String code, String url, long currentTime, long currentDuration) {
+            return expireAfterCreate(code, url, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String code, String url, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.urlshortener.config;
+
+import io.lettuce.core.metrics.MicrometerOptions;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class MetricsConfig {
+
+    /**
+     * Lettuce records the latency of every Redis command, tagged by command type,
+     * as lettuce.command.firstresponse and lettuce.command.completion.
+     * Publish them as histograms so Redis round-trip percentiles can be aggregated
+     * across replicas; per-connection tags stay off to bound cardinality.
+     */
+    @Bean
+    public MicrometerOptions lettuceMicrometerOptions() {
+        return MicrometerOptions.builder()
+                .histogram(true)
+                .localDistinction(false)
+                .build();
+    }
+}
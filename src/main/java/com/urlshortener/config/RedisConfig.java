@@ -1,15 +1,22 @@
 package com.urlshortener.config;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.urlshortener.cache.CacheInvalidationBus;
+import io.lettuce.core.ReadFrom;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.data.redis.LettuceClientConfigurationBuilderCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
+/**
+ * The topology is Spring Boot's: {@code spring.data.redis.host} for a single node or a primary
+ * with replicas, {@code spring.data.redis.sentinel.*} for Sentinel and
+ * {@code spring.data.redis.cluster.nodes} for Redis Cluster.
+ */
 @Configuration
 public class RedisConfig {
     @Bean
@@ -25,4 +32,29 @@ public class RedisConfig {
         
         return template;
     }
+
+    /**
+     * Sends read commands to replicas when {@code urlshortener.redis.read-from} names a Lettuce
+     * {@link ReadFrom} setting, such as replicaPreferred. A primary given as a single host is
+     * asked for its replicas; Sentinel and Cluster report theirs. Writes and scripts still go
+     * to the primary, and pub/sub keeps its own connection to the configured node.
+     */
+    @Bean
+    public LettuceClientConfigurationBuilderCustomizer readFromCustomizer(@Value("${urlshortener.redis.read-from:}") String readFrom) {
+        ReadFrom setting = readFrom.isEmpty() ? null : ReadFrom.valueOf(readFrom);
+        return builder -> {
+            if (setting != null) {
+                builder.readFrom(setting);
+            }
+        };
+    }
+
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                       CacheInvalidationBus invalidationBus) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(invalidationBus, new ChannelTopic(CacheInvalidationBus.CHANNEL));
+        return container;
+    }
 }
\ No newline at end of file
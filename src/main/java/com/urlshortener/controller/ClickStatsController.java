@@ -0,0 +1,73 @@
+package com.urlshortener.controller;
+
+import com.urlshortener.analytics.ClickStatsService;
+import com.urlshortener.analytics.TopLinksTracker;
+import com.urlshortener.model.ClickStats;
+import com.urlshortener.model.TopLinks;
+import com.urlshortener.model.VisitorStats;
+import com.urlshortener.service.UrlShortenerService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class ClickStatsController {
+
+    private final UrlShortenerService urlShortenerService;
+    private final ClickStatsService clickStatsService;
+    private final TopLinksTracker topLinksTracker;
+
+    public ClickStatsController(UrlShortenerService urlShortenerService, ClickStatsService clickStatsService,
+                                TopLinksTracker topLinksTracker) {
+        this.urlShortenerService = urlShortenerService;
+        this.clickStatsService = clickStatsService;
+        this.topLinksTracker = topLinksTracker;
+    }
+
+    /**
+     * Click totals, per-minute counts for the last {@code minutes} minutes and top referrers.
+     */
+    @GetMapping("/api/url/{shortUrl}/stats")
+    public ResponseEntity<ClickStats> getStats(@PathVariable String shortUrl,
+                                               @RequestParam(defaultValue = "60") int minutes) {
+        if (minutes < 1 || minutes > ClickStatsService.MAX_MINUTES) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (urlShortenerService.resolve(shortUrl) == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(clickStatsService.getStats(shortUrl, minutes));
+    }
+
+    /**
+     * Estimated unique visitors over the last {@code days} days, or all of the retention if 0.
+     * The estimate has a relative standard error of 0.81%.
+     */
+    @GetMapping("/api/url/{shortUrl}/visitors")
+    public ResponseEntity<VisitorStats> getVisitors(@PathVariable String shortUrl,
+                                                    @RequestParam(defaultValue = "0") int days) {
+        if (days < 0 || days > clickStatsService.maxDays()) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (urlShortenerService.resolve(shortUrl) == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(clickStatsService.getVisitors(shortUrl, days));
+    }
+
+    /**
+     * Most clicked links across all nodes over the last hour. Counts may exceed the
+     * true count by at most each link's maxOvercount, never fall below it.
+     */
+    @GetMapping("/api/stats/top")
+    public ResponseEntity<TopLinks> getTopLinks(@RequestParam(defaultValue = "100") int limit) {
+        if (limit < 1 || limit > TopLinksTracker.MAX_LIMIT) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(topLinksTracker.getTopLinks(limit));
+    }
+}
@@ -0,0 +1,72 @@
+package com.urlshortener.controller;
+
+import com.urlshortener.analytics.ClickStatsService;
+import com.urlshortener.analytics.TopLinksTracker;
+import com.urlshortener.model.ClickStats;
+import com.urlshortener.model.TopLinks;
+import com.urlshortener.model.VisitorStats;
+import com.urlshortener.service.ReactiveUrlShortenerService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.Callable;
+
+/**
+ * WebFlux version of {@link ClickStatsController}. Analytics are read with the
+ * blocking template, so every read is moved off the event loop.
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveClickStatsController {
+
+    private final ReactiveUrlShortenerService urlShortenerService;
+    private final ClickStatsService clickStatsService;
+    private final TopLinksTracker topLinksTracker;
+
+    public ReactiveClickStatsController(ReactiveUrlShortenerService urlShortenerService,
+                                        ClickStatsService clickStatsService, TopLinksTracker topLinksTracker) {
+        this.urlShortenerService = urlShortenerService;
+        this.clickStatsService = clickStatsService;
+        this.topLinksTracker = topLinksTracker;
+    }
+
+    @GetMapping("/api/url/{shortUrl}/stats")
+    public Mono<ResponseEntity<ClickStats>> getStats(@PathVariable String shortUrl,
+                                                     @RequestParam(defaultValue = "60") int minutes) {
+        if (minutes < 1 || minutes > ClickStatsService.MAX_MINUTES) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        return urlShortenerService.getOriginalUrl(shortUrl)
+                .flatMap(url -> blocking(() -> ResponseEntity.ok(clickStatsService.getStats(shortUrl, minutes))))
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/api/url/{shortUrl}/visitors")
+    public Mono<ResponseEntity<VisitorStats>> getVisitors(@PathVariable String shortUrl,
+                                                          @RequestParam(defaultValue = "0") int days) {
+        if (days < 0 || days > clickStatsService.maxDays()) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        return urlShortenerService.getOriginalUrl(shortUrl)
+                .flatMap(url -> blocking(() -> ResponseEntity.ok(clickStatsService.getVisitors(shortUrl, days))))
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/api/stats/top")
+    public Mono<ResponseEntity<TopLinks>> getTopLinks(@RequestParam(defaultValue = "100") int limit) {
+        if (limit < 1 || limit > TopLinksTracker.MAX_LIMIT) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        return blocking(() -> ResponseEntity.ok(topLinksTracker.getTopLinks(limit)));
+    }
+
+    private static <T> Mono<T> blocking(Callable<T> read) {
+        return Mono.fromCallable(read).subscribeOn(Schedulers.boundedElastic());
+    }
+}
@@ -0,0 +1,77 @@
+package com.urlshortener.controller;
+
+import com.urlshortener.analytics.ClickEventRecorder;
+import com.urlshortener.model.UrlMapping;
+import com.urlshortener.service.ReactiveUrlShortenerService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+
+/**
+ * WebFlux version of {@link UrlShortenerController}, active when the app runs
+ * as a reactive web application (profile "reactive").
+ */
+@RestController
+@RequestMapping("/api/url")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveUrlShortenerController {
+
+    private final ReactiveUrlShortenerService urlShortenerService;
+    private final ClickEventRecorder clickEventRecorder;
+
+    public ReactiveUrlShortenerController(ReactiveUrlShortenerService urlShortenerService,
+                                          ClickEventRecorder clickEventRecorder) {
+        this.urlShortenerService = urlShortenerService;
+        this.clickEventRecorder = clickEventRecorder;
+    }
+
+    @PostMapping("/shorten/random")
+    public Mono<ResponseEntity<UrlMapping>> shortenRandomURL(@RequestBody UrlRequest request) {
+        return urlShortenerService.createShortUrl(request.getUrl(), request.getOwner(),
+                        UrlShortenerController.ttl(request.getTtlSeconds()))
+                .map(ResponseEntity::ok)
+                .onErrorReturn(IllegalArgumentException.class, ResponseEntity.badRequest().build());
+    }
+
+    @PostMapping("/shorten/specific")
+    public Mono<ResponseEntity<UrlMapping>> shortenSpecifiedURL(@RequestBody SpecificUrlRequest request) {
+        return urlShortenerService.createSpecificShortUrl(request.getUrl(), request.getShortUrl(),
+                        request.getOwner(), UrlShortenerController.ttl(request.getTtlSeconds()))
+                .map(ResponseEntity::ok)
+                .onErrorReturn(IllegalArgumentException.class, ResponseEntity.badRequest().build());
+    }
+
+    @GetMapping("/{shortUrl}")
+    public Mono<ResponseEntity<UrlResponse>> getOriginalUrl(@PathVariable String shortUrl, ServerHttpRequest request) {
+        return urlShortenerService.getOriginalUrl(shortUrl)
+                .map(url -> {
+                    InetSocketAddress remoteAddress = request.getRemoteAddress();
+                    clickEventRecorder.record(shortUrl, request.getHeaders().getFirst(HttpHeaders.REFERER),
+                            remoteAddress != null && remoteAddress.getAddress() != null ? remoteAddress.getAddress().getHostAddress() : null,
+                            request.getHeaders().getFirst(HttpHeaders.USER_AGENT));
+                    return ResponseEntity.ok(new UrlResponse(url));
+                })
+                .defaultIfEmpty(ResponseEntity.badRequest().build());
+    }
+
+    @GetMapping("/{shortUrl}/info")
+    public Mono<ResponseEntity<UrlMapping>> getMapping(@PathVariable String shortUrl) {
+        return urlShortenerService.getMapping(shortUrl)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    @PutMapping("/replace")
+    public Mono<ResponseEntity<UrlMapping>> replaceShortUrl(@RequestBody ReplaceUrlRequest request) {
+        return urlShortenerService.getOriginalUrl(request.getOldShortUrl())
+                .switchIfEmpty(Mono.error(new IllegalArgumentException("Old short URL not found")))
+                .flatMap(originalUrl -> urlShortenerService.createSpecificShortUrl(originalUrl, request.getNewShortUrl()))
+                .map(ResponseEntity::ok)
+                .onErrorReturn(IllegalArgumentException.class, ResponseEntity.badRequest().build());
+    }
+}
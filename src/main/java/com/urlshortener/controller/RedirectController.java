@@ -0,0 +1,65 @@
+package com.urlshortener.controller;
+
+import com.urlshortener.analytics.ClickEventRecorder;
+import com.urlshortener.service.UrlShortenerService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Serves short links as real HTTP redirects.
+ * The handler writes the status and headers directly, so a cache hit involves
+ * no JSON encoding, no UrlMapping and no Optional. Clicks are counted in memory
+ * and written to Redis in the background.
+ */
+@Controller
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class RedirectController {
+    private static final Set<Integer> REDIRECT_STATUSES = Set.of(301, 302, 307, 308);
+
+    private final UrlShortenerService urlShortenerService;
+    private final ClickEventRecorder clickEventRecorder;
+    private final int redirectStatus;
+    private final String hitCacheControl;
+    private final String missCacheControl;
+
+    public RedirectController(UrlShortenerService urlShortenerService, ClickEventRecorder clickEventRecorder,
+                              @Value("${urlshortener.redirect.status:302}") int redirectStatus,
+                              @Value("${urlshortener.redirect.max-age:5m}") Duration maxAge,
+                              @Value("${urlshortener.redirect.miss-max-age:30s}") Duration missMaxAge) {
+        if (!REDIRECT_STATUSES.contains(redirectStatus)) {
+            throw new IllegalArgumentException("Unsupported redirect status: " + redirectStatus);
+        }
+        this.urlShortenerService = urlShortenerService;
+        this.clickEventRecorder = clickEventRecorder;
+        this.redirectStatus = redirectStatus;
+        // Permanent redirects may be cached by shared caches, temporary ones only by the client
+        String scope = redirectStatus == 301 || redirectStatus == 308 ? "public" : "private";
+        this.hitCacheControl = scope + ", max-age=" + maxAge.getSeconds();
+        this.missCacheControl = "public, max-age=" + missMaxAge.getSeconds();
+    }
+
+    @GetMapping("/{shortUrl}")
+    public void redirect(@PathVariable String shortUrl, HttpServletRequest request, HttpServletResponse response) {
+        String originalUrl = urlShortenerService.resolve(shortUrl);
+        if (originalUrl == null) {
+            response.setStatus(HttpStatus.NOT_FOUND.value());
+            response.setHeader(HttpHeaders.CACHE_CONTROL, missCacheControl);
+            return;
+        }
+        clickEventRecorder.record(shortUrl, request.getHeader(HttpHeaders.REFERER),
+                request.getRemoteAddr(), request.getHeader(HttpHeaders.USER_AGENT));
+        response.setStatus(redirectStatus);
+        response.setHeader(HttpHeaders.LOCATION, originalUrl);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, hitCacheControl);
+    }
+}
@@ -0,0 +1,32 @@
+package com.urlshortener.controller;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import java.time.Duration;
+
+/**
+ * Answers requests the store could not serve, because it failed, timed out or was not called
+ * while its circuit is open, with 503 and a Retry-After of the time the circuit stays open.
+ * Lookups that have a last-known-good copy never get here.
+ */
+@RestControllerAdvice
+public class StoreFailureHandler {
+    private final String retryAfterSeconds;
+
+    public StoreFailureHandler(@Value("${urlshortener.resilience.open-duration:5s}") Duration openDuration) {
+        this.retryAfterSeconds = Long.toString(Math.max(1, openDuration.toSeconds()));
+    }
+
+    @ExceptionHandler(DataAccessException.class)
+    public ResponseEntity<Void> storeUnavailable(DataAccessException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, retryAfterSeconds)
+                .build();
+    }
+}
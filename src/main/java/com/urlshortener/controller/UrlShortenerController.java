@@ -1,23 +1,67 @@
 package com.urlshortener.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.urlshortener.analytics.ClickEventRecorder;
+import com.urlshortener.model.BatchShortenResult;
 import com.urlshortener.model.UrlMapping;
+import com.urlshortener.ratelimit.RateLimiter;
 import com.urlshortener.service.UrlShortenerService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
 @RestController
 @RequestMapping("/api/url")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class UrlShortenerController {
 
     @Autowired
     private UrlShortenerService urlShortenerService;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ClickEventRecorder clickEventRecorder;
+
+    @Autowired(required = false)
+    private RateLimiter rateLimiter;
+
+    @Value("${urlshortener.ratelimit.api-key-header:X-API-Key}")
+    private String apiKeyHeader;
+
+    @Value("${urlshortener.batch.chunk-size:500}")
+    private int batchChunkSize;
+
+    @Value("${urlshortener.resolve.max-codes:10000}")
+    private int resolveMaxCodes;
+
     @PostMapping("/shorten/random")
     public ResponseEntity<UrlMapping> shortenRandomURL(@RequestBody UrlRequest request) {
         try {
-            UrlMapping mapping = urlShortenerService.createShortUrl(request.getUrl());
+            UrlMapping mapping = urlShortenerService.createShortUrl(request.getUrl(), request.getOwner(), ttl(request.getTtlSeconds()));
             return ResponseEntity.ok(mapping);
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().build();
@@ -27,20 +71,102 @@ public class UrlShortenerController {
     @PostMapping("/shorten/specific")
     public ResponseEntity<UrlMapping> shortenSpecifiedURL(@RequestBody SpecificUrlRequest request) {
         try {
-            UrlMapping mapping = urlShortenerService.createSpecificShortUrl(request.getUrl(), request.getShortUrl());
+            UrlMapping mapping = urlShortenerService.createSpecificShortUrl(request.getUrl(), request.getShortUrl(),
+                    request.getOwner(), ttl(request.getTtlSeconds()));
             return ResponseEntity.ok(mapping);
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().build();
         }
     }
 
+    /**
+     * Shortens a JSON array of URLs (strings or {"url": ...} objects).
+     * Both request and response are streamed: URLs are read and shortened in
+     * chunks, and each chunk's results are written before the next is read.
+     * <p>
+     * The first chunk is shortened before the status is sent, so a store that fails
+     * from the start gets an error status. Once the array is open, a chunk the store
+     * fails on is answered with a FAILED result per URL and the next chunk is tried,
+     * so the output can be partially successful but always has one result per URL.
+     * FAILED URLs may or may not have been shortened.
+     * <p>
+     * Each URL costs a rate limit token, the first one taken with the request. URLs of a
+     * chunk beyond the tokens the client has left, or all of them while load is shed, are
+     * not shortened and are answered REFUSED.
+     * <p>
+     * A URL that appears more than once gets a single code, also across chunks: the codes
+     * created so far are kept for the rest of the request, one entry per distinct URL.
+     */
+    @PostMapping(value = "/shorten/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public void shortenBatch(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(request.getInputStream())) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                response.sendError(HttpStatus.BAD_REQUEST.value());
+                return;
+            }
+            List<String> chunk = new ArrayList<>(batchChunkSize);
+            Map<String, String> created = new HashMap<>();
+            boolean more = readBatchChunk(parser, chunk);
+            List<BatchShortenResult> results = createShortUrls(chunk, admitBatchChunk(request, chunk, 1), created);
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            ObjectWriter writer = objectMapper.writerFor(BatchShortenResult.class)
+                    .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+                generator.writeStartArray();
+                writeBatchResults(writer, generator, results);
+                while (more) {
+                    more = readBatchChunk(parser, chunk);
+                    writeBatchResults(writer, generator, shortenBatchChunk(chunk, admitBatchChunk(request, chunk, 0), created));
+                }
+                generator.writeEndArray();
+            }
+        }
+    }
+
     @GetMapping("/{shortUrl}")
-    public ResponseEntity<UrlResponse> getOriginalUrl(@PathVariable String shortUrl) {
+    public ResponseEntity<UrlResponse> getOriginalUrl(@PathVariable String shortUrl, HttpServletRequest request) {
         return urlShortenerService.getOriginalUrl(shortUrl)
-                .map(url -> ResponseEntity.ok(new UrlResponse(url)))
+                .map(url -> {
+                    clickEventRecorder.record(shortUrl, request.getHeader(HttpHeaders.REFERER),
+                            request.getRemoteAddr(), request.getHeader(HttpHeaders.USER_AGENT));
+                    return ResponseEntity.ok(new UrlResponse(url));
+                })
                 .orElse(ResponseEntity.badRequest().build());
     }
 
+    /**
+     * The stored mapping with its timestamps, expiry, owner and hit count.
+     */
+    @GetMapping("/{shortUrl}/info")
+    public ResponseEntity<UrlMapping> getMapping(@PathVariable String shortUrl) {
+        return urlShortenerService.getMapping(shortUrl)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Resolves a JSON array of short codes in one request.
+     * Codes that do not exist are returned with a null url.
+     * A null body, a null code or more codes than the maximum are rejected.
+     */
+    @PostMapping("/resolve")
+    public ResponseEntity<List<ResolvedUrl>> resolveUrls(@RequestBody List<String> shortUrls) {
+        if (shortUrls == null || shortUrls.size() > resolveMaxCodes) {
+            return ResponseEntity.badRequest().build();
+        }
+        for (String shortUrl : shortUrls) {
+            if (shortUrl == null) {
+                return ResponseEntity.badRequest().build();
+            }
+        }
+        Map<String, String> originalUrls = urlShortenerService.getOriginalUrls(shortUrls);
+        List<ResolvedUrl> resolved = new ArrayList<>(shortUrls.size());
+        for (String shortUrl : shortUrls) {
+            resolved.add(new ResolvedUrl(shortUrl, originalUrls.get(shortUrl)));
+        }
+        return ResponseEntity.ok(resolved);
+    }
+
     @PutMapping("/replace")
     public ResponseEntity<UrlMapping> replaceShortUrl(@RequestBody ReplaceUrlRequest request) {
         try {
@@ -54,23 +180,145 @@ public class UrlShortenerController {
             return ResponseEntity.badRequest().build();
         }
     }
+
+    static Duration ttl(Long ttlSeconds) {
+        return ttlSeconds != null ? Duration.ofSeconds(ttlSeconds) : null;
+    }
+
+    private String readBatchUrl(JsonParser parser, JsonToken token) throws IOException {
+        if (token == JsonToken.VALUE_STRING) {
+            return parser.getText();
+        }
+        if (token == JsonToken.START_OBJECT) {
+            return parser.readValueAs(UrlRequest.class).getUrl();
+        }
+        parser.skipChildren();
+        return null;
+    }
+
+    /**
+     * Replaces the chunk's URLs with the next ones of the array, up to the chunk size.
+     *
+     * @return whether the array may hold more URLs
+     */
+    private boolean readBatchChunk(JsonParser parser, List<String> chunk) throws IOException {
+        chunk.clear();
+        while (chunk.size() < batchChunkSize) {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.END_ARRAY || token == null) {
+                return false;
+            }
+            chunk.add(readBatchUrl(parser, token));
+        }
+        return true;
+    }
+
+    /**
+     * Takes a rate limit token for each URL of the chunk beyond those already taken.
+     *
+     * @return how many of the chunk's URLs may be shortened
+     */
+    private int admitBatchChunk(HttpServletRequest request, List<String> chunk, int taken) {
+        if (rateLimiter == null || chunk.size() <= taken) {
+            return chunk.size();
+        }
+        if (rateLimiter.shouldShed()) {
+            return taken;
+        }
+        return taken + rateLimiter.tryAcquire(request.getHeader(apiKeyHeader), request.getRemoteAddr(),
+                chunk.size() - taken);
+    }
+
+    /**
+     * Shortens the first admitted URLs of the chunk and refuses the rest.
+     * URLs an earlier chunk created a code for are answered with that code instead of
+     * getting a second one, which would drop the first from the store.
+     *
+     * @param created the code of each URL created so far in the request, added to
+     */
+    private List<BatchShortenResult> createShortUrls(List<String> chunk, int admitted, Map<String, String> created) {
+        List<String> urls = chunk.subList(0, admitted);
+        boolean[] known = new boolean[admitted];
+        List<String> fresh = new ArrayList<>(admitted);
+        for (int i = 0; i < admitted; i++) {
+            known[i] = created.containsKey(urls.get(i));
+            if (!known[i]) {
+                fresh.add(urls.get(i));
+            }
+        }
+        Iterator<BatchShortenResult> freshResults = fresh.isEmpty()
+                ? Collections.emptyIterator()
+                : urlShortenerService.createShortUrls(fresh).iterator();
+
+        List<BatchShortenResult> results = new ArrayList<>(chunk.size());
+        for (int i = 0; i < admitted; i++) {
+            String url = urls.get(i);
+            if (known[i]) {
+                results.add(new BatchShortenResult(url, created.get(url), BatchShortenResult.Status.CREATED));
+                continue;
+            }
+            BatchShortenResult result = freshResults.next();
+            if (result.getStatus() == BatchShortenResult.Status.CREATED) {
+                created.putIfAbsent(url, result.getShortUrl());
+            }
+            results.add(result);
+        }
+        addBatchResults(results, chunk.subList(admitted, chunk.size()), BatchShortenResult.Status.REFUSED);
+        return results;
+    }
+
+    private List<BatchShortenResult> shortenBatchChunk(List<String> chunk, int admitted, Map<String, String> created) {
+        try {
+            return createShortUrls(chunk, admitted, created);
+        } catch (DataAccessException e) {
+            List<BatchShortenResult> results = new ArrayList<>(chunk.size());
+            addBatchResults(results, chunk.subList(0, admitted), BatchShortenResult.Status.FAILED);
+            addBatchResults(results, chunk.subList(admitted, chunk.size()), BatchShortenResult.Status.REFUSED);
+            return results;
+        }
+    }
+
+    private static void addBatchResults(List<BatchShortenResult> results, List<String> urls, BatchShortenResult.Status status) {
+        for (String url : urls) {
+            results.add(new BatchShortenResult(url, null, status));
+        }
+    }
+
+    private void writeBatchResults(ObjectWriter writer, JsonGenerator generator, List<BatchShortenResult> results) throws IOException {
+        for (BatchShortenResult result : results) {
+            writer.writeValue(generator, result);
+        }
+        generator.flush();
+    }
 }
 
 class UrlRequest {
     private String url;
+    private String owner;
+    private Long ttlSeconds;
     // Getters and setters
     public String getUrl() { return url; }
     public void setUrl(String url) { this.url = url; }
+    public String getOwner() { return owner; }
+    public void setOwner(String owner) { this.owner = owner; }
+    public Long getTtlSeconds() { return ttlSeconds; }
+    public void setTtlSeconds(Long ttlSeconds) { this.ttlSeconds = ttlSeconds; }
 }
 
 class SpecificUrlRequest {
     private String url;
     private String shortUrl;
+    private String owner;
+    private Long ttlSeconds;
     // Getters and setters
     public String getUrl() { return url; }
     public void setUrl(String url) { this.url = url; }
     public String getShortUrl() { return shortUrl; }
     public void setShortUrl(String shortUrl) { this.shortUrl = shortUrl; }
+    public String getOwner() { return owner; }
+    public void setOwner(String owner) { this.owner = owner; }
+    public Long getTtlSeconds() { return ttlSeconds; }
+    public void setTtlSeconds(Long ttlSeconds) { this.ttlSeconds = ttlSeconds; }
 }
 
 class UrlResponse {
@@ -82,6 +330,21 @@ class UrlResponse {
     public void setUrl(String url) { this.url = url; }
 }
 
+class ResolvedUrl {
+    private String shortUrl;
+    private String url;
+    // Constructor
+    public ResolvedUrl(String shortUrl, String url) {
+        this.shortUrl = shortUrl;
+        this.url = url;
+    }
+    // Getters and setters
+    public String getShortUrl() { return shortUrl; }
+    public void setShortUrl(String shortUrl) { this.shortUrl = shortUrl; }
+    public String getUrl() { return url; }
+    public void setUrl(String url) { this.url = url; }
+}
+
 class ReplaceUrlRequest {
     private String oldShortUrl;
     private String newShortUrl;
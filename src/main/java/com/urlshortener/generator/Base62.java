@@ -0,0 +1,26 @@
+package com.urlshortener.generator;
+
+/**
+ * Fixed-width base62 encoding of non-negative longs.
+ */
+public final class Base62 {
+    static final char[] ALPHABET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz".toCharArray();
+
+    private Base62() {
+    }
+
+    /**
+     * Encodes the value left-padded with '0' to the given width.
+     */
+    public static String encode(long value, int width) {
+        char[] chars = new char[width];
+        for (int i = width - 1; i >= 0; i--) {
+            chars[i] = ALPHABET[(int) (value % 62)];
+            value /= 62;
+        }
+        if (value != 0) {
+            throw new IllegalArgumentException("Value does not fit in " + width + " base62 characters");
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,43 @@
+package com.urlshortener.generator;
+
+/**
+ * Keyed bijection over the integers [0, 2^BITS). Consecutive inputs map to
+ * outputs that look unrelated, so sequential ids do not produce guessable codes.
+ */
+public final class FeistelPermutation {
+    // 2^46 - 1 < 62^8, so every output encodes to exactly eight base62 characters
+    public static final int BITS = 46;
+    private static final int HALF_BITS = BITS / 2;
+    private static final long HALF_MASK = (1L << HALF_BITS) - 1;
+    private static final int ROUNDS = 4;
+
+    private final long[] roundKeys = new long[ROUNDS];
+
+    public FeistelPermutation(long seed) {
+        long state = seed;
+        for (int i = 0; i < ROUNDS; i++) {
+            state += 0x9E3779B97F4A7C15L;
+            roundKeys[i] = mix(state);
+        }
+    }
+
+    public long apply(long value) {
+        if (value < 0 || value >>> BITS != 0) {
+            throw new IllegalArgumentException("Value out of range: " + value);
+        }
+        long left = value >>> HALF_BITS;
+        long right = value & HALF_MASK;
+        for (long key : roundKeys) {
+            long next = left ^ (mix(right ^ key) & HALF_MASK);
+            left = right;
+            right = next;
+        }
+        return (left << HALF_BITS) | right;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,26 @@
+package com.urlshortener.generator;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Random eight character base62 codes. Cheap, but may collide with existing codes,
+ * which the conditional write in the repository detects.
+ */
+@Component
+@ConditionalOnProperty(name = "urlshortener.id-generator.mode", havingValue = "random")
+public class RandomShortCodeGenerator implements ShortCodeGenerator {
+    private static final int CODE_LENGTH = 8;
+
+    @Override
+    public String next() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        char[] chars = new char[CODE_LENGTH];
+        for (int i = 0; i < CODE_LENGTH; i++) {
+            chars[i] = Base62.ALPHABET[random.nextInt(Base62.ALPHABET.length)];
+        }
+        return new String(chars);
+    }
+}
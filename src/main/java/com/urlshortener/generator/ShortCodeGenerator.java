@@ -0,0 +1,20 @@
+package com.urlshortener.generator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Produces candidate short codes for newly created mappings.
+ */
+public interface ShortCodeGenerator {
+
+    String next();
+
+    default List<String> next(int count) {
+        List<String> codes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            codes.add(next());
+        }
+        return codes;
+    }
+}
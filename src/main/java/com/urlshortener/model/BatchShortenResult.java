@@ -0,0 +1,20 @@
+package com.urlshortener.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchShortenResult {
+    /**
+     * FAILED: the store failed while the URL's chunk was written; it may or may not have been shortened.
+     * REFUSED: the client was out of rate limit tokens, or load was shed; it was not shortened.
+     */
+    public enum Status { CREATED, INVALID, FAILED, REFUSED }
+
+    private String url;
+    private String shortUrl;
+    private Status status;
+}
@@ -0,0 +1,27 @@
+package com.urlshortener.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ClickStats {
+    private String shortUrl;
+    private long total;
+    private List<MinuteClicks> minutes;
+    private Map<String, Long> referrers;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class MinuteClicks {
+        private Instant minute;
+        private long clicks;
+    }
+}
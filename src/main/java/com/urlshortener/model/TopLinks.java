@@ -0,0 +1,36 @@
+package com.urlshortener.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TopLinks {
+    private long windowSeconds;
+    private int nodes;
+    private long totalClicks;
+    /**
+     * Upper bound on any link's overcount: totalClicks / sketch capacity.
+     */
+    private long maxError;
+    private List<Link> links;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Link {
+        private String shortUrl;
+        /**
+         * Never below the true count.
+         */
+        private long clicks;
+        /**
+         * clicks - maxOvercount is never above the true count.
+         */
+        private long maxOvercount;
+    }
+}
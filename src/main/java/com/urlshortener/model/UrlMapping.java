@@ -9,6 +9,9 @@ public class UrlMapping {
     private String shortUrl;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
+    private LocalDateTime expiresAt;
+    private String owner;
+    private long hitCount;
 
     public UrlMapping() {
         this.createdAt = LocalDateTime.now();
@@ -20,4 +23,17 @@ public class UrlMapping {
         this.originalUrl = originalUrl;
         this.shortUrl = shortUrl;
     }
+
+    /**
+     * A mapping as stored, keeping its own timestamps instead of the current time.
+     */
+    public UrlMapping(String originalUrl, String shortUrl, LocalDateTime createdAt, LocalDateTime updatedAt,
+                      LocalDateTime expiresAt, String owner) {
+        this.originalUrl = originalUrl;
+        this.shortUrl = shortUrl;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+        this.expiresAt = expiresAt;
+        this.owner = owner;
+    }
 } 
\ No newline at end of file
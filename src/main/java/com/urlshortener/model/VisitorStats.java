@@ -0,0 +1,21 @@
+package com.urlshortener.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VisitorStats {
+    private String shortUrl;
+    /**
+     * Number of days counted, or 0 for the whole retention period.
+     */
+    private int days;
+    private long uniqueVisitors;
+    /**
+     * Standard error of uniqueVisitors relative to the true count.
+     */
+    private double relativeStandardError;
+}
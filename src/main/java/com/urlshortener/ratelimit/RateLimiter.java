@@ -0,0 +1,317 @@
+package com.urlshortener.ratelimit;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Admission control for the create endpoints: a token bucket per client address and per API
+ * key, and load shedding while Redis is slow. Redirects and lookups never pass through here.
+ * <p>
+ * Buckets are checked in memory with a CAS each ({@link TokenBucket}), so admitting a request
+ * costs no Redis call. Every sync interval the tokens each node took are added to a shared
+ * counter per client with pipelined INCRBYs, and the increase the other nodes made since the
+ * last sync is charged to the local bucket. A client spreading its requests over several nodes
+ * is thus held to its limit to within one interval's worth of requests per node. Full buckets
+ * that took nothing since the last sync are dropped, and the number of clients tracked is bounded.
+ * <p>
+ * API keys are not authenticated here, so a key never raises a client's allowance: the address
+ * limit applies to every request, and the key limit in addition when a key is sent. Shared
+ * counters hold a hash of the key rather than the key itself. A key only gets a bucket once
+ * the address limit has admitted the request, so rotating keys fills the table no faster than
+ * the address allows.
+ * <p>
+ * Addresses beyond the bound share one bucket. Keys beyond it get none and are held to their
+ * address limit only: were they to share a bucket too, a client sending a new key with every
+ * request could fill the table and then exhaust the shared bucket, refusing every new key of
+ * every other client. The cost is that while the table is full, a new key used from several
+ * addresses is not limited across them.
+ * <p>
+ * A request costs one token. The batch endpoint then takes one per further URL it shortens,
+ * so a client cannot create more mappings by packing them into one request.
+ * <p>
+ * The sync round trips double as a Redis latency probe (a PING when no client is active).
+ * While their smoothed latency is above the shed threshold, or the last sync failed, creates
+ * are refused outright, so the writes already queued at Redis drain and redirects stay fast.
+ */
+@Component
+@ConditionalOnExpression("${urlshortener.ratelimit.enabled:true}")
+public class RateLimiter implements MeterBinder {
+    static final String NAMESPACE = "ratelimit:";
+    static final String ADDRESS = "address";
+    static final String API_KEY = "api-key";
+    static final String OTHER_CLIENTS = "other";
+    private static final long SHARED_TTL_SECONDS = 60;
+    private static final int CLIENTS_PER_PIPELINE = 500;
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final Limit addressLimit;
+    private final Limit keyLimit;
+    private final int maxClients;
+    private final long shedLatencyNanos;
+    private final LongAdder shed = new LongAdder();
+    private volatile long latencyNanos;
+    private volatile boolean syncFailed;
+    private boolean probed;
+
+    public RateLimiter(RedisTemplate<String, String> redisTemplate,
+                       @Value("${urlshortener.ratelimit.address.rate:10}") double addressRate,
+                       @Value("${urlshortener.ratelimit.address.burst:50}") int addressBurst,
+                       @Value("${urlshortener.ratelimit.api-key.rate:10}") double keyRate,
+                       @Value("${urlshortener.ratelimit.api-key.burst:50}") int keyBurst,
+                       @Value("${urlshortener.ratelimit.max-clients:100000}") int maxClients,
+                       @Value("${urlshortener.ratelimit.shed-latency:50ms}") Duration shedLatency) {
+        this.redisTemplate = redisTemplate;
+        this.addressLimit = new Limit(ADDRESS, addressRate, addressBurst, true);
+        this.keyLimit = new Limit(API_KEY, keyRate, keyBurst, false);
+        this.maxClients = maxClients;
+        this.shedLatencyNanos = shedLatency.toNanos();
+    }
+
+    /**
+     * Takes a token from the client's buckets.
+     *
+     * @param apiKey the client's API key, or null
+     * @param clientAddress the client's IP address, or null
+     * @return 0 if the request is admitted, otherwise the nanoseconds until it would be
+     */
+    public long tryAcquire(String apiKey, String clientAddress) {
+        long now = System.nanoTime();
+        long wait = addressLimit.tryTake(clientAddress != null ? clientAddress : OTHER_CLIENTS, now);
+        if (wait == 0 && apiKey != null && !apiKey.isEmpty()) {
+            TokenBucket key = keyLimit.bucket(apiKey, now);
+            if (key != null) {
+                wait = keyLimit.tryTake(key, now);
+            }
+        }
+        return wait;
+    }
+
+    /**
+     * Takes up to the given number of tokens from the client's buckets, for requests that
+     * create several mappings.
+     *
+     * @return the number of tokens taken, which is how many of the mappings may be created
+     */
+    public int tryAcquire(String apiKey, String clientAddress, int tokens) {
+        long now = System.nanoTime();
+        TokenBucket address = addressLimit.bucket(clientAddress != null ? clientAddress : OTHER_CLIENTS, now);
+        int granted = addressLimit.takeUpTo(address, tokens, now);
+        TokenBucket key = granted > 0 && apiKey != null && !apiKey.isEmpty() ? keyLimit.bucket(apiKey, now) : null;
+        if (key != null) {
+            int byKey = keyLimit.takeUpTo(key, granted, now);
+            if (byKey < granted) {
+                address.giveBack(granted - byKey);
+            }
+            granted = byKey;
+        }
+        return granted;
+    }
+
+    /**
+     * @return whether creates are refused because Redis is slow or unreachable; each call that
+     *         returns true is counted as a shed request
+     */
+    public boolean shouldShed() {
+        if (syncFailed || (shedLatencyNanos > 0 && latencyNanos > shedLatencyNanos)) {
+            shed.increment();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Reports the tokens taken here to the shared counters, charges what other nodes took, and
+     * measures the Redis round trip.
+     */
+    @Scheduled(fixedDelayString = "${urlshortener.ratelimit.sync-interval-ms:200}")
+    public void sync() {
+        long now = System.nanoTime();
+        List<Pending> pending = new ArrayList<>();
+        addressLimit.collect(now, pending);
+        keyLimit.collect(now, pending);
+        int reported = 0;
+        try {
+            if (pending.isEmpty()) {
+                long start = System.nanoTime();
+                redisTemplate.execute((RedisCallback<String>) connection -> connection.ping());
+                recordLatency(System.nanoTime() - start);
+            }
+            for (int from = 0; from < pending.size(); from += CLIENTS_PER_PIPELINE) {
+                List<Pending> chunk = pending.subList(from, Math.min(from + CLIENTS_PER_PIPELINE, pending.size()));
+                long start = System.nanoTime();
+                List<Object> replies = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                    for (Pending client : chunk) {
+                        connection.stringCommands().incrBy(client.key, client.taken);
+                        connection.keyCommands().expire(client.key, SHARED_TTL_SECONDS);
+                    }
+                    return null;
+                });
+                recordLatency(System.nanoTime() - start);
+                long chargedAt = System.nanoTime();
+                for (int i = 0; i < chunk.size(); i++) {
+                    reconcile(chunk.get(i), (Long) replies.get(2 * i), chargedAt);
+                }
+                reported += chunk.size();
+            }
+            syncFailed = false;
+        } catch (DataAccessException e) {
+            // Tokens not yet reported are reported on the next sync
+            for (Pending client : pending.subList(reported, pending.size())) {
+                client.bucket.restoreTaken(client.taken);
+            }
+            syncFailed = true;
+        }
+    }
+
+    /**
+     * @return the whole seconds to send in Retry-After for a wait, at least 1
+     */
+    public static long retryAfterSeconds(long waitNanos) {
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999L));
+    }
+
+    /**
+     * @return whether the request creates mappings, and so is subject to admission control
+     */
+    public static boolean isCreate(String method, String path) {
+        return ("POST".equals(method) && path.startsWith("/api/url/shorten/"))
+                || ("PUT".equals(method) && path.equals("/api/url/replace"));
+    }
+
+    static void reconcile(Pending client, long total, long now) {
+        TokenBucket bucket = client.bucket;
+        if (bucket.sharedTotal >= 0) {
+            long expected = bucket.sharedTotal + client.taken;
+            // A counter that expired and started over holds only what was added since
+            bucket.charge(total >= expected ? total - expected : total - client.taken, now);
+        }
+        bucket.sharedTotal = total;
+    }
+
+    long latencyNanos() {
+        return latencyNanos;
+    }
+
+    private void recordLatency(long sample) {
+        // The first round trip also opens the connection, so it says nothing about Redis
+        if (!probed) {
+            probed = true;
+            return;
+        }
+        long previous = latencyNanos;
+        latencyNanos = previous == 0 ? sample : previous + (sample - previous) / 4;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (Limit limit : List.of(addressLimit, keyLimit)) {
+            FunctionCounter.builder("urlshortener.ratelimit.rejected", limit.rejected, LongAdder::sum)
+                    .description("Create requests refused because a client's limit was reached")
+                    .tag("limit", limit.kind)
+                    .register(registry);
+            Gauge.builder("urlshortener.ratelimit.clients", limit.buckets, Map::size)
+                    .description("Clients with a token bucket on this node")
+                    .tag("limit", limit.kind)
+                    .register(registry);
+        }
+        FunctionCounter.builder("urlshortener.ratelimit.shed", shed, LongAdder::sum)
+                .description("Create requests refused while Redis was slow or unreachable")
+                .register(registry);
+        TimeGauge.builder("urlshortener.ratelimit.redis-latency", this, TimeUnit.NANOSECONDS, RateLimiter::latencyNanos)
+                .description("Smoothed Redis round trip measured by the rate limit sync")
+                .register(registry);
+    }
+
+    static String sharedKey(String kind, String client) {
+        // FNV-1a with the MurmurHash3 finalizer, so keys of any length map to short Redis keys
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < client.length(); i++) {
+            hash = (hash ^ client.charAt(i)) * 0x100000001b3L;
+        }
+        hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+        hash = (hash ^ (hash >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return NAMESPACE + kind + ":" + Long.toHexString(hash ^ (hash >>> 33));
+    }
+
+    private final class Limit {
+        final String kind;
+        final double rate;
+        final int burst;
+        final boolean sharedWhenFull;
+        final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+        final LongAdder rejected = new LongAdder();
+
+        Limit(String kind, double rate, int burst, boolean sharedWhenFull) {
+            this.kind = kind;
+            this.rate = rate;
+            this.burst = burst;
+            this.sharedWhenFull = sharedWhenFull;
+        }
+
+        /**
+         * @return the client's bucket; once the table is full, the bucket shared by the clients
+         *         beyond the bound, or null if this kind has none
+         */
+        TokenBucket bucket(String client, long now) {
+            TokenBucket bucket = buckets.get(client);
+            if (bucket == null) {
+                String id = buckets.size() < maxClients ? client : sharedWhenFull ? OTHER_CLIENTS : null;
+                bucket = id != null ? buckets.computeIfAbsent(id, key -> new TokenBucket(rate, burst, now)) : null;
+            }
+            return bucket;
+        }
+
+        long tryTake(String client, long now) {
+            return tryTake(bucket(client, now), now);
+        }
+
+        long tryTake(TokenBucket bucket, long now) {
+            long wait = bucket.tryTake(now);
+            if (wait > 0) {
+                rejected.increment();
+            }
+            return wait;
+        }
+
+        int takeUpTo(TokenBucket bucket, int tokens, long now) {
+            int granted = bucket.takeUpTo(tokens, now);
+            rejected.add(tokens - granted);
+            return granted;
+        }
+
+        void collect(long now, List<Pending> pending) {
+            for (Map.Entry<String, TokenBucket> entry : buckets.entrySet()) {
+                TokenBucket bucket = entry.getValue();
+                long taken = bucket.drainTaken();
+                if (taken == 0 && bucket.isFull(now)) {
+                    // A token taken between the two checks is lost, which only ever lets a client have one more
+                    buckets.remove(entry.getKey(), bucket);
+                    continue;
+                }
+                pending.add(new Pending(sharedKey(kind, entry.getKey()).getBytes(StandardCharsets.UTF_8), bucket, taken));
+            }
+        }
+    }
+
+    record Pending(byte[] key, TokenBucket bucket, long taken) {
+    }
+}
@@ -0,0 +1,57 @@
+package com.urlshortener.ratelimit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+
+/**
+ * WebFlux version of {@link RateLimitFilter}.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@ConditionalOnExpression("${urlshortener.ratelimit.enabled:true}")
+public class ReactiveRateLimitFilter implements WebFilter {
+    private final RateLimiter rateLimiter;
+    private final String apiKeyHeader;
+
+    public ReactiveRateLimitFilter(RateLimiter rateLimiter,
+                                   @Value("${urlshortener.ratelimit.api-key-header:X-API-Key}") String apiKeyHeader) {
+        this.rateLimiter = rateLimiter;
+        this.apiKeyHeader = apiKeyHeader;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        if (!RateLimiter.isCreate(request.getMethod().name(), request.getPath().pathWithinApplication().value())) {
+            return chain.filter(exchange);
+        }
+        if (rateLimiter.shouldShed()) {
+            return refuse(exchange.getResponse(), HttpStatus.SERVICE_UNAVAILABLE, 1);
+        }
+        InetSocketAddress remoteAddress = request.getRemoteAddress();
+        long wait = rateLimiter.tryAcquire(request.getHeaders().getFirst(apiKeyHeader),
+                remoteAddress != null && remoteAddress.getAddress() != null ? remoteAddress.getAddress().getHostAddress() : null);
+        if (wait > 0) {
+            return refuse(exchange.getResponse(), HttpStatus.TOO_MANY_REQUESTS, RateLimiter.retryAfterSeconds(wait));
+        }
+        return chain.filter(exchange);
+    }
+
+    private static Mono<Void> refuse(ServerHttpResponse response, HttpStatus status, long retryAfterSeconds) {
+        response.setStatusCode(status);
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+        return response.setComplete();
+    }
+}
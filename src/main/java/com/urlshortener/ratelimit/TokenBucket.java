@@ -0,0 +1,115 @@
+package com.urlshortener.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket held in a single {@link AtomicLong}, so taking a token is a read and a CAS.
+ * <p>
+ * Stored as the time the bucket will next be full (the GCRA form of a token bucket): each
+ * token taken moves that time one interval later, and the bucket is empty while it lies more
+ * than a burst of intervals ahead. Refill needs no timer and no second field.
+ * <p>
+ * Tokens taken here are also counted until {@link #drainTaken()} collects them for the
+ * reconciliation with other nodes, whose consumption is then charged with {@link #charge(long, long)}.
+ */
+final class TokenBucket {
+    private final long intervalNanos;
+    private final int burst;
+    private final long burstNanos;
+    private final AtomicLong fullAt;
+    private final AtomicLong taken = new AtomicLong();
+    // Total of the client's shared counter as of the last reconciliation, -1 before the first
+    long sharedTotal = -1;
+
+    /**
+     * @param ratePerSecond tokens added per second
+     * @param burst tokens the bucket holds when full
+     */
+    TokenBucket(double ratePerSecond, int burst, long now) {
+        this.intervalNanos = Math.max(1, (long) (1_000_000_000L / ratePerSecond));
+        this.burst = burst;
+        this.burstNanos = intervalNanos * burst;
+        this.fullAt = new AtomicLong(now);
+    }
+
+    /**
+     * @return 0 if a token was taken, otherwise the nanoseconds until one is available
+     */
+    long tryTake(long now) {
+        while (true) {
+            long current = fullAt.get();
+            long next = Math.max(current, now) + intervalNanos;
+            long wait = next - now - burstNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                taken.incrementAndGet();
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Takes as many of the tokens as the bucket holds.
+     *
+     * @return the number of tokens taken
+     */
+    int takeUpTo(int tokens, long now) {
+        while (true) {
+            long current = fullAt.get();
+            long start = Math.max(current, now);
+            int granted = (int) Math.min(tokens, Math.max(0, (now + burstNanos - start) / intervalNanos));
+            if (granted == 0) {
+                return 0;
+            }
+            if (fullAt.compareAndSet(current, start + granted * intervalNanos)) {
+                taken.addAndGet(granted);
+                return granted;
+            }
+        }
+    }
+
+    /**
+     * Puts back tokens taken but not used. The bucket never holds more than a burst, so
+     * returning tokens it has since refilled loses them.
+     */
+    void giveBack(int tokens) {
+        fullAt.addAndGet(-tokens * intervalNanos);
+        taken.addAndGet(-tokens);
+    }
+
+    /**
+     * Takes tokens consumed elsewhere. The bucket may go into debt, by at most one burst,
+     * which holds the client back until the shared rate has caught up.
+     */
+    void charge(long tokens, long now) {
+        if (tokens <= 0) {
+            return;
+        }
+        long limit = now + 2 * burstNanos;
+        long debt = Math.min(tokens, 2L * burst) * intervalNanos;
+        fullAt.updateAndGet(current -> Math.min(limit, Math.max(current, now) + debt));
+    }
+
+    /**
+     * @return the tokens taken here since the last call
+     */
+    long drainTaken() {
+        return taken.getAndSet(0);
+    }
+
+    /**
+     * Counts tokens again that could not be reported, so the next reconciliation reports them.
+     */
+    void restoreTaken(long tokens) {
+        taken.addAndGet(tokens);
+    }
+
+    /**
+     * @return whether the bucket is full, so dropping it loses nothing
+     */
+    boolean isFull(long now) {
+        return fullAt.get() - now <= 0;
+    }
+}
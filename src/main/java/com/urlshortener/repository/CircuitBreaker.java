@@ -0,0 +1,100 @@
+package com.urlshortener.repository;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Stops calls to a failing dependency so that they fail at once instead of each waiting out
+ * its timeout.
+ * <p>
+ * Closed, calls are counted in fixed windows; once a window has seen enough calls and the
+ * failure rate reaches the threshold, the circuit opens. Open, every call is refused until
+ * the open duration has passed; the next call is then let through alone as a probe (half
+ * open), and closes the circuit if it succeeds or opens it again if it fails. Calls that
+ * finish while another state is current are not counted, so a late answer from before the
+ * circuit opened neither closes nor reopens it.
+ * <p>
+ * The state and window are swapped with CASes and counted with {@link LongAdder}s, so
+ * callers never take a lock.
+ */
+final class CircuitBreaker {
+    enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long windowNanos;
+    private final long openNanos;
+    private final AtomicReference<Phase> phase;
+
+    /**
+     * @param minimumCalls calls a window must have seen before its failure rate counts
+     * @param failureRateThreshold the share of failed calls, from 0 to 1, that opens the circuit
+     */
+    CircuitBreaker(int minimumCalls, double failureRateThreshold, long windowNanos, long openNanos) {
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.windowNanos = windowNanos;
+        this.openNanos = openNanos;
+        this.phase = new AtomicReference<>(new Phase(State.CLOSED, System.nanoTime()));
+    }
+
+    /**
+     * @return the phase the call runs in, to pass to {@link #onSuccess} or {@link #onFailure},
+     *         or null if the call is refused
+     */
+    Phase tryAcquire() {
+        Phase current = phase.get();
+        if (current.state == State.CLOSED) {
+            long now = System.nanoTime();
+            if (now - current.since >= windowNanos) {
+                // Start a new window; whichever caller wins the swap, the others count in it
+                phase.compareAndSet(current, new Phase(State.CLOSED, now));
+                current = phase.get();
+            }
+            return current;
+        }
+        // A probe that never reported back is replaced after as long again
+        if (current.state != State.CLOSED && System.nanoTime() - current.since >= openNanos) {
+            Phase probe = new Phase(State.HALF_OPEN, System.nanoTime());
+            return phase.compareAndSet(current, probe) ? probe : null;
+        }
+        return null;
+    }
+
+    void onSuccess(Phase acquired) {
+        if (acquired.state == State.HALF_OPEN) {
+            phase.compareAndSet(acquired, new Phase(State.CLOSED, System.nanoTime()));
+            return;
+        }
+        acquired.calls.increment();
+    }
+
+    void onFailure(Phase acquired) {
+        if (acquired.state == State.HALF_OPEN) {
+            phase.compareAndSet(acquired, new Phase(State.OPEN, System.nanoTime()));
+            return;
+        }
+        acquired.failures.increment();
+        acquired.calls.increment();
+        long calls = acquired.calls.sum();
+        if (calls >= minimumCalls && acquired.failures.sum() >= failureRateThreshold * calls) {
+            phase.compareAndSet(acquired, new Phase(State.OPEN, System.nanoTime()));
+        }
+    }
+
+    State state() {
+        return phase.get().state;
+    }
+
+    static final class Phase {
+        final State state;
+        final long since;
+        final LongAdder calls = new LongAdder();
+        final LongAdder failures = new LongAdder();
+
+        Phase(State state, long since) {
+            this.state = state;
+            this.since = since;
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package com.urlshortener.repository;
+
+import com.urlshortener.model.UrlMapping;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Mapping writes for Redis Cluster. A code's forward bucket and its URL's reverse bucket are
+ * picked by different hashes, so they are generally in different slots, often on different
+ * nodes, and no hash tag can bring them together short of putting every mapping in one slot.
+ * The scripts of {@link RedisUrlRepository} touch both, which a cluster rejects.
+ * <p>
+ * Here each write is a sequence of single-bucket scripts (scripts/cluster), ordered so that
+ * the forward entry stays the source of truth: a save claims the code, then points the URL's
+ * reverse entry at it, then removes the entries it displaced, each only if it still names
+ * what it did. A reverse entry is only a candidate that readers confirm against the forward
+ * entry, so a read in between sees the old mapping or the new one. A node failing between
+ * the steps can leave a code without its reverse entry, after which the same URL may be given
+ * a second code, or a reverse entry without its code, which the sweeper removes.
+ * <p>
+ * Each step runs for a whole batch in one pipeline, which Lettuce splits by node, so a batch
+ * takes at most three round trips whatever its size.
+ */
+final class ClusterMappingWriter {
+    static final RedisScript<String> CLAIM_SCRIPT = script("claim_code");
+    static final RedisScript<String> LINK_SCRIPT = script("link_url");
+    static final RedisScript<String> UNLINK_SCRIPT = script("unlink_url");
+    static final RedisScript<String> DROP_SCRIPT = script("drop_code");
+    static final RedisScript<String> REFRESH_SCRIPT = script("refresh_code");
+    static final RedisScript<String> EXTEND_SCRIPT = script("extend_ttl");
+    static final RedisScript<String> SWEEP_SCRIPT = script("sweep_codes");
+    private static final List<RedisScript<String>> SCRIPTS = List.of(
+            CLAIM_SCRIPT, LINK_SCRIPT, UNLINK_SCRIPT, DROP_SCRIPT, REFRESH_SCRIPT, EXTEND_SCRIPT, SWEEP_SCRIPT);
+
+    private final RedisTemplate<String, String> redisTemplate;
+
+    ClusterMappingWriter(RedisTemplate<String, String> redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    static boolean isCluster(Object connectionFactory) {
+        return connectionFactory instanceof LettuceConnectionFactory factory && factory.isClusterAware();
+    }
+
+    /**
+     * Writes the mappings as save_mapping.lua does, dropping the code previously mapped to each URL.
+     *
+     * @return for each mapping, in order: null if its code was taken and nothing was written,
+     *         otherwise the code previously mapped to its URL, now removed, or an empty string
+     */
+    List<String> saveAll(List<UrlMapping> mappings, long defaultTtlSeconds, boolean onlyIfAbsent) {
+        long now = RedisUrlRepository.nowEpochSecond();
+        List<byte[]> digests = new ArrayList<>(mappings.size());
+        List<byte[][]> args = new ArrayList<>(mappings.size());
+        for (UrlMapping mapping : mappings) {
+            byte[] digest = MappingKeys.digest(mapping.getOriginalUrl());
+            digests.add(digest);
+            args.add(RedisUrlRepository.saveArgs(mapping, digest, defaultTtlSeconds, onlyIfAbsent, now));
+        }
+
+        List<Object> replaced = pipeline(connection -> {
+            for (byte[][] arg : args) {
+                eval(connection, CLAIM_SCRIPT, ReturnType.VALUE, MappingKeys.forwardKey(arg[0]), arg);
+            }
+        });
+        List<Integer> claimed = new ArrayList<>();
+        for (int i = 0; i < mappings.size(); i++) {
+            if (replaced.get(i) != null) {
+                claimed.add(i);
+            }
+        }
+        List<Object> previous = pipeline(connection -> {
+            for (int i : claimed) {
+                byte[] digest = digests.get(i);
+                eval(connection, LINK_SCRIPT, ReturnType.VALUE, MappingKeys.reverseKey(digest),
+                        MappingKeys.reverseField(digest), args.get(i)[0], args.get(i)[2]);
+            }
+        });
+
+        // The claimed index of each drop, and -1 for each unlink, in the order they are sent
+        List<Integer> cleanup = new ArrayList<>();
+        List<Object> cleaned = pipeline(connection -> {
+            for (int c = 0; c < claimed.size(); c++) {
+                int i = claimed.get(c);
+                byte[] code = args.get(i)[0];
+                byte[] old = (byte[]) replaced.get(i);
+                if (old.length > 0 && !MappingCodec.hasDigest(old, digests.get(i))) {
+                    byte[] oldDigest = MappingCodec.digest(old);
+                    eval(connection, UNLINK_SCRIPT, ReturnType.INTEGER, MappingKeys.reverseKey(oldDigest),
+                            MappingKeys.reverseField(oldDigest), code);
+                    cleanup.add(-1);
+                }
+                byte[] previousCode = (byte[]) previous.get(c);
+                if (previousCode.length > 0) {
+                    eval(connection, DROP_SCRIPT, ReturnType.VALUE, MappingKeys.forwardKey(previousCode),
+                            previousCode, digests.get(i));
+                    cleanup.add(c);
+                }
+            }
+        });
+
+        List<String> results = new ArrayList<>(mappings.size());
+        for (Object value : replaced) {
+            results.add(value != null ? "" : null);
+        }
+        for (int r = 0; r < cleanup.size(); r++) {
+            int c = cleanup.get(r);
+            if (c >= 0 && cleaned.get(r) != null) {
+                results.set(claimed.get(c), new String((byte[]) previous.get(c), StandardCharsets.UTF_8));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * @return whether the code existed
+     */
+    boolean delete(String shortUrl) {
+        byte[] code = RedisUrlRepository.bytes(shortUrl);
+        byte[] value = (byte[]) pipeline(connection -> eval(connection, DROP_SCRIPT, ReturnType.VALUE,
+                MappingKeys.forwardKey(code), code, new byte[0])).get(0);
+        if (value == null) {
+            return false;
+        }
+        byte[] digest = MappingCodec.digest(value);
+        pipeline(connection -> eval(connection, UNLINK_SCRIPT, ReturnType.INTEGER,
+                MappingKeys.reverseKey(digest), MappingKeys.reverseField(digest), code));
+        return true;
+    }
+
+    /**
+     * Refreshes each code as refresh_expiry.lua does, then pushes back the expiry of the reverse
+     * buckets touched, once per bucket.
+     *
+     * @return the number of codes whose expiry was moved
+     */
+    int refreshExpiry(Collection<String> shortUrls, long minExtensionSeconds) {
+        byte[] now = RedisUrlRepository.bytes(String.valueOf(RedisUrlRepository.nowEpochSecond()));
+        byte[] minExtension = RedisUrlRepository.bytes(String.valueOf(minExtensionSeconds));
+        List<Object> results = pipeline(connection -> {
+            for (String shortUrl : shortUrls) {
+                byte[] code = RedisUrlRepository.bytes(shortUrl);
+                eval(connection, REFRESH_SCRIPT, ReturnType.MULTI, MappingKeys.forwardKey(code), code, now, minExtension);
+            }
+        });
+        Map<String, Long> reverseTtls = new HashMap<>();
+        int refreshed = 0;
+        for (Object result : results) {
+            List<?> reverseTtl = (List<?>) result;
+            if (!reverseTtl.isEmpty()) {
+                reverseTtls.merge(new String((byte[]) reverseTtl.get(0), StandardCharsets.UTF_8), (Long) reverseTtl.get(1), Math::max);
+                refreshed++;
+            }
+        }
+        if (!reverseTtls.isEmpty()) {
+            pipeline(connection -> reverseTtls.forEach((key, ttl) ->
+                    eval(connection, EXTEND_SCRIPT, ReturnType.INTEGER, key, RedisUrlRepository.bytes(String.valueOf(ttl)))));
+        }
+        return refreshed;
+    }
+
+    /**
+     * Sweeps the bucket pairs as sweep_bucket.lua does: expired codes are removed by a script on
+     * their forward bucket, while orphaned reverse entries are found by reading the codes they
+     * name and removed only if they still name the same code.
+     *
+     * @return for each bucket pair, the number of orphaned reverse entries removed followed by
+     *         the expired codes removed, as sweep_bucket.lua returns
+     */
+    List<List<Object>> sweep(long from, int count) {
+        long nowSecond = RedisUrlRepository.nowEpochSecond();
+        byte[] now = RedisUrlRepository.bytes(String.valueOf(nowSecond));
+        int[] buckets = new int[count];
+        for (int i = 0; i < count; i++) {
+            buckets[i] = (int) Math.floorMod(from + i, (long) MappingKeys.BUCKETS);
+        }
+        List<Object> swept = pipeline(connection -> {
+            for (int bucket : buckets) {
+                eval(connection, SWEEP_SCRIPT, ReturnType.MULTI, MappingKeys.forwardBucket(bucket), now);
+                connection.hashCommands().hGetAll(RedisUrlRepository.bytes(MappingKeys.reverseBucket(bucket)));
+            }
+        });
+
+        List<List<Object>> removed = new ArrayList<>(count);
+        // Expired codes with their digests, and reverse entries as field, code and bucket index
+        List<byte[][]> expired = new ArrayList<>();
+        List<byte[][]> entries = new ArrayList<>();
+        List<Integer> entryBuckets = new ArrayList<>();
+        for (int b = 0; b < count; b++) {
+            List<Object> bucketRemoved = new ArrayList<>();
+            bucketRemoved.add(0L);
+            List<?> codesAndValues = (List<?>) swept.get(2 * b);
+            for (int i = 0; i < codesAndValues.size(); i += 2) {
+                byte[] code = (byte[]) codesAndValues.get(i);
+                expired.add(new byte[][] {code, MappingCodec.digest((byte[]) codesAndValues.get(i + 1))});
+                bucketRemoved.add(new String(code, StandardCharsets.UTF_8));
+            }
+            removed.add(bucketRemoved);
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) swept.get(2 * b + 1)).entrySet()) {
+                entries.add(new byte[][] {(byte[]) entry.getKey(), (byte[]) entry.getValue()});
+                entryBuckets.add(b);
+            }
+        }
+
+        List<Object> values = entries.isEmpty() ? List.of() : pipeline(connection -> {
+            for (byte[][] entry : entries) {
+                connection.hashCommands().hGet(RedisUrlRepository.bytes(MappingKeys.forwardKey(entry[1])), entry[1]);
+            }
+        });
+        List<Integer> orphans = new ArrayList<>();
+        for (int e = 0; e < entries.size(); e++) {
+            byte[] value = (byte[]) values.get(e);
+            if (!MappingCodec.isLive(value, nowSecond)
+                    || !MappingCodec.hasDigest(value, digest(buckets[entryBuckets.get(e)], entries.get(e)[0]))) {
+                orphans.add(e);
+            }
+        }
+        if (expired.isEmpty() && orphans.isEmpty()) {
+            return removed;
+        }
+
+        // Expired codes are unlinked first, so that their entries are not counted as orphans too
+        List<Object> unlinked = pipeline(connection -> {
+            for (byte[][] code : expired) {
+                eval(connection, UNLINK_SCRIPT, ReturnType.INTEGER, MappingKeys.reverseKey(code[1]),
+                        MappingKeys.reverseField(code[1]), code[0]);
+            }
+            for (int e : orphans) {
+                eval(connection, UNLINK_SCRIPT, ReturnType.INTEGER, MappingKeys.reverseBucket(buckets[entryBuckets.get(e)]),
+                        entries.get(e)[0], entries.get(e)[1]);
+            }
+        });
+        for (int o = 0; o < orphans.size(); o++) {
+            List<Object> bucketRemoved = removed.get(entryBuckets.get(orphans.get(o)));
+            bucketRemoved.set(0, (Long) bucketRemoved.get(0) + (Long) unlinked.get(expired.size() + o));
+        }
+        return removed;
+    }
+
+    private static byte[] digest(int bucket, byte[] field) {
+        byte[] digest = new byte[MappingKeys.DIGEST_LENGTH];
+        digest[0] = (byte) (bucket >>> 8);
+        digest[1] = (byte) bucket;
+        System.arraycopy(field, 0, digest, 2, Math.min(field.length, MappingKeys.DIGEST_LENGTH - 2));
+        return digest;
+    }
+
+    /**
+     * Sends the calls in one pipeline and returns the raw replies; executePipelined would decode
+     * hash replies with the template's string serializers, which binary reverse fields do not survive.
+     */
+    private List<Object> pipeline(Consumer<RedisConnection> calls) {
+        return RedisUrlRepository.withScript(redisTemplate, SCRIPTS, () ->
+                redisTemplate.execute((RedisCallback<List<Object>>) connection -> {
+                    connection.openPipeline();
+                    calls.accept(connection);
+                    return connection.closePipeline();
+                }));
+    }
+
+    private static void eval(RedisConnection connection, RedisScript<?> script, ReturnType returnType, String key, byte[]... args) {
+        byte[][] keysAndArgs = new byte[1 + args.length][];
+        keysAndArgs[0] = RedisUrlRepository.bytes(key);
+        System.arraycopy(args, 0, keysAndArgs, 1, args.length);
+        connection.scriptingCommands().evalSha(script.getSha1(), returnType, 1, keysAndArgs);
+    }
+
+    private static RedisScript<String> script(String name) {
+        return RedisScript.of(new ClassPathResource("scripts/cluster/" + name + ".lua"), String.class);
+    }
+}
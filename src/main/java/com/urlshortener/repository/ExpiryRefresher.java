@@ -0,0 +1,88 @@
+package com.urlshortener.repository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sliding expiry: a link that is used gets its full lifetime again, counted from the use.
+ * <p>
+ * Resolved codes are collected in memory and handed to the store together every flush interval,
+ * each code once per flush however often it was hit; the Redis store refreshes a chunk of
+ * codes in one pipeline. A code is only rewritten when its expiry would move by at least the
+ * minimum extension, so a hot link costs one write per that period rather than one per flush.
+ * Codes beyond the pending bound, and flushes that cannot be written, are dropped and counted;
+ * the next hit on the code queues it again.
+ */
+@Component
+public class ExpiryRefresher {
+    private static final int CODES_PER_PIPELINE = 500;
+
+    private final UrlStore urlStore;
+    private final boolean enabled;
+    private final long minExtensionSeconds;
+    private final int maxPending;
+    private final Counter refreshed;
+    private final Counter dropped;
+    private volatile Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    public ExpiryRefresher(UrlStore urlStore,
+                           @Value("${urlshortener.mapping.sliding-expiry.enabled:false}") boolean enabled,
+                           @Value("${urlshortener.mapping.sliding-expiry.min-extension:1h}") Duration minExtension,
+                           @Value("${urlshortener.mapping.sliding-expiry.max-pending:100000}") int maxPending,
+                           MeterRegistry meterRegistry) {
+        this.urlStore = urlStore;
+        this.enabled = enabled;
+        this.minExtensionSeconds = minExtension.getSeconds();
+        this.maxPending = maxPending;
+        this.refreshed = Counter.builder("urlshortener.expiry.refreshed")
+                .description("Links whose expiry was pushed back because they were used")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("urlshortener.expiry.refresh.dropped")
+                .description("Uses not queued for an expiry refresh because the queue was full or could not be written")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queues the code for the next refresh. Never blocks; does nothing unless sliding expiry is enabled.
+     */
+    public void touch(String shortUrl) {
+        if (!enabled) {
+            return;
+        }
+        Set<String> codes = pending;
+        if (codes.size() >= maxPending) {
+            dropped.increment();
+            return;
+        }
+        codes.add(shortUrl);
+    }
+
+    @Scheduled(fixedDelayString = "${urlshortener.mapping.sliding-expiry.flush-interval-ms:10000}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        // A touch racing the swap may land in the retired set and be lost; its code is queued again on its next use
+        List<String> codes = new ArrayList<>(pending);
+        pending = ConcurrentHashMap.newKeySet();
+
+        for (int from = 0; from < codes.size(); from += CODES_PER_PIPELINE) {
+            List<String> chunk = codes.subList(from, Math.min(from + CODES_PER_PIPELINE, codes.size()));
+            try {
+                refreshed.increment(urlStore.refreshExpiry(chunk, minExtensionSeconds));
+            } catch (DataAccessException e) {
+                dropped.increment(chunk.size());
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.urlshortener.repository;
+
+import com.urlshortener.cache.CacheInvalidationBus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Removes what expiry leaves behind in the Redis store: forward entries past their expiry,
+ * which Redis cannot expire as hash fields, and reverse entries whose code is gone, expired
+ * or remapped.
+ * <p>
+ * Buckets are numbered, so instead of SCANning the keyspace the sweeper walks them with a
+ * cursor kept in Redis: each run claims the next few bucket numbers with one INCRBY, so nodes
+ * share the walk instead of repeating it. Each bucket pair is cleaned by one short script call,
+ * and a run sends its calls in one pipeline, so Redis is never busy for longer than one
+ * bucket takes and the sweep rate is bounded by the buckets per run and the interval.
+ * Removed codes are evicted from every node's cache. On Redis Cluster the two buckets of a
+ * pair live in different slots, so {@link ClusterMappingWriter#sweep} cleans them in steps.
+ */
+@Component
+@ConditionalOnExpression("${urlshortener.sweeper.enabled:true} and '${urlshortener.store.type:redis}' == 'redis'")
+public class ExpirySweeper {
+    static final String CURSOR_KEY = "sweeper:cursor";
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final CacheInvalidationBus invalidationBus;
+    private final int bucketsPerRun;
+    private final Counter expired;
+    private final Counter orphans;
+    private final ClusterMappingWriter clusterWriter;
+
+    public ExpirySweeper(RedisTemplate<String, String> redisTemplate, CacheInvalidationBus invalidationBus,
+                         @Value("${urlshortener.sweeper.buckets-per-run:16}") int bucketsPerRun,
+                         MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.invalidationBus = invalidationBus;
+        this.bucketsPerRun = bucketsPerRun;
+        this.expired = Counter.builder("urlshortener.sweeper.expired")
+                .description("Expired mappings removed by the sweeper")
+                .register(meterRegistry);
+        this.orphans = Counter.builder("urlshortener.sweeper.orphans")
+                .description("Reverse entries removed by the sweeper because their code was gone or remapped")
+                .register(meterRegistry);
+        this.clusterWriter = ClusterMappingWriter.isCluster(redisTemplate.getConnectionFactory())
+                ? new ClusterMappingWriter(redisTemplate) : null;
+    }
+
+    @Scheduled(fixedDelayString = "${urlshortener.sweeper.interval-ms:1000}")
+    public void run() {
+        try {
+            Long end = redisTemplate.opsForValue().increment(CURSOR_KEY, bucketsPerRun);
+            if (end != null) {
+                sweep(end - bucketsPerRun, bucketsPerRun);
+            }
+        } catch (DataAccessException e) {
+            // Nothing is lost; the buckets come round again on the next pass
+        }
+    }
+
+    /**
+     * Sweeps the bucket pairs numbered from the given position, wrapping around after the last bucket.
+     */
+    void sweep(long from, int count) {
+        List<?> results = clusterWriter != null ? clusterWriter.sweep(from, count)
+                : RedisUrlRepository.withScript(redisTemplate, RedisUrlRepository.SWEEP_SCRIPT, () -> sweepBuckets(from, count));
+        for (Object result : results) {
+            List<?> removed = (List<?>) result;
+            orphans.increment((Long) removed.get(0));
+            for (int i = 1; i < removed.size(); i++) {
+                invalidationBus.invalidate((String) removed.get(i));
+                expired.increment();
+            }
+        }
+    }
+
+    private List<Object> sweepBuckets(long from, int count) {
+        byte[] sha = RedisUrlRepository.SWEEP_SCRIPT.getSha1().getBytes(StandardCharsets.UTF_8);
+        byte[] now = RedisUrlRepository.bytes(String.valueOf(RedisUrlRepository.nowEpochSecond()));
+        return redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (int i = 0; i < count; i++) {
+                int bucket = (int) Math.floorMod(from + i, (long) MappingKeys.BUCKETS);
+                connection.scriptingCommands().evalSha(sha, ReturnType.MULTI, 2,
+                        RedisUrlRepository.bytes(MappingKeys.forwardBucket(bucket)),
+                        RedisUrlRepository.bytes(MappingKeys.reverseBucket(bucket)), now);
+            }
+            return null;
+        }, RedisSerializer.string());
+    }
+}
@@ -0,0 +1,152 @@
+package com.urlshortener.repository;
+
+import com.urlshortener.cache.CacheInvalidationBus;
+import com.urlshortener.model.UrlMapping;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationContext;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Converts mappings stored as {@code url:<code>} and {@code reverse:<originalUrl>} strings
+ * into the compact layout, keeping each mapping's remaining TTL, then exits.
+ * Run it with the "migrate" profile.
+ * <p>
+ * Keys are found with SCAN and converted in pipelined batches. A code already present in
+ * the new layout is left alone, so the migration can run again after new nodes have started
+ * writing, to pick up mappings the legacy nodes wrote in the meantime. Reverse keys without
+ * a forward key are removed in a second pass. Migrated codes are published as invalidations,
+ * so serving nodes drop cached misses for them and add them to their code filters.
+ * <p>
+ * The legacy layout predates Redis Cluster support, and SCAN and the save script both need a
+ * single node, so the migration refuses to run against a cluster.
+ */
+@Component
+@ConditionalOnProperty(name = "urlshortener.migration.enabled", havingValue = "true")
+public class LegacyLayoutMigrator implements ApplicationRunner {
+    private static final Logger log = LoggerFactory.getLogger(LegacyLayoutMigrator.class);
+    static final String LEGACY_URL_NAMESPACE = "url:";
+    static final String LEGACY_REVERSE_NAMESPACE = "reverse:";
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final ApplicationContext context;
+    private final CacheInvalidationBus invalidationBus;
+    private final int batchSize;
+    private final long defaultTtlSeconds;
+
+    public LegacyLayoutMigrator(RedisTemplate<String, String> redisTemplate, ApplicationContext context,
+                                CacheInvalidationBus invalidationBus,
+                                @Value("${urlshortener.migration.batch-size:500}") int batchSize,
+                                @Value("${urlshortener.mapping.default-ttl:30d}") Duration defaultTtl) {
+        this.redisTemplate = redisTemplate;
+        this.context = context;
+        this.invalidationBus = invalidationBus;
+        this.batchSize = batchSize;
+        this.defaultTtlSeconds = defaultTtl.getSeconds();
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (ClusterMappingWriter.isCluster(redisTemplate.getConnectionFactory())) {
+            throw new IllegalStateException("The legacy layout can only be migrated on a single Redis node");
+        }
+        long migrated = migrateForwardKeys();
+        long orphans = removeReverseKeys();
+        log.info("Migrated {} mappings, removed {} orphaned reverse keys", migrated, orphans);
+        System.exit(SpringApplication.exit(context, () -> 0));
+    }
+
+    long migrateForwardKeys() {
+        long migrated = 0;
+        List<String> batch = new ArrayList<>(batchSize);
+        try (Cursor<String> keys = redisTemplate.scan(ScanOptions.scanOptions()
+                .match(LEGACY_URL_NAMESPACE + "*").count(batchSize).build())) {
+            while (keys.hasNext()) {
+                batch.add(keys.next());
+                if (batch.size() == batchSize) {
+                    migrated += migrateBatch(batch);
+                    batch.clear();
+                }
+            }
+        }
+        return migrated + migrateBatch(batch);
+    }
+
+    long removeReverseKeys() {
+        long removed = 0;
+        try (Cursor<String> keys = redisTemplate.scan(ScanOptions.scanOptions()
+                .match(LEGACY_REVERSE_NAMESPACE + "*").count(batchSize).build())) {
+            List<String> batch = new ArrayList<>(batchSize);
+            while (keys.hasNext()) {
+                batch.add(keys.next());
+                if (batch.size() == batchSize || !keys.hasNext()) {
+                    // Reverse keys left after the first pass point at codes that no longer exist
+                    Long unlinked = redisTemplate.unlink(batch);
+                    removed += unlinked != null ? unlinked : 0;
+                    batch.clear();
+                }
+            }
+        }
+        return removed;
+    }
+
+    private long migrateBatch(List<String> keys) {
+        if (keys.isEmpty()) {
+            return 0;
+        }
+        List<Object> valuesAndTtls = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String key : keys) {
+                byte[] rawKey = key.getBytes(StandardCharsets.UTF_8);
+                connection.stringCommands().get(rawKey);
+                connection.keyCommands().ttl(rawKey);
+            }
+            return null;
+        });
+
+        List<UrlMapping> mappings = new ArrayList<>(keys.size());
+        List<Long> ttls = new ArrayList<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            String originalUrl = (String) valuesAndTtls.get(2 * i);
+            Long ttl = (Long) valuesAndTtls.get(2 * i + 1);
+            // Expired between SCAN and GET
+            if (originalUrl == null || ttl == null || ttl == -2) {
+                continue;
+            }
+            mappings.add(new UrlMapping(originalUrl, keys.get(i).substring(LEGACY_URL_NAMESPACE.length())));
+            ttls.add(ttl > 0 ? ttl : defaultTtlSeconds);
+        }
+
+        byte[] sha = RedisUrlRepository.SAVE_SCRIPT.getSha1().getBytes(StandardCharsets.UTF_8);
+        redisTemplate.execute((RedisCallback<String>) connection -> connection.scriptingCommands()
+                .scriptLoad(RedisUrlRepository.SAVE_SCRIPT.getScriptAsString().getBytes(StandardCharsets.UTF_8)));
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (int i = 0; i < mappings.size(); i++) {
+                UrlMapping mapping = mappings.get(i);
+                RedisUrlRepository.evalSaveScript(connection, sha, mapping, ttls.get(i));
+                connection.keyCommands().unlink(
+                        (LEGACY_URL_NAMESPACE + mapping.getShortUrl()).getBytes(StandardCharsets.UTF_8),
+                        (LEGACY_REVERSE_NAMESPACE + mapping.getOriginalUrl()).getBytes(StandardCharsets.UTF_8));
+            }
+            return null;
+        });
+        for (UrlMapping mapping : mappings) {
+            invalidationBus.invalidate(mapping.getShortUrl());
+        }
+        invalidationBus.flush();
+        return mappings.size();
+    }
+}
@@ -0,0 +1,220 @@
+package com.urlshortener.repository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of mapping records in a file mapped into memory one segment at a time.
+ * <p>
+ * A record is its body length (int), the CRC32 of the body (int) and the body: the record
+ * type, the code length (unsigned 16-bit), the code in UTF-8 and the {@link MappingCodec}
+ * value. Records never span segments; a length of -1 sends readers on to the next segment,
+ * and a length of 0 is the end of the log. A record's offset in the file is its address.
+ * <p>
+ * One writer at a time, serialised by the caller. Readers only follow offsets published
+ * after the record was written, so they read without locking.
+ */
+final class MappedLog implements Closeable {
+    static final byte PUT = 1;
+    static final byte DELETE = 2;
+    private static final int RECORD_HEADER = 8;
+    private static final int BODY_HEADER = 3;
+    private static final int NEXT_SEGMENT = -1;
+
+    private final FileChannel channel;
+    private final int segmentSize;
+    private volatile MappedByteBuffer[] segments;
+    private long end;
+
+    private MappedLog(FileChannel channel, int segmentSize, MappedByteBuffer[] segments) {
+        this.channel = channel;
+        this.segmentSize = segmentSize;
+        this.segments = segments;
+    }
+
+    static MappedLog open(Path file, int segmentSize) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        int count = (int) ((channel.size() + segmentSize - 1) / segmentSize);
+        MappedByteBuffer[] segments = new MappedByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, (long) i * segmentSize, segmentSize);
+        }
+        return new MappedLog(channel, segmentSize, segments);
+    }
+
+    @FunctionalInterface
+    interface RecordVisitor {
+        void visit(long offset, byte type, byte[] code, byte[] value) throws IOException;
+    }
+
+    /**
+     * Reads the records from the given offset up to the end of the log, or up to the first
+     * torn or corrupt record, and makes the log append after the last good one. Anything
+     * after it is discarded.
+     *
+     * @return the end of the log
+     */
+    long recover(long from, RecordVisitor visitor) throws IOException {
+        long position = from;
+        CRC32 crc = new CRC32();
+        while (true) {
+            int segment = (int) (position / segmentSize);
+            int within = (int) (position % segmentSize);
+            if (segment >= segments.length) {
+                break;
+            }
+            if (within + RECORD_HEADER > segmentSize) {
+                position = (long) (segment + 1) * segmentSize;
+                continue;
+            }
+            MappedByteBuffer buffer = segments[segment];
+            int length = buffer.getInt(within);
+            if (length == NEXT_SEGMENT) {
+                position = (long) (segment + 1) * segmentSize;
+                continue;
+            }
+            if (length < BODY_HEADER || length > segmentSize - within - RECORD_HEADER) {
+                break;
+            }
+            byte[] body = new byte[length];
+            buffer.get(within + RECORD_HEADER, body);
+            crc.reset();
+            crc.update(body);
+            int codeLength = ((body[1] & 0xff) << 8) | (body[2] & 0xff);
+            if ((int) crc.getValue() != buffer.getInt(within + 4) || BODY_HEADER + codeLength > length) {
+                break;
+            }
+            visitor.visit(position, body[0],
+                    Arrays.copyOfRange(body, BODY_HEADER, BODY_HEADER + codeLength),
+                    Arrays.copyOfRange(body, BODY_HEADER + codeLength, length));
+            position += RECORD_HEADER + length;
+        }
+        truncate(position);
+        return position;
+    }
+
+    /**
+     * @return the offset of the new record
+     */
+    long append(byte type, byte[] code, byte[] value) throws IOException {
+        int length = BODY_HEADER + code.length + value.length;
+        if (RECORD_HEADER + length > segmentSize) {
+            throw new IllegalArgumentException("Record of " + length + " bytes does not fit a log segment");
+        }
+        int within = (int) (end % segmentSize);
+        if (within + RECORD_HEADER + length > segmentSize) {
+            if (within + RECORD_HEADER <= segmentSize) {
+                segments[(int) (end / segmentSize)].putInt(within, NEXT_SEGMENT);
+            }
+            end = (end / segmentSize + 1) * segmentSize;
+            within = 0;
+        }
+        int segment = (int) (end / segmentSize);
+        if (segment == segments.length) {
+            MappedByteBuffer[] grown = Arrays.copyOf(segments, segment + 1);
+            grown[segment] = channel.map(FileChannel.MapMode.READ_WRITE, (long) segment * segmentSize, segmentSize);
+            segments = grown;
+        }
+
+        byte[] body = new byte[length];
+        body[0] = type;
+        body[1] = (byte) (code.length >>> 8);
+        body[2] = (byte) code.length;
+        System.arraycopy(code, 0, body, BODY_HEADER, code.length);
+        System.arraycopy(value, 0, body, BODY_HEADER + code.length, value.length);
+        CRC32 crc = new CRC32();
+        crc.update(body);
+
+        MappedByteBuffer buffer = segments[segment];
+        buffer.put(within + RECORD_HEADER, body);
+        buffer.putInt(within + 4, (int) crc.getValue());
+        buffer.putInt(within, length);
+        long offset = end;
+        end += RECORD_HEADER + length;
+        return offset;
+    }
+
+    long end() {
+        return end;
+    }
+
+    /**
+     * @return the bytes the record at the offset takes in the log
+     */
+    int recordLength(long offset) {
+        return RECORD_HEADER + segment(offset).getInt(within(offset));
+    }
+
+    boolean hasCode(long offset, byte[] code) {
+        MappedByteBuffer buffer = segment(offset);
+        int within = within(offset) + RECORD_HEADER;
+        if (buffer.get(within) != PUT || (((buffer.get(within + 1) & 0xff) << 8) | (buffer.get(within + 2) & 0xff)) != code.length) {
+            return false;
+        }
+        for (int i = 0; i < code.length; i++) {
+            if (buffer.get(within + BODY_HEADER + i) != code[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    byte[] code(long offset) {
+        MappedByteBuffer buffer = segment(offset);
+        int within = within(offset) + RECORD_HEADER;
+        byte[] code = new byte[((buffer.get(within + 1) & 0xff) << 8) | (buffer.get(within + 2) & 0xff)];
+        buffer.get(within + BODY_HEADER, code);
+        return code;
+    }
+
+    byte[] value(long offset) {
+        MappedByteBuffer buffer = segment(offset);
+        int within = within(offset);
+        int length = buffer.getInt(within);
+        int codeLength = ((buffer.get(within + RECORD_HEADER + 1) & 0xff) << 8) | (buffer.get(within + RECORD_HEADER + 2) & 0xff);
+        byte[] value = new byte[length - BODY_HEADER - codeLength];
+        buffer.get(within + RECORD_HEADER + BODY_HEADER + codeLength, value);
+        return value;
+    }
+
+    /**
+     * Writes the mapped segments out to the file.
+     */
+    void force() {
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    private void truncate(long position) throws IOException {
+        int segment = (int) (position / segmentSize);
+        if (segment < segments.length) {
+            // Cutting the file and mapping the segment again zero-fills the rest of it without touching its pages
+            MappedByteBuffer[] kept = Arrays.copyOf(segments, segment + 1);
+            channel.truncate(position);
+            kept[segment] = channel.map(FileChannel.MapMode.READ_WRITE, (long) segment * segmentSize, segmentSize);
+            segments = kept;
+        }
+        end = position;
+    }
+
+    private MappedByteBuffer segment(long offset) {
+        return segments[(int) (offset / segmentSize)];
+    }
+
+    private int within(long offset) {
+        return (int) (offset % segmentSize);
+    }
+}
@@ -0,0 +1,372 @@
+package com.urlshortener.repository;
+
+import com.urlshortener.cache.ShortUrlCache;
+import com.urlshortener.model.UrlMapping;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.unit.DataSize;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Embedded store: mappings are kept on this node's disk in a memory-mapped, append-only
+ * {@link MappedLog}, found through two {@link OffHeapHashIndex}es, one from the hash of the
+ * code to the offset of its latest record and one from the URL digest to the same offset.
+ * Entries are {@link MappingCodec} values, so expiry, sliding expiry and metadata behave as
+ * they do in Redis; the hit count is not included, since click totals stay in Redis.
+ * <p>
+ * Reads take no lock and touch no Java heap besides the returned value. Writes append a
+ * record under a lock and then repoint the indexes; they reach the page cache at once but
+ * are only forced to disk on close, unless sync-writes is on. On a clean shutdown the indexes
+ * are written out with the log position they cover, and the next start reuses them; after
+ * a crash they are rebuilt by replaying the log, which stops at the first torn record.
+ * Superseded and expired records are dropped by rewriting the log at startup once they
+ * outweigh the compaction ratio.
+ * <p>
+ * The store serves one node, so writes evict from its cache alone; the reactive stack keeps
+ * using {@link ReactiveRedisUrlRepository}.
+ */
+@Repository
+@ConditionalOnProperty(name = "urlshortener.store.type", havingValue = "mmap")
+public class MappedUrlStore implements UrlStore, Closeable {
+    static final String LOG_FILE = "mappings.log";
+    static final String FORWARD_INDEX_FILE = "forward.idx";
+    static final String REVERSE_INDEX_FILE = "reverse.idx";
+    private static final Logger log = LoggerFactory.getLogger(MappedUrlStore.class);
+    private static final int INITIAL_INDEX_CAPACITY = 1 << 16;
+    private static final byte[] NO_VALUE = new byte[0];
+
+    private final ShortUrlCache shortUrlCache;
+    private final Path directory;
+    private final int segmentSize;
+    private final boolean syncWrites;
+    private final long defaultTtlSeconds;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private MappedLog mappingLog;
+    private OffHeapHashIndex forward;
+    private OffHeapHashIndex reverse;
+
+    public MappedUrlStore(ShortUrlCache shortUrlCache,
+                          @Value("${urlshortener.store.mmap.directory:data}") String directory,
+                          @Value("${urlshortener.store.mmap.segment-size:64MB}") DataSize segmentSize,
+                          @Value("${urlshortener.store.mmap.sync-writes:false}") boolean syncWrites,
+                          @Value("${urlshortener.store.mmap.compact-ratio:0.5}") double compactRatio,
+                          @Value("${urlshortener.mapping.default-ttl:30d}") Duration defaultTtl) throws IOException {
+        this.shortUrlCache = shortUrlCache;
+        this.directory = Path.of(directory);
+        this.segmentSize = Math.toIntExact(segmentSize.toBytes());
+        this.syncWrites = syncWrites;
+        this.defaultTtlSeconds = defaultTtl.getSeconds();
+
+        Files.createDirectories(this.directory);
+        open();
+        long[] liveBytes = new long[1];
+        forward.forEach(offset -> liveBytes[0] += mappingLog.recordLength(offset));
+        if (mappingLog.end() > this.segmentSize && liveBytes[0] < mappingLog.end() * (1 - compactRatio)) {
+            compact();
+        }
+    }
+
+    @Override
+    public Optional<UrlMapping> findByShortUrl(String shortUrl) {
+        byte[] value = findValue(shortUrl);
+        return MappingCodec.isLive(value, RedisUrlRepository.nowEpochSecond())
+                ? Optional.of(MappingCodec.decode(shortUrl, value))
+                : Optional.empty();
+    }
+
+    @Override
+    public Optional<String> findOriginalUrl(String shortUrl) {
+        byte[] value = findValue(shortUrl);
+        return MappingCodec.isLive(value, RedisUrlRepository.nowEpochSecond())
+                ? Optional.of(MappingCodec.decodeUrl(value))
+                : Optional.empty();
+    }
+
+    @Override
+    public Map<String, String> findOriginalUrls(Collection<String> shortUrls) {
+        Map<String, String> originalUrls = new LinkedHashMap<>();
+        long now = RedisUrlRepository.nowEpochSecond();
+        for (String shortUrl : shortUrls) {
+            byte[] value = findValue(shortUrl);
+            if (MappingCodec.isLive(value, now)) {
+                originalUrls.put(shortUrl, MappingCodec.decodeUrl(value));
+            }
+        }
+        return originalUrls;
+    }
+
+    @Override
+    public Optional<UrlMapping> findByOriginalUrl(String originalUrl) {
+        byte[] digest = MappingKeys.digest(originalUrl);
+        long offset = findByDigest(digest);
+        if (offset == OffHeapHashIndex.ABSENT) {
+            return Optional.empty();
+        }
+        byte[] value = mappingLog.value(offset);
+        if (!MappingCodec.isLive(value, RedisUrlRepository.nowEpochSecond()) || !MappingCodec.mapsUrl(value, originalUrl)) {
+            return Optional.empty();
+        }
+        return Optional.of(MappingCodec.decode(new String(mappingLog.code(offset), StandardCharsets.UTF_8), value));
+    }
+
+    @Override
+    public boolean existsByShortUrl(String shortUrl) {
+        return MappingCodec.isLive(findValue(shortUrl), RedisUrlRepository.nowEpochSecond());
+    }
+
+    @Override
+    public UrlMapping save(UrlMapping urlMapping) {
+        write(urlMapping, false);
+        return urlMapping;
+    }
+
+    @Override
+    public boolean saveIfAbsent(UrlMapping urlMapping) {
+        return write(urlMapping, true);
+    }
+
+    @Override
+    public List<Boolean> saveAllIfAbsent(List<UrlMapping> mappings) {
+        List<Boolean> claimed = new ArrayList<>(mappings.size());
+        for (UrlMapping mapping : mappings) {
+            claimed.add(write(mapping, true));
+        }
+        return claimed;
+    }
+
+    @Override
+    public void delete(String shortUrl) {
+        byte[] code = RedisUrlRepository.bytes(shortUrl);
+        writeLock.lock();
+        try {
+            if (findOffset(code) != OffHeapHashIndex.ABSENT) {
+                apply(mappingLog.append(MappedLog.DELETE, code, NO_VALUE), MappedLog.DELETE, code, NO_VALUE);
+                flushIfSynced();
+            }
+        } catch (IOException e) {
+            throw failure(e);
+        } finally {
+            writeLock.unlock();
+        }
+        shortUrlCache.invalidate(shortUrl);
+    }
+
+    /**
+     * Appends a record with the new expiry for each code that is due one.
+     */
+    @Override
+    public int refreshExpiry(Collection<String> shortUrls, long minExtensionSeconds) {
+        long now = RedisUrlRepository.nowEpochSecond();
+        int refreshed = 0;
+        writeLock.lock();
+        try {
+            for (String shortUrl : shortUrls) {
+                byte[] code = RedisUrlRepository.bytes(shortUrl);
+                long offset = findOffset(code);
+                byte[] value = offset != OffHeapHashIndex.ABSENT
+                        ? MappingCodec.refreshed(mappingLog.value(offset), now, minExtensionSeconds)
+                        : null;
+                if (value != null) {
+                    apply(mappingLog.append(MappedLog.PUT, code, value), MappedLog.PUT, code, value);
+                    refreshed++;
+                }
+            }
+            flushIfSynced();
+        } catch (IOException e) {
+            throw failure(e);
+        } finally {
+            writeLock.unlock();
+        }
+        return refreshed;
+    }
+
+    /**
+     * Writes out the log and marks the indexes clean, so the next start skips the replay.
+     */
+    @Override
+    public void close() throws IOException {
+        writeLock.lock();
+        try {
+            mappingLog.close();
+            forward.close(mappingLog.end());
+            reverse.close(mappingLog.end());
+            forward.close();
+            reverse.close();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Same rules as save_mapping.lua: an existing live code is only replaced when asked to,
+     * and the code previously mapped to the same URL is deleted.
+     */
+    private boolean write(UrlMapping urlMapping, boolean onlyIfAbsent) {
+        byte[] code = RedisUrlRepository.bytes(urlMapping.getShortUrl());
+        byte[] digest = MappingKeys.digest(urlMapping.getOriginalUrl());
+        long now = RedisUrlRepository.nowEpochSecond();
+        String previousShortUrl = null;
+        writeLock.lock();
+        try {
+            long current = findOffset(code);
+            if (onlyIfAbsent && current != OffHeapHashIndex.ABSENT && MappingCodec.isLive(mappingLog.value(current), now)) {
+                return false;
+            }
+            byte[] value = MappingCodec.encodeForWrite(urlMapping, digest, defaultTtlSeconds, now);
+            long previous = findByDigest(digest);
+            if (previous != OffHeapHashIndex.ABSENT && previous != current) {
+                byte[] previousCode = mappingLog.code(previous);
+                apply(mappingLog.append(MappedLog.DELETE, previousCode, NO_VALUE), MappedLog.DELETE, previousCode, NO_VALUE);
+                previousShortUrl = new String(previousCode, StandardCharsets.UTF_8);
+            }
+            apply(mappingLog.append(MappedLog.PUT, code, value), MappedLog.PUT, code, value);
+            flushIfSynced();
+        } catch (IOException e) {
+            throw failure(e);
+        } finally {
+            writeLock.unlock();
+        }
+        shortUrlCache.invalidate(urlMapping.getShortUrl());
+        if (previousShortUrl != null) {
+            shortUrlCache.invalidate(previousShortUrl);
+        }
+        return true;
+    }
+
+    /**
+     * Points the indexes at a record, both for new writes and when replaying the log.
+     */
+    private void apply(long offset, byte type, byte[] code, byte[] value) throws IOException {
+        long key = codeKey(code);
+        long current = findOffset(code);
+        byte[] digest = type == MappedLog.PUT ? Arrays.copyOfRange(value, 5, MappingCodec.HEADER_LENGTH) : null;
+        if (current != OffHeapHashIndex.ABSENT) {
+            byte[] currentValue = mappingLog.value(current);
+            if (digest == null || !MappingCodec.hasDigest(currentValue, digest)) {
+                reverse.remove(digestKey(currentValue, 5), reverseOffset -> reverseOffset == current);
+            }
+            if (type == MappedLog.DELETE) {
+                forward.remove(key, forwardOffset -> forwardOffset == current);
+            }
+        }
+        if (digest != null) {
+            // Either entry is repointed in place when it exists, or added when it does not
+            forward.put(key, offset, forwardOffset -> forwardOffset == current);
+            reverse.put(digestKey(digest, 0), offset, reverseOffset -> reverseOffset == current);
+        }
+    }
+
+    private byte[] findValue(String shortUrl) {
+        long offset = findOffset(RedisUrlRepository.bytes(shortUrl));
+        return offset != OffHeapHashIndex.ABSENT ? mappingLog.value(offset) : null;
+    }
+
+    private long findOffset(byte[] code) {
+        return forward.get(codeKey(code), offset -> mappingLog.hasCode(offset, code));
+    }
+
+    private long findByDigest(byte[] digest) {
+        return reverse.get(digestKey(digest, 0), offset -> MappingCodec.hasDigest(mappingLog.value(offset), digest));
+    }
+
+    private void flushIfSynced() {
+        if (syncWrites) {
+            mappingLog.force();
+        }
+    }
+
+    /**
+     * Reuses the indexes if they were closed cleanly at the end of the log, and otherwise
+     * rebuilds them from the whole log.
+     */
+    private void open() throws IOException {
+        mappingLog = MappedLog.open(directory.resolve(LOG_FILE), segmentSize);
+        forward = OffHeapHashIndex.open(directory.resolve(FORWARD_INDEX_FILE), INITIAL_INDEX_CAPACITY);
+        reverse = OffHeapHashIndex.open(directory.resolve(REVERSE_INDEX_FILE), INITIAL_INDEX_CAPACITY);
+        long from = 0;
+        if (forward.isClean() && reverse.isClean() && forward.position() == reverse.position()) {
+            from = forward.position();
+        } else {
+            forward.close();
+            reverse.close();
+            forward = OffHeapHashIndex.create(directory.resolve(FORWARD_INDEX_FILE), INITIAL_INDEX_CAPACITY);
+            reverse = OffHeapHashIndex.create(directory.resolve(REVERSE_INDEX_FILE), INITIAL_INDEX_CAPACITY);
+        }
+        forward.markDirty();
+        reverse.markDirty();
+        long start = System.nanoTime();
+        long end = mappingLog.recover(from, this::apply);
+        log.info("Opened mapping log at {} with {} codes, replayed {} bytes in {} ms", directory, forward.size(),
+                end - from, Duration.ofNanos(System.nanoTime() - start).toMillis());
+    }
+
+    /**
+     * Copies the live, unexpired records to a new log, swaps it in and rebuilds the indexes.
+     */
+    private void compact() throws IOException {
+        Path compacted = directory.resolve(LOG_FILE + ".compact");
+        Files.deleteIfExists(compacted);
+        long now = RedisUrlRepository.nowEpochSecond();
+        long before = mappingLog.end();
+        try (MappedLog target = MappedLog.open(compacted, segmentSize)) {
+            List<Long> offsets = new ArrayList<>(forward.size());
+            forward.forEach(offsets::add);
+            for (long offset : offsets) {
+                byte[] value = mappingLog.value(offset);
+                if (MappingCodec.isLive(value, now)) {
+                    target.append(MappedLog.PUT, mappingLog.code(offset), value);
+                }
+            }
+        }
+        mappingLog.close();
+        forward.close();
+        reverse.close();
+        Files.move(compacted, directory.resolve(LOG_FILE), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        Files.deleteIfExists(directory.resolve(FORWARD_INDEX_FILE));
+        Files.deleteIfExists(directory.resolve(REVERSE_INDEX_FILE));
+        open();
+        log.info("Compacted mapping log from {} to {} bytes", before, mappingLog.end());
+    }
+
+    private static long codeKey(byte[] code) {
+        // FNV-1a, then the murmur3 finaliser so that the low bits spread over the table
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : code) {
+            hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+        }
+        hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+        hash = (hash ^ (hash >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+
+    private static long digestKey(byte[] bytes, int from) {
+        long key = 0;
+        for (int i = from; i < from + 8; i++) {
+            key = (key << 8) | (bytes[i] & 0xff);
+        }
+        return key;
+    }
+
+    private static DataAccessResourceFailureException failure(IOException e) {
+        return new DataAccessResourceFailureException("Mapping log write failed", e);
+    }
+}
@@ -0,0 +1,242 @@
+package com.urlshortener.repository;
+
+import com.urlshortener.model.UrlMapping;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Versioned binary encoding of a forward entry.
+ * <p>
+ * Every version starts with the same fixed header, which the Lua scripts read without
+ * decoding the rest:
+ * <pre>
+ * offset 0   schema version
+ * offset 1   expiry, epoch seconds, unsigned 32-bit big-endian
+ * offset 5   URL digest ({@link MappingKeys#DIGEST_LENGTH} bytes), locating the reverse entry
+ * </pre>
+ * Version 1 and 2 entries hold only the URL after the header, as UTF-8 or raw DEFLATE.
+ * Version 3, written now, adds metadata at fixed offsets in front of the URL:
+ * <pre>
+ * offset 15  flags: bit 0 = URL is raw DEFLATE
+ * offset 16  created at, epoch seconds, unsigned 32-bit
+ * offset 20  last written, epoch seconds, unsigned 32-bit
+ * offset 24  owner length in bytes (0 for none)
+ * offset 25  owner, UTF-8, then the URL to the end of the value
+ * </pre>
+ * {@link #decodeUrl} jumps straight to the URL, so the redirect path never materialises
+ * the metadata. The time from the last write to the expiry is the link's lifetime, which
+ * sliding expiry grants again on use (see {@link ExpiryRefresher}). Hash fields cannot expire
+ * on their own, so expiry is checked on read, expired entries are treated as absent, and
+ * {@link ExpirySweeper} removes them later. Timestamps are kept to the second.
+ */
+final class MappingCodec {
+    static final byte VERSION_PLAIN = 1;
+    static final byte VERSION_DEFLATE = 2;
+    static final byte VERSION_METADATA = 3;
+    static final int HEADER_LENGTH = 5 + MappingKeys.DIGEST_LENGTH;
+    static final int MAX_OWNER_LENGTH = 255;
+    /**
+     * URLs shorter than this rarely shrink enough to pay for inflating them on a miss.
+     */
+    static final int COMPRESSION_THRESHOLD = 128;
+
+    private static final int FLAGS = HEADER_LENGTH;
+    private static final int CREATED_AT = FLAGS + 1;
+    private static final int UPDATED_AT = CREATED_AT + 4;
+    private static final int OWNER_LENGTH = UPDATED_AT + 4;
+    private static final int OWNER = OWNER_LENGTH + 1;
+    private static final byte FLAG_DEFLATED = 1;
+
+    private MappingCodec() {
+    }
+
+    static byte[] encode(UrlMapping mapping, byte[] digest, long expiresAtEpochSecond) {
+        byte[] owner = mapping.getOwner() != null ? mapping.getOwner().getBytes(StandardCharsets.UTF_8) : new byte[0];
+        if (owner.length > MAX_OWNER_LENGTH) {
+            throw new IllegalArgumentException("Owner must be at most " + MAX_OWNER_LENGTH + " bytes");
+        }
+        byte[] url = mapping.getOriginalUrl().getBytes(StandardCharsets.UTF_8);
+        byte flags = 0;
+        if (url.length >= COMPRESSION_THRESHOLD) {
+            byte[] deflated = deflate(url);
+            if (deflated.length < url.length) {
+                flags |= FLAG_DEFLATED;
+                url = deflated;
+            }
+        }
+
+        byte[] value = new byte[OWNER + owner.length + url.length];
+        value[0] = VERSION_METADATA;
+        putInt(value, 1, expiresAtEpochSecond);
+        System.arraycopy(digest, 0, value, 5, MappingKeys.DIGEST_LENGTH);
+        value[FLAGS] = flags;
+        putInt(value, CREATED_AT, epochSecond(mapping.getCreatedAt()));
+        putInt(value, UPDATED_AT, epochSecond(mapping.getUpdatedAt()));
+        value[OWNER_LENGTH] = (byte) owner.length;
+        System.arraycopy(owner, 0, value, OWNER, owner.length);
+        System.arraycopy(url, 0, value, OWNER + owner.length, url.length);
+        return value;
+    }
+
+    /**
+     * Encodes the mapping as it is written now. The mapping keeps its own expiry if it has one,
+     * and otherwise expires after the default TTL; its expiry and update time are set to what
+     * is stored, so the caller returns what was written.
+     */
+    static byte[] encodeForWrite(UrlMapping mapping, byte[] digest, long defaultTtlSeconds, long now) {
+        long ttlSeconds = mapping.getExpiresAt() != null ? epochSecond(mapping.getExpiresAt()) - now : defaultTtlSeconds;
+        if (ttlSeconds <= 0) {
+            throw new IllegalArgumentException("Expiry must be in the future");
+        }
+        mapping.setExpiresAt(dateTime(now + ttlSeconds));
+        mapping.setUpdatedAt(dateTime(now));
+        return encode(mapping, digest, now + ttlSeconds);
+    }
+
+    /**
+     * The entry with its lifetime granted again from now, by the same rule as refresh_expiry.lua.
+     *
+     * @return the rewritten entry, or null if it is expired, older than version 3, or
+     *         would be extended by less than the minimum
+     */
+    static byte[] refreshed(byte[] value, long now, long minExtensionSeconds) {
+        if (value[0] != VERSION_METADATA || !isLive(value, now)) {
+            return null;
+        }
+        long expiresAt = expiresAt(value);
+        long lifetime = expiresAt - getInt(value, UPDATED_AT);
+        if (now + lifetime - expiresAt < minExtensionSeconds) {
+            return null;
+        }
+        byte[] refreshed = value.clone();
+        putInt(refreshed, 1, now + lifetime);
+        putInt(refreshed, UPDATED_AT, now);
+        return refreshed;
+    }
+
+    static long expiresAt(byte[] value) {
+        return getInt(value, 1);
+    }
+
+    /**
+     * @return false for null and for entries past their expiry
+     */
+    static boolean isLive(byte[] value, long nowEpochSecond) {
+        return value != null && expiresAt(value) > nowEpochSecond;
+    }
+
+    static boolean hasDigest(byte[] value, byte[] digest) {
+        return Arrays.equals(value, 5, HEADER_LENGTH, digest, 0, MappingKeys.DIGEST_LENGTH);
+    }
+
+    /**
+     * Whether the entry is the mapping of the URL, comparing the stored URL itself rather
+     * than the digest, which two URLs can share.
+     */
+    static boolean mapsUrl(byte[] value, String originalUrl) {
+        return MappingKeys.normalize(decodeUrl(value)).equals(MappingKeys.normalize(originalUrl));
+    }
+
+    static byte[] digest(byte[] value) {
+        return Arrays.copyOfRange(value, 5, HEADER_LENGTH);
+    }
+
+    /**
+     * Reads only the URL.
+     */
+    static String decodeUrl(byte[] value) {
+        return switch (value[0]) {
+            case VERSION_PLAIN -> utf8(value, HEADER_LENGTH, value.length);
+            case VERSION_DEFLATE -> new String(inflate(value, HEADER_LENGTH), StandardCharsets.UTF_8);
+            case VERSION_METADATA -> {
+                int url = OWNER + (value[OWNER_LENGTH] & 0xff);
+                yield (value[FLAGS] & FLAG_DEFLATED) != 0
+                        ? new String(inflate(value, url), StandardCharsets.UTF_8)
+                        : utf8(value, url, value.length);
+            }
+            default -> throw new IllegalStateException("Unknown mapping schema version " + value[0]);
+        };
+    }
+
+    /**
+     * Reads the URL and all metadata. Entries written before version 3 have no
+     * creation or update time; the hit count is not part of the entry.
+     */
+    static UrlMapping decode(String shortUrl, byte[] value) {
+        UrlMapping mapping = new UrlMapping(decodeUrl(value), shortUrl, null, null, dateTime(expiresAt(value)), null);
+        if (value[0] == VERSION_METADATA) {
+            mapping.setCreatedAt(dateTime(getInt(value, CREATED_AT)));
+            mapping.setUpdatedAt(dateTime(getInt(value, UPDATED_AT)));
+            int ownerLength = value[OWNER_LENGTH] & 0xff;
+            mapping.setOwner(ownerLength > 0 ? utf8(value, OWNER, OWNER + ownerLength) : null);
+        }
+        return mapping;
+    }
+
+    static long epochSecond(LocalDateTime dateTime) {
+        return dateTime != null ? dateTime.atZone(ZoneId.systemDefault()).toEpochSecond() : 0;
+    }
+
+    static LocalDateTime dateTime(long epochSecond) {
+        return LocalDateTime.ofInstant(Instant.ofEpochSecond(epochSecond), ZoneId.systemDefault());
+    }
+
+    private static void putInt(byte[] value, int offset, long unsigned) {
+        value[offset] = (byte) (unsigned >>> 24);
+        value[offset + 1] = (byte) (unsigned >>> 16);
+        value[offset + 2] = (byte) (unsigned >>> 8);
+        value[offset + 3] = (byte) unsigned;
+    }
+
+    private static long getInt(byte[] value, int offset) {
+        return ((value[offset] & 0xffL) << 24) | ((value[offset + 1] & 0xffL) << 16)
+                | ((value[offset + 2] & 0xffL) << 8) | (value[offset + 3] & 0xffL);
+    }
+
+    private static String utf8(byte[] value, int from, int to) {
+        return new String(value, from, to - from, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] deflate(byte[] input) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            byte[] buffer = new byte[input.length];
+            int length = deflater.deflate(buffer);
+            // Output that does not fit is no smaller than the input, so it is never used
+            return deflater.finished() ? Arrays.copyOf(buffer, length) : input;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] input, int offset) {
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(input, offset, input.length - offset);
+            ByteArrayOutputStream output = new ByteArrayOutputStream(3 * (input.length - offset));
+            byte[] buffer = new byte[512];
+            while (!inflater.finished()) {
+                int length = inflater.inflate(buffer);
+                if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalStateException("Truncated mapping payload");
+                }
+                output.write(buffer, 0, length);
+            }
+            return output.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt mapping payload", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.urlshortener.repository;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Where mappings live in Redis.
+ * <p>
+ * Forward entries are fields of {@code m:<bucket>} hashes, one field per code, with 65536
+ * buckets chosen by a 16-bit polynomial hash of the code's UTF-8 bytes. Buckets stay small
+ * enough for Redis to keep them listpack-encoded, which stores a field for little more than
+ * its bytes instead of a full key with its own dict entry and expiry.
+ * <p>
+ * Reverse entries are keyed on the first 80 bits of the SHA-1 of the normalized URL rather
+ * than on the URL itself: 16 bits pick the {@code r:<bucket>} hash and 64 bits are the field.
+ * A reverse hit is only a candidate: lookups confirm it against the URL stored in the forward
+ * entry, so a digest collision is reported as no mapping. Writes trust the digest, so on a
+ * collision saving one URL drops the code of the other.
+ * <p>
+ * The scripts compute the same bucket functions, so they must not change
+ * without migrating the data.
+ */
+final class MappingKeys {
+    static final String FORWARD_NAMESPACE = "m:";
+    static final String REVERSE_NAMESPACE = "r:";
+    static final int DIGEST_LENGTH = 10;
+    static final int BUCKETS = 65536;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private MappingKeys() {
+    }
+
+    static String forwardKey(String shortUrl) {
+        return forwardKey(shortUrl.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String forwardKey(byte[] shortUrl) {
+        int bucket = 0;
+        for (byte b : shortUrl) {
+            bucket = (bucket * 31 + (b & 0xff)) & 0xffff;
+        }
+        return FORWARD_NAMESPACE + hex(bucket);
+    }
+
+    /**
+     * @return the first {@link #DIGEST_LENGTH} bytes of the SHA-1 of the normalized URL
+     */
+    static byte[] digest(String originalUrl) {
+        try {
+            byte[] sha1 = MessageDigest.getInstance("SHA-1").digest(normalize(originalUrl).getBytes(StandardCharsets.UTF_8));
+            return Arrays.copyOf(sha1, DIGEST_LENGTH);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is required by every Java platform", e);
+        }
+    }
+
+    static String forwardBucket(int bucket) {
+        return FORWARD_NAMESPACE + hex(bucket);
+    }
+
+    static String reverseBucket(int bucket) {
+        return REVERSE_NAMESPACE + hex(bucket);
+    }
+
+    static String reverseKey(byte[] digest) {
+        return REVERSE_NAMESPACE + hex(((digest[0] & 0xff) << 8) | (digest[1] & 0xff));
+    }
+
+    static byte[] reverseField(byte[] digest) {
+        return Arrays.copyOfRange(digest, 2, DIGEST_LENGTH);
+    }
+
+    /**
+     * Lower-cases the scheme and host, which are case-insensitive; the rest of the URL is kept as is.
+     */
+    static String normalize(String originalUrl) {
+        int schemeEnd = originalUrl.indexOf("://");
+        if (schemeEnd < 0) {
+            return originalUrl;
+        }
+        int authorityEnd = schemeEnd + 3;
+        while (authorityEnd < originalUrl.length()) {
+            char c = originalUrl.charAt(authorityEnd);
+            if (c == '/' || c == '?' || c == '#') {
+                break;
+            }
+            authorityEnd++;
+        }
+        String prefix = originalUrl.substring(0, authorityEnd);
+        String lowered = prefix.toLowerCase();
+        return lowered.equals(prefix) ? originalUrl : lowered + originalUrl.substring(authorityEnd);
+    }
+
+    private static String hex(int bucket) {
+        return new String(new char[] {
+                HEX[(bucket >> 12) & 0xf], HEX[(bucket >> 8) & 0xf], HEX[(bucket >> 4) & 0xf], HEX[bucket & 0xf]});
+    }
+}
@@ -0,0 +1,294 @@
+package com.urlshortener.repository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.LongConsumer;
+import java.util.function.LongPredicate;
+
+/**
+ * Open-addressing hash table from 64-bit keys to log offsets, kept in a memory-mapped file so
+ * that it lives off the Java heap and can be reused after a clean shutdown instead of rebuilt.
+ * <p>
+ * Slots are 16 bytes, key then value, probed linearly. Key 0 marks an empty slot and value -1
+ * a removed one. Removed slots are not reused; once used and removed slots pass 70% of the
+ * table, it is rebuilt from its live entries alone, at twice the size only if they fill more
+ * than half of it, so replacing and deleting entries does not grow the file. Keys are hashes, so different entries may share one:
+ * every lookup is confirmed by the caller against the record the value points at.
+ * <p>
+ * One writer at a time, serialised by the caller; readers take no lock. A new slot's value is
+ * stored before its key, both with release stores, and read back with acquire loads, so a
+ * reader that finds the key also sees the value.
+ */
+final class OffHeapHashIndex implements Closeable {
+    static final long ABSENT = -1;
+    private static final long MAGIC = 0x5552_4C49_4458_0001L;
+    private static final int HEADER_LENGTH = 64;
+    private static final int CAPACITY = 8;
+    private static final int USED = 12;
+    private static final int REMOVED = 16;
+    private static final int POSITION = 24;
+    private static final int CLEAN = 32;
+    private static final int SLOT_LENGTH = 16;
+    private static final int MAX_CAPACITY = 1 << 26;
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final Path file;
+    private volatile Table table;
+
+    private OffHeapHashIndex(Path file, Table table) {
+        this.file = file;
+        this.table = table;
+    }
+
+    /**
+     * Maps the index file, creating an empty index if there is none or it is unreadable.
+     */
+    static OffHeapHashIndex open(Path file, int initialCapacity) throws IOException {
+        if (Files.exists(file)) {
+            Table existing = Table.map(file);
+            if (existing != null) {
+                return new OffHeapHashIndex(file, existing);
+            }
+        }
+        return create(file, initialCapacity);
+    }
+
+    /**
+     * Replaces the index file with an empty index.
+     */
+    static OffHeapHashIndex create(Path file, int initialCapacity) throws IOException {
+        Files.deleteIfExists(file);
+        return new OffHeapHashIndex(file, Table.create(file, Integer.highestOneBit(Math.max(initialCapacity, 16))));
+    }
+
+    /**
+     * @return whether the index was closed cleanly, so that it matches the log up to {@link #position()}
+     */
+    boolean isClean() {
+        return table.buffer.get(CLEAN) == 1;
+    }
+
+    /**
+     * @return the log position the index covered when it was closed
+     */
+    long position() {
+        return table.buffer.getLong(POSITION);
+    }
+
+    /**
+     * Marks the index as being written to, so that a crash before {@link #close(long)} forces a rebuild.
+     */
+    void markDirty() {
+        table.buffer.put(CLEAN, (byte) 0);
+        table.buffer.force();
+    }
+
+    int size() {
+        return table.buffer.getInt(USED) - table.buffer.getInt(REMOVED);
+    }
+
+    int capacity() {
+        return table.capacity;
+    }
+
+    /**
+     * @return the value of the first entry under the key that the predicate accepts, or {@link #ABSENT}
+     */
+    long get(long key, LongPredicate matches) {
+        Table current = table;
+        long slotKey = slotKey(key);
+        for (int slot = current.start(slotKey); ; slot = current.next(slot)) {
+            long found = (long) LONGS.getAcquire(current.buffer, current.keyOffset(slot));
+            if (found == 0) {
+                return ABSENT;
+            }
+            if (found == slotKey) {
+                long value = (long) LONGS.getAcquire(current.buffer, current.keyOffset(slot) + 8);
+                if (value != ABSENT && matches.test(value)) {
+                    return value;
+                }
+            }
+        }
+    }
+
+    /**
+     * Points the entry that the predicate accepts at the value, adding the entry if there is none.
+     */
+    void put(long key, long value, LongPredicate sameEntry) throws IOException {
+        long slotKey = slotKey(key);
+        Table current = table;
+        for (int slot = current.start(slotKey); ; slot = current.next(slot)) {
+            long found = (long) LONGS.getAcquire(current.buffer, current.keyOffset(slot));
+            if (found == 0) {
+                break;
+            }
+            if (found == slotKey) {
+                long existing = (long) LONGS.getAcquire(current.buffer, current.keyOffset(slot) + 8);
+                if (existing != ABSENT && sameEntry.test(existing)) {
+                    LONGS.setRelease(current.buffer, current.keyOffset(slot) + 8, value);
+                    return;
+                }
+            }
+        }
+        if ((long) (current.buffer.getInt(USED) + 1) * 10 > (long) current.capacity * 7) {
+            current = rebuild(current);
+        }
+        current.insert(slotKey, value);
+    }
+
+    /**
+     * Removes the entry under the key that the predicate accepts, if there is one.
+     */
+    void remove(long key, LongPredicate matches) {
+        Table current = table;
+        long slotKey = slotKey(key);
+        for (int slot = current.start(slotKey); ; slot = current.next(slot)) {
+            long found = (long) LONGS.getAcquire(current.buffer, current.keyOffset(slot));
+            if (found == 0) {
+                return;
+            }
+            if (found == slotKey) {
+                long value = (long) LONGS.getAcquire(current.buffer, current.keyOffset(slot) + 8);
+                if (value != ABSENT && matches.test(value)) {
+                    LONGS.setRelease(current.buffer, current.keyOffset(slot) + 8, ABSENT);
+                    current.buffer.putInt(REMOVED, current.buffer.getInt(REMOVED) + 1);
+                    return;
+                }
+            }
+        }
+    }
+
+    void forEach(LongConsumer values) {
+        Table current = table;
+        for (int slot = 0; slot < current.capacity; slot++) {
+            long value = current.buffer.getLong(current.keyOffset(slot) + 8);
+            if (current.buffer.getLong(current.keyOffset(slot)) != 0 && value != ABSENT) {
+                values.accept(value);
+            }
+        }
+    }
+
+    /**
+     * Records the log position the index covers, marks it clean and writes it out.
+     */
+    void close(long position) {
+        table.buffer.putLong(POSITION, position);
+        table.buffer.put(CLEAN, (byte) 1);
+        table.buffer.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        table.channel.close();
+    }
+
+    private Table rebuild(Table current) throws IOException {
+        long live = current.buffer.getInt(USED) - current.buffer.getInt(REMOVED);
+        int capacity = current.capacity;
+        if ((live + 1) * 2 > capacity) {
+            if (capacity >= MAX_CAPACITY) {
+                throw new IllegalStateException("Index " + file + " is full");
+            }
+            capacity *= 2;
+        }
+        // Live entries only, so the rebuild also drops removed slots
+        Path next = file.resolveSibling(file.getFileName() + ".grow");
+        Files.deleteIfExists(next);
+        Table grown = Table.create(next, capacity);
+        for (int slot = 0; slot < current.capacity; slot++) {
+            long key = current.buffer.getLong(current.keyOffset(slot));
+            long value = current.buffer.getLong(current.keyOffset(slot) + 8);
+            if (key != 0 && value != ABSENT) {
+                grown.insert(key, value);
+            }
+        }
+        grown.buffer.force();
+        // Readers still holding the old table keep a valid mapping of the replaced file
+        Files.move(next, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        table = grown;
+        current.channel.close();
+        return grown;
+    }
+
+    private static long slotKey(long key) {
+        return key != 0 ? key : 1;
+    }
+
+    private static final class Table {
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        final int capacity;
+
+        private Table(FileChannel channel, MappedByteBuffer buffer, int capacity) {
+            this.channel = channel;
+            // The order LONGS uses; an index written with the other order fails the magic check and is rebuilt
+            this.buffer = (MappedByteBuffer) buffer.order(ByteOrder.nativeOrder());
+            this.capacity = capacity;
+        }
+
+        static Table create(Path file, int capacity) throws IOException {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            Table table = new Table(channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_LENGTH + (long) capacity * SLOT_LENGTH), capacity);
+            table.buffer.putLong(0, MAGIC);
+            table.buffer.putInt(CAPACITY, capacity);
+            return table;
+        }
+
+        /**
+         * @return null if the file is not an index
+         */
+        static Table map(Path file) throws IOException {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                if (channel.size() < HEADER_LENGTH) {
+                    channel.close();
+                    return null;
+                }
+                MappedByteBuffer header = (MappedByteBuffer) channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_LENGTH)
+                        .order(ByteOrder.nativeOrder());
+                int capacity = header.getInt(CAPACITY);
+                if (header.getLong(0) != MAGIC || Integer.bitCount(capacity) != 1 || capacity > MAX_CAPACITY
+                        || channel.size() != HEADER_LENGTH + (long) capacity * SLOT_LENGTH) {
+                    channel.close();
+                    return null;
+                }
+                return new Table(channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size()), capacity);
+            } catch (IOException | UncheckedIOException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        int start(long slotKey) {
+            return (int) (slotKey ^ (slotKey >>> 32)) & (capacity - 1);
+        }
+
+        int next(int slot) {
+            return (slot + 1) & (capacity - 1);
+        }
+
+        int keyOffset(int slot) {
+            return HEADER_LENGTH + slot * SLOT_LENGTH;
+        }
+
+        void insert(long slotKey, long value) {
+            int slot = start(slotKey);
+            while (buffer.getLong(keyOffset(slot)) != 0) {
+                slot = next(slot);
+            }
+            LONGS.setRelease(buffer, keyOffset(slot) + 8, value);
+            LONGS.setRelease(buffer, keyOffset(slot), slotKey);
+            buffer.putInt(USED, buffer.getInt(USED) + 1);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.urlshortener.repository;
+
+import com.urlshortener.analytics.ClickEventRecorder;
+import com.urlshortener.cache.CacheInvalidationBus;
+import com.urlshortener.cache.ShortCodeFilter;
+import com.urlshortener.model.UrlMapping;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisElementReader;
+import org.springframework.data.redis.serializer.RedisElementWriter;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Non-blocking counterpart of {@link RedisUrlRepository} for the reactive serving mode.
+ * Uses the same keys and scripts, so both stacks can serve the same data, and reads from the
+ * primary in the same cases, and updates the {@link ShortCodeFilter} in the same way.
+ * On Redis Cluster its writes are the blocking step sequence of
+ * {@link ClusterMappingWriter}, run on the bounded elastic scheduler.
+ */
+@Repository
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveRedisUrlRepository {
+    private final ReactiveRedisTemplate<String, byte[]> redisTemplate;
+    private final CacheInvalidationBus invalidationBus;
+    private final ShortCodeFilter codeFilter;
+    private final long defaultTtlSeconds;
+    private final boolean replicaReads;
+    private final ClusterMappingWriter clusterWriter;
+
+    public ReactiveRedisUrlRepository(ReactiveRedisConnectionFactory connectionFactory, CacheInvalidationBus invalidationBus,
+                                      ShortCodeFilter codeFilter,
+                                      @Value("${urlshortener.mapping.default-ttl:30d}") Duration defaultTtl,
+                                      @Value("${urlshortener.redis.read-from:}") String readFrom) {
+        // Mapping values are binary, so hash values are read as raw bytes
+        this.redisTemplate = new ReactiveRedisTemplate<>(connectionFactory,
+                RedisSerializationContext.<String, byte[]>newSerializationContext(RedisSerializer.string())
+                        .value(RedisSerializer.byteArray())
+                        .hashKey(RedisSerializer.string())
+                        .hashValue(RedisSerializer.byteArray())
+                        .build());
+        this.invalidationBus = invalidationBus;
+        this.codeFilter = codeFilter;
+        this.defaultTtlSeconds = defaultTtl.getSeconds();
+        this.replicaReads = !readFrom.isEmpty();
+        this.clusterWriter = ClusterMappingWriter.isCluster(connectionFactory)
+                ? new ClusterMappingWriter(new StringRedisTemplate((RedisConnectionFactory) connectionFactory)) : null;
+    }
+
+    public Mono<String> findOriginalUrl(String shortUrl) {
+        return findValue(shortUrl)
+                .filter(value -> MappingCodec.isLive(value, RedisUrlRepository.nowEpochSecond()))
+                .map(MappingCodec::decodeUrl);
+    }
+
+    /**
+     * Reads the whole mapping with its metadata, and its hit count from the click totals.
+     */
+    public Mono<UrlMapping> findMapping(String shortUrl) {
+        Mono<Long> hits = redisTemplate.<String, byte[]>opsForHash()
+                .get(ClickEventRecorder.CLICKS_NAMESPACE + shortUrl, ClickEventRecorder.TOTAL_FIELD)
+                .map(value -> Long.parseLong(new String(value, StandardCharsets.US_ASCII)))
+                .defaultIfEmpty(0L);
+        return findValue(shortUrl)
+                .filter(value -> MappingCodec.isLive(value, RedisUrlRepository.nowEpochSecond()))
+                .map(value -> MappingCodec.decode(shortUrl, value))
+                .zipWith(hits, (mapping, hitCount) -> {
+                    mapping.setHitCount(hitCount);
+                    return mapping;
+                });
+    }
+
+    /**
+     * @return false if the code is already taken, in which case nothing is written
+     */
+    public Mono<Boolean> saveIfAbsent(UrlMapping urlMapping) {
+        return Mono.defer(() -> save(urlMapping));
+    }
+
+    private Mono<Boolean> save(UrlMapping urlMapping) {
+        codeFilter.add(urlMapping.getShortUrl());
+        if (clusterWriter != null) {
+            return Mono.fromCallable(() -> clusterWriter.saveAll(List.of(urlMapping), defaultTtlSeconds, true).get(0))
+                    .subscribeOn(Schedulers.boundedElastic())
+                    .map(previousShortUrl -> claimed(urlMapping, previousShortUrl))
+                    .defaultIfEmpty(false);
+        }
+        // Deferred so an unencodable mapping surfaces as an error signal
+        byte[] digest = MappingKeys.digest(urlMapping.getOriginalUrl());
+        return redisTemplate.execute(
+                RedisUrlRepository.SAVE_SCRIPT,
+                RedisUrlRepository.saveKeys(urlMapping, digest),
+                Arrays.asList(RedisUrlRepository.saveArgs(urlMapping, digest,
+                        defaultTtlSeconds, true, RedisUrlRepository.nowEpochSecond())),
+                RedisElementWriter.from(RedisSerializer.byteArray()),
+                RedisElementReader.from(RedisSerializer.string()))
+                .next()
+                .map(previousShortUrl -> claimed(urlMapping, previousShortUrl))
+                .defaultIfEmpty(false);
+    }
+
+    public Mono<Void> delete(String shortUrl) {
+        Mono<?> delete = clusterWriter != null
+                ? Mono.fromCallable(() -> clusterWriter.delete(shortUrl)).subscribeOn(Schedulers.boundedElastic())
+                : redisTemplate.execute(
+                        RedisUrlRepository.DELETE_SCRIPT,
+                        List.of(MappingKeys.forwardKey(shortUrl)),
+                        List.of(RedisUrlRepository.bytes(shortUrl))).then();
+        return delete.then(Mono.fromRunnable(() -> {
+            codeFilter.remove(shortUrl);
+            invalidationBus.invalidate(shortUrl);
+        }));
+    }
+
+    private boolean claimed(UrlMapping urlMapping, String previousShortUrl) {
+        invalidationBus.invalidate(urlMapping.getShortUrl());
+        if (!previousShortUrl.isEmpty()) {
+            invalidationBus.invalidate(previousShortUrl);
+        }
+        return true;
+    }
+
+    /**
+     * Reads the code's forward entry, from the primary where {@link RedisUrlRepository} would.
+     */
+    private Mono<byte[]> findValue(String shortUrl) {
+        String key = MappingKeys.forwardKey(shortUrl);
+        Mono<byte[]> value = redisTemplate.<String, byte[]>opsForHash().get(key, shortUrl);
+        if (!replicaReads) {
+            return value;
+        }
+        Mono<byte[]> fromPrimary = redisTemplate.execute(
+                RedisUrlRepository.PRIMARY_READ_SCRIPT,
+                List.of(key),
+                List.of(RedisUrlRepository.bytes(shortUrl)),
+                RedisElementWriter.from(RedisSerializer.byteArray()),
+                RedisElementReader.from(RedisSerializer.byteArray()))
+                .next();
+        return invalidationBus.isRecentlyInvalidated(shortUrl) ? fromPrimary : value.switchIfEmpty(fromPrimary);
+    }
+}
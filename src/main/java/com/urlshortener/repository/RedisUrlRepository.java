@@ -1,63 +1,430 @@
 package com.urlshortener.repository;
 
+import com.urlshortener.analytics.ClickEventRecorder;
+import com.urlshortener.cache.CacheInvalidationBus;
+import com.urlshortener.cache.ShortCodeFilter;
 import com.urlshortener.model.UrlMapping;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Repository;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
+/**
+ * Stores mappings in the compact layout described by {@link MappingKeys} and {@link MappingCodec}.
+ * The layout written before it ({@code url:<code>} and {@code reverse:<originalUrl>} strings)
+ * is converted by {@link LegacyLayoutMigrator}.
+ * <p>
+ * On Redis Cluster, writes go through {@link ClusterMappingWriter} instead of the scripts here.
+ * With reads going to replicas ({@code urlshortener.redis.read-from}), a replica may not have
+ * the latest write yet, so misses, and codes written or invalidated within the primary read
+ * window (see {@link CacheInvalidationBus#isRecentlyInvalidated}), are read again from the primary.
+ * <p>
+ * Codes are added to the {@link ShortCodeFilter} before they are written and removed after they
+ * are deleted. Lookups do not consult it: it can lag writes made on other nodes, so only the
+ * store can say that a code does not exist.
+ */
 @Repository
-public class RedisUrlRepository {
+@ConditionalOnProperty(name = "urlshortener.store.type", havingValue = "redis", matchIfMissing = true)
+public class RedisUrlRepository implements UrlStore {
     private final RedisTemplate<String, String> redisTemplate;
-    private static final String URL_NAMESPACE = "url:";
-    private static final String REVERSE_LOOKUP_NAMESPACE = "reverse:";
+    private final CacheInvalidationBus invalidationBus;
+    private final ShortCodeFilter codeFilter;
+    private final int mgetChunkSize;
+    private final long defaultTtlSeconds;
+    private final boolean replicaReads;
+    private final ClusterMappingWriter clusterWriter;
+    static final RedisScript<String> SAVE_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/save_mapping.lua"), String.class);
+    static final RedisScript<Long> DELETE_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/delete_mapping.lua"), Long.class);
+    static final RedisScript<Long> REFRESH_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/refresh_expiry.lua"), Long.class);
+    static final RedisScript<List> SWEEP_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/sweep_bucket.lua"), List.class);
+    static final RedisScript<byte[]> PRIMARY_READ_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/read_primary.lua"), byte[].class);
 
-    public RedisUrlRepository(RedisTemplate<String, String> redisTemplate) {
+    public RedisUrlRepository(RedisTemplate<String, String> redisTemplate, CacheInvalidationBus invalidationBus,
+                              int mgetChunkSize, Duration defaultTtl, String readFrom) {
+        this(redisTemplate, invalidationBus, new ShortCodeFilter(), mgetChunkSize, defaultTtl, readFrom);
+    }
+
+    @Autowired
+    public RedisUrlRepository(RedisTemplate<String, String> redisTemplate, CacheInvalidationBus invalidationBus,
+                              ShortCodeFilter codeFilter,
+                              @Value("${urlshortener.redis.mget-chunk-size:500}") int mgetChunkSize,
+                              @Value("${urlshortener.mapping.default-ttl:30d}") Duration defaultTtl,
+                              @Value("${urlshortener.redis.read-from:}") String readFrom) {
         this.redisTemplate = redisTemplate;
+        this.invalidationBus = invalidationBus;
+        this.codeFilter = codeFilter;
+        this.mgetChunkSize = mgetChunkSize;
+        this.defaultTtlSeconds = defaultTtl.getSeconds();
+        this.replicaReads = !readFrom.isEmpty();
+        this.clusterWriter = ClusterMappingWriter.isCluster(redisTemplate.getConnectionFactory())
+                ? new ClusterMappingWriter(redisTemplate) : null;
     }
 
+    /**
+     * Reads the whole mapping with its metadata, and its hit count from the click totals.
+     */
+    @Override
     public Optional<UrlMapping> findByShortUrl(String shortUrl) {
-        String originalUrl = redisTemplate.opsForValue().get(URL_NAMESPACE + shortUrl);
-        if (originalUrl != null) {
-            return Optional.of(new UrlMapping(originalUrl, shortUrl));
+        byte[] field = bytes(shortUrl);
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.hashCommands().hGet(bytes(MappingKeys.forwardKey(field)), field);
+            connection.hashCommands().hGet(bytes(ClickEventRecorder.CLICKS_NAMESPACE + shortUrl), bytes(ClickEventRecorder.TOTAL_FIELD));
+            return null;
+        }, RedisSerializer.byteArray());
+        byte[] value = fromPrimaryIfNeeded(shortUrl, field, (byte[]) results.get(0));
+        if (!MappingCodec.isLive(value, nowEpochSecond())) {
+            return Optional.empty();
         }
-        return Optional.empty();
+        UrlMapping mapping = MappingCodec.decode(shortUrl, value);
+        byte[] hits = (byte[]) results.get(1);
+        if (hits != null) {
+            mapping.setHitCount(Long.parseLong(new String(hits, StandardCharsets.US_ASCII)));
+        }
+        return Optional.of(mapping);
     }
 
-    public Optional<UrlMapping> findByOriginalUrl(String originalUrl) {
-        String shortUrl = redisTemplate.opsForValue().get(REVERSE_LOOKUP_NAMESPACE + originalUrl);
-        if (shortUrl != null) {
-            return Optional.of(new UrlMapping(originalUrl, shortUrl));
+    /**
+     * Reads only the URL of the mapping, skipping its metadata.
+     */
+    @Override
+    public Optional<String> findOriginalUrl(String shortUrl) {
+        byte[] value = findValue(shortUrl);
+        if (MappingCodec.isLive(value, nowEpochSecond())) {
+            return Optional.of(MappingCodec.decodeUrl(value));
         }
         return Optional.empty();
     }
 
+    /**
+     * Looks up the URLs of many codes with pipelined HGETs, one round trip per chunk of codes.
+     *
+     * @return the URL of each code that exists, in the order of the codes given
+     */
+    @Override
+    public Map<String, String> findOriginalUrls(Collection<String> shortUrls) {
+        List<String> codes = new ArrayList<>(shortUrls);
+        Map<String, String> originalUrls = new LinkedHashMap<>();
+        long now = nowEpochSecond();
+        for (int from = 0; from < codes.size(); from += mgetChunkSize) {
+            List<String> chunk = codes.subList(from, Math.min(from + mgetChunkSize, codes.size()));
+            List<Object> values = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (String code : chunk) {
+                    byte[] field = bytes(code);
+                    connection.hashCommands().hGet(bytes(MappingKeys.forwardKey(field)), field);
+                }
+                return null;
+            }, RedisSerializer.byteArray());
+            if (replicaReads) {
+                values = fromPrimaryIfNeeded(chunk, values);
+            }
+            for (int i = 0; i < chunk.size(); i++) {
+                byte[] value = (byte[]) values.get(i);
+                if (MappingCodec.isLive(value, now)) {
+                    originalUrls.put(chunk.get(i), MappingCodec.decodeUrl(value));
+                }
+            }
+        }
+        return originalUrls;
+    }
+
+    /**
+     * Follows the reverse index and confirms the hit against the URL in the forward
+     * entry, so a digest collision or a stale reverse entry is reported as no mapping.
+     * With reads going to replicas, a lookup that finds nothing is made again on the primary.
+     */
+    @Override
+    public Optional<UrlMapping> findByOriginalUrl(String originalUrl) {
+        Optional<UrlMapping> mapping = findByOriginalUrl(originalUrl, false);
+        return mapping.isEmpty() && replicaReads ? findByOriginalUrl(originalUrl, true) : mapping;
+    }
+
+    @Override
     public boolean existsByShortUrl(String shortUrl) {
-        return Boolean.TRUE.equals(redisTemplate.hasKey(URL_NAMESPACE + shortUrl));
+        return MappingCodec.isLive(findValue(shortUrl), nowEpochSecond());
     }
 
+    /**
+     * Writes the mapping, replacing whatever the code pointed to and dropping
+     * the code previously mapped to the same URL, in one atomic round trip.
+     */
+    @Override
     public UrlMapping save(UrlMapping urlMapping) {
-        redisTemplate.opsForValue().set(
-            URL_NAMESPACE + urlMapping.getShortUrl(),
-            urlMapping.getOriginalUrl(),
-            30,
-            TimeUnit.DAYS
-        );
-        redisTemplate.opsForValue().set(
-            REVERSE_LOOKUP_NAMESPACE + urlMapping.getOriginalUrl(),
-            urlMapping.getShortUrl(),
-            30,
-            TimeUnit.DAYS
-        );
+        write(urlMapping, false);
         return urlMapping;
     }
 
+    /**
+     * Atomically claims the code for the mapping, dropping the code previously
+     * mapped to the same URL.
+     *
+     * @return false if the code is already taken, in which case nothing is written
+     */
+    @Override
+    public boolean saveIfAbsent(UrlMapping urlMapping) {
+        return write(urlMapping, true);
+    }
+
+    /**
+     * Claims codes for many mappings at once, sending every conditional write
+     * in one pipeline instead of one round trip per mapping.
+     *
+     * @return for each mapping, in order, whether its code was claimed
+     */
+    @Override
+    public List<Boolean> saveAllIfAbsent(List<UrlMapping> mappings) {
+        for (UrlMapping mapping : mappings) {
+            codeFilter.add(mapping.getShortUrl());
+        }
+        List<?> previousShortUrls = clusterWriter != null
+                ? clusterWriter.saveAll(mappings, defaultTtlSeconds, true)
+                : withScript(redisTemplate, SAVE_SCRIPT, () -> pipelineSaveIfAbsent(mappings));
+
+        List<Boolean> claimed = new ArrayList<>(mappings.size());
+        for (int i = 0; i < mappings.size(); i++) {
+            String previousShortUrl = (String) previousShortUrls.get(i);
+            claimed.add(previousShortUrl != null);
+            if (previousShortUrl != null) {
+                invalidationBus.invalidate(mappings.get(i).getShortUrl());
+                if (!previousShortUrl.isEmpty()) {
+                    invalidationBus.invalidate(previousShortUrl);
+                }
+            }
+        }
+        return claimed;
+    }
+
+    @Override
     public void delete(String shortUrl) {
-        String originalUrl = redisTemplate.opsForValue().get(URL_NAMESPACE + shortUrl);
-        if (originalUrl != null) {
-            redisTemplate.delete(URL_NAMESPACE + shortUrl);
-            redisTemplate.delete(REVERSE_LOOKUP_NAMESPACE + originalUrl);
+        if (clusterWriter != null) {
+            clusterWriter.delete(shortUrl);
+        } else {
+            redisTemplate.execute(DELETE_SCRIPT, List.of(MappingKeys.forwardKey(shortUrl)), shortUrl);
+        }
+        codeFilter.remove(shortUrl);
+        invalidationBus.invalidate(shortUrl);
+    }
+
+    /**
+     * Runs the refresh script for each code, in one pipeline.
+     */
+    @Override
+    public int refreshExpiry(Collection<String> shortUrls, long minExtensionSeconds) {
+        if (clusterWriter != null) {
+            return clusterWriter.refreshExpiry(shortUrls, minExtensionSeconds);
+        }
+        byte[] sha = REFRESH_SCRIPT.getSha1().getBytes(StandardCharsets.UTF_8);
+        byte[] now = bytes(String.valueOf(nowEpochSecond()));
+        byte[] minExtension = bytes(String.valueOf(minExtensionSeconds));
+        List<Object> results = withScript(redisTemplate, REFRESH_SCRIPT, () ->
+                redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                    for (String shortUrl : shortUrls) {
+                        byte[] field = bytes(shortUrl);
+                        connection.scriptingCommands().evalSha(sha, ReturnType.INTEGER, 1,
+                                bytes(MappingKeys.forwardKey(field)), field, now, minExtension);
+                    }
+                    return null;
+                }));
+        int refreshed = 0;
+        for (Object result : results) {
+            if (Long.valueOf(1).equals(result)) {
+                refreshed++;
+            }
+        }
+        return refreshed;
+    }
+
+    private List<Object> pipelineSaveIfAbsent(List<UrlMapping> mappings) {
+        byte[] sha = SAVE_SCRIPT.getSha1().getBytes(StandardCharsets.UTF_8);
+        return redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (UrlMapping mapping : mappings) {
+                evalSaveScript(connection, sha, mapping, defaultTtlSeconds);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Runs a call that sends EVALSHAs of the script in a pipeline, loading the script
+     * and running the call again if Redis does not have it yet.
+     */
+    static <T> T withScript(RedisTemplate<String, String> redisTemplate, RedisScript<?> script, Supplier<T> call) {
+        return withScript(redisTemplate, List.of(script), call);
+    }
+
+    /**
+     * As {@link #withScript(RedisTemplate, RedisScript, Supplier)}, for a call that sends several scripts.
+     */
+    static <T> T withScript(RedisTemplate<String, String> redisTemplate, Collection<? extends RedisScript<?>> scripts, Supplier<T> call) {
+        try {
+            return call.get();
+        } catch (DataAccessException e) {
+            String rootMessage = NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+            if (rootMessage == null || !rootMessage.contains("NOSCRIPT")) {
+                throw e;
+            }
+            redisTemplate.execute((RedisCallback<Object>) connection -> {
+                for (RedisScript<?> script : scripts) {
+                    connection.scriptingCommands().scriptLoad(script.getScriptAsString().getBytes(StandardCharsets.UTF_8));
+                }
+                return null;
+            });
+            return call.get();
+        }
+    }
+
+    static void evalSaveScript(RedisConnection connection, byte[] sha, UrlMapping mapping, long defaultTtlSeconds) {
+        byte[] digest = MappingKeys.digest(mapping.getOriginalUrl());
+        List<String> keys = saveKeys(mapping, digest);
+        byte[][] args = saveArgs(mapping, digest, defaultTtlSeconds, true, nowEpochSecond());
+        byte[][] keysAndArgs = new byte[2 + args.length][];
+        keysAndArgs[0] = bytes(keys.get(0));
+        keysAndArgs[1] = bytes(keys.get(1));
+        System.arraycopy(args, 0, keysAndArgs, 2, args.length);
+        connection.scriptingCommands().evalSha(sha, ReturnType.VALUE, 2, keysAndArgs);
+    }
+
+    static List<String> saveKeys(UrlMapping mapping, byte[] digest) {
+        return List.of(MappingKeys.forwardKey(mapping.getShortUrl()), MappingKeys.reverseKey(digest));
+    }
+
+    /**
+     * Encodes the mapping with {@link MappingCodec#encodeForWrite}, which also sets its expiry and update time.
+     */
+    static byte[][] saveArgs(UrlMapping mapping, byte[] digest, long defaultTtlSeconds, boolean onlyIfAbsent, long now) {
+        byte[] value = MappingCodec.encodeForWrite(mapping, digest, defaultTtlSeconds, now);
+        return new byte[][] {
+            bytes(mapping.getShortUrl()),
+            value,
+            bytes(String.valueOf(MappingCodec.expiresAt(value) - now)),
+            bytes(onlyIfAbsent ? "1" : "0"),
+            bytes(String.valueOf(now))
+        };
+    }
+
+    static long nowEpochSecond() {
+        return System.currentTimeMillis() / 1000;
+    }
+
+    private byte[] findValue(String shortUrl) {
+        byte[] field = bytes(shortUrl);
+        byte[] value = redisTemplate.execute((RedisCallback<byte[]>) connection ->
+                connection.hashCommands().hGet(bytes(MappingKeys.forwardKey(field)), field));
+        return fromPrimaryIfNeeded(shortUrl, field, value);
+    }
+
+    private Optional<UrlMapping> findByOriginalUrl(String originalUrl, boolean fromPrimary) {
+        byte[] digest = MappingKeys.digest(originalUrl);
+        String reverseKey = MappingKeys.reverseKey(digest);
+        byte[] field = MappingKeys.reverseField(digest);
+        byte[] shortUrl = fromPrimary ? readPrimary(reverseKey, field) : redisTemplate.execute((RedisCallback<byte[]>) connection ->
+                connection.hashCommands().hGet(bytes(reverseKey), field));
+        if (shortUrl == null) {
+            return Optional.empty();
+        }
+        String code = new String(shortUrl, StandardCharsets.UTF_8);
+        byte[] value = fromPrimary ? readPrimary(MappingKeys.forwardKey(shortUrl), shortUrl) : findValue(code);
+        if (MappingCodec.isLive(value, nowEpochSecond()) && MappingCodec.hasDigest(value, digest)
+                && MappingCodec.mapsUrl(value, originalUrl)) {
+            return Optional.of(MappingCodec.decode(code, value));
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * With reads going to replicas, reads the code's forward entry again from the primary
+     * if the replica had none or the code was written too recently to trust the replica.
+     */
+    private byte[] fromPrimaryIfNeeded(String shortUrl, byte[] field, byte[] value) {
+        if (replicaReads && (value == null || invalidationBus.isRecentlyInvalidated(shortUrl))) {
+            return readPrimary(MappingKeys.forwardKey(field), field);
+        }
+        return value;
+    }
+
+    /**
+     * {@link #fromPrimaryIfNeeded(String, byte[], byte[])} for a chunk of codes, in one pipeline.
+     */
+    private List<Object> fromPrimaryIfNeeded(List<String> codes, List<Object> values) {
+        List<Integer> stale = new ArrayList<>();
+        for (int i = 0; i < codes.size(); i++) {
+            if (values.get(i) == null || invalidationBus.isRecentlyInvalidated(codes.get(i))) {
+                stale.add(i);
+            }
+        }
+        if (stale.isEmpty()) {
+            return values;
+        }
+        byte[] sha = PRIMARY_READ_SCRIPT.getSha1().getBytes(StandardCharsets.UTF_8);
+        List<Object> reread = withScript(redisTemplate, PRIMARY_READ_SCRIPT, () ->
+                redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                    for (int i : stale) {
+                        byte[] field = bytes(codes.get(i));
+                        connection.scriptingCommands().evalSha(sha, ReturnType.VALUE, 1, bytes(MappingKeys.forwardKey(field)), field);
+                    }
+                    return null;
+                }, RedisSerializer.byteArray()));
+        List<Object> merged = new ArrayList<>(values);
+        for (int s = 0; s < stale.size(); s++) {
+            merged.set(stale.get(s), reread.get(s));
+        }
+        return merged;
+    }
+
+    private byte[] readPrimary(String key, byte[] field) {
+        return redisTemplate.execute(PRIMARY_READ_SCRIPT, RedisSerializer.byteArray(), RedisSerializer.byteArray(),
+                List.of(key), (Object) field);
+    }
+
+    static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private boolean write(UrlMapping urlMapping, boolean onlyIfAbsent) {
+        codeFilter.add(urlMapping.getShortUrl());
+        String previousShortUrl;
+        if (clusterWriter != null) {
+            previousShortUrl = clusterWriter.saveAll(List.of(urlMapping), defaultTtlSeconds, onlyIfAbsent).get(0);
+        } else {
+            byte[] digest = MappingKeys.digest(urlMapping.getOriginalUrl());
+            previousShortUrl = redisTemplate.execute(
+                SAVE_SCRIPT,
+                RedisSerializer.byteArray(),
+                RedisSerializer.string(),
+                saveKeys(urlMapping, digest),
+                (Object[]) saveArgs(urlMapping, digest, defaultTtlSeconds, onlyIfAbsent, nowEpochSecond())
+            );
+        }
+        if (previousShortUrl == null) {
+            return false;
+        }
+        invalidationBus.invalidate(urlMapping.getShortUrl());
+        if (!previousShortUrl.isEmpty()) {
+            invalidationBus.invalidate(previousShortUrl);
         }
+        return true;
     }
 } 
\ No newline at end of file
@@ -0,0 +1,195 @@
+package com.urlshortener.repository;
+
+import com.urlshortener.model.UrlMapping;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Primary;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Repository;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Guards the Redis store so that a stalled Redis fails calls quickly instead of holding every
+ * request thread for the command timeout.
+ * <p>
+ * Calls pass a {@link CircuitBreaker}, which opens when too many of them fail and then refuses
+ * them outright until a probe succeeds. Reads and writes each have a bulkhead, a bound on the
+ * calls of that kind in flight, so a burst of slow writes cannot take the threads reads need.
+ * A refused call throws {@link StoreUnavailableException}. Only failures of the store itself
+ * count towards opening the circuit; a refusal by a bulkhead does not.
+ * <p>
+ * While calls fail, the service answers lookups from last-known-good copies and creates fail
+ * with 503, so the node degrades to read-only rather than failing outright.
+ */
+@Primary
+@Repository
+@ConditionalOnExpression("${urlshortener.resilience.enabled:true} and '${urlshortener.store.type:redis}' == 'redis'")
+public class ResilientUrlStore implements UrlStore, MeterBinder {
+    private final UrlStore store;
+    private final CircuitBreaker circuitBreaker;
+    private final Bulkhead reads;
+    private final Bulkhead writes;
+    private final long bulkheadWaitNanos;
+
+    @Autowired
+    public ResilientUrlStore(RedisUrlRepository store,
+                             @Value("${urlshortener.resilience.failure-rate:0.5}") double failureRate,
+                             @Value("${urlshortener.resilience.minimum-calls:20}") int minimumCalls,
+                             @Value("${urlshortener.resilience.window:10s}") Duration window,
+                             @Value("${urlshortener.resilience.open-duration:5s}") Duration openDuration,
+                             @Value("${urlshortener.resilience.read-concurrency:64}") int readConcurrency,
+                             @Value("${urlshortener.resilience.write-concurrency:16}") int writeConcurrency,
+                             @Value("${urlshortener.resilience.bulkhead-wait:20ms}") Duration bulkheadWait) {
+        this((UrlStore) store, new CircuitBreaker(minimumCalls, failureRate, window.toNanos(), openDuration.toNanos()),
+                readConcurrency, writeConcurrency, bulkheadWait);
+    }
+
+    ResilientUrlStore(UrlStore store, CircuitBreaker circuitBreaker, int readConcurrency, int writeConcurrency,
+                      Duration bulkheadWait) {
+        this.store = store;
+        this.circuitBreaker = circuitBreaker;
+        this.reads = new Bulkhead("read", readConcurrency);
+        this.writes = new Bulkhead("write", writeConcurrency);
+        this.bulkheadWaitNanos = bulkheadWait.toNanos();
+    }
+
+    @Override
+    public Optional<UrlMapping> findByShortUrl(String shortUrl) {
+        return call(reads, () -> store.findByShortUrl(shortUrl));
+    }
+
+    @Override
+    public Optional<String> findOriginalUrl(String shortUrl) {
+        return call(reads, () -> store.findOriginalUrl(shortUrl));
+    }
+
+    @Override
+    public Map<String, String> findOriginalUrls(Collection<String> shortUrls) {
+        return call(reads, () -> store.findOriginalUrls(shortUrls));
+    }
+
+    @Override
+    public Optional<UrlMapping> findByOriginalUrl(String originalUrl) {
+        return call(reads, () -> store.findByOriginalUrl(originalUrl));
+    }
+
+    @Override
+    public boolean existsByShortUrl(String shortUrl) {
+        return call(reads, () -> store.existsByShortUrl(shortUrl));
+    }
+
+    @Override
+    public UrlMapping save(UrlMapping urlMapping) {
+        return call(writes, () -> store.save(urlMapping));
+    }
+
+    @Override
+    public boolean saveIfAbsent(UrlMapping urlMapping) {
+        return call(writes, () -> store.saveIfAbsent(urlMapping));
+    }
+
+    @Override
+    public List<Boolean> saveAllIfAbsent(List<UrlMapping> mappings) {
+        return call(writes, () -> store.saveAllIfAbsent(mappings));
+    }
+
+    @Override
+    public void delete(String shortUrl) {
+        call(writes, () -> {
+            store.delete(shortUrl);
+            return null;
+        });
+    }
+
+    @Override
+    public int refreshExpiry(Collection<String> shortUrls, long minExtensionSeconds) {
+        return call(writes, () -> store.refreshExpiry(shortUrls, minExtensionSeconds));
+    }
+
+    CircuitBreaker.State circuitState() {
+        return circuitBreaker.state();
+    }
+
+    private <T> T call(Bulkhead bulkhead, Supplier<T> call) {
+        if (!bulkhead.enter(bulkheadWaitNanos)) {
+            bulkhead.rejected.increment();
+            throw new StoreUnavailableException("Too many " + bulkhead.traffic + "s waiting on the store");
+        }
+        try {
+            CircuitBreaker.Phase phase = circuitBreaker.tryAcquire();
+            if (phase == null) {
+                bulkhead.shortCircuited.increment();
+                throw new StoreUnavailableException("The circuit to the store is open");
+            }
+            try {
+                T result = call.get();
+                circuitBreaker.onSuccess(phase);
+                return result;
+            } catch (DataAccessException e) {
+                circuitBreaker.onFailure(phase);
+                throw e;
+            } catch (RuntimeException | Error e) {
+                // The store answered; the call failed for a reason of its own
+                circuitBreaker.onSuccess(phase);
+                throw e;
+            }
+        } finally {
+            bulkhead.permits.release();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("urlshortener.store.circuit", circuitBreaker, breaker -> breaker.state().ordinal())
+                .description("State of the circuit to the store: 0 closed, 1 open, 2 half open")
+                .register(registry);
+        for (Bulkhead bulkhead : List.of(reads, writes)) {
+            FunctionCounter.builder("urlshortener.store.rejected", bulkhead.shortCircuited, LongAdder::sum)
+                    .description("Store calls refused without being attempted")
+                    .tags("traffic", bulkhead.traffic, "reason", "circuit")
+                    .register(registry);
+            FunctionCounter.builder("urlshortener.store.rejected", bulkhead.rejected, LongAdder::sum)
+                    .description("Store calls refused without being attempted")
+                    .tags("traffic", bulkhead.traffic, "reason", "bulkhead")
+                    .register(registry);
+        }
+    }
+
+    private static final class Bulkhead {
+        final String traffic;
+        final Semaphore permits;
+        final LongAdder rejected = new LongAdder();
+        final LongAdder shortCircuited = new LongAdder();
+
+        Bulkhead(String traffic, int concurrency) {
+            this.traffic = traffic;
+            this.permits = new Semaphore(concurrency);
+        }
+
+        boolean enter(long waitNanos) {
+            if (permits.tryAcquire()) {
+                return true;
+            }
+            try {
+                return waitNanos > 0 && permits.tryAcquire(waitNanos, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.urlshortener.repository;
+
+import com.urlshortener.cache.ShortCodeFilter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Loads every stored code into the {@link ShortCodeFilter}: at startup, and again every rebuild
+ * interval, which sheds codes that expired or were deleted on other nodes and recovers codes
+ * whose invalidation was lost.
+ * <p>
+ * Like {@link ExpirySweeper}, it walks the numbered forward buckets instead of SCANning the
+ * keyspace, reading the codes of a few buckets per run with pipelined HKEYS, so a pass never
+ * keeps Redis or the scheduler busy for long. Each node makes its own pass, since each holds
+ * its own filter. A pass reads its first buckets one run after the new filter is started, so
+ * writes that were in flight then, and were only added to the previous filter, have reached
+ * Redis by the time their bucket is read.
+ */
+@Component
+@ConditionalOnExpression("(${urlshortener.code-filter.enabled:'${urlshortener.id-generator.mode:sequence}' == 'random'})"
+        + " and '${urlshortener.store.type:redis}' == 'redis'")
+public class ShortCodeFilterLoader {
+    private final RedisTemplate<String, String> redisTemplate;
+    private final ShortCodeFilter codeFilter;
+    private final int bucketsPerRun;
+    private final long rebuildIntervalMillis;
+    private int nextBucket = -1;
+    private long nextPassAt;
+
+    public ShortCodeFilterLoader(RedisTemplate<String, String> redisTemplate, ShortCodeFilter codeFilter,
+                                 @Value("${urlshortener.code-filter.buckets-per-run:512}") int bucketsPerRun,
+                                 @Value("${urlshortener.code-filter.rebuild-interval:10m}") Duration rebuildInterval) {
+        this.redisTemplate = redisTemplate;
+        this.codeFilter = codeFilter;
+        this.bucketsPerRun = bucketsPerRun;
+        this.rebuildIntervalMillis = rebuildInterval.toMillis();
+    }
+
+    @Scheduled(fixedDelayString = "${urlshortener.code-filter.load-interval-ms:50}")
+    public void run() {
+        if (nextBucket < 0) {
+            if (System.currentTimeMillis() >= nextPassAt) {
+                codeFilter.startRebuild();
+                nextBucket = 0;
+            }
+            return;
+        }
+        try {
+            int count = Math.min(bucketsPerRun, MappingKeys.BUCKETS - nextBucket);
+            if (!codeFilter.load(readCodes(nextBucket, count))) {
+                // The new filter filled up; the next run starts a larger one
+                codeFilter.abandonRebuild();
+                nextBucket = -1;
+                return;
+            }
+            nextBucket += count;
+            if (nextBucket == MappingKeys.BUCKETS) {
+                codeFilter.finishRebuild();
+                nextBucket = -1;
+                nextPassAt = System.currentTimeMillis() + rebuildIntervalMillis;
+            }
+        } catch (DataAccessException e) {
+            // The same buckets are read again on the next run
+        }
+    }
+
+    /**
+     * @return the codes of the forward buckets numbered from the given one, expired ones included
+     */
+    List<String> readCodes(int from, int count) {
+        List<Object> replies = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (int bucket = from; bucket < from + count; bucket++) {
+                connection.hashCommands().hKeys(RedisUrlRepository.bytes(MappingKeys.forwardBucket(bucket)));
+            }
+            return null;
+        }, RedisSerializer.string());
+        List<String> codes = new ArrayList<>();
+        for (Object reply : replies) {
+            for (Object code : (Collection<?>) reply) {
+                codes.add((String) code);
+            }
+        }
+        return codes;
+    }
+}
@@ -0,0 +1,15 @@
+package com.urlshortener.repository;
+
+import org.springframework.dao.DataAccessResourceFailureException;
+
+/**
+ * A store call refused without being attempted, because the circuit to the store is open or
+ * too many calls of its kind are already waiting on it. A {@link org.springframework.dao.DataAccessException},
+ * so callers handle it as they handle the store failing.
+ */
+public class StoreUnavailableException extends DataAccessResourceFailureException {
+
+    public StoreUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,63 @@
+package com.urlshortener.repository;
+
+import com.urlshortener.model.UrlMapping;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Where short code mappings are kept. The backend is chosen with {@code urlshortener.store.type}:
+ * {@code redis} ({@link RedisUrlRepository}, the default) or {@code mmap} ({@link MappedUrlStore}).
+ * <p>
+ * Every backend follows the same rules: a code maps to one URL and a URL to at most one code,
+ * so writing a mapping drops the code previously mapped to the same URL; expired mappings
+ * are absent; writes evict the affected codes from the lookup cache.
+ */
+public interface UrlStore {
+
+    /**
+     * Reads the whole mapping with its metadata.
+     */
+    Optional<UrlMapping> findByShortUrl(String shortUrl);
+
+    /**
+     * Reads only the URL of the mapping, skipping its metadata.
+     */
+    Optional<String> findOriginalUrl(String shortUrl);
+
+    /**
+     * @return the URL of each code that exists, in the order of the codes given
+     */
+    Map<String, String> findOriginalUrls(Collection<String> shortUrls);
+
+    Optional<UrlMapping> findByOriginalUrl(String originalUrl);
+
+    boolean existsByShortUrl(String shortUrl);
+
+    /**
+     * Writes the mapping, replacing whatever the code pointed to.
+     */
+    UrlMapping save(UrlMapping urlMapping);
+
+    /**
+     * @return false if the code is already taken, in which case nothing is written
+     */
+    boolean saveIfAbsent(UrlMapping urlMapping);
+
+    /**
+     * @return for each mapping, in order, whether its code was claimed
+     */
+    List<Boolean> saveAllIfAbsent(List<UrlMapping> mappings);
+
+    void delete(String shortUrl);
+
+    /**
+     * Gives each live code its lifetime again, counted from now, unless its expiry would
+     * move by less than the minimum extension. See {@link ExpiryRefresher}.
+     *
+     * @return how many codes had their expiry moved
+     */
+    int refreshExpiry(Collection<String> shortUrls, long minExtensionSeconds);
+}
@@ -0,0 +1,167 @@
+package com.urlshortener.service;
+
+import com.urlshortener.cache.ShortCodeFilter;
+import com.urlshortener.cache.ShortUrlCache;
+import com.urlshortener.generator.ShortCodeGenerator;
+import com.urlshortener.model.UrlMapping;
+import com.urlshortener.repository.ExpiryRefresher;
+import com.urlshortener.repository.ReactiveRedisUrlRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Non-blocking counterpart of {@link UrlShortenerService} for the reactive serving mode.
+ * Concurrent lookups of the same code that miss the cache share one fetch.
+ */
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveUrlShortenerService {
+
+    private final ReactiveRedisUrlRepository urlRepository;
+    private final ShortUrlCache shortUrlCache;
+    private final ShortCodeGenerator shortCodeGenerator;
+    private final ExpiryRefresher expiryRefresher;
+    private final ShortCodeFilter codeFilter;
+    private final Duration maxTtl;
+    private final Counter codeCollisions;
+    private final Counter staleLookups;
+    private final SingleFlight<String, String> urlFlight = new SingleFlight<>();
+    private final SingleFlight<String, UrlMapping> mappingFlight = new SingleFlight<>();
+
+    public ReactiveUrlShortenerService(ReactiveRedisUrlRepository urlRepository, ShortUrlCache shortUrlCache,
+                                       ShortCodeGenerator shortCodeGenerator, ExpiryRefresher expiryRefresher,
+                                       ShortCodeFilter codeFilter, MeterRegistry meterRegistry,
+                                       @Value("${urlshortener.mapping.max-ttl:3650d}") Duration maxTtl) {
+        this.urlRepository = urlRepository;
+        this.shortUrlCache = shortUrlCache;
+        this.shortCodeGenerator = shortCodeGenerator;
+        this.expiryRefresher = expiryRefresher;
+        this.codeFilter = codeFilter;
+        this.maxTtl = maxTtl;
+        this.codeCollisions = Counter.builder("urlshortener.shorten.collisions")
+                .description("Generated short codes that were already taken and had to be regenerated")
+                .register(meterRegistry);
+        this.staleLookups = Counter.builder("urlshortener.lookups.stale")
+                .description("Lookups answered from a last-known-good copy because the store failed")
+                .register(meterRegistry);
+        FunctionCounter.builder("urlshortener.lookups.coalesced", urlFlight, SingleFlight::sharedCount)
+                .description("Lookups answered by a concurrent fetch of the same code instead of their own")
+                .tag("lookup", "url")
+                .register(meterRegistry);
+        FunctionCounter.builder("urlshortener.lookups.coalesced", mappingFlight, SingleFlight::sharedCount)
+                .description("Lookups answered by a concurrent fetch of the same code instead of their own")
+                .tag("lookup", "mapping")
+                .register(meterRegistry);
+    }
+
+    public Mono<UrlMapping> createShortUrl(String originalUrl) {
+        return createShortUrl(originalUrl, null, null);
+    }
+
+    public Mono<UrlMapping> createShortUrl(String originalUrl, String owner, Duration ttl) {
+        return nextShortUrl()
+                .flatMap(shortUrl -> {
+                    UrlMapping mapping = newMapping(originalUrl, shortUrl, owner, ttl);
+                    return urlRepository.saveIfAbsent(mapping)
+                            .flatMap(claimed -> {
+                                if (claimed) {
+                                    return Mono.just(mapping);
+                                }
+                                codeCollisions.increment();
+                                return createShortUrl(originalUrl, owner, ttl);
+                            });
+                });
+    }
+
+    public Mono<UrlMapping> createSpecificShortUrl(String originalUrl, String shortUrl) {
+        return createSpecificShortUrl(originalUrl, shortUrl, null, null);
+    }
+
+    public Mono<UrlMapping> createSpecificShortUrl(String originalUrl, String shortUrl, String owner, Duration ttl) {
+        return Mono.fromCallable(() -> newMapping(originalUrl, shortUrl, owner, ttl))
+                .flatMap(mapping -> urlRepository.saveIfAbsent(mapping)
+                        .flatMap(claimed -> claimed
+                                ? Mono.just(mapping)
+                                : Mono.error(new IllegalArgumentException("Short URL already exists"))));
+    }
+
+    /**
+     * If the store fails, the last URL this node saw for the code is returned instead.
+     *
+     * @return the original URL, or an empty Mono if the code does not exist
+     */
+    public Mono<String> getOriginalUrl(String shortUrl) {
+        String cached = shortUrlCache.getIfPresent(shortUrl);
+        if (cached != null) {
+            if (cached == ShortUrlCache.NOT_FOUND) {
+                return Mono.empty();
+            }
+            expiryRefresher.touch(shortUrl);
+            return Mono.just(cached);
+        }
+        return urlFlight.getAsync(shortUrl, this::loadOriginalUrl)
+                .doOnNext(originalUrl -> expiryRefresher.touch(shortUrl))
+                .onErrorResume(DataAccessException.class, e -> {
+                    String stale = shortUrlCache.getStale(shortUrl);
+                    if (stale == null) {
+                        return Mono.error(e);
+                    }
+                    staleLookups.increment();
+                    return Mono.just(stale);
+                });
+    }
+
+    /**
+     * The stored mapping with its metadata and hit count. Not cached, but concurrent
+     * reads of the same code share one fetch.
+     */
+    public Mono<UrlMapping> getMapping(String shortUrl) {
+        return mappingFlight.getAsync(shortUrl, urlRepository::findMapping);
+    }
+
+    // The fetch is not cancelled with the subscriber: its result is cached for the next lookup
+    private Mono<String> loadOriginalUrl(String shortUrl) {
+        return Mono.fromFuture(() -> shortUrlCache.getAsync(shortUrl,
+                code -> urlRepository.findOriginalUrl(code).toFuture()), true);
+    }
+
+    private UrlMapping newMapping(String originalUrl, String shortUrl, String owner, Duration ttl) {
+        if (originalUrl == null || originalUrl.isBlank()) {
+            throw new IllegalArgumentException("URL must not be blank");
+        }
+        UrlMapping mapping = new UrlMapping(originalUrl, shortUrl);
+        mapping.setOwner(owner);
+        if (ttl != null) {
+            if (ttl.getSeconds() <= 0 || ttl.compareTo(maxTtl) > 0) {
+                throw new IllegalArgumentException("TTL must be between 1 second and " + maxTtl);
+            }
+            mapping.setExpiresAt(LocalDateTime.now().plus(ttl));
+        }
+        return mapping;
+    }
+
+    // The sequence generator occasionally leases ids with a blocking call, so keep it off the event loop
+    private Mono<String> nextShortUrl() {
+        return Mono.fromCallable(this::generateShortUrl).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    // Codes the code filter holds are almost certainly taken, so they are skipped as collisions
+    private String generateShortUrl() {
+        String shortUrl = shortCodeGenerator.next();
+        while (codeFilter.probablyExists(shortUrl)) {
+            codeCollisions.increment();
+            shortUrl = shortCodeGenerator.next();
+        }
+        return shortUrl;
+    }
+}
@@ -0,0 +1,91 @@
+package com.urlshortener.service;
+
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Collapses concurrent loads of the same key into one: the first caller runs the load, and
+ * callers that arrive while it is in flight wait for its result instead of issuing their own.
+ * A key is dropped as soon as its load completes, so nothing is cached and the next call
+ * loads again.
+ * <p>
+ * Loads in flight are held in a {@link ConcurrentHashMap}. Joining or starting one is a read
+ * and a putIfAbsent, which only contend on the bin of the key, so callers of different keys
+ * do not wait on each other. Loads run on the caller's thread, outside the map.
+ */
+final class SingleFlight<K, V> {
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder shared = new LongAdder();
+
+    /**
+     * @return the loaded value, which may be null
+     */
+    V get(K key, Function<? super K, ? extends V> loader) {
+        CompletableFuture<V> running = inFlight.get(key);
+        if (running != null) {
+            shared.increment();
+            return join(running);
+        }
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        running = inFlight.putIfAbsent(key, flight);
+        if (running != null) {
+            shared.increment();
+            return join(running);
+        }
+        try {
+            V value = loader.apply(key);
+            flight.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    /**
+     * Non-blocking variant: subscribers that arrive while a load runs share its result. The load
+     * runs to completion even if the subscriber that started it cancels, since others may wait on it.
+     *
+     * @return the loaded value, or an empty Mono if the load completed empty
+     */
+    Mono<V> getAsync(K key, Function<? super K, ? extends Mono<? extends V>> loader) {
+        return Mono.defer(() -> {
+            CompletableFuture<V> flight = new CompletableFuture<>();
+            CompletableFuture<V> running = inFlight.putIfAbsent(key, flight);
+            if (running != null) {
+                shared.increment();
+                return Mono.fromFuture(running, true);
+            }
+            flight.whenComplete((value, error) -> inFlight.remove(key, flight));
+            Mono.defer(() -> loader.apply(key))
+                    .subscribe(flight::complete, flight::completeExceptionally, () -> flight.complete(null));
+            return Mono.fromFuture(flight, true);
+        });
+    }
+
+    /**
+     * @return how many calls were answered by a load another caller started
+     */
+    long sharedCount() {
+        return shared.sum();
+    }
+
+    // Rethrows a failed load as the exception the loader threw
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
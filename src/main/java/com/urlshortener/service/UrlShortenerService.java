@@ -1,52 +1,251 @@
 package com.urlshortener.service;
 
+import com.urlshortener.cache.ShortCodeFilter;
+import com.urlshortener.cache.ShortUrlCache;
+import com.urlshortener.generator.ShortCodeGenerator;
+import com.urlshortener.model.BatchShortenResult;
 import com.urlshortener.model.UrlMapping;
-import com.urlshortener.repository.RedisUrlRepository;
+import com.urlshortener.repository.ExpiryRefresher;
+import com.urlshortener.repository.UrlStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
 import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.UUID;
 
 @Service
 public class UrlShortenerService {
 
-    private final RedisUrlRepository urlRepository;
+    private final UrlStore urlRepository;
+    private final ShortUrlCache shortUrlCache;
+    private final ShortCodeGenerator shortCodeGenerator;
+    private final ExpiryRefresher expiryRefresher;
+    private final ShortCodeFilter codeFilter;
+    private final Duration maxTtl;
+    private final ShortUrlCache.Lookup originalUrlLookup;
+    private final Counter codeCollisions;
+    private final Counter staleLookups;
+    private final SingleFlight<String, Optional<UrlMapping>> mappingFlight = new SingleFlight<>();
+
+    public UrlShortenerService(UrlStore urlRepository, ShortUrlCache shortUrlCache,
+                               ShortCodeGenerator shortCodeGenerator, ExpiryRefresher expiryRefresher,
+                               MeterRegistry meterRegistry, Duration maxTtl) {
+        this(urlRepository, shortUrlCache, shortCodeGenerator, expiryRefresher, new ShortCodeFilter(), meterRegistry, maxTtl);
+    }
 
-    public UrlShortenerService(RedisUrlRepository urlRepository) {
+    @Autowired
+    public UrlShortenerService(UrlStore urlRepository, ShortUrlCache shortUrlCache,
+                               ShortCodeGenerator shortCodeGenerator, ExpiryRefresher expiryRefresher,
+                               ShortCodeFilter codeFilter, MeterRegistry meterRegistry,
+                               @Value("${urlshortener.mapping.max-ttl:3650d}") Duration maxTtl) {
         this.urlRepository = urlRepository;
+        this.shortUrlCache = shortUrlCache;
+        this.shortCodeGenerator = shortCodeGenerator;
+        this.expiryRefresher = expiryRefresher;
+        this.codeFilter = codeFilter;
+        this.maxTtl = maxTtl;
+        this.originalUrlLookup = shortUrlCache.lookup(this::loadOriginalUrl);
+        this.codeCollisions = Counter.builder("urlshortener.shorten.collisions")
+                .description("Generated short codes that were already taken and had to be regenerated")
+                .register(meterRegistry);
+        this.staleLookups = Counter.builder("urlshortener.lookups.stale")
+                .description("Lookups answered from a last-known-good copy because the store failed")
+                .register(meterRegistry);
+        FunctionCounter.builder("urlshortener.lookups.coalesced", mappingFlight, SingleFlight::sharedCount)
+                .description("Lookups answered by a concurrent fetch of the same code instead of their own")
+                .tag("lookup", "mapping")
+                .register(meterRegistry);
     }
 
     public UrlMapping createShortUrl(String originalUrl) {
-        String shortUrl = generateShortUrl();
-        while (urlRepository.existsByShortUrl(shortUrl)) {
-            shortUrl = generateShortUrl();
+        return createShortUrl(originalUrl, null, null);
+    }
+
+    /**
+     * @param owner who the link belongs to, at most 255 bytes of UTF-8, or null
+     * @param ttl how long the link lives, up to the configured maximum, or null for the default
+     */
+    public UrlMapping createShortUrl(String originalUrl, String owner, Duration ttl) {
+        UrlMapping mapping = newMapping(originalUrl, nextShortUrl(), owner, ttl);
+        while (!urlRepository.saveIfAbsent(mapping)) {
+            codeCollisions.increment();
+            mapping.setShortUrl(nextShortUrl());
         }
-        return saveUrlMapping(originalUrl, shortUrl);
+        return mapping;
     }
 
     public UrlMapping createSpecificShortUrl(String originalUrl, String shortUrl) {
-        if (urlRepository.existsByShortUrl(shortUrl)) {
+        return createSpecificShortUrl(originalUrl, shortUrl, null, null);
+    }
+
+    public UrlMapping createSpecificShortUrl(String originalUrl, String shortUrl, String owner, Duration ttl) {
+        UrlMapping mapping = newMapping(originalUrl, shortUrl, owner, ttl);
+        if (!urlRepository.saveIfAbsent(mapping)) {
             throw new IllegalArgumentException("Short URL already exists");
         }
-        return saveUrlMapping(originalUrl, shortUrl);
+        return mapping;
+    }
+
+    /**
+     * Creates random short URLs for a batch, allocating the codes in bulk and
+     * writing all mappings in one pipeline. A URL that appears more than once
+     * gets a single code. Results are returned in input order.
+     */
+    public List<BatchShortenResult> createShortUrls(List<String> originalUrls) {
+        Map<String, UrlMapping> mappingsByUrl = new LinkedHashMap<>();
+        for (String originalUrl : originalUrls) {
+            if (isValidUrl(originalUrl)) {
+                mappingsByUrl.putIfAbsent(originalUrl, null);
+            }
+        }
+
+        List<UrlMapping> mappings = new ArrayList<>(mappingsByUrl.size());
+        Iterator<String> codes = shortCodeGenerator.next(mappingsByUrl.size()).iterator();
+        for (String originalUrl : mappingsByUrl.keySet()) {
+            String shortUrl = codes.next();
+            if (codeFilter.probablyExists(shortUrl)) {
+                codeCollisions.increment();
+                shortUrl = nextShortUrl();
+            }
+            mappings.add(new UrlMapping(originalUrl, shortUrl));
+        }
+
+        List<Boolean> claimed = mappings.isEmpty() ? List.of() : urlRepository.saveAllIfAbsent(mappings);
+        for (int i = 0; i < mappings.size(); i++) {
+            UrlMapping mapping = mappings.get(i);
+            if (!claimed.get(i)) {
+                codeCollisions.increment();
+                mapping = createShortUrl(mapping.getOriginalUrl());
+            }
+            mappingsByUrl.put(mapping.getOriginalUrl(), mapping);
+        }
+
+        List<BatchShortenResult> results = new ArrayList<>(originalUrls.size());
+        for (String originalUrl : originalUrls) {
+            UrlMapping mapping = isValidUrl(originalUrl) ? mappingsByUrl.get(originalUrl) : null;
+            results.add(mapping != null
+                    ? new BatchShortenResult(originalUrl, mapping.getShortUrl(), BatchShortenResult.Status.CREATED)
+                    : new BatchShortenResult(originalUrl, null, BatchShortenResult.Status.INVALID));
+        }
+        return results;
     }
 
     public Optional<String> getOriginalUrl(String shortUrl) {
-        return urlRepository.findByShortUrl(shortUrl)
-                .map(UrlMapping::getOriginalUrl);
+        return Optional.ofNullable(resolve(shortUrl));
     }
 
-    private UrlMapping saveUrlMapping(String originalUrl, String shortUrl) {
-        Optional<UrlMapping> existingMapping = urlRepository.findByOriginalUrl(originalUrl);
-        if (existingMapping.isPresent()) {
-            String oldShortUrl = existingMapping.get().getShortUrl();
-            urlRepository.delete(oldShortUrl);
+    /**
+     * The stored mapping with its metadata and hit count. Not cached, but concurrent
+     * reads of the same code share one fetch.
+     */
+    public Optional<UrlMapping> getMapping(String shortUrl) {
+        return mappingFlight.get(shortUrl, urlRepository::findByShortUrl);
+    }
+
+    /**
+     * Allocation-free variant of {@link #getOriginalUrl} for the redirect path.
+     * Concurrent misses for the same code share one fetch through the cache.
+     * If the store fails, the last URL this node saw for the code is returned instead;
+     * it is not cached, so the store is asked again on the next lookup.
+     *
+     * @return the original URL, or null if the code does not exist
+     */
+    public String resolve(String shortUrl) {
+        String originalUrl;
+        try {
+            originalUrl = originalUrlLookup.get(shortUrl);
+        } catch (DataAccessException e) {
+            originalUrl = shortUrlCache.getStale(shortUrl);
+            if (originalUrl == null) {
+                throw e;
+            }
+            staleLookups.increment();
+            return originalUrl;
+        }
+        if (originalUrl != null) {
+            expiryRefresher.touch(shortUrl);
+        }
+        return originalUrl;
+    }
+
+    /**
+     * Resolves many codes at once: cached codes are answered locally and the
+     * rest are fetched from Redis together. If the store fails, the codes are
+     * answered from last-known-good copies when every one of them has one.
+     *
+     * @return the original URL of each code that exists, in the order of the codes given
+     */
+    public Map<String, String> getOriginalUrls(Collection<String> shortUrls) {
+        try {
+            return shortUrlCache.getAll(shortUrls, this::loadOriginalUrls);
+        } catch (DataAccessException e) {
+            Map<String, String> found = new LinkedHashMap<>();
+            for (String shortUrl : shortUrls) {
+                String originalUrl = shortUrlCache.getIfPresent(shortUrl);
+                if (originalUrl == null) {
+                    originalUrl = shortUrlCache.getStale(shortUrl);
+                    if (originalUrl == null) {
+                        throw e;
+                    }
+                    staleLookups.increment();
+                }
+                if (originalUrl != ShortUrlCache.NOT_FOUND) {
+                    found.put(shortUrl, originalUrl);
+                }
+            }
+            return found;
+        }
+    }
+
+    private Map<String, String> loadOriginalUrls(Collection<String> shortUrls) {
+        return urlRepository.findOriginalUrls(shortUrls);
+    }
+
+    private String loadOriginalUrl(String shortUrl) {
+        return urlRepository.findOriginalUrl(shortUrl).orElse(null);
+    }
+
+    /**
+     * The next generated code, skipping codes the code filter holds: they are almost
+     * certainly taken, and claiming them would only cost a round trip to fail.
+     */
+    private String nextShortUrl() {
+        String shortUrl = shortCodeGenerator.next();
+        while (codeFilter.probablyExists(shortUrl)) {
+            codeCollisions.increment();
+            shortUrl = shortCodeGenerator.next();
+        }
+        return shortUrl;
+    }
+
+    private UrlMapping newMapping(String originalUrl, String shortUrl, String owner, Duration ttl) {
+        if (originalUrl == null || originalUrl.isBlank()) {
+            throw new IllegalArgumentException("URL must not be blank");
         }
-        
         UrlMapping mapping = new UrlMapping(originalUrl, shortUrl);
-        return urlRepository.save(mapping);
+        mapping.setOwner(owner);
+        if (ttl != null) {
+            if (ttl.getSeconds() <= 0 || ttl.compareTo(maxTtl) > 0) {
+                throw new IllegalArgumentException("TTL must be between 1 second and " + maxTtl);
+            }
+            mapping.setExpiresAt(LocalDateTime.now().plus(ttl));
+        }
+        return mapping;
     }
 
-    private String generateShortUrl() {
-        return UUID.randomUUID().toString().substring(0, 8);
+    private static boolean isValidUrl(String originalUrl) {
+        return originalUrl != null && !originalUrl.isBlank();
     }
 }
\ No newline at end of file
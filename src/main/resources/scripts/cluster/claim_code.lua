@@ -0,0 +1,15 @@
+-- Cluster step 1 of a save: writes the forward entry of a short code mapping.
+-- KEYS[1] = m:<bucket of code>
+-- ARGV[1] = code, ARGV[2] = encoded mapping (see MappingCodec), ARGV[3] = TTL in seconds,
+-- ARGV[4] = '1' to leave an existing live code untouched (SETNX semantics),
+-- ARGV[5] = current epoch second
+-- Returns nil if the code is taken, otherwise the value it replaced or an empty string.
+local current = redis.call('HGET', KEYS[1], ARGV[1])
+if current and ARGV[4] == '1' and struct.unpack('>I4', current, 2) > tonumber(ARGV[5]) then
+    return false
+end
+redis.call('HSET', KEYS[1], ARGV[1], ARGV[2])
+if redis.call('TTL', KEYS[1]) < tonumber(ARGV[3]) then
+    redis.call('EXPIRE', KEYS[1], ARGV[3])
+end
+return current or ''
@@ -0,0 +1,10 @@
+-- Removes the forward entry of a short code, if it maps the given URL digest.
+-- KEYS[1] = m:<bucket of code>
+-- ARGV[1] = code, ARGV[2] = URL digest, or an empty string to remove it whatever it maps
+-- Returns the removed value, or nil if nothing was removed.
+local value = redis.call('HGET', KEYS[1], ARGV[1])
+if not value or (ARGV[2] ~= '' and string.sub(value, 6, 15) ~= ARGV[2]) then
+    return false
+end
+redis.call('HDEL', KEYS[1], ARGV[1])
+return value
@@ -0,0 +1,6 @@
+-- Pushes back the expiry of a key, never bringing it forward.
+-- KEYS[1] = key, ARGV[1] = TTL in seconds
+if redis.call('TTL', KEYS[1]) < tonumber(ARGV[1]) then
+    redis.call('EXPIRE', KEYS[1], ARGV[1])
+end
+return 0
@@ -0,0 +1,13 @@
+-- Cluster step 2 of a save: points the reverse entry of a URL at its new code.
+-- KEYS[1] = r:<bucket of URL digest>
+-- ARGV[1] = reverse field, ARGV[2] = code, ARGV[3] = TTL in seconds
+-- Returns the code the entry pointed at before, or an empty string if none or the same code.
+local previous = redis.call('HGET', KEYS[1], ARGV[1])
+redis.call('HSET', KEYS[1], ARGV[1], ARGV[2])
+if redis.call('TTL', KEYS[1]) < tonumber(ARGV[3]) then
+    redis.call('EXPIRE', KEYS[1], ARGV[3])
+end
+if not previous or previous == ARGV[2] then
+    return ''
+end
+return previous
@@ -0,0 +1,25 @@
+-- Cluster counterpart of refresh_expiry.lua: pushes back the expiry of a code that is in use,
+-- leaving the expiry of its reverse bucket, which may live on another node, to the caller.
+-- KEYS[1] = m:<bucket of code>
+-- ARGV[1] = code, ARGV[2] = current epoch second, ARGV[3] = smallest extension worth a write, in seconds
+-- Returns the reverse bucket and the lifetime granted if the expiry was moved, otherwise an empty array.
+local value = redis.call('HGET', KEYS[1], ARGV[1])
+if not value or string.byte(value, 1) ~= 3 then
+    return {}
+end
+local now = tonumber(ARGV[2])
+local expires_at = struct.unpack('>I4', value, 2)
+if expires_at <= now then
+    return {}
+end
+local lifetime = expires_at - struct.unpack('>I4', value, 21)
+if now + lifetime - expires_at < tonumber(ARGV[3]) then
+    return {}
+end
+
+redis.call('HSET', KEYS[1], ARGV[1], string.sub(value, 1, 1) .. struct.pack('>I4', now + lifetime)
+        .. string.sub(value, 6, 20) .. struct.pack('>I4', now) .. string.sub(value, 25))
+if redis.call('TTL', KEYS[1]) < lifetime then
+    redis.call('EXPIRE', KEYS[1], lifetime)
+end
+return {'r:' .. string.format('%02x%02x', string.byte(value, 6, 7)), lifetime}
@@ -0,0 +1,15 @@
+-- Removes expired entries from one forward bucket.
+-- KEYS[1] = m:<bucket>
+-- ARGV[1] = current epoch second
+-- Returns each removed code followed by its value, so that its reverse entry can be unlinked.
+local now = tonumber(ARGV[1])
+local removed = {}
+local forward = redis.call('HGETALL', KEYS[1])
+for i = 1, #forward, 2 do
+    if struct.unpack('>I4', forward[i + 1], 2) <= now then
+        redis.call('HDEL', KEYS[1], forward[i])
+        removed[#removed + 1] = forward[i]
+        removed[#removed + 1] = forward[i + 1]
+    end
+end
+return removed
@@ -0,0 +1,8 @@
+-- Removes a reverse entry if it still points at the given code.
+-- KEYS[1] = r:<bucket of URL digest>
+-- ARGV[1] = reverse field, ARGV[2] = code
+-- Returns 1 if the entry was removed, otherwise 0.
+if redis.call('HGET', KEYS[1], ARGV[1]) == ARGV[2] then
+    return redis.call('HDEL', KEYS[1], ARGV[1])
+end
+return 0
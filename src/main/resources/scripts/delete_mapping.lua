@@ -0,0 +1,15 @@
+-- Removes a short code and, if it still points back at it, its reverse lookup.
+-- KEYS[1] = m:<bucket of code>
+-- ARGV[1] = code
+-- Returns 1 if the code existed, otherwise 0.
+local value = redis.call('HGET', KEYS[1], ARGV[1])
+if not value then
+    return 0
+end
+redis.call('HDEL', KEYS[1], ARGV[1])
+local key = 'r:' .. string.format('%02x%02x', string.byte(value, 6, 7))
+local field = string.sub(value, 8, 15)
+if redis.call('HGET', key, field) == ARGV[1] then
+    redis.call('HDEL', key, field)
+end
+return 1
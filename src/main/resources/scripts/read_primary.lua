@@ -0,0 +1,5 @@
+-- Reads one hash field. Scripts always run on the primary, so with reads going to replicas
+-- this is how a read that must see the latest write reaches the primary.
+-- KEYS[1] = m:<bucket> or r:<bucket>
+-- ARGV[1] = field
+return redis.call('HGET', KEYS[1], ARGV[1])
@@ -0,0 +1,30 @@
+-- Pushes back the expiry of a code that is in use, giving it its full lifetime again.
+-- KEYS[1] = m:<bucket of code>
+-- ARGV[1] = code, ARGV[2] = current epoch second, ARGV[3] = smallest extension worth a write, in seconds
+-- The lifetime is the time from the entry's last write to its expiry; the rewritten entry
+-- expires that long after now and records now as its last write. Entries older than schema
+-- version 3 carry no write time and are left alone, as are expired ones.
+-- Returns 1 if the expiry was moved, otherwise 0.
+local value = redis.call('HGET', KEYS[1], ARGV[1])
+if not value or string.byte(value, 1) ~= 3 then
+    return 0
+end
+local now = tonumber(ARGV[2])
+local expires_at = struct.unpack('>I4', value, 2)
+if expires_at <= now then
+    return 0
+end
+local lifetime = expires_at - struct.unpack('>I4', value, 21)
+if now + lifetime - expires_at < tonumber(ARGV[3]) then
+    return 0
+end
+
+redis.call('HSET', KEYS[1], ARGV[1], string.sub(value, 1, 1) .. struct.pack('>I4', now + lifetime)
+        .. string.sub(value, 6, 20) .. struct.pack('>I4', now) .. string.sub(value, 25))
+local reverse_key = 'r:' .. string.format('%02x%02x', string.byte(value, 6, 7))
+for _, key in ipairs({KEYS[1], reverse_key}) do
+    if redis.call('TTL', key) < lifetime then
+        redis.call('EXPIRE', key, lifetime)
+    end
+end
+return 1
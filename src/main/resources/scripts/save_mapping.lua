@@ -0,0 +1,70 @@
+-- Writes a short code mapping and its reverse lookup in one step.
+-- KEYS[1] = m:<bucket of code>, KEYS[2] = r:<bucket of URL digest>
+-- ARGV[1] = code, ARGV[2] = encoded mapping (see MappingCodec), ARGV[3] = TTL in seconds,
+-- ARGV[4] = '1' to leave an existing live code untouched (SETNX semantics),
+-- ARGV[5] = current epoch second
+-- Returns nil if the code is taken, otherwise the code previously mapped to
+-- this URL (now removed) or an empty string.
+local now = tonumber(ARGV[5])
+local ttl = tonumber(ARGV[3])
+
+local function digest(value)
+    return string.sub(value, 6, 15)
+end
+
+local function live(value)
+    return struct.unpack('>I4', value, 2) > now
+end
+
+local function reverse_key(value)
+    return 'r:' .. string.format('%02x%02x', string.byte(value, 6, 7)), string.sub(value, 8, 15)
+end
+
+-- Same function as MappingKeys.forwardKey
+local function forward_key(code)
+    local bucket = 0
+    for i = 1, #code do
+        bucket = (bucket * 31 + string.byte(code, i)) % 65536
+    end
+    return 'm:' .. string.format('%04x', bucket)
+end
+
+local function extend(key)
+    if redis.call('TTL', key) < ttl then
+        redis.call('EXPIRE', key, ttl)
+    end
+end
+
+local current = redis.call('HGET', KEYS[1], ARGV[1])
+if current then
+    if ARGV[4] == '1' and live(current) then
+        return false
+    end
+    if digest(current) ~= digest(ARGV[2]) then
+        local key, field = reverse_key(current)
+        if redis.call('HGET', key, field) == ARGV[1] then
+            redis.call('HDEL', key, field)
+        end
+    end
+end
+
+local _, field = reverse_key(ARGV[2])
+local previous = redis.call('HGET', KEYS[2], field)
+if previous and previous ~= ARGV[1] then
+    -- Only drop the previous code if it still points at this URL
+    local previous_key = forward_key(previous)
+    local previous_value = redis.call('HGET', previous_key, previous)
+    if previous_value and digest(previous_value) == digest(ARGV[2]) then
+        redis.call('HDEL', previous_key, previous)
+    else
+        previous = ''
+    end
+else
+    previous = ''
+end
+
+redis.call('HSET', KEYS[1], ARGV[1], ARGV[2])
+extend(KEYS[1])
+redis.call('HSET', KEYS[2], field, ARGV[1])
+extend(KEYS[2])
+return previous
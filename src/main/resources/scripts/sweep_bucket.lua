@@ -0,0 +1,44 @@
+-- Removes expired entries from one forward bucket and orphaned entries from one reverse bucket.
+-- KEYS[1] = m:<bucket>, KEYS[2] = r:<bucket>; the two share a number but not their entries
+-- ARGV[1] = current epoch second
+-- A reverse entry is orphaned when the code it names is gone, expired or now maps another URL.
+-- Returns the number of orphaned reverse entries removed, followed by the expired codes removed.
+local now = tonumber(ARGV[1])
+local removed = {0}
+
+-- Same function as MappingKeys.forwardKey
+local function forward_key(code)
+    local bucket = 0
+    for i = 1, #code do
+        bucket = (bucket * 31 + string.byte(code, i)) % 65536
+    end
+    return 'm:' .. string.format('%04x', bucket)
+end
+
+local forward = redis.call('HGETALL', KEYS[1])
+for i = 1, #forward, 2 do
+    local code, value = forward[i], forward[i + 1]
+    if struct.unpack('>I4', value, 2) <= now then
+        redis.call('HDEL', KEYS[1], code)
+        local key = 'r:' .. string.format('%02x%02x', string.byte(value, 6, 7))
+        local field = string.sub(value, 8, 15)
+        if redis.call('HGET', key, field) == code then
+            redis.call('HDEL', key, field)
+        end
+        removed[#removed + 1] = code
+    end
+end
+
+local digest_prefix = string.sub(KEYS[2], 3)
+local reverse = redis.call('HGETALL', KEYS[2])
+for i = 1, #reverse, 2 do
+    local field, code = reverse[i], reverse[i + 1]
+    local value = redis.call('HGET', forward_key(code), code)
+    if not value or struct.unpack('>I4', value, 2) <= now
+            or string.format('%02x%02x', string.byte(value, 6, 7)) ~= digest_prefix
+            or string.sub(value, 8, 15) ~= field then
+        redis.call('HDEL', KEYS[2], field)
+        removed[1] = removed[1] + 1
+    end
+end
+return removed
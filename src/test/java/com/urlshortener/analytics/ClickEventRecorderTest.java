@@ -0,0 +1,138 @@
+package com.urlshortener.analytics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisHashCommands;
+import org.springframework.data.redis.connection.RedisHyperLogLogCommands;
+import org.springframework.data.redis.connection.RedisKeyCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ClickEventRecorderTest {
+
+    private RedisTemplate<String, String> redisTemplate;
+    private RedisHashCommands hashCommands;
+    private RedisHyperLogLogCommands hyperLogLogCommands;
+    private TopLinksTracker topLinks;
+    private MeterRegistry meterRegistry;
+    private ClickEventRecorder recorder;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        redisTemplate = mock(RedisTemplate.class);
+        hashCommands = mock(RedisHashCommands.class);
+        hyperLogLogCommands = mock(RedisHyperLogLogCommands.class);
+        topLinks = mock(TopLinksTracker.class);
+        RedisConnection connection = mock(RedisConnection.class);
+        when(connection.hashCommands()).thenReturn(hashCommands);
+        when(connection.hyperLogLogCommands()).thenReturn(hyperLogLogCommands);
+        when(connection.keyCommands()).thenReturn(mock(RedisKeyCommands.class));
+        when(redisTemplate.executePipelined(any(RedisCallback.class))).thenAnswer(invocation -> {
+            invocation.<RedisCallback<Object>>getArgument(0).doInRedis(connection);
+            return List.of();
+        });
+        meterRegistry = new SimpleMeterRegistry();
+        recorder = new ClickEventRecorder(redisTemplate, topLinks, 2, 100, 2, Duration.ofDays(30), Duration.ofDays(7), meterRegistry);
+    }
+
+    @Test
+    void flush_ShouldWriteAggregatedCountsOneIntervalAfterTheWindowCloses() {
+        // Arrange
+        recorder.record("abc", "https://news.example.org/article?id=1", null, null);
+        recorder.record("abc", "https://news.example.org/other", null, null);
+        recorder.record("abc", null, null, null);
+
+        // Act
+        recorder.flush();
+        verify(redisTemplate, never()).executePipelined(any(RedisCallback.class));
+        recorder.flush();
+
+        // Assert
+        verify(hashCommands).hIncrBy(eq(bytes("clicks:abc")), eq(bytes("total")), eq(3L));
+        verify(hashCommands).hIncrBy(eq(bytes("referrers:abc")), eq(bytes("news.example.org")), eq(2L));
+        assertEquals(3.0, meterRegistry.counter("urlshortener.clicks.flushed").count());
+        verify(topLinks).add("abc", 3L);
+    }
+
+    @Test
+    void flush_ShouldAddEachDistinctVisitorOnce() {
+        // Arrange
+        recorder.record("abc", null, "203.0.113.7", "curl/8.0");
+        recorder.record("abc", null, "203.0.113.7", "curl/8.0");
+        recorder.record("abc", null, "203.0.113.8", "curl/8.0");
+        recorder.record("abc", null, "203.0.113.9", "curl/8.0");
+
+        // Act
+        recorder.flush();
+        recorder.flush();
+
+        // Assert
+        verify(hyperLogLogCommands).pfAdd(eq(bytes("visitors:abc")), any(byte[].class), any(byte[].class));
+        verify(hyperLogLogCommands).pfAdd(argThat(key -> new String(key).startsWith("visitors:{abc}:")), any(byte[].class), any(byte[].class));
+        assertEquals(1.0, meterRegistry.counter("urlshortener.visitors.dropped").count());
+    }
+
+    @Test
+    void record_FullWindow_ShouldDropClicksForNewCodes() {
+        // Act
+        recorder.record("a", null, null, null);
+        recorder.record("b", null, null, null);
+        recorder.record("c", null, null, null);
+        recorder.record("a", null, null, null);
+
+        // Assert
+        assertEquals(1.0, meterRegistry.counter("urlshortener.clicks.dropped").count());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flush_RedisUnavailable_ShouldDropTheWindowWithoutThrowing() {
+        // Arrange
+        when(redisTemplate.executePipelined(any(RedisCallback.class))).thenThrow(new QueryTimeoutException("timeout"));
+        recorder.record("abc", null, null, null);
+        recorder.record("abc", null, null, null);
+
+        // Act
+        recorder.flush();
+        recorder.flush();
+
+        // Assert
+        assertEquals(2.0, meterRegistry.counter("urlshortener.clicks.dropped").count());
+        verify(hashCommands, never()).hIncrBy(any(), any(), anyLong());
+    }
+
+    @Test
+    void visitorHash_ShouldDependOnAddressAndUserAgent() {
+        long hash = ClickEventRecorder.visitorHash("203.0.113.7", "curl/8.0");
+        assertEquals(hash, ClickEventRecorder.visitorHash("203.0.113.7", "curl/8.0"));
+        assertNotEquals(hash, ClickEventRecorder.visitorHash("203.0.113.8", "curl/8.0"));
+        assertNotEquals(hash, ClickEventRecorder.visitorHash("203.0.113.7", null));
+    }
+
+    @Test
+    void referrerHost_ShouldKeepOnlyTheHost() {
+        assertEquals("news.example.org", ClickEventRecorder.referrerHost("https://News.Example.org:8443/a?b=c"));
+        assertEquals("example.com", ClickEventRecorder.referrerHost("example.com/path"));
+        assertNull(ClickEventRecorder.referrerHost(""));
+        assertNull(ClickEventRecorder.referrerHost(null));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,88 @@
+package com.urlshortener.analytics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpaceSavingSketchTest {
+
+    @Test
+    void add_BelowCapacity_ShouldCountExactly() {
+        // Arrange
+        SpaceSavingSketch sketch = new SpaceSavingSketch(10);
+
+        // Act
+        sketch.add("a", 5);
+        sketch.add("b", 2);
+        sketch.add("a", 1);
+
+        // Assert
+        List<SpaceSavingSketch.Entry> top = sketch.top(10);
+        assertEquals("a", top.get(0).key);
+        assertEquals(6, top.get(0).count);
+        assertEquals(0, top.get(0).error);
+        assertEquals(0, sketch.minCount());
+        assertEquals(8, sketch.total());
+    }
+
+    @Test
+    void add_SkewedStream_ShouldKeepCountsWithinTheErrorBound() {
+        // Arrange
+        SpaceSavingSketch sketch = new SpaceSavingSketch(50);
+        Map<String, Long> exact = new HashMap<>();
+        Random random = new Random(42);
+
+        // Act
+        for (int i = 0; i < 100_000; i++) {
+            // Roughly Zipfian over 5000 keys
+            String key = "k" + (int) Math.floor(Math.pow(5000, random.nextDouble()));
+            sketch.add(key, 1);
+            exact.merge(key, 1L, Long::sum);
+        }
+
+        // Assert
+        long bound = sketch.total() / 50;
+        for (SpaceSavingSketch.Entry entry : sketch.top(50)) {
+            long trueCount = exact.get(entry.key);
+            assertTrue(entry.count >= trueCount);
+            assertTrue(entry.count - entry.error <= trueCount);
+            assertTrue(entry.error <= bound);
+        }
+        exact.forEach((key, count) -> {
+            if (count > bound) {
+                assertTrue(sketch.top(50).stream().anyMatch(entry -> entry.key.equals(key)), key);
+            }
+        });
+    }
+
+    @Test
+    void merge_ShouldBoundCountsAcrossSketches() {
+        // Arrange
+        SpaceSavingSketch first = new SpaceSavingSketch(2);
+        first.add("a", 11);
+        first.add("b", 4);
+        first.add("c", 1);
+        SpaceSavingSketch second = new SpaceSavingSketch(2);
+        second.add("a", 3);
+        second.add("b", 8);
+
+        // Act
+        SpaceSavingSketch merged = first.merge(second);
+
+        // Assert
+        List<SpaceSavingSketch.Entry> top = merged.top(2);
+        assertEquals("a", top.get(0).key);
+        assertEquals(14, top.get(0).count);
+        assertEquals(0, top.get(0).error);
+        // b was evicted from the first sketch by c, which is counted under b's 4
+        assertEquals("b", top.get(1).key);
+        assertEquals(13, top.get(1).count);
+        assertEquals(5, top.get(1).error);
+        assertEquals(27, merged.total());
+    }
+}
@@ -0,0 +1,165 @@
+package com.urlshortener.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class CacheInvalidationBusTest {
+
+    private RedisTemplate<String, String> redisTemplate;
+    private ShortUrlCache cache;
+    private CacheInvalidationBus bus;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        redisTemplate = mock(RedisTemplate.class);
+        cache = new ShortUrlCache(1000, Duration.ofMinutes(1), Duration.ofMinutes(1));
+        bus = new CacheInvalidationBus(redisTemplate, cache);
+        loads = new AtomicInteger();
+    }
+
+    @Test
+    void invalidate_ShouldEvictLocallyAndPublishCoalescedCodesOnFlush() {
+        // Arrange
+        cache.get("abc", this::load);
+
+        // Act
+        bus.invalidate("abc");
+        bus.invalidate("abc");
+        bus.invalidate("def");
+        cache.get("abc", this::load);
+        bus.flush();
+
+        // Assert
+        assertEquals(2, loads.get());
+        ArgumentCaptor<String> payload = ArgumentCaptor.forClass(String.class);
+        verify(redisTemplate, times(1)).convertAndSend(eq(CacheInvalidationBus.CHANNEL), payload.capture());
+        String codes = payload.getValue().substring(payload.getValue().indexOf('|') + 1);
+        assertEquals(2, codes.split("\n").length);
+        assertTrue(codes.contains("abc"));
+        assertTrue(codes.contains("def"));
+    }
+
+    @Test
+    void flush_PublishFails_ShouldPublishTheCodesOnTheNextFlush() {
+        // Arrange
+        when(redisTemplate.convertAndSend(eq(CacheInvalidationBus.CHANNEL), anyString()))
+                .thenThrow(new RedisConnectionFailureException("Redis is down"))
+                .thenReturn(1L);
+        bus.invalidate("abc");
+
+        // Act
+        bus.flush();
+        bus.flush();
+
+        // Assert
+        ArgumentCaptor<String> payload = ArgumentCaptor.forClass(String.class);
+        verify(redisTemplate, times(2)).convertAndSend(eq(CacheInvalidationBus.CHANNEL), payload.capture());
+        assertTrue(payload.getValue().endsWith("|abc"));
+    }
+
+    @Test
+    void flush_WithNothingQueued_ShouldNotPublish() {
+        // Act
+        bus.flush();
+
+        // Assert
+        verify(redisTemplate, never()).convertAndSend(anyString(), any());
+    }
+
+    @Test
+    void onMessage_FromOtherNode_ShouldEvictOnNextFlush() {
+        // Arrange
+        cache.get("abc", this::load);
+        cache.get("def", this::load);
+
+        // Act
+        bus.onMessage(message("other-node|abc\ndef"), null);
+        bus.flush();
+        cache.get("abc", this::load);
+        cache.get("def", this::load);
+
+        // Assert
+        assertEquals(4, loads.get());
+        verify(redisTemplate, never()).convertAndSend(anyString(), any());
+    }
+
+    @Test
+    void onMessage_FromSameNode_ShouldBeIgnored() {
+        // Arrange
+        cache.get("abc", this::load);
+
+        // Act
+        bus.onMessage(message(bus.getNodeId() + "|abc"), null);
+        bus.flush();
+        cache.get("abc", this::load);
+
+        // Assert
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void isRecentlyInvalidated_WithReplicaReads_ShouldCoverLocalAndRemoteCodes() {
+        // Arrange
+        CacheInvalidationBus replicaBus = new CacheInvalidationBus(redisTemplate, cache, "anyReplica", Duration.ofMinutes(1));
+
+        // Act
+        replicaBus.invalidate("abc");
+        replicaBus.onMessage(message("other-node|def"), null);
+
+        // Assert
+        assertTrue(replicaBus.isRecentlyInvalidated("abc"));
+        assertTrue(replicaBus.isRecentlyInvalidated("def"));
+        assertFalse(replicaBus.isRecentlyInvalidated("ghi"));
+    }
+
+    @Test
+    void isRecentlyInvalidated_WithoutReplicaReads_ShouldBeFalse() {
+        // Act
+        bus.invalidate("abc");
+
+        // Assert
+        assertFalse(bus.isRecentlyInvalidated("abc"));
+    }
+
+    @Test
+    void onMessage_FromOtherNode_ShouldAddTheCodesToTheCodeFilter() {
+        // Arrange
+        ShortCodeFilter codeFilter = new ShortCodeFilter(true, 1000);
+        codeFilter.startRebuild();
+        codeFilter.finishRebuild();
+        CacheInvalidationBus filteringBus = new CacheInvalidationBus(redisTemplate, cache, codeFilter, "", Duration.ZERO);
+
+        // Act
+        filteringBus.onMessage(message("other-node|abc"), null);
+
+        // Assert
+        assertTrue(codeFilter.probablyExists("abc"));
+        assertFalse(codeFilter.probablyExists("def"));
+    }
+
+    private String load(String code) {
+        loads.incrementAndGet();
+        return "https://www.example.com/" + code;
+    }
+
+    private static DefaultMessage message(String payload) {
+        return new DefaultMessage(
+                CacheInvalidationBus.CHANNEL.getBytes(StandardCharsets.UTF_8),
+                payload.getBytes(StandardCharsets.UTF_8));
+    }
+}
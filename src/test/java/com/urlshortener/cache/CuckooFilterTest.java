@@ -0,0 +1,101 @@
+package com.urlshortener.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CuckooFilterTest {
+
+    @Test
+    void mightContain_ShouldFindEveryAddedCodeAndAlmostNoOther() {
+        // Arrange
+        CuckooFilter filter = new CuckooFilter(100_000);
+
+        // Act
+        for (int i = 0; i < 100_000; i++) {
+            assertTrue(filter.add("c" + i));
+        }
+
+        // Assert
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            assertTrue(filter.mightContain("c" + i));
+            if (filter.mightContain("x" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives <= 1);
+        assertEquals(100_000, filter.size());
+        assertFalse(filter.isSaturated());
+    }
+
+    @Test
+    void remove_OneOfTwoCodesWithTheSameFingerprint_ShouldKeepTheOther() {
+        // Arrange - a code added twice stands for two codes whose fingerprints and buckets collide
+        CuckooFilter filter = new CuckooFilter(100);
+        filter.add("abc");
+        filter.add("abc");
+
+        // Act
+        filter.remove("abc");
+        boolean keptTheOther = filter.mightContain("abc");
+        filter.remove("abc");
+
+        // Assert
+        assertTrue(keptTheOther);
+        assertFalse(filter.mightContain("abc"));
+        assertEquals(0, filter.size());
+    }
+
+    @Test
+    void add_SameCodeRepeatedly_ShouldStoreAtMostMaxCopies() {
+        // Arrange
+        CuckooFilter filter = new CuckooFilter(100);
+
+        // Act
+        for (int i = 0; i < 100; i++) {
+            assertTrue(filter.add("abc"));
+        }
+
+        // Assert
+        assertEquals(CuckooFilter.MAX_COPIES, filter.size());
+        assertFalse(filter.isSaturated());
+    }
+
+    @Test
+    void remove_ShouldKeepTheOtherCodes() {
+        // Arrange
+        CuckooFilter filter = new CuckooFilter(10_000);
+        for (int i = 0; i < 10_000; i++) {
+            filter.add("c" + i);
+        }
+
+        // Act
+        for (int i = 0; i < 10_000; i += 2) {
+            filter.remove("c" + i);
+        }
+
+        // Assert
+        for (int i = 1; i < 10_000; i += 2) {
+            assertTrue(filter.mightContain("c" + i));
+        }
+        assertEquals(5_000, filter.size());
+    }
+
+    @Test
+    void add_PastCapacity_ShouldSaturateAndLetEveryCodeThrough() {
+        // Arrange
+        CuckooFilter filter = new CuckooFilter(100);
+
+        // Act
+        boolean added = true;
+        for (int i = 0; i < 1_000 && added; i++) {
+            added = filter.add("c" + i);
+        }
+
+        // Assert
+        assertFalse(added);
+        assertTrue(filter.isSaturated());
+        assertTrue(filter.mightContain("never-added"));
+    }
+}
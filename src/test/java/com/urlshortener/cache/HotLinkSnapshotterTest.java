@@ -0,0 +1,168 @@
+package com.urlshortener.cache;
+
+import com.urlshortener.repository.UrlStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class HotLinkSnapshotterTest {
+
+    @TempDir
+    Path directory;
+
+    private final UrlStore urlStore = mock(UrlStore.class);
+    private final Map<String, String> stored = new HashMap<>();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        when(urlStore.findOriginalUrls(any())).thenAnswer(invocation -> {
+            Map<String, String> found = new HashMap<>();
+            for (String code : (Collection<String>) invocation.getArgument(0)) {
+                if (stored.containsKey(code)) {
+                    found.put(code, stored.get(code));
+                }
+            }
+            return found;
+        });
+    }
+
+    @Test
+    void close_ShouldWriteTheHottestLinksForTheNextStartToCache() {
+        // Arrange - Caffeine only counts lookups once the cache is half full, so it is sized to be
+        ShortUrlCache before = new ShortUrlCache(150, Duration.ofMinutes(1), Duration.ofMinutes(1));
+        String file = directory.resolve("snapshot/hot-links.bin").toString();
+        HotLinkSnapshotter snapshotter = new HotLinkSnapshotter(before, urlStore, file, 2);
+        for (String code : List.of("hot", "warm", "cold")) {
+            stored.put(code, "https://www.example.com/" + code);
+            before.get(code, stored::get);
+        }
+        before.get("missing", code -> null);
+        for (int i = 0; i < 5; i++) {
+            before.get("hot", stored::get);
+        }
+        for (int i = 0; i < 3; i++) {
+            before.get("warm", stored::get);
+        }
+
+        // Act
+        snapshotter.close();
+        ShortUrlCache after = new ShortUrlCache(1000, Duration.ofMinutes(1), Duration.ofMinutes(1));
+        new HotLinkSnapshotter(after, urlStore, file, 2);
+
+        // Assert
+        assertEquals("https://www.example.com/hot", after.getIfPresent("hot"));
+        assertEquals("https://www.example.com/warm", after.getIfPresent("warm"));
+        assertNull(after.getIfPresent("cold"));
+        assertNull(after.getIfPresent("missing"));
+    }
+
+    @Test
+    void close_NothingCached_ShouldKeepThePreviousSnapshot() throws IOException {
+        // Arrange - the store fails at start, so nothing is warmed and no traffic is served
+        Path file = directory.resolve("hot-links.bin");
+        new HotLinkSnapshot(System.currentTimeMillis(), List.of(
+                new HotLinkSnapshot.Entry("abc", "https://www.example.com", 60_000))).write(file);
+        byte[] written = Files.readAllBytes(file);
+        doThrow(new QueryTimeoutException("Redis command timed out")).when(urlStore).findOriginalUrls(any());
+        ShortUrlCache cache = new ShortUrlCache(1000, Duration.ofMinutes(1), Duration.ofMinutes(1));
+        HotLinkSnapshotter snapshotter = new HotLinkSnapshotter(cache, urlStore, file.toString(), 10);
+
+        // Act
+        snapshotter.close();
+
+        // Assert
+        assertArrayEquals(written, Files.readAllBytes(file));
+    }
+
+    @Test
+    void load_ShouldCacheEachLinkOnlyForWhatWasLeftOfItsTtl() throws IOException {
+        // Arrange
+        Path file = directory.resolve("hot-links.bin");
+        new HotLinkSnapshot(System.currentTimeMillis() - 30_000, List.of(
+                new HotLinkSnapshot.Entry("fresh", "https://www.example.com/fresh", 60_000),
+                new HotLinkSnapshot.Entry("expired", "https://www.example.com/expired", 20_000))).write(file);
+        stored.put("fresh", "https://www.example.com/fresh");
+        stored.put("expired", "https://www.example.com/expired");
+        ShortUrlCache cache = new ShortUrlCache(1000, Duration.ofMinutes(1), Duration.ofMinutes(1));
+
+        // Act
+        new HotLinkSnapshotter(cache, urlStore, file.toString(), 10);
+
+        // Assert
+        assertEquals("https://www.example.com/fresh", cache.getIfPresent("fresh"));
+        assertNull(cache.getIfPresent("expired"));
+        verify(urlStore).findOriginalUrls(List.of("fresh"));
+    }
+
+    @Test
+    void load_ShouldCacheOnlyTheLinksThatDidNotChangeWhileTheNodeWasDown() throws IOException {
+        // Arrange
+        Path file = directory.resolve("hot-links.bin");
+        new HotLinkSnapshot(System.currentTimeMillis(), List.of(
+                new HotLinkSnapshot.Entry("same", "https://www.example.com/same", 60_000),
+                new HotLinkSnapshot.Entry("changed", "https://www.example.com/old", 60_000),
+                new HotLinkSnapshot.Entry("deleted", "https://www.example.com/deleted", 60_000))).write(file);
+        stored.put("same", "https://www.example.com/same");
+        stored.put("changed", "https://www.example.com/new");
+        ShortUrlCache cache = new ShortUrlCache(1000, Duration.ofMinutes(1), Duration.ofMinutes(1));
+
+        // Act
+        new HotLinkSnapshotter(cache, urlStore, file.toString(), 10);
+
+        // Assert
+        assertEquals("https://www.example.com/same", cache.getIfPresent("same"));
+        assertNull(cache.getIfPresent("changed"));
+        assertNull(cache.getIfPresent("deleted"));
+        verify(urlStore, times(1)).findOriginalUrls(any());
+    }
+
+    @Test
+    void load_StoreFails_ShouldStartWithAColdCache() throws IOException {
+        // Arrange
+        Path file = directory.resolve("hot-links.bin");
+        new HotLinkSnapshot(System.currentTimeMillis(), List.of(
+                new HotLinkSnapshot.Entry("abc", "https://www.example.com", 60_000))).write(file);
+        doThrow(new QueryTimeoutException("Redis command timed out")).when(urlStore).findOriginalUrls(any());
+        ShortUrlCache cache = new ShortUrlCache(1000, Duration.ofMinutes(1), Duration.ofMinutes(1));
+
+        // Act
+        new HotLinkSnapshotter(cache, urlStore, file.toString(), 10);
+
+        // Assert
+        assertNull(cache.getIfPresent("abc"));
+    }
+
+    @Test
+    void load_CorruptSnapshot_ShouldStartWithAColdCache() throws IOException {
+        // Arrange
+        Path file = directory.resolve("hot-links.bin");
+        new HotLinkSnapshot(System.currentTimeMillis(), List.of(
+                new HotLinkSnapshot.Entry("abc", "https://www.example.com", 60_000))).write(file);
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(file, bytes);
+        ShortUrlCache cache = new ShortUrlCache(1000, Duration.ofMinutes(1), Duration.ofMinutes(1));
+
+        // Act
+        new HotLinkSnapshotter(cache, urlStore, file.toString(), 10);
+
+        // Assert
+        assertNull(cache.getIfPresent("abc"));
+        verify(urlStore, never()).findOriginalUrls(any());
+    }
+}
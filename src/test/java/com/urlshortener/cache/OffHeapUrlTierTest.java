@@ -0,0 +1,134 @@
+package com.urlshortener.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapUrlTierTest {
+
+    private static final long TTL = Duration.ofMinutes(1).toNanos();
+
+    @Test
+    void pack_ShouldDistinguishLengthsAndRejectOtherCodes() {
+        // Act & Assert
+        assertNotEquals(OffHeapUrlTier.pack("a"), OffHeapUrlTier.pack("0a"));
+        assertTrue(OffHeapUrlTier.pack("zzzzzzzzzz") > 0);
+        assertEquals(0, OffHeapUrlTier.pack("zzzzzzzzzzz"));
+        assertEquals(0, OffHeapUrlTier.pack("my-link"));
+        assertEquals(0, OffHeapUrlTier.pack(""));
+    }
+
+    @Test
+    void put_ShouldBeReadBackReplacedAndRemoved() {
+        // Arrange
+        OffHeapUrlTier tier = new OffHeapUrlTier(100, 64 * 1024, TTL);
+
+        // Act
+        tier.put("abc12345", "https://www.example.com/ünïcødé");
+        String first = tier.get("abc12345");
+        tier.put("abc12345", "https://www.example.com/b");
+        String replaced = tier.get("abc12345");
+        tier.remove("abc12345");
+
+        // Assert
+        assertEquals("https://www.example.com/ünïcødé", first);
+        assertEquals("https://www.example.com/b", replaced);
+        assertNull(tier.get("abc12345"));
+        assertEquals(0, tier.size());
+    }
+
+    @Test
+    void put_UnpackableCode_ShouldNotBeHeld() {
+        // Arrange
+        OffHeapUrlTier tier = new OffHeapUrlTier(100, 64 * 1024, TTL);
+
+        // Act
+        tier.put("my-link", "https://www.example.com");
+
+        // Assert
+        assertNull(tier.get("my-link"));
+        assertEquals(0, tier.size());
+    }
+
+    @Test
+    void remove_ShouldKeepTheRestOfEachProbeRunReachable() {
+        // Arrange
+        OffHeapUrlTier tier = new OffHeapUrlTier(3000, 1024 * 1024, TTL);
+        for (int i = 0; i < 3000; i++) {
+            tier.put("c" + i, "https://www.example.com/" + i);
+        }
+
+        // Act
+        for (int i = 0; i < 3000; i += 2) {
+            tier.remove("c" + i);
+        }
+
+        // Assert
+        assertEquals(1500, tier.size());
+        for (int i = 0; i < 3000; i++) {
+            assertEquals(i % 2 == 0 ? null : "https://www.example.com/" + i, tier.get("c" + i));
+        }
+    }
+
+    @Test
+    void put_RingFull_ShouldEvictTheOldestEntries() {
+        // Arrange
+        OffHeapUrlTier tier = new OffHeapUrlTier(100_000, 16 * 1024, TTL);
+
+        // Act
+        for (int i = 0; i < 5000; i++) {
+            tier.put("c" + i, "https://www.example.com/" + i);
+        }
+
+        // Assert
+        assertNull(tier.get("c0"));
+        assertEquals("https://www.example.com/4999", tier.get("c4999"));
+        assertTrue(tier.size() < 16 * 1024 / 40);
+    }
+
+    @Test
+    void put_EntryLimitReached_ShouldEvictASlabEarly() {
+        // Arrange
+        OffHeapUrlTier tier = new OffHeapUrlTier(100, 1024 * 1024, TTL);
+
+        // Act
+        for (int i = 0; i < 1000; i++) {
+            tier.put("c" + i, "https://www.example.com/" + i);
+        }
+
+        // Assert
+        assertTrue(tier.size() <= 100);
+        assertEquals("https://www.example.com/999", tier.get("c999"));
+    }
+
+    @Test
+    void get_EntryOlderThanTheTtl_ShouldMiss() {
+        // Arrange
+        OffHeapUrlTier tier = new OffHeapUrlTier(100, 64 * 1024, 0);
+
+        // Act
+        tier.put("abc", "https://www.example.com");
+
+        // Assert
+        assertNull(tier.get("abc"));
+        assertEquals(1, tier.missCount());
+    }
+
+    @Test
+    void getStale_EntryOlderThanTheTtl_ShouldStillBeReadUntilRemoved() {
+        // Arrange
+        OffHeapUrlTier tier = new OffHeapUrlTier(100, 64 * 1024, 0);
+        tier.put("abc", "https://www.example.com");
+
+        // Act
+        String stale = tier.getStale("abc");
+        tier.remove("abc");
+
+        // Assert
+        assertEquals("https://www.example.com", stale);
+        assertNull(tier.getStale("abc"));
+        assertEquals(0, tier.hitCount() + tier.missCount());
+    }
+}
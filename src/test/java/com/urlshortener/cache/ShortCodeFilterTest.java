@@ -0,0 +1,90 @@
+package com.urlshortener.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShortCodeFilterTest {
+
+    private final ShortCodeFilter filter = new ShortCodeFilter(true, 1000);
+
+    @Test
+    void probablyExists_BeforeTheFirstLoad_ShouldReportEveryCodeFree() {
+        // Act
+        filter.startRebuild();
+        filter.load(List.of("abc"));
+
+        // Assert
+        assertFalse(filter.isLoaded());
+        assertFalse(filter.probablyExists("abc"));
+    }
+
+    @Test
+    void finishRebuild_ShouldAnswerFromTheLoadedCodes() {
+        // Act
+        filter.startRebuild();
+        filter.load(List.of("abc", "def"));
+        filter.finishRebuild();
+
+        // Assert
+        assertTrue(filter.probablyExists("abc"));
+        assertTrue(filter.probablyExists("def"));
+        assertFalse(filter.probablyExists("missing"));
+    }
+
+    @Test
+    void addAndRemove_DuringARebuild_ShouldReachBothFilters() {
+        // Arrange
+        filter.startRebuild();
+        filter.load(List.of("abc", "def"));
+        filter.finishRebuild();
+        filter.startRebuild();
+        filter.load(List.of("abc", "def"));
+
+        // Act
+        filter.add("ghi");
+        filter.remove("def");
+        boolean addedBeforeSwap = filter.probablyExists("ghi");
+        filter.finishRebuild();
+
+        // Assert
+        assertTrue(addedBeforeSwap);
+        assertTrue(filter.probablyExists("abc"));
+        assertTrue(filter.probablyExists("ghi"));
+        assertFalse(filter.probablyExists("def"));
+    }
+
+    @Test
+    void abandonRebuild_ShouldKeepTheCurrentFilterAndRetryLarger() {
+        // Arrange
+        ShortCodeFilter small = new ShortCodeFilter(true, 10);
+        small.startRebuild();
+        small.load(List.of("abc"));
+        small.finishRebuild();
+        List<String> codes = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            codes.add("c" + i);
+        }
+
+        // Act
+        small.startRebuild();
+        boolean loaded = small.load(codes);
+        small.abandonRebuild();
+        boolean stillAnswering = small.probablyExists("abc") && !small.probablyExists("c999");
+        small.startRebuild();
+        while (!small.load(codes)) {
+            small.abandonRebuild();
+            small.startRebuild();
+        }
+        small.finishRebuild();
+
+        // Assert
+        assertFalse(loaded);
+        assertTrue(stillAnswering);
+        assertTrue(small.probablyExists("c999"));
+        assertFalse(small.probablyExists("abc"));
+    }
+}
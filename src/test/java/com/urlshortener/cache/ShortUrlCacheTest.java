@@ -0,0 +1,211 @@
+package com.urlshortener.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShortUrlCacheTest {
+
+    private ShortUrlCache cache;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    void setUp() {
+        cache = new ShortUrlCache(1000, Duration.ofMinutes(1), Duration.ofMinutes(1));
+        loads = new AtomicInteger();
+    }
+
+    @Test
+    void get_ShouldLoadOnceAndCountHitsAndMisses() {
+        // Act
+        String first = cache.get("abc", code -> load("https://www.example.com"));
+        String second = cache.get("abc", code -> load("https://www.example.com"));
+
+        // Assert
+        assertEquals("https://www.example.com", first);
+        assertEquals("https://www.example.com", second);
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.missCount());
+        assertEquals(1, cache.hitCount());
+    }
+
+    @Test
+    void get_ShouldCacheMissingCodes() {
+        // Act
+        String first = cache.get("missing", code -> load(null));
+        String second = cache.get("missing", code -> load(null));
+
+        // Assert
+        assertNull(first);
+        assertNull(second);
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void invalidate_ShouldForceReload() {
+        // Arrange
+        cache.get("abc", code -> load(null));
+
+        // Act
+        cache.invalidate("abc");
+        String reloaded = cache.get("abc", code -> load("https://www.example.com"));
+
+        // Assert
+        assertEquals("https://www.example.com", reloaded);
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void invalidateAll_ShouldForceReloadOfEachCode() {
+        // Arrange
+        cache.get("a", code -> load("https://a.example.com"));
+        cache.get("b", code -> load("https://b.example.com"));
+
+        // Act
+        cache.invalidateAll(List.of("a", "b"));
+        cache.get("a", code -> load("https://a.example.com"));
+        cache.get("b", code -> load("https://b.example.com"));
+
+        // Assert
+        assertEquals(4, loads.get());
+    }
+
+    @Test
+    void invalidate_WithOffHeapTier_ShouldEvictBothLevels() {
+        // Arrange
+        ShortUrlCache tiered = new ShortUrlCache(1000, Duration.ofMinutes(1), Duration.ofMinutes(1),
+                true, 100, DataSize.ofKilobytes(64));
+        tiered.get("abc", code -> load("https://www.example.com/old"));
+
+        // Act
+        tiered.invalidate("abc");
+        String reloaded = tiered.get("abc", code -> load("https://www.example.com/new"));
+
+        // Assert
+        assertEquals("https://www.example.com/new", reloaded);
+        assertEquals(2, loads.get());
+        assertEquals("https://www.example.com/new", tiered.getIfPresent("abc"));
+    }
+
+    @Test
+    void getAsync_InvalidatedDuringTheFetch_ShouldNotCacheTheOldUrl() {
+        // Arrange
+        ShortUrlCache tiered = new ShortUrlCache(1000, Duration.ofMinutes(1), Duration.ofMinutes(1),
+                true, 100, DataSize.ofKilobytes(64));
+        CompletableFuture<String> fetch = new CompletableFuture<>();
+        CompletableFuture<String> lookup = tiered.getAsync("abc", code -> fetch);
+
+        // Act
+        tiered.invalidate("abc");
+        fetch.complete("https://www.example.com/old");
+
+        // Assert
+        assertEquals("https://www.example.com/old", lookup.join());
+        assertNull(tiered.getIfPresent("abc"));
+        assertEquals("https://www.example.com/new",
+                tiered.getAsync("abc", code -> CompletableFuture.completedFuture("https://www.example.com/new")).join());
+    }
+
+    @Test
+    void getAsync_FailedFetch_ShouldNotBeCached() {
+        // Arrange
+        CompletableFuture<String> failed = CompletableFuture.failedFuture(new IllegalStateException("down"));
+
+        // Act
+        CompletableFuture<String> lookup = cache.getAsync("abc", code -> failed);
+
+        // Assert
+        assertThrows(CompletionException.class, lookup::join);
+        assertNull(cache.getAsync("abc", code -> CompletableFuture.completedFuture(null)).join());
+        assertEquals(ShortUrlCache.NOT_FOUND, cache.getIfPresent("abc"));
+    }
+
+    @Test
+    void getAll_ShouldLoadOnlyUncachedCodesAndCacheMisses() {
+        // Arrange
+        cache.get("a", code -> load("https://a.example.com"));
+        List<Collection<String>> loaderCalls = new ArrayList<>();
+
+        // Act
+        Map<String, String> first = cache.getAll(List.of("a", "b", "c"), codes -> {
+            loaderCalls.add(List.copyOf(codes));
+            return Map.of("b", "https://b.example.com");
+        });
+        Map<String, String> second = cache.getAll(List.of("c", "b", "a"), codes -> {
+            loaderCalls.add(List.copyOf(codes));
+            return Map.of();
+        });
+
+        // Assert
+        assertEquals(List.of("a", "b"), List.copyOf(first.keySet()));
+        assertEquals("https://b.example.com", first.get("b"));
+        assertEquals(List.of("b", "a"), List.copyOf(second.keySet()));
+        assertEquals(1, loaderCalls.size());
+        assertEquals(2, loaderCalls.get(0).size());
+    }
+
+    @Test
+    void get_LoaderFails_ShouldRethrowAndRetryOnNextLookup() {
+        // Act
+        IllegalStateException thrown = assertThrows(IllegalStateException.class,
+                () -> cache.get("abc", code -> { throw new IllegalStateException("redis down"); }));
+        String retried = cache.get("abc", code -> load("https://www.example.com"));
+
+        // Assert
+        assertEquals("redis down", thrown.getMessage());
+        assertEquals("https://www.example.com", retried);
+    }
+
+    @Test
+    void get_ConcurrentMissesOnVirtualThreads_ShouldShareOneLoad() throws Exception {
+        // Arrange
+        CountDownLatch release = new CountDownLatch(1);
+        List<Future<String>> results = new ArrayList<>();
+
+        // Act
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 100; i++) {
+                results.add(executor.submit(() -> cache.get("hot", code -> {
+                    await(release);
+                    return load("https://www.example.com");
+                })));
+            }
+            Thread.sleep(100);
+            release.countDown();
+            for (Future<String> result : results) {
+                assertEquals("https://www.example.com", result.get());
+            }
+        }
+
+        // Assert
+        assertEquals(1, loads.get());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private String load(String url) {
+        loads.incrementAndGet();
+        return url;
+    }
+}
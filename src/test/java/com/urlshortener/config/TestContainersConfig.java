@@ -19,8 +19,11 @@ public class TestContainersConfig {
                 .waitingFor(Wait.forLogMessage(".*Ready to accept connections.*\\n", 1));
         redisContainer.start();
 
-        System.setProperty("spring.redis.host", redisContainer.getHost());
-        System.setProperty("spring.redis.port", redisContainer.getMappedPort(6379).toString());
+        System.setProperty("spring.data.redis.host", redisContainer.getHost());
+        System.setProperty("spring.data.redis.port", redisContainer.getMappedPort(6379).toString());
+        System.setProperty("urlshortener.id-generator.secret", "42");
+        // Each run starts from an empty Redis, so links cached by an earlier run must not come back
+        System.setProperty("urlshortener.snapshot.enabled", "false");
     }
 
     @Bean(destroyMethod = "stop")
@@ -0,0 +1,84 @@
+package com.urlshortener.controller;
+
+import com.urlshortener.analytics.ClickEventRecorder;
+import com.urlshortener.service.UrlShortenerService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class RedirectControllerTest {
+
+    private UrlShortenerService urlShortenerService;
+    private ClickEventRecorder clickEventRecorder;
+
+    @BeforeEach
+    void setUp() {
+        urlShortenerService = mock(UrlShortenerService.class);
+        clickEventRecorder = mock(ClickEventRecorder.class);
+    }
+
+    @Test
+    void redirect_ShouldSendLocationWithConfiguredStatus() {
+        // Arrange
+        RedirectController controller = new RedirectController(urlShortenerService, clickEventRecorder, 302, Duration.ofMinutes(5), Duration.ofSeconds(30));
+        when(urlShortenerService.resolve("abc")).thenReturn("https://www.example.com");
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr("203.0.113.7");
+        request.addHeader("Referer", "https://news.example.org/");
+        request.addHeader("User-Agent", "curl/8.0");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // Act
+        controller.redirect("abc", request, response);
+
+        // Assert
+        assertEquals(302, response.getStatus());
+        assertEquals("https://www.example.com", response.getHeader("Location"));
+        assertEquals("private, max-age=300", response.getHeader("Cache-Control"));
+        verify(clickEventRecorder).record("abc", "https://news.example.org/", "203.0.113.7", "curl/8.0");
+    }
+
+    @Test
+    void redirect_PermanentStatus_ShouldBePubliclyCacheable() {
+        // Arrange
+        RedirectController controller = new RedirectController(urlShortenerService, clickEventRecorder, 301, Duration.ofHours(1), Duration.ofSeconds(30));
+        when(urlShortenerService.resolve("abc")).thenReturn("https://www.example.com");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // Act
+        controller.redirect("abc", new MockHttpServletRequest(), response);
+
+        // Assert
+        assertEquals(301, response.getStatus());
+        assertEquals("public, max-age=3600", response.getHeader("Cache-Control"));
+    }
+
+    @Test
+    void redirect_ShouldReturnNotFoundForUnknownCode() {
+        // Arrange
+        RedirectController controller = new RedirectController(urlShortenerService, clickEventRecorder, 307, Duration.ofMinutes(5), Duration.ofSeconds(30));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // Act
+        controller.redirect("missing", new MockHttpServletRequest(), response);
+
+        // Assert
+        assertEquals(404, response.getStatus());
+        assertNull(response.getHeader("Location"));
+        assertEquals("public, max-age=30", response.getHeader("Cache-Control"));
+        verify(clickEventRecorder, never()).record(any(), any(), any(), any());
+    }
+
+    @Test
+    void constructor_ShouldRejectNonRedirectStatus() {
+        assertThrows(IllegalArgumentException.class, () ->
+                new RedirectController(urlShortenerService, clickEventRecorder, 200, Duration.ofMinutes(5), Duration.ofSeconds(30)));
+    }
+}
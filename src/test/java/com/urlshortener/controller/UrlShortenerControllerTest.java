@@ -1,18 +1,32 @@
 package com.urlshortener.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.urlshortener.analytics.ClickEventRecorder;
+import com.urlshortener.model.BatchShortenResult;
 import com.urlshortener.model.UrlMapping;
+import com.urlshortener.ratelimit.RateLimiter;
 import com.urlshortener.service.UrlShortenerService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.dao.QueryTimeoutException;
 import org.springframework.http.ResponseEntity;
-
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.*;
 
 class UrlShortenerControllerTest {
@@ -20,12 +34,21 @@ class UrlShortenerControllerTest {
     @Mock
     private UrlShortenerService urlShortenerService;
 
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @Mock
+    private ClickEventRecorder clickEventRecorder;
+
     @InjectMocks
     private UrlShortenerController urlShortenerController;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(urlShortenerController, "batchChunkSize", 2);
+        ReflectionTestUtils.setField(urlShortenerController, "resolveMaxCodes", 3);
+        ReflectionTestUtils.setField(urlShortenerController, "apiKeyHeader", "X-API-Key");
     }
 
     @Test
@@ -35,7 +58,7 @@ class UrlShortenerControllerTest {
         UrlMapping expectedMapping = new UrlMapping();
         expectedMapping.setOriginalUrl(originalUrl);
         expectedMapping.setShortUrl("random123");
-        when(urlShortenerService.createShortUrl(originalUrl)).thenReturn(expectedMapping);
+        when(urlShortenerService.createShortUrl(originalUrl, null, null)).thenReturn(expectedMapping);
 
         // Act
         ResponseEntity<UrlMapping> response = urlShortenerController.shortenRandomURL(new UrlRequest(originalUrl));
@@ -44,7 +67,7 @@ class UrlShortenerControllerTest {
         assertNotNull(response);
         assertEquals(200, response.getStatusCodeValue());
         assertEquals(expectedMapping, response.getBody());
-        verify(urlShortenerService).createShortUrl(originalUrl);
+        verify(urlShortenerService).createShortUrl(originalUrl, null, null);
     }
 
     @Test
@@ -55,7 +78,7 @@ class UrlShortenerControllerTest {
         UrlMapping expectedMapping = new UrlMapping();
         expectedMapping.setOriginalUrl(originalUrl);
         expectedMapping.setShortUrl(specifiedShortUrl);
-        when(urlShortenerService.createSpecificShortUrl(originalUrl, specifiedShortUrl)).thenReturn(expectedMapping);
+        when(urlShortenerService.createSpecificShortUrl(originalUrl, specifiedShortUrl, null, null)).thenReturn(expectedMapping);
 
         // Act
         SpecificUrlRequest request = new SpecificUrlRequest();
@@ -67,7 +90,191 @@ class UrlShortenerControllerTest {
         assertNotNull(response);
         assertEquals(200, response.getStatusCodeValue());
         assertEquals(expectedMapping, response.getBody());
-        verify(urlShortenerService).createSpecificShortUrl(originalUrl, specifiedShortUrl);
+        verify(urlShortenerService).createSpecificShortUrl(originalUrl, specifiedShortUrl, null, null);
+    }
+
+    @Test
+    void shortenBatch_ShouldStreamResultsInChunks() throws Exception {
+        // Arrange
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setContent("[\"https://a.example.com\", {\"url\": \"https://b.example.com\"}, 42]".getBytes());
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        when(urlShortenerService.createShortUrls(List.of("https://a.example.com", "https://b.example.com")))
+                .thenReturn(List.of(
+                        new BatchShortenResult("https://a.example.com", "aaaa", BatchShortenResult.Status.CREATED),
+                        new BatchShortenResult("https://b.example.com", "bbbb", BatchShortenResult.Status.CREATED)));
+        when(urlShortenerService.createShortUrls(Collections.singletonList(null)))
+                .thenReturn(List.of(new BatchShortenResult(null, null, BatchShortenResult.Status.INVALID)));
+
+        // Act
+        urlShortenerController.shortenBatch(request, response);
+
+        // Assert
+        assertEquals(200, response.getStatus());
+        BatchShortenResult[] results = objectMapper.readValue(response.getContentAsByteArray(), BatchShortenResult[].class);
+        assertEquals(3, results.length);
+        assertEquals("aaaa", results[0].getShortUrl());
+        assertEquals("bbbb", results[1].getShortUrl());
+        assertEquals(BatchShortenResult.Status.INVALID, results[2].getStatus());
+        verify(urlShortenerService, times(2)).createShortUrls(any());
+    }
+
+    @Test
+    void shortenBatch_StoreFailsOnTheFirstChunk_ShouldFailBeforeTheResponseIsCommitted() {
+        // Arrange
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setContent("[\"https://a.example.com\", \"https://b.example.com\", \"https://c.example.com\"]".getBytes());
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        when(urlShortenerService.createShortUrls(any())).thenThrow(new QueryTimeoutException("Redis command timed out"));
+
+        // Act & Assert
+        assertThrows(QueryTimeoutException.class, () -> urlShortenerController.shortenBatch(request, response));
+        assertFalse(response.isCommitted());
+        assertEquals(0, response.getContentLength());
+    }
+
+    @Test
+    void shortenBatch_StoreFailsOnALaterChunk_ShouldMarkItsUrlsFailedAndCarryOn() throws Exception {
+        // Arrange
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setContent("[\"https://a.example.com\", \"https://b.example.com\", \"https://c.example.com\", \"https://d.example.com\", \"https://e.example.com\"]".getBytes());
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        when(urlShortenerService.createShortUrls(List.of("https://a.example.com", "https://b.example.com")))
+                .thenReturn(List.of(
+                        new BatchShortenResult("https://a.example.com", "aaaa", BatchShortenResult.Status.CREATED),
+                        new BatchShortenResult("https://b.example.com", "bbbb", BatchShortenResult.Status.CREATED)));
+        when(urlShortenerService.createShortUrls(List.of("https://c.example.com", "https://d.example.com")))
+                .thenThrow(new QueryTimeoutException("Redis command timed out"));
+        when(urlShortenerService.createShortUrls(List.of("https://e.example.com")))
+                .thenReturn(List.of(new BatchShortenResult("https://e.example.com", "eeee", BatchShortenResult.Status.CREATED)));
+
+        // Act
+        urlShortenerController.shortenBatch(request, response);
+
+        // Assert
+        assertEquals(200, response.getStatus());
+        BatchShortenResult[] results = objectMapper.readValue(response.getContentAsByteArray(), BatchShortenResult[].class);
+        assertEquals(5, results.length);
+        assertEquals(BatchShortenResult.Status.CREATED, results[1].getStatus());
+        assertEquals(BatchShortenResult.Status.FAILED, results[2].getStatus());
+        assertEquals("https://d.example.com", results[3].getUrl());
+        assertEquals(BatchShortenResult.Status.FAILED, results[3].getStatus());
+        assertEquals("eeee", results[4].getShortUrl());
+    }
+
+    @Test
+    void shortenBatch_ShouldChargeATokenPerUrlAndRefuseTheUrlsOverTheLimit() throws Exception {
+        // Arrange
+        RateLimiter rateLimiter = mock(RateLimiter.class);
+        ReflectionTestUtils.setField(urlShortenerController, "rateLimiter", rateLimiter);
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setContent("[\"https://a.example.com\", \"https://b.example.com\", \"https://c.example.com\", \"https://d.example.com\", \"https://e.example.com\"]".getBytes());
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        when(rateLimiter.tryAcquire(any(), any(), anyInt())).thenReturn(1, 1, 0);
+        when(urlShortenerService.createShortUrls(List.of("https://a.example.com", "https://b.example.com")))
+                .thenReturn(List.of(
+                        new BatchShortenResult("https://a.example.com", "aaaa", BatchShortenResult.Status.CREATED),
+                        new BatchShortenResult("https://b.example.com", "bbbb", BatchShortenResult.Status.CREATED)));
+        when(urlShortenerService.createShortUrls(List.of("https://c.example.com")))
+                .thenReturn(List.of(new BatchShortenResult("https://c.example.com", "cccc", BatchShortenResult.Status.CREATED)));
+
+        // Act
+        urlShortenerController.shortenBatch(request, response);
+
+        // Assert
+        assertEquals(200, response.getStatus());
+        BatchShortenResult[] results = objectMapper.readValue(response.getContentAsByteArray(), BatchShortenResult[].class);
+        assertEquals(5, results.length);
+        assertEquals("bbbb", results[1].getShortUrl());
+        assertEquals("cccc", results[2].getShortUrl());
+        assertEquals(BatchShortenResult.Status.REFUSED, results[3].getStatus());
+        assertEquals("https://e.example.com", results[4].getUrl());
+        assertEquals(BatchShortenResult.Status.REFUSED, results[4].getStatus());
+        // The request's own token pays for the first URL
+        verify(rateLimiter, times(2)).tryAcquire(null, "127.0.0.1", 1);
+        verify(rateLimiter).tryAcquire(null, "127.0.0.1", 2);
+    }
+
+    @Test
+    void shortenBatch_UrlRepeatedInALaterChunk_ShouldGetTheCodeItWasGivenFirst() throws Exception {
+        // Arrange
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setContent("[\"https://a.example.com\", \"https://b.example.com\", \"https://a.example.com\", \"https://c.example.com\"]".getBytes());
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        when(urlShortenerService.createShortUrls(List.of("https://a.example.com", "https://b.example.com")))
+                .thenReturn(List.of(
+                        new BatchShortenResult("https://a.example.com", "aaaa", BatchShortenResult.Status.CREATED),
+                        new BatchShortenResult("https://b.example.com", "bbbb", BatchShortenResult.Status.CREATED)));
+        when(urlShortenerService.createShortUrls(List.of("https://c.example.com")))
+                .thenReturn(List.of(new BatchShortenResult("https://c.example.com", "cccc", BatchShortenResult.Status.CREATED)));
+
+        // Act
+        urlShortenerController.shortenBatch(request, response);
+
+        // Assert
+        BatchShortenResult[] results = objectMapper.readValue(response.getContentAsByteArray(), BatchShortenResult[].class);
+        assertEquals(4, results.length);
+        assertEquals("https://a.example.com", results[2].getUrl());
+        assertEquals("aaaa", results[2].getShortUrl());
+        assertEquals(BatchShortenResult.Status.CREATED, results[2].getStatus());
+        assertEquals("cccc", results[3].getShortUrl());
+        verify(urlShortenerService, never()).createShortUrls(List.of("https://a.example.com", "https://c.example.com"));
+    }
+
+    @Test
+    void shortenBatch_ShouldRejectNonArrayBody() throws Exception {
+        // Arrange
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setContent("{\"url\": \"https://a.example.com\"}".getBytes());
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // Act
+        urlShortenerController.shortenBatch(request, response);
+
+        // Assert
+        assertEquals(400, response.getStatus());
+        verify(urlShortenerService, never()).createShortUrls(any());
+    }
+
+    @Test
+    void resolveUrls_ShouldReturnUrlsInRequestOrder() {
+        // Arrange
+        List<String> shortUrls = List.of("b", "missing", "a");
+        when(urlShortenerService.getOriginalUrls(shortUrls))
+                .thenReturn(Map.of("a", "https://a.example.com", "b", "https://b.example.com"));
+
+        // Act
+        ResponseEntity<List<ResolvedUrl>> response = urlShortenerController.resolveUrls(shortUrls);
+
+        // Assert
+        assertEquals(200, response.getStatusCodeValue());
+        List<ResolvedUrl> resolved = response.getBody();
+        assertEquals("b", resolved.get(0).getShortUrl());
+        assertEquals("https://b.example.com", resolved.get(0).getUrl());
+        assertNull(resolved.get(1).getUrl());
+        assertEquals("https://a.example.com", resolved.get(2).getUrl());
+    }
+
+    @Test
+    void resolveUrls_ShouldRejectANullBodyOrNullCodes() {
+        // Act
+        ResponseEntity<List<ResolvedUrl>> nullBody = urlShortenerController.resolveUrls(null);
+        ResponseEntity<List<ResolvedUrl>> nullCode = urlShortenerController.resolveUrls(Arrays.asList("a", null));
+
+        // Assert
+        assertEquals(400, nullBody.getStatusCodeValue());
+        assertEquals(400, nullCode.getStatusCodeValue());
+        verify(urlShortenerService, never()).getOriginalUrls(any());
+    }
+
+    @Test
+    void resolveUrls_ShouldRejectTooManyCodes() {
+        // Act
+        ResponseEntity<List<ResolvedUrl>> response = urlShortenerController.resolveUrls(List.of("a", "b", "c", "d"));
+
+        // Assert
+        assertEquals(400, response.getStatusCodeValue());
+        verify(urlShortenerService, never()).getOriginalUrls(any());
     }
 
     @Test
@@ -76,15 +283,19 @@ class UrlShortenerControllerTest {
         String shortUrl = "test123";
         String originalUrl = "https://www.example.com";
         when(urlShortenerService.getOriginalUrl(shortUrl)).thenReturn(Optional.of(originalUrl));
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr("203.0.113.7");
+        request.addHeader("Referer", "https://news.example.org/");
 
         // Act
-        ResponseEntity<UrlResponse> response = urlShortenerController.getOriginalUrl(shortUrl);
+        ResponseEntity<UrlResponse> response = urlShortenerController.getOriginalUrl(shortUrl, request);
 
         // Assert
         assertNotNull(response);
         assertEquals(200, response.getStatusCodeValue());
         assertEquals(originalUrl, response.getBody().getUrl());
         verify(urlShortenerService).getOriginalUrl(shortUrl);
+        verify(clickEventRecorder).record(shortUrl, "https://news.example.org/", "203.0.113.7", null);
     }
 
     @Test
@@ -94,12 +305,13 @@ class UrlShortenerControllerTest {
         when(urlShortenerService.getOriginalUrl(shortUrl)).thenReturn(Optional.empty());
 
         // Act
-        ResponseEntity<UrlResponse> response = urlShortenerController.getOriginalUrl(shortUrl);
+        ResponseEntity<UrlResponse> response = urlShortenerController.getOriginalUrl(shortUrl, new MockHttpServletRequest());
 
         // Assert
         assertNotNull(response);
         assertEquals(400, response.getStatusCodeValue());
         verify(urlShortenerService).getOriginalUrl(shortUrl);
+        verify(clickEventRecorder, never()).record(any(), any(), any(), any());
     }
 
     @Test
@@ -154,6 +366,8 @@ class UrlShortenerControllerTest {
 // Helper classes for testing
 class UrlRequest {
     private String url;
+    private String owner;
+    private Long ttlSeconds;
 
     public UrlRequest() {}
 
@@ -163,16 +377,26 @@ class UrlRequest {
 
     public String getUrl() { return url; }
     public void setUrl(String url) { this.url = url; }
+    public String getOwner() { return owner; }
+    public void setOwner(String owner) { this.owner = owner; }
+    public Long getTtlSeconds() { return ttlSeconds; }
+    public void setTtlSeconds(Long ttlSeconds) { this.ttlSeconds = ttlSeconds; }
 }
 
 class SpecificUrlRequest {
     private String url;
     private String shortUrl;
+    private String owner;
+    private Long ttlSeconds;
 
     public String getUrl() { return url; }
     public void setUrl(String url) { this.url = url; }
     public String getShortUrl() { return shortUrl; }
     public void setShortUrl(String shortUrl) { this.shortUrl = shortUrl; }
+    public String getOwner() { return owner; }
+    public void setOwner(String owner) { this.owner = owner; }
+    public Long getTtlSeconds() { return ttlSeconds; }
+    public void setTtlSeconds(Long ttlSeconds) { this.ttlSeconds = ttlSeconds; }
 }
 
 class UrlResponse {
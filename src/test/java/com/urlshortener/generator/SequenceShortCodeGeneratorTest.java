@@ -0,0 +1,104 @@
+package com.urlshortener.generator;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class SequenceShortCodeGeneratorTest {
+
+    private ValueOperations<String, String> valueOperations;
+    private SequenceShortCodeGenerator generator;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        RedisTemplate<String, String> redisTemplate = mock(RedisTemplate.class);
+        valueOperations = mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        AtomicLong counter = new AtomicLong();
+        when(valueOperations.increment(eq(SequenceShortCodeGenerator.SEQUENCE_KEY), anyLong()))
+                .thenAnswer(i -> counter.addAndGet(i.getArgument(1)));
+        generator = new SequenceShortCodeGenerator(redisTemplate, 100, 42);
+    }
+
+    @Test
+    void next_ShouldLeaseOneBlockPerBlockSizeCodes() {
+        // Act
+        for (int i = 0; i < 250; i++) {
+            generator.next();
+        }
+
+        // Assert
+        verify(valueOperations, times(3)).increment(SequenceShortCodeGenerator.SEQUENCE_KEY, 100L);
+    }
+
+    @Test
+    void nextBatch_ShouldLeaseAtMostOneBlockCoveringTheBatch() {
+        // Arrange
+        generator.next();
+
+        // Act
+        List<String> codes = generator.next(500);
+
+        // Assert
+        assertEquals(500, codes.size());
+        assertEquals(500, new HashSet<>(codes).size());
+        verify(valueOperations, times(1)).increment(SequenceShortCodeGenerator.SEQUENCE_KEY, 100L);
+        verify(valueOperations, times(1)).increment(SequenceShortCodeGenerator.SEQUENCE_KEY, 401L);
+    }
+
+    @Test
+    void next_ShouldReturnDistinctEightCharacterCodes() {
+        // Act
+        Set<String> codes = new HashSet<>();
+        for (int i = 0; i < 10_000; i++) {
+            String code = generator.next();
+            assertEquals(8, code.length());
+            codes.add(code);
+        }
+
+        // Assert
+        assertEquals(10_000, codes.size());
+    }
+
+    @Test
+    void constructor_WithoutASecret_ShouldRefuseToStart() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class,
+                () -> new SequenceShortCodeGenerator(mock(RedisTemplate.class), 100, 0));
+    }
+
+    @Test
+    void permutation_ShouldBeBijectiveOnRange() {
+        // Arrange
+        FeistelPermutation permutation = new FeistelPermutation(7);
+        Set<Long> outputs = new HashSet<>();
+
+        // Act & Assert
+        for (long i = 0; i < 100_000; i++) {
+            long out = permutation.apply(i);
+            assertTrue(out >= 0 && out < (1L << FeistelPermutation.BITS));
+            outputs.add(out);
+        }
+        assertEquals(100_000, outputs.size());
+        assertNotEquals(permutation.apply(1) + 1, permutation.apply(2));
+    }
+
+    @Test
+    void base62_ShouldPadToWidthAndRejectOverflow() {
+        assertEquals("00000000", Base62.encode(0, 8));
+        assertEquals("0000000z", Base62.encode(61, 8));
+        assertEquals("00000010", Base62.encode(62, 8));
+        assertEquals(8, Base62.encode((1L << FeistelPermutation.BITS) - 1, 8).length());
+        assertThrows(IllegalArgumentException.class, () -> Base62.encode(62, 1));
+    }
+}
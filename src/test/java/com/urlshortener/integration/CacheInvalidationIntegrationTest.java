@@ -0,0 +1,98 @@
+package com.urlshortener.integration;
+
+import com.urlshortener.cache.CacheInvalidationBus;
+import com.urlshortener.cache.ShortUrlCache;
+import com.urlshortener.config.RedisConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs two "replicas" against one Redis and checks that a write on one
+ * evicts the cached lookup on the other within the staleness window.
+ */
+@Testcontainers
+class CacheInvalidationIntegrationTest {
+
+    @Container
+    static GenericContainer<?> redis = new GenericContainer<>(DockerImageName.parse("redis:7.0-alpine"))
+            .withExposedPorts(6379);
+
+    private LettuceConnectionFactory connectionFactory;
+    private Node nodeA;
+    private Node nodeB;
+
+    @BeforeEach
+    void setUp() {
+        connectionFactory = new LettuceConnectionFactory(redis.getHost(), redis.getFirstMappedPort());
+        connectionFactory.afterPropertiesSet();
+        nodeA = new Node(connectionFactory);
+        nodeB = new Node(connectionFactory);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        nodeA.stop();
+        nodeB.stop();
+        connectionFactory.destroy();
+    }
+
+    @Test
+    void writeOnOneNode_ShouldEvictCachedLookupOnOtherNode() throws InterruptedException {
+        // Arrange
+        nodeB.cache.get("shared", nodeB::load);
+        assertEquals(1, nodeB.loads.get());
+
+        // Act - republish until node B's subscription is live
+        long deadline = System.currentTimeMillis() + 5000;
+        while (nodeB.loads.get() < 2 && System.currentTimeMillis() < deadline) {
+            nodeA.bus.invalidate("shared");
+            nodeA.bus.flush();
+            Thread.sleep(50);
+            nodeB.bus.flush();
+            nodeB.cache.get("shared", nodeB::load);
+        }
+
+        // Assert
+        assertEquals(2, nodeB.loads.get());
+    }
+
+    private static final class Node {
+        final ShortUrlCache cache = new ShortUrlCache(1000, Duration.ofMinutes(1), Duration.ofMinutes(1));
+        final CacheInvalidationBus bus;
+        final RedisMessageListenerContainer container;
+        final AtomicInteger loads = new AtomicInteger();
+
+        Node(LettuceConnectionFactory connectionFactory) {
+            RedisConfig config = new RedisConfig();
+            RedisTemplate<String, String> template = config.redisTemplate(connectionFactory);
+            template.afterPropertiesSet();
+            bus = new CacheInvalidationBus(template, cache);
+            container = config.redisMessageListenerContainer(connectionFactory, bus);
+            container.afterPropertiesSet();
+            container.start();
+        }
+
+        String load(String code) {
+            loads.incrementAndGet();
+            return "https://www.example.com/" + code;
+        }
+
+        void stop() throws Exception {
+            container.stop();
+            container.destroy();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.urlshortener.integration;
+
+import com.github.dockerjava.api.model.ExposedPort;
+import com.github.dockerjava.api.model.PortBinding;
+import com.github.dockerjava.api.model.Ports;
+import com.urlshortener.model.UrlMapping;
+import com.urlshortener.model.VisitorStats;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the application against a Redis Cluster and reads click analytics that span several
+ * keys. The cluster is one master owning every slot: Spring Data Redis refuses multi-key
+ * commands over keys of different slots whatever the number of masters, so one is enough
+ * to catch keys that are not hash-tagged together. It listens on the same port inside and
+ * outside the container, so the address it announces can be reached from the test.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "urlshortener.id-generator.secret=42",
+        "urlshortener.snapshot.enabled=false",
+        "urlshortener.clicks.flush-interval-ms=100"})
+@Testcontainers
+class ClickStatsClusterIntegrationTest {
+    private static final int PORT = freePort();
+
+    @Container
+    static GenericContainer<?> redis = new GenericContainer<>(DockerImageName.parse("redis:7.0-alpine"))
+            .withCommand("redis-server", "--port", Integer.toString(PORT), "--cluster-enabled", "yes",
+                    "--cluster-announce-ip", "127.0.0.1")
+            .withExposedPorts(PORT)
+            .withCreateContainerCmdModifier(cmd -> cmd.getHostConfig()
+                    .withPortBindings(new PortBinding(Ports.Binding.bindPort(PORT), new ExposedPort(PORT))));
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @DynamicPropertySource
+    static void redisProperties(DynamicPropertyRegistry registry) throws Exception {
+        redis.execInContainer("redis-cli", "-p", Integer.toString(PORT), "cluster", "addslotsrange", "0", "16383");
+        while (!redis.execInContainer("redis-cli", "-p", Integer.toString(PORT), "cluster", "info")
+                .getStdout().contains("cluster_state:ok")) {
+            Thread.sleep(100);
+        }
+        registry.add("spring.data.redis.cluster.nodes", () -> "127.0.0.1:" + PORT);
+    }
+
+    @Test
+    void getVisitors_OverSeveralDays_ShouldCountTheUnionOnACluster() throws InterruptedException {
+        // Arrange
+        ResponseEntity<UrlMapping> created = restTemplate.postForEntity("/api/url/shorten/random",
+                Map.of("url", "https://www.example.com/visited"), UrlMapping.class);
+        String shortUrl = created.getBody().getShortUrl();
+        restTemplate.getForEntity("/api/url/" + shortUrl, String.class);
+
+        // Act - clicks reach Redis two flushes after they are recorded
+        ResponseEntity<VisitorStats> response = null;
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            response = restTemplate.getForEntity("/api/url/" + shortUrl + "/visitors?days=3", VisitorStats.class);
+            if (response.getStatusCode() != HttpStatus.OK || response.getBody().getUniqueVisitors() > 0) {
+                break;
+            }
+            Thread.sleep(100);
+        }
+
+        // Assert
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(1, response.getBody().getUniqueVisitors());
+    }
+
+    private static int freePort() {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
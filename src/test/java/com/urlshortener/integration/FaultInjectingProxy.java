@@ -0,0 +1,99 @@
+package com.urlshortener.integration;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * TCP proxy in front of Redis that can delay or hold back what clients send, to reproduce a
+ * slow or unreachable Redis. Held bytes are delivered once the proxy resumes, as TCP would
+ * after retransmitting lost packets, so the protocol stays in step.
+ */
+final class FaultInjectingProxy implements AutoCloseable {
+    private final ServerSocket serverSocket;
+    private final String targetHost;
+    private final int targetPort;
+    private final List<Socket> sockets = new CopyOnWriteArrayList<>();
+    private volatile long delayMillis;
+    private volatile boolean stalled;
+
+    FaultInjectingProxy(String targetHost, int targetPort) throws IOException {
+        this.serverSocket = new ServerSocket(0);
+        this.targetHost = targetHost;
+        this.targetPort = targetPort;
+        Thread.ofVirtual().start(this::accept);
+    }
+
+    int port() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Delays every write to Redis by the given time.
+     */
+    void delay(long millis) {
+        delayMillis = millis;
+    }
+
+    /**
+     * Holds back everything sent to Redis, as if its packets were dropped, until {@link #resume()}.
+     */
+    void stall() {
+        stalled = true;
+    }
+
+    void resume() {
+        delayMillis = 0;
+        stalled = false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        for (Socket socket : sockets) {
+            socket.close();
+        }
+    }
+
+    private void accept() {
+        try {
+            while (true) {
+                Socket client = serverSocket.accept();
+                Socket server = new Socket();
+                server.connect(new InetSocketAddress(targetHost, targetPort));
+                sockets.add(client);
+                sockets.add(server);
+                Thread.ofVirtual().start(() -> pump(client, server, true));
+                Thread.ofVirtual().start(() -> pump(server, client, false));
+            }
+        } catch (IOException e) {
+            // Closed
+        }
+    }
+
+    private void pump(Socket from, Socket to, boolean towardsRedis) {
+        byte[] buffer = new byte[8192];
+        try (InputStream in = from.getInputStream(); OutputStream out = to.getOutputStream()) {
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                if (towardsRedis) {
+                    while (stalled) {
+                        Thread.sleep(5);
+                    }
+                    if (delayMillis > 0) {
+                        Thread.sleep(delayMillis);
+                    }
+                }
+                out.write(buffer, 0, read);
+                out.flush();
+            }
+        } catch (IOException | InterruptedException e) {
+            // Closed
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.urlshortener.integration;
+
+import com.urlshortener.cache.CacheInvalidationBus;
+import com.urlshortener.cache.ShortUrlCache;
+import com.urlshortener.config.RedisConfig;
+import com.urlshortener.generator.RandomShortCodeGenerator;
+import com.urlshortener.model.UrlMapping;
+import com.urlshortener.repository.ExpiryRefresher;
+import com.urlshortener.repository.RedisUrlRepository;
+import com.urlshortener.repository.ResilientUrlStore;
+import com.urlshortener.repository.StoreUnavailableException;
+import com.urlshortener.service.UrlShortenerService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.util.unit.DataSize;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Puts a {@link FaultInjectingProxy} between the store and Redis and checks that a slow or
+ * unreachable Redis fails calls within the command timeout, opens the circuit, and leaves the
+ * node serving the links it has seen, read-only, until Redis is back.
+ */
+@Testcontainers
+class RedisFaultInjectionIntegrationTest {
+    private static final Duration COMMAND_TIMEOUT = Duration.ofMillis(200);
+    private static final Duration OPEN_DURATION = Duration.ofMillis(500);
+
+    @Container
+    static GenericContainer<?> redis = new GenericContainer<>(DockerImageName.parse("redis:7.0-alpine"))
+            .withExposedPorts(6379);
+
+    private FaultInjectingProxy proxy;
+    private LettuceConnectionFactory connectionFactory;
+    private UrlShortenerService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        proxy = new FaultInjectingProxy(redis.getHost(), redis.getFirstMappedPort());
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration("localhost", proxy.port()),
+                LettuceClientConfiguration.builder().commandTimeout(COMMAND_TIMEOUT).build());
+        connectionFactory.afterPropertiesSet();
+        RedisTemplate<String, String> template = new RedisConfig().redisTemplate(connectionFactory);
+        template.afterPropertiesSet();
+        // Short TTLs, so lookups go back to the store while the off-heap tier still holds the URLs
+        ShortUrlCache cache = new ShortUrlCache(100_000, Duration.ofMillis(100), Duration.ofMillis(100),
+                true, 1000, DataSize.ofMegabytes(1));
+        RedisUrlRepository repository = new RedisUrlRepository(template, new CacheInvalidationBus(template, cache),
+                500, Duration.ofDays(1), "");
+        ResilientUrlStore store = new ResilientUrlStore(repository, 0.5, 4, Duration.ofSeconds(10), OPEN_DURATION,
+                8, 2, Duration.ZERO);
+        service = new UrlShortenerService(store, cache, new RandomShortCodeGenerator(),
+                new ExpiryRefresher(store, false, Duration.ofHours(1), 0, new SimpleMeterRegistry()),
+                new SimpleMeterRegistry(), Duration.ofDays(3650));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        proxy.resume();
+        connectionFactory.destroy();
+        proxy.close();
+    }
+
+    @Test
+    void delayedRedis_ShouldFailTheCallWithinTheCommandTimeout() throws InterruptedException {
+        // Arrange
+        assertEquals(Optional.empty(), service.getOriginalUrl("slow1"));
+        Thread.sleep(150);
+        proxy.delay(2000);
+
+        // Act
+        long start = System.nanoTime();
+        assertThrows(QueryTimeoutException.class, () -> service.getOriginalUrl("slow1"));
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        // Assert
+        assertTrue(elapsedMillis < 1000, "took " + elapsedMillis + "ms");
+    }
+
+    @Test
+    void stalledRedis_ShouldOpenTheCircuitAndServeKnownLinksReadOnly() throws InterruptedException {
+        // Arrange
+        UrlMapping mapping = service.createShortUrl("https://www.example.com/known");
+        assertEquals(Optional.of("https://www.example.com/known"), service.getOriginalUrl(mapping.getShortUrl()));
+        Thread.sleep(150);
+        proxy.stall();
+
+        // Act - each lookup waits out the timeout and falls back until the circuit opens
+        for (int i = 0; i < 4; i++) {
+            assertEquals(Optional.of("https://www.example.com/known"), service.getOriginalUrl(mapping.getShortUrl()));
+        }
+        long start = System.nanoTime();
+        Optional<String> whileOpen = service.getOriginalUrl(mapping.getShortUrl());
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        // Assert
+        assertEquals(Optional.of("https://www.example.com/known"), whileOpen);
+        assertTrue(elapsedMillis < COMMAND_TIMEOUT.toMillis(), "took " + elapsedMillis + "ms");
+        assertThrows(StoreUnavailableException.class, () -> service.createShortUrl("https://www.example.com/new"));
+        assertThrows(DataAccessException.class, () -> service.getOriginalUrl("unknown1"));
+    }
+
+    @Test
+    void recoveredRedis_ShouldCloseTheCircuitAfterTheOpenDuration() throws InterruptedException {
+        // Arrange
+        proxy.stall();
+        for (int i = 0; i < 4; i++) {
+            assertThrows(DataAccessException.class, () -> service.getOriginalUrl("down1"));
+        }
+        assertThrows(StoreUnavailableException.class, () -> service.createShortUrl("https://www.example.com/refused"));
+
+        // Act
+        proxy.resume();
+        Thread.sleep(OPEN_DURATION.toMillis() + 100);
+        UrlMapping created = service.createShortUrl("https://www.example.com/after");
+
+        // Assert
+        assertEquals(Optional.of("https://www.example.com/after"), service.getOriginalUrl(created.getShortUrl()));
+    }
+}
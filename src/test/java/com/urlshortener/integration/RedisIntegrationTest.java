@@ -1,12 +1,17 @@
 package com.urlshortener.integration;
 
+import com.urlshortener.cache.ShortCodeFilter;
 import com.urlshortener.model.UrlMapping;
+import com.urlshortener.repository.ExpiryRefresher;
+import com.urlshortener.repository.ExpirySweeper;
 import com.urlshortener.repository.RedisUrlRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import com.urlshortener.config.TestContainersConfig;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.DynamicPropertyRegistry;
 import org.springframework.test.context.DynamicPropertySource;
@@ -15,11 +20,21 @@ import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
 import org.testcontainers.utility.DockerImageName;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.jupiter.api.Assertions.*;
 
-@SpringBootTest
+@SpringBootTest(properties = "urlshortener.code-filter.enabled=true")
 @Import(TestContainersConfig.class)
 @ActiveProfiles("test")
 @Testcontainers
@@ -31,13 +46,22 @@ class RedisIntegrationTest {
 
     @DynamicPropertySource
     static void redisProperties(DynamicPropertyRegistry registry) {
-        registry.add("spring.redis.host", redis::getHost);
-        registry.add("spring.redis.port", redis::getFirstMappedPort);
+        registry.add("spring.data.redis.host", redis::getHost);
+        registry.add("spring.data.redis.port", redis::getFirstMappedPort);
     }
 
     @Autowired
     private RedisUrlRepository redisUrlRepository;
 
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Autowired
+    private ExpirySweeper expirySweeper;
+
+    @Autowired
+    private ShortCodeFilter codeFilter;
+
     @Test
     void shouldSaveAndRetrieveUrlMapping() {
         // Arrange
@@ -149,4 +173,224 @@ class RedisIntegrationTest {
         assertTrue(finalMapping.isPresent());
         assertEquals(thirdShortUrl, finalMapping.get().getShortUrl());
     }
-} 
\ No newline at end of file
+
+    @Test
+    void shouldNotOverwriteClaimedShortUrl() {
+        // Arrange
+        String shortUrl = "claimed123";
+        assertTrue(redisUrlRepository.saveIfAbsent(new UrlMapping("https://www.example.com/first", shortUrl)));
+
+        // Act
+        boolean claimed = redisUrlRepository.saveIfAbsent(new UrlMapping("https://www.example.com/second", shortUrl));
+
+        // Assert
+        assertFalse(claimed);
+        assertEquals("https://www.example.com/first", redisUrlRepository.findByShortUrl(shortUrl).get().getOriginalUrl());
+        assertFalse(redisUrlRepository.findByOriginalUrl("https://www.example.com/second").isPresent());
+    }
+
+    @Test
+    void shouldDropPreviousShortUrlWhenSameUrlIsSavedAgain() {
+        // Arrange
+        String originalUrl = "https://www.example.com/moved";
+        redisUrlRepository.save(new UrlMapping(originalUrl, "before123"));
+
+        // Act
+        assertTrue(redisUrlRepository.saveIfAbsent(new UrlMapping(originalUrl, "after456")));
+
+        // Assert
+        assertFalse(redisUrlRepository.findByShortUrl("before123").isPresent());
+        assertEquals("after456", redisUrlRepository.findByOriginalUrl(originalUrl).get().getShortUrl());
+    }
+
+    @Test
+    void shouldRoundTripCompressedUrlsAndNonAsciiCodes() {
+        // Arrange
+        String originalUrl = "https://WWW.Example.com/landing?" + "utm_source=newsletter&utm_medium=email&".repeat(10);
+        redisUrlRepository.save(new UrlMapping(originalUrl, "ünïcødé"));
+
+        // Act
+        assertTrue(redisUrlRepository.saveIfAbsent(new UrlMapping("https://www.example.com/landing?"
+                + "utm_source=newsletter&utm_medium=email&".repeat(10), "ascii123")));
+
+        // Assert
+        assertFalse(redisUrlRepository.findByShortUrl("ünïcødé").isPresent());
+        assertEquals("ascii123", redisUrlRepository.findByOriginalUrl(originalUrl).get().getShortUrl());
+        assertTrue(redisUrlRepository.findByShortUrl("ascii123").get().getOriginalUrl().endsWith("email&"));
+    }
+
+    @Test
+    void shouldSaveBatchInOnePipeline() {
+        // Arrange
+        redisUrlRepository.save(new UrlMapping("https://www.example.com/taken", "batch002"));
+        List<UrlMapping> mappings = List.of(
+                new UrlMapping("https://www.example.com/batch/1", "batch001"),
+                new UrlMapping("https://www.example.com/batch/2", "batch002"),
+                new UrlMapping("https://www.example.com/batch/3", "batch003"));
+
+        // Act
+        List<Boolean> claimed = redisUrlRepository.saveAllIfAbsent(mappings);
+
+        // Assert
+        assertEquals(List.of(true, false, true), claimed);
+        assertEquals("https://www.example.com/batch/3", redisUrlRepository.findByShortUrl("batch003").get().getOriginalUrl());
+        assertEquals("https://www.example.com/taken", redisUrlRepository.findByShortUrl("batch002").get().getOriginalUrl());
+        assertEquals("batch001", redisUrlRepository.findByOriginalUrl("https://www.example.com/batch/1").get().getShortUrl());
+    }
+
+    @Test
+    void shouldFindOriginalUrlsInRequestOrder() {
+        // Arrange
+        redisUrlRepository.save(new UrlMapping("https://www.example.com/mget/1", "mget001"));
+        redisUrlRepository.save(new UrlMapping("https://www.example.com/mget/2", "mget002"));
+
+        // Act
+        Map<String, String> originalUrls = redisUrlRepository.findOriginalUrls(List.of("mget002", "mgetnone", "mget001"));
+
+        // Assert
+        assertEquals(List.of("mget002", "mget001"), List.copyOf(originalUrls.keySet()));
+        assertEquals("https://www.example.com/mget/2", originalUrls.get("mget002"));
+    }
+
+    @Test
+    void shouldSweepExpiredMappingsAndOrphanedReverseEntries() throws Exception {
+        // Arrange
+        UrlMapping expiring = new UrlMapping("https://www.example.com/sweep/expired", "sweep001");
+        expiring.setExpiresAt(LocalDateTime.now().plusSeconds(1));
+        redisUrlRepository.save(expiring);
+        redisUrlRepository.save(new UrlMapping("https://www.example.com/sweep/orphan", "sweep002"));
+        String orphanReverseKey = reverseKeyOf("sweep002");
+        redisTemplate.opsForHash().delete(forwardKeyOf("sweep002"), "sweep002");
+        Thread.sleep(2000);
+
+        // Act
+        sweepBucket(forwardKeyOf("sweep001"));
+        sweepBucket(orphanReverseKey);
+
+        // Assert
+        assertFalse(redisTemplate.opsForHash().hasKey(forwardKeyOf("sweep001"), "sweep001"));
+        assertNull(reverseKeyOf("sweep001"));
+        assertFalse(redisTemplate.opsForHash().values(orphanReverseKey).contains("sweep002"));
+    }
+
+    @Test
+    void shouldGrantUsedLinksTheirLifetimeAgain() throws Exception {
+        // Arrange
+        ExpiryRefresher refresher = new ExpiryRefresher(redisUrlRepository, true, Duration.ZERO, 100, new SimpleMeterRegistry());
+        UrlMapping mapping = new UrlMapping("https://www.example.com/sliding", "slide001");
+        mapping.setExpiresAt(LocalDateTime.now().plusSeconds(100));
+        redisUrlRepository.save(mapping);
+        LocalDateTime expiresAt = redisUrlRepository.findByShortUrl("slide001").get().getExpiresAt();
+        Thread.sleep(1100);
+
+        // Act
+        refresher.touch("slide001");
+        refresher.flush();
+
+        // Assert
+        UrlMapping refreshed = redisUrlRepository.findByShortUrl("slide001").get();
+        assertTrue(refreshed.getExpiresAt().isAfter(expiresAt));
+        assertEquals(Duration.ofSeconds(100), Duration.between(refreshed.getUpdatedAt(), refreshed.getExpiresAt()));
+    }
+
+    @Test
+    void shouldLoadStoredCodesIntoTheCodeFilter() throws Exception {
+        // Arrange
+        redisUrlRepository.save(new UrlMapping("https://www.example.com/filtered", "filter123"));
+
+        // Act
+        long deadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+        while (!codeFilter.isLoaded() && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+
+        // Assert
+        assertTrue(codeFilter.isLoaded());
+        assertTrue(codeFilter.probablyExists("filter123"));
+        assertFalse(codeFilter.probablyExists("never-created"));
+        assertEquals(Optional.of("https://www.example.com/filtered"), redisUrlRepository.findOriginalUrl("filter123"));
+        assertTrue(redisUrlRepository.findOriginalUrl("never-created").isEmpty());
+    }
+
+    @Test
+    void shouldFindCodesTheCodeFilterHasNotSeen() {
+        // Arrange - as if created on another node whose invalidation has not arrived
+        redisUrlRepository.save(new UrlMapping("https://www.example.com/unseen", "unseen12"));
+        codeFilter.remove("unseen12");
+
+        // Act
+        Optional<String> originalUrl = redisUrlRepository.findOriginalUrl("unseen12");
+
+        // Assert
+        assertEquals(Optional.of("https://www.example.com/unseen"), originalUrl);
+        assertTrue(redisUrlRepository.existsByShortUrl("unseen12"));
+        assertEquals(Map.of("unseen12", "https://www.example.com/unseen"),
+                redisUrlRepository.findOriginalUrls(List.of("unseen12")));
+    }
+
+    @Test
+    void shouldPersistMappingMetadata() {
+        // Arrange
+        UrlMapping mapping = new UrlMapping("https://www.example.com/owned", "owned123");
+        mapping.setOwner("marketing");
+        redisUrlRepository.save(mapping);
+        redisTemplate.opsForHash().increment("clicks:owned123", "total", 7);
+
+        // Act
+        UrlMapping stored = redisUrlRepository.findByShortUrl("owned123").get();
+
+        // Assert
+        assertEquals("marketing", stored.getOwner());
+        assertEquals(mapping.getCreatedAt().withNano(0), stored.getCreatedAt());
+        assertEquals(mapping.getExpiresAt(), stored.getExpiresAt());
+        assertEquals(7, stored.getHitCount());
+        assertEquals(Optional.of("https://www.example.com/owned"), redisUrlRepository.findOriginalUrl("owned123"));
+    }
+
+    // Same bucket function as MappingKeys.forwardKey
+    private static String forwardKeyOf(String shortUrl) {
+        int bucket = 0;
+        for (byte b : shortUrl.getBytes(StandardCharsets.UTF_8)) {
+            bucket = (bucket * 31 + (b & 0xff)) & 0xffff;
+        }
+        return String.format("m:%04x", bucket);
+    }
+
+    private String reverseKeyOf(String shortUrl) {
+        for (String key : redisTemplate.keys("r:*")) {
+            if (redisTemplate.opsForHash().values(key).contains(shortUrl)) {
+                return key;
+            }
+        }
+        return null;
+    }
+
+    private void sweepBucket(String key) {
+        redisTemplate.opsForValue().set("sweeper:cursor", String.valueOf(Integer.parseInt(key.substring(2), 16)));
+        expirySweeper.run();
+    }
+
+    @Test
+    void shouldLetOnlyOneConcurrentClaimSucceed() throws Exception {
+        // Arrange
+        String shortUrl = "race123";
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Callable<Boolean>> claims = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            String originalUrl = "https://www.example.com/race/" + i;
+            claims.add(() -> redisUrlRepository.saveIfAbsent(new UrlMapping(originalUrl, shortUrl)));
+        }
+
+        // Act
+        int successes = 0;
+        for (Future<Boolean> result : executor.invokeAll(claims)) {
+            if (result.get()) {
+                successes++;
+            }
+        }
+        executor.shutdown();
+
+        // Assert
+        assertEquals(1, successes);
+    }
+}
\ No newline at end of file
@@ -15,7 +15,10 @@ import org.testcontainers.junit.jupiter.Testcontainers;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -66,6 +69,25 @@ public class UrlShortenerIntegrationTest {
         assertNotNull(response.getBody().getShortUrl());
     }
 
+    @Test
+    void testRandomUrlShorteningWithTtl() {
+        // Prepare test data
+        Map<String, String> request = new HashMap<>();
+        request.put("url", "https://www.example.com/short/lived");
+        request.put("ttlSeconds", "3600");
+
+        // Make the request
+        ResponseEntity<UrlMapping> response = restTemplate.postForEntity(baseUrl + "/shorten/random", request, UrlMapping.class);
+        request.put("ttlSeconds", "0");
+        ResponseEntity<UrlMapping> rejected = restTemplate.postForEntity(baseUrl + "/shorten/random", request, UrlMapping.class);
+
+        // Assertions
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        Duration remaining = Duration.between(LocalDateTime.now(), response.getBody().getExpiresAt());
+        assertTrue(remaining.compareTo(Duration.ofMinutes(59)) > 0 && remaining.compareTo(Duration.ofHours(1)) <= 0);
+        assertEquals(HttpStatus.BAD_REQUEST, rejected.getStatusCode());
+    }
+
     @Test
     void testSpecificUrlShortening() {
         // Prepare test data
@@ -124,6 +146,40 @@ public class UrlShortenerIntegrationTest {
         assertEquals(originalUrl, retrievalResponse.getBody().get("url"));
     }
 
+    @Test
+    void testBatchUrlShortening() {
+        // Prepare test data
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        String body = "[\"https://www.example.com/batch/a\", {\"url\": \"https://www.example.com/batch/b\"}, \"\"]";
+
+        // Make the request
+        ResponseEntity<List> response = restTemplate.postForEntity(
+                baseUrl + "/shorten/batch",
+                new HttpEntity<>(body, headers),
+                List.class
+        );
+
+        // Log response
+        logger.info("Batch URL shortening completed");
+        logger.info("Response status: {}", response.getStatusCode());
+
+        // Assertions
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        List<Map<String, String>> results = response.getBody();
+        assertNotNull(results);
+        assertEquals(3, results.size());
+        assertEquals("CREATED", results.get(0).get("status"));
+        assertEquals("CREATED", results.get(1).get("status"));
+        assertEquals("INVALID", results.get(2).get("status"));
+
+        ResponseEntity<Map> retrievalResponse = restTemplate.getForEntity(
+                baseUrl + "/" + results.get(1).get("shortUrl"),
+                Map.class
+        );
+        assertEquals("https://www.example.com/batch/b", retrievalResponse.getBody().get("url"));
+    }
+
     @Test
     void testNonExistentUrl() {
         ResponseEntity<Map> response = restTemplate.getForEntity(
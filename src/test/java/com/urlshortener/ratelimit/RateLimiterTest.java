@@ -0,0 +1,168 @@
+package com.urlshortener.ratelimit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class RateLimiterTest {
+
+    @SuppressWarnings("unchecked")
+    private final RedisTemplate<String, String> redisTemplate = mock(RedisTemplate.class);
+
+    private final RateLimiter rateLimiter = new RateLimiter(redisTemplate, 1, 3, 1, 2, 100, Duration.ofMillis(50));
+
+    @Test
+    void tryAcquire_ShouldAdmitABurstAndThenRefuse() {
+        // Act
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, rateLimiter.tryAcquire(null, "10.0.0.1"));
+        }
+        long wait = rateLimiter.tryAcquire(null, "10.0.0.1");
+
+        // Assert
+        assertTrue(wait > 0 && wait <= TimeUnit.SECONDS.toNanos(1));
+        assertEquals(1, RateLimiter.retryAfterSeconds(wait));
+        assertEquals(0, rateLimiter.tryAcquire(null, "10.0.0.2"));
+    }
+
+    @Test
+    void tryAcquire_ShouldLimitAnApiKeyAcrossAddresses() {
+        // Act
+        long first = rateLimiter.tryAcquire("key", "10.0.0.1");
+        long second = rateLimiter.tryAcquire("key", "10.0.0.2");
+        long third = rateLimiter.tryAcquire("key", "10.0.0.3");
+
+        // Assert
+        assertEquals(0, first);
+        assertEquals(0, second);
+        assertTrue(third > 0);
+        assertEquals(0, rateLimiter.tryAcquire("other-key", "10.0.0.3"));
+    }
+
+    @Test
+    void tryAcquire_KeyTableFilledByRotatingKeys_ShouldStillAdmitNewKeysUpToTheirAddressLimit() {
+        // Arrange
+        RateLimiter limiter = new RateLimiter(redisTemplate, 1, 3, 1, 2, 2, Duration.ofMillis(50));
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.tryAcquire("rotated-" + i, "10.0.0.1"));
+        }
+
+        // Act
+        long[] waits = new long[4];
+        for (int i = 0; i < waits.length; i++) {
+            waits[i] = limiter.tryAcquire("new-key", "10.0.0.2");
+        }
+
+        // Assert - the address limit admits three, and the key limit would have admitted two
+        assertEquals(0, waits[0]);
+        assertEquals(0, waits[1]);
+        assertEquals(0, waits[2]);
+        assertTrue(waits[3] > 0);
+        assertEquals(2, limiter.tryAcquire("another-key", "10.0.0.3", 2));
+    }
+
+    @Test
+    void tryAcquire_ForSeveralTokens_ShouldTakeWhatBothBucketsHaveLeft() {
+        // Act
+        int first = rateLimiter.tryAcquire(null, "10.0.0.1", 2);
+        int second = rateLimiter.tryAcquire("key", "10.0.0.1", 5);
+        int third = rateLimiter.tryAcquire("key", "10.0.0.2", 5);
+
+        // Assert
+        assertEquals(2, first);
+        assertEquals(1, second);
+        assertEquals(1, third);
+        assertEquals(0, rateLimiter.tryAcquire(null, "10.0.0.2"));
+        assertEquals(1, rateLimiter.tryAcquire(null, "10.0.0.2", 5));
+    }
+
+    @Test
+    void sync_ShouldChargeWhatOtherNodesTook() {
+        // Arrange
+        rateLimiter.tryAcquire(null, "10.0.0.1");
+        when(redisTemplate.executePipelined(any(RedisCallback.class))).thenReturn(List.of(1L, true));
+        rateLimiter.sync();
+        rateLimiter.tryAcquire(null, "10.0.0.1");
+        // This node reported 1 more, and other nodes took 2 in the meantime
+        when(redisTemplate.executePipelined(any(RedisCallback.class))).thenReturn(List.of(4L, true));
+
+        // Act
+        rateLimiter.sync();
+
+        // Assert
+        assertTrue(rateLimiter.tryAcquire(null, "10.0.0.1") > 0);
+    }
+
+    @Test
+    void reconcile_WhenTheSharedCounterStartedOver_ShouldChargeOnlyWhatWasAddedSince() {
+        // Arrange
+        TokenBucket bucket = new TokenBucket(1, 3, System.nanoTime());
+        bucket.sharedTotal = 100;
+
+        // Act
+        RateLimiter.reconcile(new RateLimiter.Pending(new byte[0], bucket, 1), 2, System.nanoTime());
+
+        // Assert
+        assertEquals(2, bucket.sharedTotal);
+        assertEquals(0, bucket.tryTake(System.nanoTime()));
+        assertEquals(0, bucket.tryTake(System.nanoTime()));
+        assertTrue(bucket.tryTake(System.nanoTime()) > 0);
+    }
+
+    @Test
+    void sync_WhenRedisFails_ShouldShedAndReportTheTokensLater() {
+        // Arrange
+        rateLimiter.tryAcquire(null, "10.0.0.1");
+        when(redisTemplate.executePipelined(any(RedisCallback.class)))
+                .thenThrow(new RedisConnectionFailureException("down"))
+                .thenReturn(List.of(1L, true));
+
+        // Act
+        rateLimiter.sync();
+        boolean shedWhileDown = rateLimiter.shouldShed();
+        rateLimiter.sync();
+
+        // Assert
+        assertTrue(shedWhileDown);
+        assertFalse(rateLimiter.shouldShed());
+        verify(redisTemplate, times(2)).executePipelined(any(RedisCallback.class));
+    }
+
+    @Test
+    void sync_WithNoActiveClients_ShouldProbeTheLatency() {
+        // Arrange
+        when(redisTemplate.execute(any(RedisCallback.class))).thenAnswer(invocation -> {
+            Thread.sleep(60);
+            return "PONG";
+        });
+
+        // Act - the first round trip also opens the connection and is not counted
+        rateLimiter.sync();
+        rateLimiter.sync();
+
+        // Assert
+        assertTrue(rateLimiter.latencyNanos() >= TimeUnit.MILLISECONDS.toNanos(60));
+        assertTrue(rateLimiter.shouldShed());
+        verify(redisTemplate, times(2)).execute(any(RedisCallback.class));
+        verify(redisTemplate, never()).executePipelined(any(RedisCallback.class));
+    }
+
+    @Test
+    void isCreate_ShouldMatchOnlyTheCreateEndpoints() {
+        assertTrue(RateLimiter.isCreate("POST", "/api/url/shorten/random"));
+        assertTrue(RateLimiter.isCreate("POST", "/api/url/shorten/batch"));
+        assertTrue(RateLimiter.isCreate("PUT", "/api/url/replace"));
+        assertFalse(RateLimiter.isCreate("GET", "/api/url/abc"));
+        assertFalse(RateLimiter.isCreate("GET", "/abc"));
+        assertFalse(RateLimiter.isCreate("POST", "/api/url/resolve"));
+    }
+}
@@ -0,0 +1,245 @@
+package com.urlshortener.repository;
+
+import com.urlshortener.cache.ShortUrlCache;
+import com.urlshortener.model.UrlMapping;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedUrlStoreTest {
+
+    @TempDir
+    Path directory;
+
+    private final List<MappedUrlStore> opened = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() throws IOException {
+        for (MappedUrlStore store : opened) {
+            store.close();
+        }
+    }
+
+    @Test
+    void save_ShouldBeFoundByCodeAndByUrl() throws IOException {
+        // Arrange
+        MappedUrlStore store = open();
+
+        // Act
+        store.save(new UrlMapping("https://www.example.com", "abc", null, null, null, "team-a"));
+
+        // Assert
+        assertEquals("https://www.example.com", store.findOriginalUrl("abc").orElseThrow());
+        assertEquals("team-a", store.findByShortUrl("abc").orElseThrow().getOwner());
+        assertEquals("abc", store.findByOriginalUrl("https://www.example.com").orElseThrow().getShortUrl());
+        assertTrue(store.existsByShortUrl("abc"));
+        assertFalse(store.existsByShortUrl("abd"));
+    }
+
+    @Test
+    void save_SameUrlUnderNewCode_ShouldDropThePreviousCode() throws IOException {
+        // Arrange
+        MappedUrlStore store = open();
+        store.save(new UrlMapping("https://www.example.com", "abc"));
+
+        // Act
+        store.save(new UrlMapping("https://www.example.com", "xyz"));
+
+        // Assert
+        assertTrue(store.findOriginalUrl("abc").isEmpty());
+        assertEquals("xyz", store.findByOriginalUrl("https://www.example.com").orElseThrow().getShortUrl());
+    }
+
+    @Test
+    void saveIfAbsent_TakenCode_ShouldKeepTheExistingMapping() throws IOException {
+        // Arrange
+        MappedUrlStore store = open();
+        store.save(new UrlMapping("https://www.example.com/a", "abc"));
+
+        // Act
+        boolean claimed = store.saveIfAbsent(new UrlMapping("https://www.example.com/b", "abc"));
+
+        // Assert
+        assertFalse(claimed);
+        assertEquals("https://www.example.com/a", store.findOriginalUrl("abc").orElseThrow());
+        assertTrue(store.findByOriginalUrl("https://www.example.com/b").isEmpty());
+    }
+
+    @Test
+    void save_ExistingCodeWithNewUrl_ShouldUnlinkTheOldUrl() throws IOException {
+        // Arrange
+        MappedUrlStore store = open();
+        store.save(new UrlMapping("https://www.example.com/a", "abc"));
+
+        // Act
+        store.save(new UrlMapping("https://www.example.com/b", "abc"));
+
+        // Assert
+        assertEquals("https://www.example.com/b", store.findOriginalUrl("abc").orElseThrow());
+        assertTrue(store.findByOriginalUrl("https://www.example.com/a").isEmpty());
+    }
+
+    @Test
+    void delete_ShouldRemoveBothDirections() throws IOException {
+        // Arrange
+        MappedUrlStore store = open();
+        store.save(new UrlMapping("https://www.example.com", "abc"));
+
+        // Act
+        store.delete("abc");
+
+        // Assert
+        assertTrue(store.findOriginalUrl("abc").isEmpty());
+        assertTrue(store.findByOriginalUrl("https://www.example.com").isEmpty());
+    }
+
+    @Test
+    void findOriginalUrls_ShouldReturnTheExistingCodesInOrder() throws IOException {
+        // Arrange
+        MappedUrlStore store = open();
+        store.save(new UrlMapping("https://www.example.com/a", "abc"));
+        store.save(new UrlMapping("https://www.example.com/b", "xyz"));
+
+        // Act
+        Map<String, String> found = store.findOriginalUrls(List.of("xyz", "missing", "abc"));
+
+        // Assert
+        assertEquals(List.of("xyz", "abc"), List.copyOf(found.keySet()));
+        assertEquals("https://www.example.com/a", found.get("abc"));
+    }
+
+    @Test
+    void refreshExpiry_ShouldGrantTheLifetimeAgain() throws IOException {
+        // Arrange
+        MappedUrlStore store = open();
+        UrlMapping mapping = new UrlMapping("https://www.example.com", "abc");
+        mapping.setExpiresAt(LocalDateTime.now().plusDays(1));
+        store.save(mapping);
+
+        // Act
+        int refreshedNow = store.refreshExpiry(List.of("abc", "missing"), 0);
+        int refreshedAgain = store.refreshExpiry(List.of("abc"), 3600);
+
+        // Assert
+        assertEquals(1, refreshedNow);
+        assertEquals(0, refreshedAgain);
+        assertEquals("abc", store.findByOriginalUrl("https://www.example.com").orElseThrow().getShortUrl());
+    }
+
+    @Test
+    void reopen_AfterCleanClose_ShouldReuseTheIndexes() throws IOException {
+        // Arrange
+        MappedUrlStore store = open();
+        for (int i = 0; i < 500; i++) {
+            store.save(new UrlMapping("https://www.example.com/" + i, "c" + i));
+        }
+        store.delete("c7");
+        close(store);
+
+        // Act
+        MappedUrlStore reopened = open();
+
+        // Assert
+        assertTrue(reopened.findOriginalUrl("c7").isEmpty());
+        assertEquals("https://www.example.com/499", reopened.findOriginalUrl("c499").orElseThrow());
+        assertEquals("c42", reopened.findByOriginalUrl("https://www.example.com/42").orElseThrow().getShortUrl());
+    }
+
+    @Test
+    void reopen_AfterCrash_ShouldReplayTheLogAndDropATornRecord() throws IOException {
+        // Arrange
+        MappedUrlStore crashed = open();
+        crashed.save(new UrlMapping("https://www.example.com/kept", "abc"));
+        crashed.save(new UrlMapping("https://www.example.com/torn", "xyz"));
+        corrupt("https://www.example.com/torn");
+
+        // Act
+        MappedUrlStore reopened = open();
+        reopened.save(new UrlMapping("https://www.example.com/after", "def"));
+
+        // Assert
+        assertEquals("https://www.example.com/kept", reopened.findOriginalUrl("abc").orElseThrow());
+        assertTrue(reopened.findOriginalUrl("xyz").isEmpty());
+        assertEquals("https://www.example.com/after", reopened.findOriginalUrl("def").orElseThrow());
+    }
+
+    @Test
+    void reopen_MostlySupersededLog_ShouldCompactIt() throws IOException {
+        // Arrange
+        MappedUrlStore store = open();
+        for (int i = 0; i < 500; i++) {
+            store.save(new UrlMapping("https://www.example.com/" + i, "abc"));
+        }
+        close(store);
+        long before = Files.size(directory.resolve(MappedUrlStore.LOG_FILE));
+
+        // Act
+        MappedUrlStore reopened = open();
+
+        // Assert
+        assertTrue(Files.size(directory.resolve(MappedUrlStore.LOG_FILE)) < before);
+        assertEquals("https://www.example.com/499", reopened.findOriginalUrl("abc").orElseThrow());
+    }
+
+    @Test
+    void index_ShouldGrowAndSurviveReopening() throws IOException {
+        // Arrange
+        Path file = directory.resolve("test.idx");
+        OffHeapHashIndex index = OffHeapHashIndex.create(file, 16);
+
+        // Act
+        for (long key = 0; key < 10_000; key++) {
+            long value = key;
+            index.put(key, value * 2, existing -> existing == value * 2);
+        }
+        index.remove(5, value -> value == 10);
+        index.close(1234);
+        index.close();
+        OffHeapHashIndex reopened = OffHeapHashIndex.open(file, 16);
+
+        // Assert
+        assertTrue(reopened.isClean());
+        assertEquals(1234, reopened.position());
+        assertEquals(9_999, reopened.size());
+        assertEquals(OffHeapHashIndex.ABSENT, reopened.get(5, value -> true));
+        assertEquals(19_998, reopened.get(9_999, value -> true));
+        reopened.close();
+    }
+
+    private MappedUrlStore open() throws IOException {
+        MappedUrlStore store = new MappedUrlStore(new ShortUrlCache(100, Duration.ofMinutes(1), Duration.ofMinutes(1)),
+                directory.toString(), DataSize.ofKilobytes(4), false, 0.5, Duration.ofDays(30));
+        opened.add(store);
+        return store;
+    }
+
+    private void close(MappedUrlStore store) throws IOException {
+        opened.remove(store);
+        store.close();
+    }
+
+    private void corrupt(String marker) throws IOException {
+        Path log = directory.resolve(MappedUrlStore.LOG_FILE);
+        byte[] content = Files.readAllBytes(log);
+        int at = new String(content, StandardCharsets.ISO_8859_1).indexOf(marker) + marker.length() - 1;
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {(byte) ~content[at]}), at);
+        }
+    }
+}
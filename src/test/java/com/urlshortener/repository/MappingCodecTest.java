@@ -0,0 +1,125 @@
+package com.urlshortener.repository;
+
+import com.urlshortener.model.UrlMapping;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappingCodecTest {
+
+    @Test
+    void encode_ShortUrl_ShouldStorePlainBytesAfterTheMetadata() {
+        // Arrange
+        String url = "https://www.example.com";
+        byte[] digest = MappingKeys.digest(url);
+
+        // Act
+        byte[] value = MappingCodec.encode(new UrlMapping(url, "abc"), digest, 1_900_000_000L);
+
+        // Assert
+        assertEquals(MappingCodec.VERSION_METADATA, value[0]);
+        assertEquals(MappingCodec.HEADER_LENGTH + 10 + url.length(), value.length);
+        assertEquals(1_900_000_000L, MappingCodec.expiresAt(value));
+        assertTrue(MappingCodec.hasDigest(value, digest));
+        assertEquals(url, MappingCodec.decodeUrl(value));
+    }
+
+    @Test
+    void mapsUrl_ShouldCompareTheStoredUrlRatherThanTheDigest() {
+        // Arrange
+        byte[] digest = MappingKeys.digest("https://www.example.com/a");
+        byte[] collided = MappingCodec.encode(new UrlMapping("https://www.example.com/b", "abc"), digest, 1_900_000_000L);
+        byte[] own = MappingCodec.encode(new UrlMapping("https://WWW.Example.com/a", "abd"), digest, 1_900_000_000L);
+
+        // Act & Assert
+        assertTrue(MappingCodec.hasDigest(collided, digest));
+        assertFalse(MappingCodec.mapsUrl(collided, "https://www.example.com/a"));
+        assertTrue(MappingCodec.mapsUrl(own, "https://www.example.com/a"));
+    }
+
+    @Test
+    void encode_LongUrl_ShouldDeflateAndRoundTrip() {
+        // Arrange
+        String url = "https://www.example.com/landing?" + "utm_source=newsletter&utm_medium=email&".repeat(10);
+
+        // Act
+        byte[] value = MappingCodec.encode(new UrlMapping(url, "abc"), MappingKeys.digest(url), 1_900_000_000L);
+
+        // Assert
+        assertTrue(value.length < url.length() / 2);
+        assertEquals(url, MappingCodec.decodeUrl(value));
+    }
+
+    @Test
+    void decode_ShouldRestoreMetadataToTheSecond() {
+        // Arrange
+        LocalDateTime createdAt = LocalDateTime.of(2024, 3, 1, 12, 30, 15, 123_000_000);
+        UrlMapping mapping = new UrlMapping("https://www.example.com/ünïcødé", "abc", createdAt,
+                createdAt.plusDays(1), null, "team-ä");
+
+        // Act
+        UrlMapping decoded = MappingCodec.decode("abc", MappingCodec.encode(mapping, MappingKeys.digest(mapping.getOriginalUrl()),
+                MappingCodec.epochSecond(createdAt.plusDays(30))));
+
+        // Assert
+        assertEquals(mapping.getOriginalUrl(), decoded.getOriginalUrl());
+        assertEquals("abc", decoded.getShortUrl());
+        assertEquals(createdAt.withNano(0), decoded.getCreatedAt());
+        assertEquals(createdAt.plusDays(1).withNano(0), decoded.getUpdatedAt());
+        assertEquals(createdAt.plusDays(30).withNano(0), decoded.getExpiresAt());
+        assertEquals("team-ä", decoded.getOwner());
+    }
+
+    @Test
+    void decode_VersionOneEntry_ShouldStillBeReadable() {
+        // Arrange
+        byte[] url = "https://www.example.com".getBytes(StandardCharsets.UTF_8);
+        byte[] value = new byte[MappingCodec.HEADER_LENGTH + url.length];
+        value[0] = MappingCodec.VERSION_PLAIN;
+        value[1] = 0x71;
+        System.arraycopy(url, 0, value, MappingCodec.HEADER_LENGTH, url.length);
+
+        // Act
+        UrlMapping decoded = MappingCodec.decode("abc", value);
+
+        // Assert
+        assertEquals("https://www.example.com", decoded.getOriginalUrl());
+        assertEquals(0x71000000L, MappingCodec.expiresAt(value));
+        assertNull(decoded.getCreatedAt());
+        assertNull(decoded.getOwner());
+    }
+
+    @Test
+    void encode_OwnerTooLong_ShouldThrowException() {
+        UrlMapping mapping = new UrlMapping("https://www.example.com", "abc");
+        mapping.setOwner("x".repeat(MappingCodec.MAX_OWNER_LENGTH + 1));
+        assertThrows(IllegalArgumentException.class,
+                () -> MappingCodec.encode(mapping, MappingKeys.digest(mapping.getOriginalUrl()), 1000));
+    }
+
+    @Test
+    void isLive_ShouldTreatExpiredAndMissingValuesAsAbsent() {
+        byte[] value = MappingCodec.encode(new UrlMapping("https://a.com", "abc"), MappingKeys.digest("https://a.com"), 1000);
+        assertTrue(MappingCodec.isLive(value, 999));
+        assertFalse(MappingCodec.isLive(value, 1000));
+        assertFalse(MappingCodec.isLive(null, 0));
+    }
+
+    @Test
+    void digest_ShouldIgnoreCaseOfSchemeAndHostOnly() {
+        assertArrayEquals(MappingKeys.digest("https://www.example.com/Path"), MappingKeys.digest("HTTPS://WWW.Example.COM/Path"));
+        assertFalse(Arrays.equals(MappingKeys.digest("https://www.example.com/Path"), MappingKeys.digest("https://www.example.com/path")));
+    }
+
+    @Test
+    void forwardKey_ShouldMatchTheBucketFunctionOfTheScripts() {
+        // bucket = fold(h * 31 + byte) mod 65536 over the UTF-8 bytes, as in save_mapping.lua
+        assertEquals("m:0061", MappingKeys.forwardKey("a"));
+        assertEquals("m:" + String.format("%04x", ("ab".hashCode()) & 0xffff), MappingKeys.forwardKey("ab"));
+        assertEquals("r:0102", MappingKeys.reverseKey(new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10}));
+    }
+}
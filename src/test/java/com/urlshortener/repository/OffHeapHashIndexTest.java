@@ -0,0 +1,60 @@
+package com.urlshortener.repository;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapHashIndexTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void putAndRemove_RepeatedChurn_ShouldKeepTheTableSizedForTheLiveEntries() throws IOException {
+        // Arrange
+        try (OffHeapHashIndex index = OffHeapHashIndex.create(directory.resolve("index.bin"), 16)) {
+            for (long key = 1; key <= 4; key++) {
+                index.put(key, key * 100, value -> false);
+            }
+
+            // Act
+            for (int round = 0; round < 1000; round++) {
+                for (long key = 1000; key < 1008; key++) {
+                    long value = round * 10_000L + key;
+                    index.put(key, value, existing -> false);
+                    index.remove(key, existing -> existing == value);
+                }
+            }
+
+            // Assert
+            assertEquals(4, index.size());
+            assertTrue(index.capacity() <= 32, "capacity " + index.capacity());
+            for (long key = 1; key <= 4; key++) {
+                long expected = key * 100;
+                assertEquals(expected, index.get(key, value -> value == expected));
+            }
+            assertEquals(OffHeapHashIndex.ABSENT, index.get(1000, value -> true));
+        }
+    }
+
+    @Test
+    void put_ManyLiveEntries_ShouldStillGrow() throws IOException {
+        // Arrange
+        try (OffHeapHashIndex index = OffHeapHashIndex.create(directory.resolve("index.bin"), 16)) {
+
+            // Act
+            for (long key = 1; key <= 1000; key++) {
+                index.put(key, key, value -> false);
+            }
+
+            // Assert
+            assertEquals(1000, index.size());
+            assertTrue(index.capacity() >= 1000 * 10 / 7);
+            assertEquals(500, index.get(500, value -> value == 500));
+        }
+    }
+}
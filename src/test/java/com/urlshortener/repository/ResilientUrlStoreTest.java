@@ -0,0 +1,108 @@
+package com.urlshortener.repository;
+
+import com.urlshortener.model.UrlMapping;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class ResilientUrlStoreTest {
+
+    private final UrlStore store = mock(UrlStore.class);
+
+    private final ResilientUrlStore resilientStore = new ResilientUrlStore(store,
+            new CircuitBreaker(4, 0.5, TimeUnit.SECONDS.toNanos(10), TimeUnit.MILLISECONDS.toNanos(100)),
+            1, 1, Duration.ZERO);
+
+    @Test
+    void call_FailureRateReached_ShouldOpenTheCircuitAndRefuseWithoutCallingTheStore() {
+        // Arrange
+        when(store.findOriginalUrl(any())).thenThrow(new QueryTimeoutException("Redis command timed out"));
+
+        // Act
+        for (int i = 0; i < 4; i++) {
+            assertThrows(QueryTimeoutException.class, () -> resilientStore.findOriginalUrl("abc"));
+        }
+
+        // Assert
+        assertEquals(CircuitBreaker.State.OPEN, resilientStore.circuitState());
+        assertThrows(StoreUnavailableException.class, () -> resilientStore.saveIfAbsent(new UrlMapping("https://www.example.com", "abc")));
+        verify(store, times(4)).findOriginalUrl("abc");
+        verify(store, never()).saveIfAbsent(any());
+    }
+
+    @Test
+    void call_AfterTheOpenDuration_ShouldCloseTheCircuitWhenTheProbeSucceeds() throws InterruptedException {
+        // Arrange
+        when(store.findOriginalUrl(any()))
+                .thenThrow(new QueryTimeoutException("Redis command timed out"))
+                .thenThrow(new QueryTimeoutException("Redis command timed out"))
+                .thenThrow(new QueryTimeoutException("Redis command timed out"))
+                .thenThrow(new QueryTimeoutException("Redis command timed out"))
+                .thenThrow(new QueryTimeoutException("Redis command timed out"))
+                .thenReturn(Optional.of("https://www.example.com"));
+        for (int i = 0; i < 4; i++) {
+            assertThrows(QueryTimeoutException.class, () -> resilientStore.findOriginalUrl("abc"));
+        }
+
+        // Act - a failed probe opens the circuit again, a successful one closes it
+        Thread.sleep(150);
+        assertThrows(QueryTimeoutException.class, () -> resilientStore.findOriginalUrl("abc"));
+        CircuitBreaker.State afterFailedProbe = resilientStore.circuitState();
+        Thread.sleep(150);
+        Optional<String> probed = resilientStore.findOriginalUrl("abc");
+
+        // Assert
+        assertEquals(CircuitBreaker.State.OPEN, afterFailedProbe);
+        assertEquals(Optional.of("https://www.example.com"), probed);
+        assertEquals(CircuitBreaker.State.CLOSED, resilientStore.circuitState());
+    }
+
+    @Test
+    void call_FailureUnrelatedToTheStore_ShouldNotCountTowardsOpening() {
+        // Arrange
+        when(store.saveIfAbsent(any())).thenThrow(new IllegalArgumentException("Bad mapping"));
+
+        // Act
+        for (int i = 0; i < 8; i++) {
+            assertThrows(IllegalArgumentException.class, () -> resilientStore.saveIfAbsent(new UrlMapping()));
+        }
+
+        // Assert
+        assertEquals(CircuitBreaker.State.CLOSED, resilientStore.circuitState());
+    }
+
+    @Test
+    void call_WritesFillTheirBulkhead_ShouldStillLetReadsThrough() throws InterruptedException {
+        // Arrange
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(store.saveIfAbsent(any())).thenAnswer(invocation -> {
+            writing.countDown();
+            release.await();
+            return true;
+        });
+        when(store.findOriginalUrl("abc")).thenReturn(Optional.of("https://www.example.com"));
+        Thread writer = Thread.ofVirtual().start(() -> resilientStore.saveIfAbsent(new UrlMapping("https://www.example.com", "abc")));
+        writing.await();
+
+        // Act
+        Optional<String> read = resilientStore.findOriginalUrl("abc");
+        StoreUnavailableException refused = assertThrows(StoreUnavailableException.class,
+                () -> resilientStore.saveIfAbsent(new UrlMapping("https://www.example.com", "def")));
+        release.countDown();
+        writer.join();
+
+        // Assert
+        assertEquals(Optional.of("https://www.example.com"), read);
+        assertTrue(refused.getMessage().contains("writes"));
+        assertEquals(CircuitBreaker.State.CLOSED, resilientStore.circuitState());
+    }
+}
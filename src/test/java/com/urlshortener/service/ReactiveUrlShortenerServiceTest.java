@@ -0,0 +1,165 @@
+package com.urlshortener.service;
+
+import com.urlshortener.cache.ShortCodeFilter;
+import com.urlshortener.cache.ShortUrlCache;
+import com.urlshortener.generator.RandomShortCodeGenerator;
+import com.urlshortener.generator.ShortCodeGenerator;
+import com.urlshortener.model.UrlMapping;
+import com.urlshortener.repository.ExpiryRefresher;
+import com.urlshortener.repository.ReactiveRedisUrlRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class ReactiveUrlShortenerServiceTest {
+
+    @Mock
+    private ReactiveRedisUrlRepository urlRepository;
+
+    @Spy
+    private ShortUrlCache shortUrlCache = new ShortUrlCache(1000, Duration.ofMinutes(1), Duration.ofMinutes(1));
+
+    @Spy
+    private ShortCodeGenerator shortCodeGenerator = new RandomShortCodeGenerator();
+
+    @Mock
+    private ExpiryRefresher expiryRefresher;
+
+    @Spy
+    private ShortCodeFilter codeFilter = new ShortCodeFilter(true, 1000);
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @InjectMocks
+    private ReactiveUrlShortenerService urlShortenerService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    void createShortUrl_CodeTaken_ShouldRetryWithNextCode() {
+        // Arrange
+        when(urlRepository.saveIfAbsent(any(UrlMapping.class)))
+                .thenReturn(Mono.just(false))
+                .thenReturn(Mono.just(true));
+
+        // Act & Assert
+        StepVerifier.create(urlShortenerService.createShortUrl("https://www.example.com"))
+                .assertNext(mapping -> {
+                    assertEquals("https://www.example.com", mapping.getOriginalUrl());
+                    assertNotNull(mapping.getShortUrl());
+                })
+                .verifyComplete();
+        verify(urlRepository, times(2)).saveIfAbsent(any(UrlMapping.class));
+        verify(shortCodeGenerator, times(2)).next();
+        assertEquals(1.0, meterRegistry.counter("urlshortener.shorten.collisions").count());
+    }
+
+    @Test
+    void createSpecificShortUrl_CodeTaken_ShouldFailWithIllegalArgument() {
+        // Arrange
+        when(urlRepository.saveIfAbsent(any(UrlMapping.class))).thenReturn(Mono.just(false));
+
+        // Act & Assert
+        StepVerifier.create(urlShortenerService.createSpecificShortUrl("https://www.example.com", "taken"))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+    }
+
+    @Test
+    void createShortUrl_BlankUrl_ShouldFailWithIllegalArgument() {
+        // Act & Assert
+        StepVerifier.create(urlShortenerService.createShortUrl(null))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+        StepVerifier.create(urlShortenerService.createSpecificShortUrl("", "abc"))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+        verify(urlRepository, never()).saveIfAbsent(any(UrlMapping.class));
+    }
+
+    @Test
+    void getOriginalUrl_ShouldFetchOnceAndServeFromCache() {
+        // Arrange
+        when(urlRepository.findOriginalUrl("abc")).thenReturn(Mono.just("https://www.example.com"));
+
+        // Act & Assert
+        StepVerifier.create(urlShortenerService.getOriginalUrl("abc"))
+                .expectNext("https://www.example.com")
+                .verifyComplete();
+        StepVerifier.create(urlShortenerService.getOriginalUrl("abc"))
+                .expectNext("https://www.example.com")
+                .verifyComplete();
+        verify(urlRepository, times(1)).findOriginalUrl("abc");
+    }
+
+    @Test
+    void getOriginalUrl_MissingCode_ShouldCacheTheMiss() {
+        // Arrange
+        when(urlRepository.findOriginalUrl("missing")).thenReturn(Mono.empty());
+
+        // Act & Assert
+        StepVerifier.create(urlShortenerService.getOriginalUrl("missing")).verifyComplete();
+        StepVerifier.create(urlShortenerService.getOriginalUrl("missing")).verifyComplete();
+        verify(urlRepository, times(1)).findOriginalUrl("missing");
+    }
+
+    @Test
+    void getOriginalUrl_InvalidatedDuringTheFetch_ShouldNotCacheTheOldUrl() {
+        // Arrange
+        Sinks.One<String> fetched = Sinks.one();
+        when(urlRepository.findOriginalUrl("abc"))
+                .thenReturn(fetched.asMono())
+                .thenReturn(Mono.just("https://www.example.com/new"));
+        Mono<String> first = urlShortenerService.getOriginalUrl("abc").cache();
+        first.subscribe();
+
+        // Act
+        shortUrlCache.invalidate("abc");
+        fetched.tryEmitValue("https://www.example.com/old");
+
+        // Assert
+        StepVerifier.create(first).expectNext("https://www.example.com/old").verifyComplete();
+        StepVerifier.create(urlShortenerService.getOriginalUrl("abc"))
+                .expectNext("https://www.example.com/new")
+                .verifyComplete();
+        verify(urlRepository, times(2)).findOriginalUrl("abc");
+    }
+
+    @Test
+    void getOriginalUrl_ConcurrentMisses_ShouldShareOneFetch() {
+        // Arrange
+        Sinks.One<String> fetched = Sinks.one();
+        when(urlRepository.findOriginalUrl("hot")).thenReturn(fetched.asMono());
+
+        // Act
+        Mono<String> first = urlShortenerService.getOriginalUrl("hot").cache();
+        Mono<String> second = urlShortenerService.getOriginalUrl("hot").cache();
+        first.subscribe();
+        second.subscribe();
+        fetched.tryEmitValue("https://www.example.com");
+
+        // Assert
+        StepVerifier.create(first).expectNext("https://www.example.com").verifyComplete();
+        StepVerifier.create(second).expectNext("https://www.example.com").verifyComplete();
+        verify(urlRepository, times(1)).findOriginalUrl("hot");
+        verify(expiryRefresher, times(2)).touch("hot");
+    }
+}
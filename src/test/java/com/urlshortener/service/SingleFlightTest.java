@@ -0,0 +1,134 @@
+package com.urlshortener.service;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    private final SingleFlight<String, String> flight = new SingleFlight<>();
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void get_ConcurrentCallsForOneKey_ShouldShareOneLoad() throws Exception {
+        // Arrange
+        CountDownLatch release = new CountDownLatch(1);
+        List<Future<String>> results = new ArrayList<>();
+
+        // Act
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 100; i++) {
+                results.add(executor.submit(() -> flight.get("hot", code -> {
+                    await(release);
+                    loads.incrementAndGet();
+                    return "https://www.example.com";
+                })));
+            }
+            Thread.sleep(100);
+            release.countDown();
+            for (Future<String> result : results) {
+                assertEquals("https://www.example.com", result.get());
+            }
+        }
+
+        // Assert
+        assertEquals(1, loads.get());
+        assertEquals(99, flight.sharedCount());
+    }
+
+    @Test
+    void get_AfterTheLoadCompletes_ShouldLoadAgain() {
+        // Act
+        flight.get("abc", this::load);
+        flight.get("abc", this::load);
+
+        // Assert
+        assertEquals(2, loads.get());
+        assertEquals(0, flight.sharedCount());
+    }
+
+    @Test
+    void get_LoadFails_ShouldFailEveryWaitingCallerAndNotBeKept() throws Exception {
+        // Arrange
+        CountDownLatch release = new CountDownLatch(1);
+        List<Future<String>> results = new ArrayList<>();
+
+        // Act
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 10; i++) {
+                results.add(executor.submit(() -> flight.get("hot", code -> {
+                    await(release);
+                    throw new IllegalStateException("Redis is down");
+                })));
+            }
+            Thread.sleep(100);
+            release.countDown();
+            for (Future<String> result : results) {
+                ExecutionException failure = assertThrows(ExecutionException.class, result::get);
+                assertInstanceOf(IllegalStateException.class, failure.getCause());
+            }
+        }
+
+        // Assert
+        assertEquals("https://www.example.com/hot", flight.get("hot", this::load));
+    }
+
+    @Test
+    void getAsync_SubscribersWhileInFlight_ShouldShareOneLoad() {
+        // Arrange
+        Sinks.One<String> result = Sinks.one();
+
+        // Act
+        Mono<String> first = flight.getAsync("hot", code -> {
+            loads.incrementAndGet();
+            return result.asMono();
+        }).cache();
+        Mono<String> second = flight.getAsync("hot", code -> {
+            loads.incrementAndGet();
+            return result.asMono();
+        }).cache();
+        first.subscribe();
+        second.subscribe();
+        result.tryEmitValue("https://www.example.com");
+
+        // Assert
+        StepVerifier.create(first).expectNext("https://www.example.com").verifyComplete();
+        StepVerifier.create(second).expectNext("https://www.example.com").verifyComplete();
+        assertEquals(1, loads.get());
+        assertEquals(1, flight.sharedCount());
+    }
+
+    @Test
+    void getAsync_EmptyLoad_ShouldCompleteEmptyAndNotBeKept() {
+        // Act & Assert
+        StepVerifier.create(flight.getAsync("missing", code -> Mono.empty())).verifyComplete();
+        StepVerifier.create(flight.getAsync("missing", code -> Mono.just(load(code))))
+                .expectNext("https://www.example.com/missing")
+                .verifyComplete();
+    }
+
+    private String load(String code) {
+        loads.incrementAndGet();
+        return "https://www.example.com/" + code;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,23 +1,54 @@
 package com.urlshortener.service;
 
+import com.urlshortener.cache.ShortCodeFilter;
+import com.urlshortener.cache.ShortUrlCache;
+import com.urlshortener.generator.RandomShortCodeGenerator;
+import com.urlshortener.generator.ShortCodeGenerator;
+import com.urlshortener.model.BatchShortenResult;
 import com.urlshortener.model.UrlMapping;
-import com.urlshortener.repository.RedisUrlRepository;
+import com.urlshortener.repository.ExpiryRefresher;
+import com.urlshortener.repository.StoreUnavailableException;
+import com.urlshortener.repository.UrlStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.*;
 
 class UrlShortenerServiceTest {
 
     @Mock
-    private RedisUrlRepository urlRepository;
+    private UrlStore urlRepository;
+
+    @Spy
+    private ShortUrlCache shortUrlCache = new ShortUrlCache(1000, Duration.ofMinutes(1), Duration.ofMinutes(1));
+
+    @Spy
+    private ShortCodeGenerator shortCodeGenerator = new RandomShortCodeGenerator();
+
+    @Mock
+    private ExpiryRefresher expiryRefresher;
+
+    @Spy
+    private ShortCodeFilter codeFilter = new ShortCodeFilter(true, 1000);
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
 
     @InjectMocks
     private UrlShortenerService urlShortenerService;
@@ -31,9 +62,7 @@ class UrlShortenerServiceTest {
     void createShortUrl_NewUrl_ShouldCreateNewMapping() {
         // Arrange
         String originalUrl = "https://www.example.com";
-        when(urlRepository.findByOriginalUrl(originalUrl)).thenReturn(Optional.empty());
-        when(urlRepository.existsByShortUrl(any())).thenReturn(false);
-        when(urlRepository.save(any(UrlMapping.class))).thenAnswer(i -> i.getArguments()[0]);
+        when(urlRepository.saveIfAbsent(any(UrlMapping.class))).thenReturn(true);
 
         // Act
         UrlMapping result = urlShortenerService.createShortUrl(originalUrl);
@@ -42,28 +71,25 @@ class UrlShortenerServiceTest {
         assertNotNull(result);
         assertEquals(originalUrl, result.getOriginalUrl());
         assertNotNull(result.getShortUrl());
-        verify(urlRepository).save(any(UrlMapping.class));
+        verify(urlRepository).saveIfAbsent(any(UrlMapping.class));
+        verify(urlRepository, never()).existsByShortUrl(any());
     }
 
     @Test
-    void createShortUrl_ExistingUrl_ShouldReplaceMapping() {
+    void createShortUrl_CodeTaken_ShouldRetryWithNextCode() {
         // Arrange
         String originalUrl = "https://www.example.com";
-        String oldShortUrl = "existing123";
-        UrlMapping existingMapping = new UrlMapping(originalUrl, oldShortUrl);
-        when(urlRepository.findByOriginalUrl(originalUrl)).thenReturn(Optional.of(existingMapping));
-        when(urlRepository.existsByShortUrl(any())).thenReturn(false);
-        when(urlRepository.save(any(UrlMapping.class))).thenAnswer(i -> i.getArguments()[0]);
+        when(shortCodeGenerator.next()).thenReturn("taken001", "free0002");
+        when(urlRepository.saveIfAbsent(any(UrlMapping.class))).thenReturn(false, true);
 
         // Act
         UrlMapping result = urlShortenerService.createShortUrl(originalUrl);
 
         // Assert
-        assertNotNull(result);
-        assertNotEquals(oldShortUrl, result.getShortUrl());
+        assertEquals("free0002", result.getShortUrl());
         assertEquals(originalUrl, result.getOriginalUrl());
-        verify(urlRepository).delete(oldShortUrl);
-        verify(urlRepository).save(any(UrlMapping.class));
+        verify(urlRepository, times(2)).saveIfAbsent(any(UrlMapping.class));
+        assertEquals(1.0, meterRegistry.counter("urlshortener.shorten.collisions").count());
     }
 
     @Test
@@ -71,8 +97,7 @@ class UrlShortenerServiceTest {
         // Arrange
         String originalUrl = "https://www.example.com";
         String specifiedShortUrl = "custom123";
-        when(urlRepository.existsByShortUrl(specifiedShortUrl)).thenReturn(false);
-        when(urlRepository.save(any(UrlMapping.class))).thenAnswer(i -> i.getArguments()[0]);
+        when(urlRepository.saveIfAbsent(any(UrlMapping.class))).thenReturn(true);
 
         // Act
         UrlMapping result = urlShortenerService.createSpecificShortUrl(originalUrl, specifiedShortUrl);
@@ -81,7 +106,7 @@ class UrlShortenerServiceTest {
         assertNotNull(result);
         assertEquals(originalUrl, result.getOriginalUrl());
         assertEquals(specifiedShortUrl, result.getShortUrl());
-        verify(urlRepository).save(any(UrlMapping.class));
+        verify(urlRepository).saveIfAbsent(any(UrlMapping.class));
     }
 
     @Test
@@ -89,7 +114,7 @@ class UrlShortenerServiceTest {
         // Arrange
         String originalUrl = "https://www.example.com";
         String specifiedShortUrl = "existing123";
-        when(urlRepository.existsByShortUrl(specifiedShortUrl)).thenReturn(true);
+        when(urlRepository.saveIfAbsent(any(UrlMapping.class))).thenReturn(false);
 
         // Act & Assert
         assertThrows(IllegalArgumentException.class, () -> 
@@ -97,13 +122,43 @@ class UrlShortenerServiceTest {
         );
     }
 
+    @Test
+    void createShortUrl_BlankUrl_ShouldThrowException() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> urlShortenerService.createShortUrl(null));
+        assertThrows(IllegalArgumentException.class, () -> urlShortenerService.createSpecificShortUrl(" ", "abc"));
+        verify(urlRepository, never()).saveIfAbsent(any(UrlMapping.class));
+    }
+
+    @Test
+    void createShortUrls_ShouldAllocateInBulkAndReturnResultsInOrder() {
+        // Arrange
+        when(shortCodeGenerator.next(2)).thenReturn(List.of("code0001", "code0002"));
+        when(shortCodeGenerator.next()).thenReturn("code0003");
+        when(urlRepository.saveAllIfAbsent(any())).thenReturn(List.of(true, false));
+        when(urlRepository.saveIfAbsent(any(UrlMapping.class))).thenReturn(true);
+
+        // Act
+        List<BatchShortenResult> results = urlShortenerService.createShortUrls(
+                Arrays.asList("https://a.example.com", "", "https://b.example.com", "https://a.example.com"));
+
+        // Assert
+        assertEquals(4, results.size());
+        assertEquals("code0001", results.get(0).getShortUrl());
+        assertEquals(BatchShortenResult.Status.INVALID, results.get(1).getStatus());
+        assertEquals("code0003", results.get(2).getShortUrl());
+        assertEquals("https://b.example.com", results.get(2).getUrl());
+        assertEquals("code0001", results.get(3).getShortUrl());
+        verify(urlRepository, times(1)).saveAllIfAbsent(any());
+        verify(urlRepository, times(1)).saveIfAbsent(any(UrlMapping.class));
+    }
+
     @Test
     void getOriginalUrl_ExistingShortUrl_ShouldReturnOriginalUrl() {
         // Arrange
         String shortUrl = "test123";
         String originalUrl = "https://www.example.com";
-        UrlMapping mapping = new UrlMapping(originalUrl, shortUrl);
-        when(urlRepository.findByShortUrl(shortUrl)).thenReturn(Optional.of(mapping));
+        when(urlRepository.findOriginalUrl(shortUrl)).thenReturn(Optional.of(originalUrl));
 
         // Act
         Optional<String> result = urlShortenerService.getOriginalUrl(shortUrl);
@@ -117,7 +172,7 @@ class UrlShortenerServiceTest {
     void getOriginalUrl_NonExistingShortUrl_ShouldReturnEmpty() {
         // Arrange
         String shortUrl = "nonexistent";
-        when(urlRepository.findByShortUrl(shortUrl)).thenReturn(Optional.empty());
+        when(urlRepository.findOriginalUrl(shortUrl)).thenReturn(Optional.empty());
 
         // Act
         Optional<String> result = urlShortenerService.getOriginalUrl(shortUrl);
@@ -125,4 +180,142 @@ class UrlShortenerServiceTest {
         // Assert
         assertFalse(result.isPresent());
     }
+
+    @Test
+    void getOriginalUrls_ShouldFetchUncachedCodesInOneRepositoryCall() {
+        // Arrange
+        when(urlRepository.findOriginalUrl("cached1")).thenReturn(Optional.of("https://a.example.com"));
+        urlShortenerService.getOriginalUrl("cached1");
+        when(urlRepository.findOriginalUrls(any())).thenReturn(Map.of("fresh1", "https://b.example.com"));
+
+        // Act
+        Map<String, String> result = urlShortenerService.getOriginalUrls(List.of("cached1", "fresh1", "missing1"));
+
+        // Assert
+        assertEquals(Map.of("cached1", "https://a.example.com", "fresh1", "https://b.example.com"), result);
+        verify(urlRepository, times(1)).findOriginalUrls(argThat(codes -> codes.size() == 2 && !codes.contains("cached1")));
+    }
+
+    @Test
+    void getOriginalUrl_RepeatedLookup_ShouldBeServedFromCache() {
+        // Arrange
+        String shortUrl = "cached123";
+        String originalUrl = "https://www.example.com";
+        when(urlRepository.findOriginalUrl(shortUrl)).thenReturn(Optional.of(originalUrl));
+
+        // Act
+        urlShortenerService.getOriginalUrl(shortUrl);
+        Optional<String> result = urlShortenerService.getOriginalUrl(shortUrl);
+
+        // Assert
+        assertEquals(Optional.of(originalUrl), result);
+        verify(urlRepository, times(1)).findOriginalUrl(shortUrl);
+    }
+
+    @Test
+    void createShortUrl_WithTtl_ShouldSaveMappingWithThatExpiry() {
+        // Arrange
+        UrlShortenerService service = new UrlShortenerService(urlRepository, shortUrlCache, shortCodeGenerator,
+                expiryRefresher, meterRegistry, Duration.ofDays(365));
+        when(urlRepository.saveIfAbsent(any(UrlMapping.class))).thenReturn(true);
+
+        // Act
+        UrlMapping result = service.createShortUrl("https://www.example.com", null, Duration.ofHours(1));
+
+        // Assert
+        Duration remaining = Duration.between(LocalDateTime.now(), result.getExpiresAt());
+        assertTrue(remaining.compareTo(Duration.ofMinutes(59)) > 0 && remaining.compareTo(Duration.ofHours(1)) <= 0);
+    }
+
+    @Test
+    void createShortUrl_TtlAboveMaximum_ShouldThrowException() {
+        // Arrange
+        UrlShortenerService service = new UrlShortenerService(urlRepository, shortUrlCache, shortCodeGenerator,
+                expiryRefresher, meterRegistry, Duration.ofDays(365));
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class,
+                () -> service.createShortUrl("https://www.example.com", null, Duration.ofDays(366)));
+        assertThrows(IllegalArgumentException.class,
+                () -> service.createShortUrl("https://www.example.com", null, Duration.ZERO));
+        verify(urlRepository, never()).saveIfAbsent(any(UrlMapping.class));
+    }
+
+    @Test
+    void resolve_ShouldQueueExpiryRefreshOnlyForExistingCodes() {
+        // Arrange
+        when(urlRepository.findOriginalUrl("live123")).thenReturn(Optional.of("https://www.example.com"));
+        when(urlRepository.findOriginalUrl("gone123")).thenReturn(Optional.empty());
+
+        // Act
+        urlShortenerService.resolve("live123");
+        urlShortenerService.resolve("live123");
+        urlShortenerService.resolve("gone123");
+
+        // Assert
+        verify(expiryRefresher, times(2)).touch("live123");
+        verify(expiryRefresher, never()).touch("gone123");
+    }
+
+    @Test
+    void createShortUrl_CodeHeldByTheCodeFilter_ShouldSkipItWithoutAWrite() {
+        // Arrange
+        codeFilter.startRebuild();
+        codeFilter.load(List.of("taken1"));
+        codeFilter.finishRebuild();
+        when(shortCodeGenerator.next()).thenReturn("taken1", "free1");
+        when(urlRepository.saveIfAbsent(any(UrlMapping.class))).thenReturn(true);
+
+        // Act
+        UrlMapping result = urlShortenerService.createShortUrl("https://www.example.com");
+
+        // Assert
+        assertEquals("free1", result.getShortUrl());
+        verify(urlRepository, times(1)).saveIfAbsent(any(UrlMapping.class));
+        assertEquals(1.0, meterRegistry.counter("urlshortener.shorten.collisions").count());
+    }
+
+    @Test
+    void getMapping_ShouldNotUseUrlCache() {
+        // Arrange
+        String shortUrl = "info123";
+        UrlMapping mapping = new UrlMapping("https://www.example.com", shortUrl);
+        mapping.setHitCount(42);
+        when(urlRepository.findByShortUrl(shortUrl)).thenReturn(Optional.of(mapping));
+
+        // Act
+        Optional<UrlMapping> result = urlShortenerService.getMapping(shortUrl);
+
+        // Assert
+        assertEquals(42, result.get().getHitCount());
+        verify(urlRepository, never()).findOriginalUrl(shortUrl);
+    }
+
+    @Test
+    void getOriginalUrl_StoreUnavailable_ShouldServeTheLastKnownUrlWithoutCachingIt() {
+        // Arrange
+        String shortUrl = "stale1";
+        when(urlRepository.findOriginalUrl(shortUrl))
+                .thenThrow(new StoreUnavailableException("The circuit to the store is open"))
+                .thenReturn(Optional.of("https://www.example.com/new"));
+        doReturn("https://www.example.com/old").when(shortUrlCache).getStale(shortUrl);
+
+        // Act
+        Optional<String> whileDown = urlShortenerService.getOriginalUrl(shortUrl);
+        Optional<String> afterRecovery = urlShortenerService.getOriginalUrl(shortUrl);
+
+        // Assert
+        assertEquals(Optional.of("https://www.example.com/old"), whileDown);
+        assertEquals(Optional.of("https://www.example.com/new"), afterRecovery);
+        assertEquals(1.0, meterRegistry.counter("urlshortener.lookups.stale").count());
+    }
+
+    @Test
+    void getOriginalUrl_StoreUnavailableAndNoLastKnownUrl_ShouldThrow() {
+        // Arrange
+        when(urlRepository.findOriginalUrl("stale2")).thenThrow(new StoreUnavailableException("The circuit to the store is open"));
+
+        // Act & Assert
+        assertThrows(StoreUnavailableException.class, () -> urlShortenerService.getOriginalUrl("stale2"));
+    }
 } 
\ No newline at end of file